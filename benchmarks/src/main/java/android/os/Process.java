@@ -0,0 +1,40 @@
+package android.os;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+/**
+ * JVM replacement of the Android {@link Process}, whose platform jar only
+ * contains stubs. Provides what the benchmarked app classes use.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class Process {
+
+    public static final int THREAD_PRIORITY_AUDIO = -16;
+
+    /**
+     * 
+     * @return the CPU time of the process in ms.
+     */
+    public static long getElapsedCpuTime() {
+        return System.nanoTime() / 1000000;
+    }
+}
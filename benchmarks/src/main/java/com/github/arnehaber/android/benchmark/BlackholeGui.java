@@ -0,0 +1,65 @@
+package com.github.arnehaber.android.benchmark;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.arnehaber.android.IOceanWavesGui;
+
+/**
+ * {@link IOceanWavesGui} that hands all updates to a {@link Blackhole}, so
+ * the calls cannot be eliminated.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class BlackholeGui implements IOceanWavesGui {
+
+    private final Blackhole blackhole;
+
+    /**
+     * 
+     * @param blackhole
+     *            consumes the updates.
+     */
+    public BlackholeGui(Blackhole blackhole) {
+        this.blackhole = blackhole;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.IOceanWavesGui#updateTime(char[], int)
+     */
+    public void updateTime(char[] time, int length) {
+        blackhole.consume(time);
+        blackhole.consume(length);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.IOceanWavesGui#updateProgress(int)
+     */
+    public void updateProgress(int progress) {
+        blackhole.consume(progress);
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.arnehaber.android.benchmark;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.arnehaber.android.audio.GranularSampleSource;
+import com.github.arnehaber.android.audio.ISampleSource;
+import com.github.arnehaber.android.audio.LoopingSampleSource;
+import com.github.arnehaber.android.audio.PcmBuffer;
+import com.github.arnehaber.android.audio.SurfSynthesizer;
+
+/**
+ * Compares the {@link GranularSampleSource} with the plain
+ * {@link LoopingSampleSource} on the same 20 s clip of synthesized surf. Each
+ * operation renders one second of stereo audio in blocks of the size used by
+ * the audio engine, so the score in ops/s is the real time factor.
+ * 
+ * @author Arne Haber
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GranularBenchmark {
+
+    private static final int SAMPLE_RATE = SurfSynthesizer.DEFAULT_SAMPLE_RATE;
+
+    private static final int BLOCK_FRAMES = 2048;
+
+    private static final int CLIP_FRAMES = 20 * SAMPLE_RATE;
+
+    private final float[] block = new float[BLOCK_FRAMES * 2];
+
+    private ISampleSource loop;
+
+    private ISampleSource granular;
+
+    @Setup
+    public void setUp() {
+        SurfSynthesizer synthesizer = new SurfSynthesizer(SAMPLE_RATE, 2, 42);
+        float[] clip = new float[2 * CLIP_FRAMES];
+        synthesizer.read(clip, 0, CLIP_FRAMES);
+        short[] samples = new short[clip.length];
+        for (int i = 0; i < clip.length; i++) {
+            samples[i] = (short) (Math.max(-1f, Math.min(1f, clip[i])) * 32767f);
+        }
+        PcmBuffer pcm = new PcmBuffer(samples, CLIP_FRAMES, 2, SAMPLE_RATE);
+        loop = new LoopingSampleSource(pcm);
+        granular = new GranularSampleSource(pcm, GranularSampleSource.DEFAULT_GRAIN_TIME * SAMPLE_RATE / 1000, 42);
+    }
+
+    @Benchmark
+    public float[] loop() {
+        return renderOneSecond(loop);
+    }
+
+    @Benchmark
+    public float[] granular() {
+        return renderOneSecond(granular);
+    }
+
+    private float[] renderOneSecond(ISampleSource source) {
+        int remaining = SAMPLE_RATE;
+        while (remaining > 0) {
+            int frames = Math.min(remaining, BLOCK_FRAMES);
+            source.read(block, 0, frames);
+            remaining -= frames;
+        }
+        return block;
+    }
+}
@@ -0,0 +1,166 @@
+package com.github.arnehaber.android.benchmark;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import com.github.arnehaber.android.helper.IScheduler;
+
+/**
+ * {@link IScheduler} that runs callbacks only when the benchmark advances its
+ * clock. Pending callbacks are kept in preallocated slots, so neither posting
+ * nor running allocates. A callback posted while it is pending is moved
+ * rather than posted twice. Frame callbacks are due immediately.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class ManualScheduler implements IScheduler {
+
+    /**
+     * Maximum number of pending callbacks.
+     */
+    private static final int CAPACITY = 16;
+
+    private final Runnable[] tasks = new Runnable[CAPACITY];
+
+    private final long[] dueTimes = new long[CAPACITY];
+
+    private long now = 0;
+
+    /**
+     * Sets the clock and runs all callbacks that are due, including the ones
+     * they post for the new time.
+     * 
+     * @param time
+     *            the new time in ms.
+     * @return the number of callbacks run.
+     */
+    public int advanceTo(long time) {
+        now = time;
+        int ran = 0;
+        boolean due = true;
+        while (due) {
+            due = false;
+            for (int i = 0; i < CAPACITY; i++) {
+                Runnable task = tasks[i];
+                if (task != null && dueTimes[i] <= now) {
+                    tasks[i] = null;
+                    task.run();
+                    ran++;
+                    due = true;
+                }
+            }
+        }
+        return ran;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.helper.IClock#uptimeMillis()
+     */
+    public long uptimeMillis() {
+        return now;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.helper.IClock#elapsedRealtime()
+     */
+    public long elapsedRealtime() {
+        return now;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.arnehaber.android.helper.IScheduler#post(java.lang.Runnable)
+     */
+    public void post(Runnable r) {
+        schedule(r, now);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.arnehaber.android.helper.IScheduler#postDelayed(java.lang.
+     * Runnable, long)
+     */
+    public void postDelayed(Runnable r, long delayMillis) {
+        schedule(r, now + delayMillis);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.arnehaber.android.helper.IScheduler#removeCallbacks(java.lang
+     * .Runnable)
+     */
+    public void removeCallbacks(Runnable r) {
+        for (int i = 0; i < CAPACITY; i++) {
+            if (tasks[i] == r) {
+                tasks[i] = null;
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.arnehaber.android.helper.IScheduler#postFrame(java.lang.Runnable
+     * )
+     */
+    public void postFrame(Runnable r) {
+        schedule(r, now);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.arnehaber.android.helper.IScheduler#removeFrame(java.lang.
+     * Runnable)
+     */
+    public void removeFrame(Runnable r) {
+        removeCallbacks(r);
+    }
+
+    private void schedule(Runnable r, long dueTime) {
+        int free = -1;
+        for (int i = 0; i < CAPACITY; i++) {
+            if (tasks[i] == r) {
+                dueTimes[i] = dueTime;
+                return;
+            }
+            if (tasks[i] == null && free < 0) {
+                free = i;
+            }
+        }
+        if (free < 0) {
+            throw new IllegalStateException("More than " + CAPACITY + " pending callbacks");
+        }
+        tasks[free] = r;
+        dueTimes[free] = dueTime;
+    }
+}
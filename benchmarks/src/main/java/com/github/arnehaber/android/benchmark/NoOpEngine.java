@@ -0,0 +1,152 @@
+package com.github.arnehaber.android.benchmark;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import com.github.arnehaber.android.audio.AudioSource;
+import com.github.arnehaber.android.audio.IAudioEngine;
+
+/**
+ * {@link IAudioEngine} that plays nothing. It prepares immediately and
+ * reports a position that advances with each query, so the player measures
+ * its own work only.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class NoOpEngine implements IAudioEngine {
+
+    private PrepareListener listener;
+
+    private boolean playing = false;
+
+    private int position = 0;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.arnehaber.android.audio.IAudioEngine#prepareAsync(com.github
+     * .arnehaber.android.audio.AudioSource,
+     * com.github.arnehaber.android.audio.IAudioEngine.PrepareListener)
+     */
+    public void prepareAsync(AudioSource source, PrepareListener listener) {
+        this.listener = listener;
+        listener.onPrepared();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#start()
+     */
+    public void start() {
+        playing = true;
+        listener.onStarted();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#pause()
+     */
+    public void pause() {
+        playing = false;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#stop()
+     */
+    public void stop() {
+        playing = false;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#rewind()
+     */
+    public void rewind() {
+        position = 0;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#fadeOut(int, int)
+     */
+    public void fadeOut(int remaining, int length) {
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#cancelFadeOut()
+     */
+    public void cancelFadeOut() {
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#release()
+     */
+    public void release() {
+        playing = false;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#isPlaying()
+     */
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#getDuration()
+     */
+    public int getDuration() {
+        return 0xffff;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#getCurrentPosition()
+     */
+    public int getCurrentPosition() {
+        position = (position + 1) & 0xffff;
+        return position;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#getUnderrunCount()
+     */
+    public long getUnderrunCount() {
+        return 0;
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.arnehaber.android.benchmark;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.arnehaber.android.audio.SurfSynthesizer;
+
+/**
+ * Benchmarks the {@link SurfSynthesizer}. Each operation renders one second of
+ * stereo audio in blocks of the size used by the audio engine, so the score
+ * in ops/s is the real time factor.
+ * 
+ * @author Arne Haber
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SurfSynthBenchmark {
+
+    private static final int BLOCK_FRAMES = 2048;
+
+    private final SurfSynthesizer synthesizer = new SurfSynthesizer(SurfSynthesizer.DEFAULT_SAMPLE_RATE, 2, 42);
+
+    private final float[] block = new float[BLOCK_FRAMES * 2];
+
+    @Benchmark
+    public float[] renderOneSecond() {
+        int remaining = SurfSynthesizer.DEFAULT_SAMPLE_RATE;
+        while (remaining > 0) {
+            int frames = Math.min(remaining, BLOCK_FRAMES);
+            synthesizer.read(block, 0, frames);
+            remaining -= frames;
+        }
+        return block;
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.arnehaber.android.benchmark;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.arnehaber.android.helper.TimeConstants;
+
+/**
+ * Benchmarks {@link TimeConstants#timeToChars(int, char[])}, which formats the
+ * remaining sleep time once per second, and the allocating
+ * {@link TimeConstants#timeToString(int)}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeFormatBenchmark {
+
+    private int time = 0;
+
+    private final char[] out = new char[TimeConstants.MAX_TIME_LENGTH];
+
+    @Benchmark
+    public String timeToString() {
+        return TimeConstants.timeToString(nextTime());
+    }
+
+    @Benchmark
+    public char[] timeToChars() {
+        TimeConstants.timeToChars(nextTime(), out);
+        return out;
+    }
+
+    /**
+     * Walks through all displayable times.
+     * 
+     * @return the next time in ms.
+     */
+    private int nextTime() {
+        time += TimeConstants.SECOND;
+        if (time > TimeConstants.MAX_SLEEP_TIME) {
+            time = 0;
+        }
+        return time;
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.arnehaber.android.benchmark;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.arnehaber.android.TimedSleepPlayer;
+import com.github.arnehaber.android.audio.AudioCommandThread;
+import com.github.arnehaber.android.helper.TimeConstants;
+
+/**
+ * Benchmarks one second of a playing {@link TimedSleepPlayer} with a visible
+ * display: the sleep timer tick, which records the event and updates the
+ * remaining time, and the GUI frame that coalesces the time and progress
+ * updates. The engine plays nothing and audio commands run synchronously.
+ * 
+ * @author Arne Haber
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimerTickBenchmark {
+
+    private final ManualScheduler scheduler = new ManualScheduler();
+
+    private long now = 0;
+
+    /**
+     * Time the sleep timer was started last.
+     */
+    private long timerStart = 0;
+
+    private TimedSleepPlayer player;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        player = new TimedSleepPlayer(new BlackholeGui(blackhole), null, new NoOpEngine(),
+                new AudioCommandThread() {
+                    @Override
+                    public void execute(Runnable command) {
+                        command.run();
+                    }
+
+                    @Override
+                    public void executeDelayed(Runnable command, long delayMillis) {
+                        // the engine does not fade
+                    }
+
+                    @Override
+                    public void remove(Runnable command) {
+                    }
+                }, scheduler);
+        player.setSleepTime(TimeConstants.MAX_SLEEP_TIME);
+        player.setDisplayVisible(true);
+        player.startPlayer();
+        // starts the sleep timer
+        scheduler.advanceTo(now);
+    }
+
+    @Benchmark
+    public int tick() {
+        now += TimeConstants.SECOND;
+        if (now - timerStart >= TimeConstants.MAX_SLEEP_TIME) {
+            // restarts the timer a second before it expires
+            player.setSleepTime(TimeConstants.MAX_SLEEP_TIME);
+            timerStart = now - TimeConstants.SECOND;
+        }
+        return scheduler.advanceTo(now);
+    }
+}
@@ -0,0 +1,217 @@
+package com.github.arnehaber.android;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.BitmapDrawable;
+import android.os.AsyncTask;
+import android.view.View;
+import android.view.ViewTreeObserver.OnGlobalLayoutListener;
+
+import com.github.arnehaber.android.helper.LruCache;
+
+/**
+ * Sets an image resource as background of a view without decoding it on the
+ * GUI thread. Once the view is laid out, the image is decoded in the
+ * background, sampled down as far as it still covers the view. Decoded
+ * images are kept in a {@link Cache} keyed by resource and sample size, so a
+ * recreated view of the same size gets its background without decoding.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class BackgroundLoader implements OnGlobalLayoutListener {
+
+    /**
+     * Decoded images by resource and sample size, limited by their size in
+     * bytes.
+     */
+    public static class Cache extends LruCache<Long, Bitmap> {
+
+        /**
+         * 
+         * @param maxBytes
+         *            maximum size of all cached images in bytes.
+         */
+        public Cache(long maxBytes) {
+            super(maxBytes);
+        }
+
+        @Override
+        protected long sizeOf(Long key, Bitmap value) {
+            return (long) value.getRowBytes() * value.getHeight();
+        }
+    }
+
+    private final View view;
+
+    private final int resId;
+
+    private final Cache cache;
+
+    /**
+     * The running decode, if any. Only accessed on the GUI thread.
+     */
+    private DecodeTask task;
+
+    /**
+     * 
+     * @param view
+     *            the view that gets the background.
+     * @param resId
+     *            the image resource.
+     * @param cache
+     *            the cache of decoded images.
+     */
+    public BackgroundLoader(View view, int resId, Cache cache) {
+        this.view = view;
+        this.resId = resId;
+        this.cache = cache;
+    }
+
+    /**
+     * Loads the background as soon as the view is laid out. Must be called on
+     * the GUI thread.
+     */
+    public void start() {
+        if (view.getWidth() > 0 && view.getHeight() > 0) {
+            load();
+        }
+        else {
+            view.getViewTreeObserver().addOnGlobalLayoutListener(this);
+        }
+    }
+
+    /**
+     * Stops loading. An image decoded meanwhile is still cached. Must be
+     * called on the GUI thread.
+     */
+    @SuppressWarnings("deprecation")
+    public void cancel() {
+        view.getViewTreeObserver().removeGlobalOnLayoutListener(this);
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * android.view.ViewTreeObserver.OnGlobalLayoutListener#onGlobalLayout()
+     */
+    @SuppressWarnings("deprecation")
+    public void onGlobalLayout() {
+        if (view.getWidth() > 0 && view.getHeight() > 0) {
+            view.getViewTreeObserver().removeGlobalOnLayoutListener(this);
+            load();
+        }
+    }
+
+    private void load() {
+        // reads the image header only
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(view.getResources(), resId, bounds);
+        int sampleSize = getSampleSize(bounds.outWidth, bounds.outHeight, view.getWidth(), view.getHeight());
+
+        Long key = Long.valueOf(((long) resId << 32) | sampleSize);
+        Bitmap cached = cache.get(key);
+        if (cached != null) {
+            show(cached);
+        }
+        else if (task == null) {
+            task = new DecodeTask(view.getResources(), key, sampleSize);
+            task.execute();
+        }
+    }
+
+    /**
+     * 
+     * @param imageWidth
+     *            width of the image in pixels.
+     * @param imageHeight
+     *            height of the image in pixels.
+     * @param viewWidth
+     *            width of the view in pixels.
+     * @param viewHeight
+     *            height of the view in pixels.
+     * @return the largest power of two the image can be sampled down by
+     *         while it still covers the view.
+     */
+    static int getSampleSize(int imageWidth, int imageHeight, int viewWidth, int viewHeight) {
+        int sampleSize = 1;
+        while (imageWidth / (2 * sampleSize) >= viewWidth && imageHeight / (2 * sampleSize) >= viewHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    @SuppressWarnings("deprecation")
+    private void show(Bitmap bitmap) {
+        view.setBackgroundDrawable(new BitmapDrawable(view.getResources(), bitmap));
+    }
+
+    /**
+     * Decodes and caches the image on a background thread and shows it on the
+     * GUI thread.
+     */
+    private class DecodeTask extends AsyncTask<Void, Void, Bitmap> {
+
+        private final Resources resources;
+
+        private final Long key;
+
+        private final int sampleSize;
+
+        DecodeTask(Resources resources, Long key, int sampleSize) {
+            this.resources = resources;
+            this.key = key;
+            this.sampleSize = sampleSize;
+        }
+
+        @Override
+        protected Bitmap doInBackground(Void... params) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = sampleSize;
+            // the image has no alpha, so half the memory suffices
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+            options.inDither = true;
+            Bitmap bitmap = BitmapFactory.decodeResource(resources, resId, options);
+            if (bitmap != null) {
+                // cached even if cancelled, a recreated view will need it
+                cache.put(key, bitmap);
+            }
+            return bitmap;
+        }
+
+        @Override
+        protected void onPostExecute(Bitmap bitmap) {
+            task = null;
+            if (bitmap != null) {
+                show(bitmap);
+            }
+        }
+    }
+}
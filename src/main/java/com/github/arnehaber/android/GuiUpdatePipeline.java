@@ -0,0 +1,182 @@
+package com.github.arnehaber.android;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.github.arnehaber.android.helper.IScheduler;
+import com.github.arnehaber.android.helper.TimeConstants;
+
+/**
+ * Pushes the remaining time and the play back progress into an
+ * {@link IOceanWavesGui}. Values are only stored while the GUI is not visible.
+ * While it is visible, all values set in between two frames are coalesced into
+ * a single frame callback, which only touches the views whose displayed value
+ * has changed. Frames are taken from an {@link IScheduler}.
+ * <p>
+ * All methods must be called on the GUI thread.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class GuiUpdatePipeline {
+
+    /**
+     * Marks a value that has not been set or displayed yet.
+     */
+    private static final int NONE = -1;
+
+    private final IOceanWavesGui gui;
+
+    private final IScheduler scheduler;
+
+    /**
+     * Displays the pending values.
+     */
+    private final Runnable frame;
+
+    /**
+     * Reused buffer of the displayed time.
+     */
+    private final char[] timeText = new char[TimeConstants.MAX_TIME_LENGTH];
+
+    private boolean visible = false;
+
+    /**
+     * True if a frame callback is posted.
+     */
+    private boolean scheduled = false;
+
+    private int pendingSeconds = NONE;
+
+    private int shownSeconds = NONE;
+
+    private int pendingProgress = NONE;
+
+    private int shownProgress = NONE;
+
+    /**
+     * Number of values pushed into the GUI so far. Only written on the GUI
+     * thread.
+     */
+    private volatile long updates = 0;
+
+    /**
+     * 
+     * @param gui
+     *            the updated GUI.
+     * @param scheduler
+     *            scheduler of the GUI thread, provides the frames.
+     */
+    public GuiUpdatePipeline(IOceanWavesGui gui, IScheduler scheduler) {
+        this.gui = gui;
+        this.scheduler = scheduler;
+        this.frame = new Runnable() {
+            public void run() {
+                scheduled = false;
+                display();
+            }
+        };
+    }
+
+    /**
+     * Sets the remaining time. The GUI is only updated if the displayed
+     * seconds change.
+     * 
+     * @param ms
+     *            the remaining time in ms, not negative.
+     */
+    public void setTime(int ms) {
+        pendingSeconds = ms / TimeConstants.SECOND;
+        invalidate();
+    }
+
+    /**
+     * Sets the play back progress.
+     * 
+     * @param progress
+     *            the play back position in ms, not negative.
+     */
+    public void setProgress(int progress) {
+        pendingProgress = progress;
+        invalidate();
+    }
+
+    /**
+     * Starts or stops pushing values into the GUI. All values are displayed
+     * with the next frame after the GUI becomes visible, as its views may have
+     * been recreated in between.
+     * 
+     * @param visible
+     *            true if the GUI is visible.
+     */
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+        if (visible) {
+            shownSeconds = NONE;
+            shownProgress = NONE;
+            invalidate();
+        }
+        else if (scheduled) {
+            scheduled = false;
+            scheduler.removeFrame(frame);
+        }
+    }
+
+    /**
+     * 
+     * @return true if values are pushed into the GUI.
+     */
+    public boolean isVisible() {
+        return visible;
+    }
+
+    /**
+     * May be called from any thread.
+     * 
+     * @return the number of values pushed into the GUI so far.
+     */
+    public long getUpdateCount() {
+        return updates;
+    }
+
+    /**
+     * Posts a frame callback if the GUI is visible and a value has changed.
+     */
+    private void invalidate() {
+        if (visible && !scheduled && (pendingSeconds != shownSeconds || pendingProgress != shownProgress)) {
+            scheduled = true;
+            scheduler.postFrame(frame);
+        }
+    }
+
+    private void display() {
+        if (pendingSeconds != shownSeconds) {
+            shownSeconds = pendingSeconds;
+            int length = TimeConstants.timeToChars(shownSeconds * TimeConstants.SECOND, timeText);
+            gui.updateTime(timeText, length);
+            updates++;
+        }
+        if (pendingProgress != NONE && pendingProgress != shownProgress) {
+            shownProgress = pendingProgress;
+            gui.updateProgress(shownProgress);
+            updates++;
+        }
+    }
+}
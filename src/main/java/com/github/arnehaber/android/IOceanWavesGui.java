@@ -20,8 +20,6 @@ package com.github.arnehaber.android;
  * #L%
  */
 
-import android.content.res.AssetFileDescriptor;
-
 /**
  * Provides access to the GUI controls.
  * 
@@ -31,11 +29,16 @@ import android.content.res.AssetFileDescriptor;
 public interface IOceanWavesGui {
 
     /**
+     * Displays the first <b>length</b> chars of <b>time</b>. The caller reuses
+     * the array and changes it only right before the next call, so it can be
+     * displayed without copying.
      * 
      * @param time
      *            time to display
+     * @param length
+     *            number of chars to display.
      */
-    void updateTime(String time);
+    void updateTime(char[] time, int length);
 
     /**
      * 
@@ -43,10 +46,4 @@ public interface IOceanWavesGui {
      *            progress to display.
      */
     void updateProgress(int progress);
-
-    /**
-     * 
-     * @return an {@link AssetFileDescriptor} of the audio file to play.
-     */
-    AssetFileDescriptor getSelectedAudioFile();
 }
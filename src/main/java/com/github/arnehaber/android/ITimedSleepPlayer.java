@@ -20,6 +20,9 @@ package com.github.arnehaber.android;
  * #L%
  */
 
+import com.github.arnehaber.android.audio.AudioSource;
+import com.github.arnehaber.android.helper.TimeConstants;
+
 /**
  * A media player that plays audio files in a loop and stops after a sleep timer
  * expired.
@@ -47,10 +50,20 @@ public interface ITimedSleepPlayer {
     void startPlayer();
 
     /**
-     * Stops the player and releases internal resources.
+     * Stops the player. The prepared player is kept for a while to allow a
+     * quick restart, afterwards internal resources are released.
      */
     void stopPlayer();
 
+    /**
+     * Replaces the played audio. A playing player continues with the new
+     * audio, which restarts the sleep timer.
+     * 
+     * @param audioSource
+     *            the audio to play.
+     */
+    void setAudioSource(AudioSource audioSource);
+
     /**
      * 
      * @return the duration of the currently played track.
@@ -58,11 +71,66 @@ public interface ITimedSleepPlayer {
     int getDuration();
 
     /**
-     * Sets the sleep timer with the given <b>progress</b>.
+     * Sets the sleep timer with the given <b>progress</b>. Play back fades out
+     * during the last {@link #getFadeOutTime()} ms of the sleep time and is
+     * silent when the timer expires.
      * 
      * @param progress
      *            new sleep time in ms.
      */
     void setSleepTime(int progress);
 
+    /**
+     * 
+     * @return the length of the fade out before the sleep timer expires in ms.
+     */
+    int getFadeOutTime();
+
+    /**
+     * Sets the length of the fade out before the sleep timer expires. Applies
+     * to a running timer immediately.
+     * 
+     * @param fadeOutTime
+     *            0 to stop without fading, otherwise between
+     *            {@link TimeConstants#MIN_FADE_OUT_TIME} and
+     *            {@link TimeConstants#MAX_FADE_OUT_TIME} ms.
+     * @throws IllegalArgumentException
+     *             if <b>fadeOutTime</b> is out of range.
+     */
+    void setFadeOutTime(int fadeOutTime);
+
+    /**
+     * Informs the player whether its GUI is visible. The remaining sleep time
+     * and the play back progress are only pushed to the GUI while it is
+     * visible, at most once per frame.
+     * 
+     * @param visible
+     *            true, if the GUI is visible.
+     */
+    void setDisplayVisible(boolean visible);
+
+    /**
+     * Informs the player that the system is short of memory. An idle player
+     * drops its prepared resources.
+     * 
+     * @param level
+     *            the trim level as passed to
+     *            {@link android.content.ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    void onTrimMemory(int level);
+
+    /**
+     * Collects the performance counters of the player. May be called from any
+     * thread and does not block.
+     * 
+     * @return a snapshot of the counters.
+     */
+    PlayerMetrics getMetrics();
+
+    /**
+     * Stops the player for good and releases all resources including the
+     * audio thread. The player cannot be started afterwards.
+     */
+    void release();
+
 }
\ No newline at end of file
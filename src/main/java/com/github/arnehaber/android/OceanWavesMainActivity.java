@@ -21,8 +21,11 @@ package com.github.arnehaber.android;
  */
 
 import android.app.Activity;
-import android.content.res.AssetFileDescriptor;
+import android.content.ComponentName;
+import android.content.Intent;
+import android.content.ServiceConnection;
 import android.os.Bundle;
+import android.os.IBinder;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.widget.Button;
@@ -31,21 +34,30 @@ import android.widget.SeekBar;
 import android.widget.SeekBar.OnSeekBarChangeListener;
 import android.widget.TextView;
 
-import com.github.arnehaber.android.helper.OceanWavesModule;
 import com.github.arnehaber.android.helper.TimeConstants;
-import com.google.inject.Guice;
-import com.google.inject.Injector;
-import com.google.inject.Module;
 import com.google.inject.Provider;
 
 /**
- * Main {@link Activity} of the ocean waves app.
+ * Main {@link Activity} of the ocean waves app. The player is owned by the
+ * {@link OceanWavesService}, which this activity binds to.
  * 
  * @author Arne Haber
  */
 public class OceanWavesMainActivity extends Activity implements IOceanWavesGui, Provider<IOceanWavesGui> {
 
     protected static final String STATE_SLEEP_TIME_VALUE = "com.github.arnehaber.android.OceanWavesMainActivity.STATE_SLEEP_TIME_VALUE";
+
+    /**
+     * Decoded background images, shared by all instances so a recreated
+     * activity does not decode again. Limited to an eighth of the heap.
+     */
+    private static final BackgroundLoader.Cache BACKGROUNDS = new BackgroundLoader.Cache(Runtime.getRuntime()
+            .maxMemory() / 8);
+
+    /**
+     * Loads the background image of the main layout.
+     */
+    private BackgroundLoader backgroundLoader;
     
     /**
      * Displays the current sleep time.
@@ -63,10 +75,66 @@ public class OceanWavesMainActivity extends Activity implements IOceanWavesGui,
     private SeekBar sleepTimeSetter;
 
     /**
-     * Controlled sound player.
+     * Controlled sound player, null until the {@link OceanWavesService} is
+     * connected.
      */
     private ITimedSleepPlayer player;
 
+    /**
+     * Connection to the {@link OceanWavesService}, handed over to the next
+     * instance on a configuration change.
+     */
+    private PlayerConnection connection;
+
+    /**
+     * True if {@link #connection} is handed over to the next instance.
+     */
+    private boolean connectionRetained = false;
+
+    /**
+     * True between onStart and onStop.
+     */
+    private boolean started = false;
+
+    /**
+     * Binds the {@link OceanWavesService} with the application context, so the
+     * binding outlives a single activity instance.
+     */
+    private static class PlayerConnection implements ServiceConnection {
+
+        /**
+         * The current activity instance, null while there is none.
+         */
+        private OceanWavesMainActivity activity;
+
+        private OceanWavesService.PlayerBinder binder;
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see
+         * android.content.ServiceConnection#onServiceConnected(android.content
+         * .ComponentName, android.os.IBinder)
+         */
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            binder = (OceanWavesService.PlayerBinder) service;
+            if (activity != null) {
+                activity.onPlayerConnected(binder);
+            }
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see
+         * android.content.ServiceConnection#onServiceDisconnected(android.content
+         * .ComponentName)
+         */
+        public void onServiceDisconnected(ComponentName name) {
+            binder = null;
+        }
+    }
+
     /**
      * Called when the activity is first created.
      * 
@@ -81,21 +149,30 @@ public class OceanWavesMainActivity extends Activity implements IOceanWavesGui,
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        // setup guice
-        Module mod = new OceanWavesModule(this);
-        Injector injector = Guice.createInjector(mod);
+        bindViews();
+        loadBackground();
+        connectPlayer();
+    }
 
-        // inject player
-        player = injector.getInstance(ITimedSleepPlayer.class);
+    /**
+     * Loads the background image once the main layout is measured.
+     */
+    protected void loadBackground() {
+        backgroundLoader = new BackgroundLoader(findViewById(R.id.mainLayout), R.drawable.background, BACKGROUNDS);
+        backgroundLoader.start();
+    }
 
+    /**
+     * Binds the views of the content view to the player.
+     */
+    protected void bindViews() {
         // setup sleep time progress bar
         progress = (ProgressBar) findViewById(R.id.progressBar);
-        progress.setMax(player.getDuration());
 
         // setup sleep time setter
         sleepTimeSetter = (SeekBar) findViewById(R.id.sleepTimeSetter);
         sleepTimeSetter.setMax(TimeConstants.MAX_SLEEP_TIME);
-        sleepTimeSetter.setProgress(player.getSleepTime());
+        sleepTimeSetter.setProgress(TimeConstants.DEFAULT_TIME);
         sleepTimeSetter.setOnSeekBarChangeListener(createSleepTimeSetterListener());
 
         // setup sleep time display
@@ -108,10 +185,47 @@ public class OceanWavesMainActivity extends Activity implements IOceanWavesGui,
         stopButton.setOnClickListener(createStopButtonListener());
     }
 
+    /**
+     * Takes over the connection of the previous instance after a configuration
+     * change, or binds the {@link OceanWavesService}.
+     */
+    @SuppressWarnings("deprecation")
+    protected void connectPlayer() {
+        connection = (PlayerConnection) getLastNonConfigurationInstance();
+        if (connection == null) {
+            connection = new PlayerConnection();
+            connection.activity = this;
+            getApplicationContext().bindService(new Intent(this, OceanWavesService.class), connection,
+                    BIND_AUTO_CREATE);
+        }
+        else {
+            connection.activity = this;
+            if (connection.binder != null) {
+                onPlayerConnected(connection.binder);
+            }
+        }
+    }
+
+    /**
+     * Binds the views to the player of the connected service.
+     * 
+     * @param binder
+     *            the binder of the {@link OceanWavesService}.
+     */
+    protected void onPlayerConnected(OceanWavesService.PlayerBinder binder) {
+        player = binder.getPlayer();
+        progress.setMax(player.getDuration());
+        // the service owns the sleep time, the setter only displays it
+        sleepTimeSetter.setProgress(player.getSleepTime());
+        if (started) {
+            binder.attach(this);
+        }
+    }
+
     /**
      * 
-     * @return a change listener that sets currentTime and sleepTime when
-     *         progress is detected.
+     * @return a change listener that sets the sleep time when the user moves
+     *         the setter.
      */
     private OnSeekBarChangeListener createSleepTimeSetterListener() {
         OnSeekBarChangeListener result = new OnSeekBarChangeListener() {
@@ -122,7 +236,10 @@ public class OceanWavesMainActivity extends Activity implements IOceanWavesGui,
             }
 
             public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
-                player.setSleepTime(progress);
+                // changing the sleep time restarts a running timer
+                if (fromUser && player != null) {
+                    player.setSleepTime(progress);
+                }
             }
         };
         return result;
@@ -135,7 +252,9 @@ public class OceanWavesMainActivity extends Activity implements IOceanWavesGui,
     private OnClickListener createStopButtonListener() {
         OnClickListener result = new OnClickListener() {
             public void onClick(View v) {
-                player.pausePlayer();
+                if (player != null) {
+                    player.pausePlayer();
+                }
             }
         };
         return result;
@@ -148,7 +267,9 @@ public class OceanWavesMainActivity extends Activity implements IOceanWavesGui,
     private OnClickListener createPlayButtonListener() {
         OnClickListener result = new OnClickListener() {
             public void onClick(View v) {
-                player.startPlayer();
+                if (player != null) {
+                    player.startPlayer();
+                }
             }
         };
         return result;
@@ -157,10 +278,10 @@ public class OceanWavesMainActivity extends Activity implements IOceanWavesGui,
     /*
      * (non-Javadoc)
      * 
-     * @see com.github.arnehaber.android.IOceanWavesGui#updateTime()
+     * @see com.github.arnehaber.android.IOceanWavesGui#updateTime(char[], int)
      */
-    public void updateTime(String time) {
-        timeTextView.setText(time);
+    public void updateTime(char[] time, int length) {
+        timeTextView.setText(time, 0, length);
     }
 
     /*
@@ -172,15 +293,6 @@ public class OceanWavesMainActivity extends Activity implements IOceanWavesGui,
         this.progress.setProgress(progress);
     }
 
-    /*
-     * (non-Javadoc)
-     * 
-     * @see com.github.arnehaber.android.IOceanWavesGui#getSelectedAudioFile()
-     */
-    public AssetFileDescriptor getSelectedAudioFile() {
-        return getResources().openRawResourceFd(R.raw.ocean_mp3);
-    }
-
     /**
      * @return the provided {@link IOceanWavesGui}.
      */
@@ -188,13 +300,82 @@ public class OceanWavesMainActivity extends Activity implements IOceanWavesGui,
         return this;
     }
 
+    /* (non-Javadoc)
+     * @see android.app.Activity#onStart()
+     */
+    @Override
+    protected void onStart() {
+        super.onStart();
+        started = true;
+        if (player != null) {
+            connection.binder.attach(this);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see android.app.Activity#onStop()
+     */
+    @Override
+    protected void onStop() {
+        started = false;
+        if (player != null) {
+            connection.binder.detach(this);
+        }
+        super.onStop();
+    }
+
+    /* (non-Javadoc)
+     * @see android.app.Activity#onRetainNonConfigurationInstance()
+     */
+    @Override
+    @SuppressWarnings("deprecation")
+    public Object onRetainNonConfigurationInstance() {
+        connectionRetained = true;
+        return connection;
+    }
+
+    /* (non-Javadoc)
+     * @see android.app.Activity#onDestroy()
+     */
+    @Override
+    protected void onDestroy() {
+        backgroundLoader.cancel();
+        connection.activity = null;
+        if (!connectionRetained) {
+            // the service releases the player once no activity is bound
+            getApplicationContext().unbindService(connection);
+        }
+        super.onDestroy();
+    }
+
+    /* (non-Javadoc)
+     * @see android.app.Activity#onTrimMemory(int)
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            // the background is decoded again when the activity is shown
+            BACKGROUNDS.evictAll();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see android.app.Activity#onLowMemory()
+     */
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        BACKGROUNDS.evictAll();
+    }
+
     /* (non-Javadoc)
      * @see android.app.Activity#onSaveInstanceState(android.os.Bundle)
      */
     @Override
     protected void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
-        outState.putInt(STATE_SLEEP_TIME_VALUE, player.getSleepTime());
+        outState.putInt(STATE_SLEEP_TIME_VALUE, sleepTimeSetter.getProgress());
     }
 
     /* (non-Javadoc)
@@ -203,7 +384,9 @@ public class OceanWavesMainActivity extends Activity implements IOceanWavesGui,
     @Override
     protected void onRestoreInstanceState(Bundle savedInstanceState) {
         super.onRestoreInstanceState(savedInstanceState);
-        int sleepTime = savedInstanceState.getInt(STATE_SLEEP_TIME_VALUE);
-        sleepTimeSetter.setProgress(sleepTime);
+        if (player == null) {
+            // shown until the service is connected
+            sleepTimeSetter.setProgress(savedInstanceState.getInt(STATE_SLEEP_TIME_VALUE));
+        }
     }
 }
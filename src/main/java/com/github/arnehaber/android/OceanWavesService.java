@@ -0,0 +1,387 @@
+package com.github.arnehaber.android;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+
+import android.app.Notification;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.BroadcastReceiver;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Binder;
+import android.os.Handler;
+import android.os.IBinder;
+import android.util.Log;
+
+import com.github.arnehaber.android.audio.AudioEngineType;
+import com.github.arnehaber.android.audio.AudioSource;
+import com.github.arnehaber.android.audio.LoudnessIndex;
+import com.github.arnehaber.android.audio.PcmCache;
+import com.github.arnehaber.android.audio.PcmLoader;
+import com.github.arnehaber.android.audio.RawResourceSource;
+import com.github.arnehaber.android.audio.SoundCatalog;
+import com.github.arnehaber.android.helper.HandlerScheduler;
+import com.github.arnehaber.android.helper.OceanWavesFactory;
+import com.google.inject.Provider;
+
+/**
+ * Long lived owner of the {@link ITimedSleepPlayer}. Activities bind to this
+ * service and attach themselves as {@link IOceanWavesGui} while they are
+ * visible, so configuration changes and further activity instances reuse the
+ * prepared player instead of decoding and preparing the audio again.
+ * <p>
+ * While playing, the service is started and runs in the foreground, so play
+ * back continues when no activity is left. It stops itself when play back is
+ * paused and is destroyed, releasing the player, once no activity is bound
+ * anymore.
+ * <p>
+ * The playable sounds are listed in a {@link SoundCatalog}. Decoded audio is
+ * kept in a {@link PcmCache} in the cache directory of the app, which is
+ * cleared when the device runs low on storage. Recently used audio is also
+ * kept in memory, up to an eighth of the heap, which shrinks when the system
+ * trims memory. The loudness of each sound is measured once and kept in a
+ * {@link LoudnessIndex} in the files directory, so all sounds play at the
+ * same loudness.
+ * <p>
+ * The performance counters and recent events of the player are printed by
+ * <code>adb shell dumpsys activity service OceanWavesService</code>. The
+ * recent events are also logged if the app crashes.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class OceanWavesService extends Service {
+
+    private static final int NOTIFICATION_ID = 1;
+
+    /**
+     * Sub directory of the app cache directory holding decoded audio.
+     */
+    private static final String PCM_CACHE_DIRECTORY = "pcm";
+
+    /**
+     * Part of the heap the recently used audio may take.
+     */
+    private static final int MAX_MEMORY_FRACTION = 8;
+
+    /**
+     * File in the app files directory holding the {@link LoudnessIndex}.
+     */
+    private static final String LOUDNESS_INDEX_FILE = "loudness.idx";
+
+    private final PlayerBinder binder = new PlayerBinder();
+
+    private final AttachedGui gui = new AttachedGui();
+
+    private TimedSleepPlayer player;
+
+    private PcmCache pcmCache;
+
+    /**
+     * Loads the audio of the engines and the catalog.
+     */
+    private PcmLoader pcmLoader;
+
+    private SoundCatalog catalog;
+
+    /**
+     * The audio played first.
+     */
+    private AudioSource audioSource;
+
+    private final BroadcastReceiver storageLowReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            pcmCache.clear();
+        }
+    };
+
+    /**
+     * Logs the recent player events before passing an uncaught exception on
+     * to {@link #previousHandler}.
+     */
+    private final Thread.UncaughtExceptionHandler crashHandler = new Thread.UncaughtExceptionHandler() {
+        public void uncaughtException(Thread thread, Throwable ex) {
+            Log.e(OceanWavesService.class.getName(), "Recent player events:\n" + player.getEventLog());
+            if (previousHandler != null) {
+                previousHandler.uncaughtException(thread, ex);
+            }
+        }
+    };
+
+    private Thread.UncaughtExceptionHandler previousHandler;
+
+    /**
+     * Shown while the service runs in the foreground, created on first use.
+     */
+    private Notification notification;
+
+    /**
+     * {@link Binder} handed to the activities, only valid in the process of
+     * the service.
+     */
+    public class PlayerBinder extends Binder {
+
+        /**
+         * 
+         * @return the player owned by the service.
+         */
+        public ITimedSleepPlayer getPlayer() {
+            return player;
+        }
+
+        /**
+         * 
+         * @return the sounds the player can play.
+         */
+        public SoundCatalog getCatalog() {
+            return catalog;
+        }
+
+        /**
+         * Lets the player play a sound of the catalog. Must be called on the
+         * GUI thread.
+         * 
+         * @param index
+         *            index of the sound in the catalog.
+         */
+        public void selectSound(int index) {
+            player.setAudioSource(catalog.get(index).getSource());
+        }
+
+        /**
+         * Makes <b>gui</b> the visible GUI of the player. Must be called on
+         * the GUI thread.
+         * 
+         * @param gui
+         *            the GUI that became visible.
+         */
+        public void attach(IOceanWavesGui gui) {
+            OceanWavesService.this.gui.attached = gui;
+            player.setDisplayVisible(true);
+        }
+
+        /**
+         * Detaches <b>gui</b> if it is the visible GUI of the player. Must be
+         * called on the GUI thread.
+         * 
+         * @param gui
+         *            the GUI that is no longer visible.
+         */
+        public void detach(IOceanWavesGui gui) {
+            if (OceanWavesService.this.gui.attached == gui) {
+                OceanWavesService.this.gui.attached = null;
+                player.setDisplayVisible(false);
+            }
+        }
+    }
+
+    /**
+     * Forwards the GUI updates of the player to the attached activity, if any.
+     */
+    private class AttachedGui implements IOceanWavesGui, Provider<IOceanWavesGui> {
+
+        /**
+         * The visible GUI. Only accessed on the GUI thread.
+         */
+        private IOceanWavesGui attached;
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see com.github.arnehaber.android.IOceanWavesGui#updateTime(char[],
+         * int)
+         */
+        public void updateTime(char[] time, int length) {
+            if (attached != null) {
+                attached.updateTime(time, length);
+            }
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see com.github.arnehaber.android.IOceanWavesGui#updateProgress(int)
+         */
+        public void updateProgress(int progress) {
+            if (attached != null) {
+                attached.updateProgress(progress);
+            }
+        }
+
+        /**
+         * @return the provided {@link IOceanWavesGui}.
+         */
+        public IOceanWavesGui get() {
+            return this;
+        }
+    }
+
+    /**
+     * {@link TimedSleepPlayer} that keeps the service in the foreground while
+     * play back is requested. Pausing, stopping and the expiry of the sleep
+     * timer all pass {@link #pausePlayer()}.
+     */
+    private class ForegroundPlayer extends TimedSleepPlayer {
+
+        ForegroundPlayer(OceanWavesFactory factory) {
+            super(gui, audioSource, factory.createAudioEngine(), factory.createAudioThread(), new HandlerScheduler(
+                    new Handler()));
+        }
+
+        @Override
+        public void startPlayer() {
+            super.startPlayer();
+            startService(new Intent(OceanWavesService.this, OceanWavesService.class));
+            startForeground(NOTIFICATION_ID, getNotification());
+        }
+
+        @Override
+        public void pausePlayer() {
+            super.pausePlayer();
+            stopForeground(true);
+            stopSelf();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see android.app.Service#onCreate()
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        pcmCache = new PcmCache(new File(getCacheDir(), PCM_CACHE_DIRECTORY));
+        registerReceiver(storageLowReceiver, new IntentFilter(Intent.ACTION_DEVICE_STORAGE_LOW));
+        pcmLoader = new PcmLoader(pcmCache, new PcmLoader.MemoryCache(Runtime.getRuntime().maxMemory()
+                / MAX_MEMORY_FRACTION), new LoudnessIndex(new File(getFilesDir(), LOUDNESS_INDEX_FILE)));
+        catalog = new SoundCatalog(pcmLoader);
+        catalog.add("ocean", new RawResourceSource(getResources(), R.raw.ocean_mp3));
+        audioSource = catalog.get(0).getSource();
+        player = new ForegroundPlayer(createFactory());
+        previousHandler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(crashHandler);
+    }
+
+    /**
+     * 
+     * @return the factory used to create the audio engine and its thread.
+     */
+    protected OceanWavesFactory createFactory() {
+        return new OceanWavesFactory(gui, audioSource, AudioEngineType.getDefault(), pcmLoader);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see android.app.Service#onStartCommand(android.content.Intent, int, int)
+     */
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // without an activity a restarted service would have nothing to play
+        return START_NOT_STICKY;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see android.app.Service#onBind(android.content.Intent)
+     */
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see android.app.Service#onTrimMemory(int)
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        player.onTrimMemory(level);
+        catalog.onTrimMemory(level);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see android.app.Service#onLowMemory()
+     */
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        player.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        catalog.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see android.app.Service#onDestroy()
+     */
+    @Override
+    public void onDestroy() {
+        if (Thread.getDefaultUncaughtExceptionHandler() == crashHandler) {
+            Thread.setDefaultUncaughtExceptionHandler(previousHandler);
+        }
+        stopForeground(true);
+        player.release();
+        unregisterReceiver(storageLowReceiver);
+        super.onDestroy();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see android.app.Service#dump(java.io.FileDescriptor,
+     * java.io.PrintWriter, java.lang.String[])
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.println("state=" + player.getState());
+        player.getMetrics().dump(writer, "");
+        writer.println("events:");
+        player.getEventLog().dump(writer, "  ");
+    }
+
+    @SuppressWarnings("deprecation")
+    private Notification getNotification() {
+        if (notification == null) {
+            Intent intent = new Intent(this, OceanWavesMainActivity.class);
+            intent.setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
+            PendingIntent content = PendingIntent.getActivity(this, 0, intent, 0);
+            notification = new Notification(R.drawable.ic_launcher, null, System.currentTimeMillis());
+            notification.setLatestEventInfo(this, getText(R.string.app_name), getText(R.string.notification_playing),
+                    content);
+        }
+        return notification;
+    }
+
+}
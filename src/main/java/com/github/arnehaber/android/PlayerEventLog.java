@@ -0,0 +1,299 @@
+package com.github.arnehaber.android;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.github.arnehaber.android.PlayerStateMachine.State;
+import com.github.arnehaber.android.helper.AndroidClock;
+import com.github.arnehaber.android.helper.IClock;
+
+/**
+ * Lock-free ring buffer of the most recent player events. All slots are
+ * allocated up front and hold primitive fields only, so recording an event
+ * neither locks nor allocates and may be done from any thread.
+ * <p>
+ * Writers claim a slot with a single atomic increment. Each slot carries a
+ * stamp, the number of the event it holds, which is cleared while the slot is
+ * written. A reader only reports a slot whose stamp matches before and after
+ * reading its fields, so events overwritten while dumping are skipped rather
+ * than reported torn. The fields are packed into two volatile longs per slot,
+ * so the stamp orders them like a lock would.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class PlayerEventLog {
+
+    /**
+     * Default number of kept events.
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * Recorded events.
+     */
+    public enum Event {
+        /**
+         * Play back was requested.
+         */
+        START_REQUESTED,
+        /**
+         * Pausing was requested.
+         */
+        PAUSE_REQUESTED,
+        /**
+         * Stopping was requested.
+         */
+        STOP_REQUESTED,
+        /**
+         * Releasing the player was requested.
+         */
+        RELEASE_REQUESTED,
+        /**
+         * The sleep timer started with a duration of the first argument in ms.
+         */
+        TIMER_STARTED,
+        /**
+         * The sleep timer ticked with the first argument in ms remaining.
+         */
+        TIMER_TICK,
+        /**
+         * The sleep timer expired.
+         */
+        TIMER_EXPIRED,
+        /**
+         * The life cycle moved from the {@link State} with the ordinal of the
+         * first argument to the one of the second argument.
+         */
+        TRANSITION,
+        /**
+         * Preparing the engine failed.
+         */
+        PREPARE_FAILED
+    }
+
+    private static final Event[] EVENTS = Event.values();
+
+    private static final State[] STATES = State.values();
+
+    /**
+     * Number of low bits of the packed time that hold the event.
+     */
+    private static final int EVENT_BITS = 8;
+
+    private final IClock clock;
+
+    private final int mask;
+
+    /**
+     * Number of the next event.
+     */
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * Number of the event held by each slot, -1 while it is written.
+     */
+    private final AtomicLongArray stamps;
+
+    /**
+     * Two entries per slot: the time shifted by {@link #EVENT_BITS} or'ed with
+     * the event, and the first argument in the high and the second in the low
+     * half.
+     */
+    private final AtomicLongArray fields;
+
+    /**
+     * Keeps the {@link #DEFAULT_CAPACITY} most recent events, stamped with the
+     * time of the device.
+     */
+    public PlayerEventLog() {
+        this(new AndroidClock());
+    }
+
+    /**
+     * Stamps the events with the time of the device.
+     * 
+     * @param capacity
+     *            number of kept events, a power of two.
+     */
+    public PlayerEventLog(int capacity) {
+        this(capacity, new AndroidClock());
+    }
+
+    /**
+     * Keeps the {@link #DEFAULT_CAPACITY} most recent events.
+     * 
+     * @param clock
+     *            stamps the events.
+     */
+    public PlayerEventLog(IClock clock) {
+        this(DEFAULT_CAPACITY, clock);
+    }
+
+    /**
+     * 
+     * @param capacity
+     *            number of kept events, a power of two.
+     * @param clock
+     *            stamps the events.
+     */
+    public PlayerEventLog(int capacity, IClock clock) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("Capacity is not a power of two: " + capacity);
+        }
+        this.clock = clock;
+        this.mask = capacity - 1;
+        this.stamps = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            stamps.set(i, -1);
+        }
+        this.fields = new AtomicLongArray(2 * capacity);
+    }
+
+    /**
+     * Records an event without arguments.
+     * 
+     * @param event
+     *            the event.
+     */
+    public void record(Event event) {
+        record(event, 0, 0);
+    }
+
+    /**
+     * Records an event, replacing the oldest one if the log is full.
+     * 
+     * @param event
+     *            the event.
+     * @param first
+     *            first argument, meaning depends on <b>event</b>.
+     * @param second
+     *            second argument, meaning depends on <b>event</b>.
+     */
+    public void record(Event event, int first, int second) {
+        long number = next.getAndIncrement();
+        int slot = (int) number & mask;
+        stamps.set(slot, -1);
+        fields.set(2 * slot, uptimeMillis() << EVENT_BITS | event.ordinal());
+        fields.set(2 * slot + 1, (long) first << 32 | second & 0xffffffffL);
+        // publishes the fields
+        stamps.set(slot, number);
+    }
+
+    /**
+     * Records a transition of the life cycle.
+     * 
+     * @param from
+     *            the state that has been left.
+     * @param to
+     *            the new state.
+     */
+    public void recordTransition(State from, State to) {
+        record(Event.TRANSITION, from.ordinal(), to.ordinal());
+    }
+
+    /**
+     * 
+     * @return the number of events recorded so far, including the ones that
+     *         have been replaced.
+     */
+    public long getCount() {
+        return next.get();
+    }
+
+    /**
+     * 
+     * @return the number of kept events.
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Writes the kept events as text, oldest first, one per line. Events
+     * recorded while dumping may be missing.
+     * 
+     * @param writer
+     *            the destination.
+     * @param prefix
+     *            prepended to each line.
+     */
+    public void dump(PrintWriter writer, String prefix) {
+        long end = next.get();
+        for (long number = Math.max(0, end - mask - 1); number < end; number++) {
+            int slot = (int) number & mask;
+            if (stamps.get(slot) != number) {
+                continue;
+            }
+            long timeAndEvent = fields.get(2 * slot);
+            long args = fields.get(2 * slot + 1);
+            if (stamps.get(slot) != number) {
+                // overwritten while reading
+                continue;
+            }
+            long time = timeAndEvent >> EVENT_BITS;
+            int event = (int) timeAndEvent & ((1 << EVENT_BITS) - 1);
+            int first = (int) (args >> 32);
+            int second = (int) args;
+            writer.print(prefix);
+            writer.print(time);
+            writer.print(' ');
+            writer.print(EVENTS[event]);
+            if (EVENTS[event] == Event.TRANSITION) {
+                writer.print(' ');
+                writer.print(STATES[first]);
+                writer.print(" -> ");
+                writer.print(STATES[second]);
+            }
+            else if (first != 0 || second != 0) {
+                writer.print(' ');
+                writer.print(first);
+                writer.print(' ');
+                writer.print(second);
+            }
+            writer.println();
+        }
+    }
+
+    /**
+     * 
+     * @return the current time in ms since boot, not counting deep sleep.
+     */
+    protected long uptimeMillis() {
+        return clock.uptimeMillis();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        StringWriter out = new StringWriter();
+        dump(new PrintWriter(out), "");
+        return out.toString();
+    }
+}
@@ -0,0 +1,176 @@
+package com.github.arnehaber.android;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.PrintWriter;
+
+/**
+ * Snapshot of the performance counters of an {@link ITimedSleepPlayer}. Each
+ * value is read without locking, so the snapshot as a whole is not atomic.
+ * Counters accumulate over the life time of the player. Times are in ms, -1
+ * marks a value that has not been measured yet.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public final class PlayerMetrics {
+
+    private static final long HOUR = 60L * 60 * 1000;
+
+    private final long startLatency;
+
+    private final long prepareTime;
+
+    private final long underruns;
+
+    private final long timerWakeups;
+
+    private final long guiUpdates;
+
+    private final long playTime;
+
+    private final long cpuTime;
+
+    /**
+     * 
+     * @param startLatency
+     *            time from the first play request until the first audio.
+     * @param prepareTime
+     *            duration of the last prepare of the engine.
+     * @param underruns
+     *            number of times the audio output ran dry.
+     * @param timerWakeups
+     *            number of wakeups of the sleep timer.
+     * @param guiUpdates
+     *            number of values pushed into the GUI.
+     * @param playTime
+     *            total play back time.
+     * @param cpuTime
+     *            CPU time of the process consumed during play back.
+     */
+    public PlayerMetrics(long startLatency, long prepareTime, long underruns, long timerWakeups, long guiUpdates,
+            long playTime, long cpuTime) {
+        this.startLatency = startLatency;
+        this.prepareTime = prepareTime;
+        this.underruns = underruns;
+        this.timerWakeups = timerWakeups;
+        this.guiUpdates = guiUpdates;
+        this.playTime = playTime;
+        this.cpuTime = cpuTime;
+    }
+
+    /**
+     * 
+     * @return the time from the first play request until the engine reported
+     *         its first audio in ms, or -1.
+     */
+    public long getStartLatency() {
+        return startLatency;
+    }
+
+    /**
+     * 
+     * @return the duration of the last prepare of the engine in ms, or -1.
+     */
+    public long getPrepareTime() {
+        return prepareTime;
+    }
+
+    /**
+     * 
+     * @return the number of times the audio output ran dry.
+     */
+    public long getUnderruns() {
+        return underruns;
+    }
+
+    /**
+     * 
+     * @return the number of wakeups of the sleep timer.
+     */
+    public long getTimerWakeups() {
+        return timerWakeups;
+    }
+
+    /**
+     * 
+     * @return the number of values pushed into the GUI.
+     */
+    public long getGuiUpdates() {
+        return guiUpdates;
+    }
+
+    /**
+     * 
+     * @return the total play back time in ms.
+     */
+    public long getPlayTime() {
+        return playTime;
+    }
+
+    /**
+     * 
+     * @return the CPU time of the process consumed during play back in ms.
+     */
+    public long getCpuTime() {
+        return cpuTime;
+    }
+
+    /**
+     * 
+     * @return the CPU time consumed per hour of play back in ms, or -1 if
+     *         nothing has been played yet.
+     */
+    public long getCpuTimePerHour() {
+        return playTime > 0 ? cpuTime * HOUR / playTime : -1;
+    }
+
+    /**
+     * Writes all values as text, one per line.
+     * 
+     * @param writer
+     *            the destination.
+     * @param prefix
+     *            prepended to each line.
+     */
+    public void dump(PrintWriter writer, String prefix) {
+        writer.println(prefix + "startLatency=" + startLatency + " ms");
+        writer.println(prefix + "prepareTime=" + prepareTime + " ms");
+        writer.println(prefix + "underruns=" + underruns);
+        writer.println(prefix + "timerWakeups=" + timerWakeups);
+        writer.println(prefix + "guiUpdates=" + guiUpdates);
+        writer.println(prefix + "playTime=" + playTime + " ms");
+        writer.println(prefix + "cpuTime=" + cpuTime + " ms");
+        writer.println(prefix + "cpuTimePerHour=" + getCpuTimePerHour() + " ms");
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "PlayerMetrics [startLatency=" + startLatency + ", prepareTime=" + prepareTime + ", underruns="
+                + underruns + ", timerWakeups=" + timerWakeups + ", guiUpdates=" + guiUpdates + ", playTime="
+                + playTime + ", cpuTime=" + cpuTime + "]";
+    }
+}
@@ -0,0 +1,204 @@
+package com.github.arnehaber.android;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free life cycle of an audio player. Every transition is a single
+ * compare-and-set, so of several threads requesting the same transition
+ * exactly one succeeds. The thread that wins a transition into
+ * {@link State#PREPARING} or {@link State#STOPPING} owns the engine until it
+ * leaves that state again.
+ * 
+ * <pre>
+ * IDLE -&gt; PREPARING -&gt; PREPARED -&gt; PLAYING &lt;-&gt; PAUSED
+ * PREPARING, PREPARED, PLAYING, PAUSED -&gt; STOPPING -&gt; IDLE
+ * PREPARING -&gt; IDLE (preparing failed)
+ * IDLE -&gt; RELEASED
+ * </pre>
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class PlayerStateMachine {
+
+    /**
+     * Life cycle states of the player.
+     */
+    public enum State {
+        /**
+         * No engine resources are held.
+         */
+        IDLE,
+        /**
+         * The engine is being prepared.
+         */
+        PREPARING,
+        /**
+         * The engine is prepared and has not been started yet.
+         */
+        PREPARED,
+        /**
+         * The engine is playing.
+         */
+        PLAYING,
+        /**
+         * The engine is paused and keeps its position.
+         */
+        PAUSED,
+        /**
+         * The engine is being stopped and released.
+         */
+        STOPPING,
+        /**
+         * The player has been released for good. Final state.
+         */
+        RELEASED;
+
+        /**
+         * 
+         * @param target
+         *            the requested next state.
+         * @return true, if a transition from this state to <b>target</b> is
+         *         legal.
+         */
+        public boolean canTransitionTo(State target) {
+            switch (this) {
+            case IDLE:
+                return target == PREPARING || target == RELEASED;
+            case PREPARING:
+                // IDLE if preparing failed
+                return target == PREPARED || target == STOPPING || target == IDLE;
+            case PREPARED:
+                return target == PLAYING || target == STOPPING;
+            case PAUSED:
+                return target == PLAYING || target == STOPPING;
+            case PLAYING:
+                return target == PAUSED || target == STOPPING;
+            case STOPPING:
+                return target == IDLE;
+            default:
+                return false;
+            }
+        }
+    }
+
+    private final AtomicReference<State> state = new AtomicReference<State>(State.IDLE);
+
+    /**
+     * Records all transitions, may be null.
+     */
+    private final PlayerEventLog log;
+
+    /**
+     * Creates a machine that does not record its transitions.
+     */
+    public PlayerStateMachine() {
+        this(null);
+    }
+
+    /**
+     * 
+     * @param log
+     *            records all transitions, may be null.
+     */
+    public PlayerStateMachine(PlayerEventLog log) {
+        this.log = log;
+    }
+
+    /**
+     * 
+     * @return the current state.
+     */
+    public State get() {
+        return state.get();
+    }
+
+    /**
+     * Atomically moves from <b>expected</b> to <b>target</b>.
+     * 
+     * @param expected
+     *            the state the machine has to be in.
+     * @param target
+     *            the new state.
+     * @return true, if the transition succeeded. False, if the machine is not
+     *         in state <b>expected</b>.
+     * @throws IllegalArgumentException
+     *             if the transition is not part of the life cycle.
+     */
+    public boolean transition(State expected, State target) {
+        if (!expected.canTransitionTo(target)) {
+            throw new IllegalArgumentException("Illegal transition " + expected + " -> " + target);
+        }
+        if (state.compareAndSet(expected, target)) {
+            if (log != null) {
+                log.recordTransition(expected, target);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Atomically moves to {@link State#STOPPING} from any state that holds a
+     * prepared engine.
+     * 
+     * @return the state that has been left, or null if the machine was not in
+     *         {@link State#PREPARED}, {@link State#PLAYING} or
+     *         {@link State#PAUSED}.
+     */
+    public State stopPrepared() {
+        while (true) {
+            State current = state.get();
+            if (current != State.PREPARED && current != State.PLAYING && current != State.PAUSED) {
+                return null;
+            }
+            if (state.compareAndSet(current, State.STOPPING)) {
+                if (log != null) {
+                    log.recordTransition(current, State.STOPPING);
+                }
+                return current;
+            }
+        }
+    }
+
+    /**
+     * 
+     * @return true, if the engine is prepared, i.e. the state is
+     *         {@link State#PREPARED}, {@link State#PLAYING} or
+     *         {@link State#PAUSED}.
+     */
+    public boolean isPrepared() {
+        State current = state.get();
+        return current == State.PREPARED || current == State.PLAYING || current == State.PAUSED;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return state.get().toString();
+    }
+}
@@ -0,0 +1,238 @@
+package com.github.arnehaber.android;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.github.arnehaber.android.helper.IScheduler;
+import com.github.arnehaber.android.helper.TimeConstants;
+
+/**
+ * Sleep timer based on a single absolute deadline. While running, exactly one
+ * wakeup is scheduled for the expiry. Display ticks are only scheduled while
+ * the display is visible and fire when the displayed full second changes. The
+ * remaining time is always derived from the deadline, so late ticks never
+ * cause drift.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class SleepTimer {
+
+    /**
+     * Receives timer events on the {@link IScheduler} thread.
+     */
+    public interface Listener {
+
+        /**
+         * Called when the displayed remaining time changed.
+         */
+        void onTick();
+
+        /**
+         * Called once when the deadline has been reached.
+         */
+        void onExpired();
+    }
+
+    private final IScheduler scheduler;
+
+    private final Listener listener;
+
+    private final Runnable expiryRunnable;
+
+    private final Runnable tickRunnable;
+
+    /**
+     * Timer duration in ms.
+     */
+    private int duration = TimeConstants.DEFAULT_TIME;
+
+    /**
+     * Deadline in {@link IScheduler#elapsedRealtime()} ms. Only valid while
+     * running.
+     */
+    private long deadline;
+
+    private boolean running = false;
+
+    private boolean displayVisible = false;
+
+    /**
+     * Number of wakeups so far. Only written on the {@link IScheduler} thread.
+     */
+    private volatile long wakeups = 0;
+
+    /**
+     * 
+     * @param scheduler
+     *            schedules the wakeups and provides the time.
+     * @param listener
+     *            receives timer events.
+     */
+    public SleepTimer(IScheduler scheduler, Listener listener) {
+        this.scheduler = scheduler;
+        this.listener = listener;
+        this.expiryRunnable = new Runnable() {
+            public void run() {
+                onExpiryWakeup();
+            }
+        };
+        this.tickRunnable = new Runnable() {
+            public void run() {
+                onTickWakeup();
+            }
+        };
+    }
+
+    /**
+     * Starts the timer with the current duration. Restarts a running timer.
+     */
+    public void start() {
+        deadline = elapsedRealtime() + duration;
+        running = true;
+        scheduler.removeCallbacks(expiryRunnable);
+        // While audio is playing the device does not enter deep sleep, so the
+        // uptime based scheduler delay matches the elapsed realtime delay.
+        scheduler.postDelayed(expiryRunnable, duration);
+        scheduleTick();
+    }
+
+    /**
+     * Cancels a running timer. The remaining time is reset to the duration.
+     */
+    public void cancel() {
+        if (running) {
+            running = false;
+            scheduler.removeCallbacks(expiryRunnable);
+            scheduler.removeCallbacks(tickRunnable);
+        }
+    }
+
+    /**
+     * Sets a new duration. A running timer restarts with the new duration.
+     * 
+     * @param duration
+     *            new duration in ms.
+     */
+    public void setDuration(int duration) {
+        this.duration = duration;
+        if (running) {
+            start();
+        }
+    }
+
+    /**
+     * 
+     * @return the duration in ms.
+     */
+    public int getDuration() {
+        return duration;
+    }
+
+    /**
+     * 
+     * @return true, if the timer is running.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 
+     * @return the remaining time in ms. Equals the duration if the timer is
+     *         not running.
+     */
+    public int getRemainingTime() {
+        if (!running) {
+            return duration;
+        }
+        long remaining = deadline - elapsedRealtime();
+        return remaining > 0 ? (int) remaining : 0;
+    }
+
+    /**
+     * Enables or disables display ticks.
+     * 
+     * @param visible
+     *            true, if the remaining time is visible to the user.
+     */
+    public void setDisplayVisible(boolean visible) {
+        displayVisible = visible;
+        if (visible) {
+            scheduleTick();
+        }
+        else {
+            scheduler.removeCallbacks(tickRunnable);
+        }
+    }
+
+    /**
+     * May be called from any thread.
+     * 
+     * @return the number of expiry and display tick wakeups so far.
+     */
+    public long getWakeupCount() {
+        return wakeups;
+    }
+
+    /**
+     * 
+     * @return the current time in ms since boot, including deep sleep.
+     */
+    protected long elapsedRealtime() {
+        return scheduler.elapsedRealtime();
+    }
+
+    private void onExpiryWakeup() {
+        wakeups++;
+        if (!running) {
+            return;
+        }
+        long remaining = deadline - elapsedRealtime();
+        if (remaining > 0) {
+            scheduler.postDelayed(expiryRunnable, remaining);
+        }
+        else {
+            running = false;
+            scheduler.removeCallbacks(tickRunnable);
+            listener.onExpired();
+        }
+    }
+
+    private void onTickWakeup() {
+        wakeups++;
+        listener.onTick();
+        scheduleTick();
+    }
+
+    /**
+     * Schedules the next display tick for the moment the displayed second
+     * changes.
+     */
+    private void scheduleTick() {
+        scheduler.removeCallbacks(tickRunnable);
+        if (running && displayVisible) {
+            int remaining = getRemainingTime();
+            if (remaining > 0) {
+                scheduler.postDelayed(tickRunnable, remaining % TimeConstants.SECOND + 1);
+            }
+        }
+    }
+}
@@ -1,10 +1,17 @@
 package com.github.arnehaber.android;
 
-import android.content.res.AssetFileDescriptor;
-import android.media.MediaPlayer;
-import android.os.Handler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.content.ComponentCallbacks2;
+import android.os.Process;
 import android.util.Log;
 
+import com.github.arnehaber.android.PlayerStateMachine.State;
+import com.github.arnehaber.android.audio.AudioCommandThread;
+import com.github.arnehaber.android.audio.AudioSource;
+import com.github.arnehaber.android.audio.IAudioEngine;
+import com.github.arnehaber.android.helper.IScheduler;
 import com.github.arnehaber.android.helper.TimeConstants;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
@@ -32,53 +39,303 @@ import com.google.inject.Injector;
 /**
  * Responsible for playing media files in a loop. Stops play back after a
  * controllable interval.
+ * <p>
+ * Public methods are called on the GUI thread. The {@link IAudioEngine} is
+ * owned by the {@link AudioCommandThread}; start, pause and stop are queued
+ * there as commands, so the GUI thread never blocks on the audio system. The
+ * life cycle of the engine is tracked by a {@link PlayerStateMachine}, which
+ * may be read from any thread.
+ * <p>
+ * A stopped engine stays prepared for {@link #setKeepWarmTime(int)} ms, so a
+ * restart within that time neither decodes nor prepares again. The warm engine
+ * is dropped earlier if the system runs short of memory.
+ * <p>
+ * Before the sleep timer expires, the engine fades play back out on its own,
+ * so the fade costs no wakeups of the GUI thread.
+ * <p>
+ * Performance counters are kept as volatile fields, each written by a single
+ * thread, and collected into {@link PlayerMetrics} on request. Requests, life
+ * cycle transitions and timer events are recorded in a {@link PlayerEventLog},
+ * which is logged when preparing the engine fails.
  * 
  * @author Arne Haber
  * 
  */
 public class TimedSleepPlayer implements ITimedSleepPlayer {
 
-    private int currentTime = TimeConstants.DEFAULT_TIME;
-
     private final IOceanWavesGui gui;
 
-    private final Injector injector;
+    /**
+     * The played audio. Only accessed on the audio thread.
+     */
+    private AudioSource audioSource;
+
+    private final IAudioEngine player;
+
+    private final PlayerEventLog events;
+
+    private final PlayerStateMachine state;
+
+    /**
+     * True if play back should start as soon as the engine is prepared. Only
+     * accessed on the audio thread.
+     */
+    private boolean startPending = false;
+
+    /**
+     * Scheduler of the GUI thread, runs the sleep timer and provides the time.
+     */
+    private final IScheduler scheduler;
+
+    private final AudioCommandThread audioThread;
+
+    private final SleepTimer sleepTimer;
+
+    /**
+     * Pushes time and progress into the {@link #gui}. Only accessed on the GUI
+     * thread.
+     */
+    private final GuiUpdatePipeline guiPipeline;
+
+    /**
+     * True between a play request and the next pause or stop. Only accessed on
+     * the GUI thread.
+     */
+    private boolean playRequested = false;
+
+    /**
+     * Starts the sleep timer on the GUI thread.
+     */
+    private final Runnable timerStarter;
 
-    private MediaPlayer player;
+    private final Runnable startCommand;
 
-    private boolean playerIsInitialized = false;
+    private final Runnable pauseCommand;
 
-    private int sleepTime = TimeConstants.DEFAULT_TIME;
+    private final Runnable stopCommand;
 
-    private Handler timerHandler;
+    private final Runnable releaseCommand;
+
+    /**
+     * Passes the fade out towards {@link #fadeOutEnd} to the engine.
+     */
+    private final Runnable fadeOutCommand;
 
-    private Runnable timerRunnable;
+    /**
+     * Releases the engine if it is not playing. Executed when the keep warm
+     * time is over and on memory pressure.
+     */
+    private final Runnable dropIdleCommand;
+
+    /**
+     * Time in ms a stopped engine stays prepared.
+     */
+    private volatile int keepWarmTime = TimeConstants.DEFAULT_KEEP_WARM_TIME;
+
+    /**
+     * Length of the fade out before the sleep timer expires in ms.
+     */
+    private volatile int fadeOutTime = TimeConstants.DEFAULT_FADE_OUT_TIME;
+
+    /**
+     * {@link IScheduler#elapsedRealtime()} of the expiry of the running sleep
+     * timer, where the fade out ends.
+     */
+    private volatile long fadeOutEnd;
+
+    private final IAudioEngine.PrepareListener prepareListener;
+
+    /**
+     * {@link IScheduler#uptimeMillis()} of the first play request since the
+     * last start of play back, pause or failed prepare, or -1.
+     */
+    private final AtomicLong startRequestTime = new AtomicLong(-1);
+
+    /**
+     * Time from the first play request until the engine reported its first
+     * audio in ms, see {@link IAudioEngine.PrepareListener#onStarted()}.
+     */
+    private volatile long lastStartLatency = -1;
+
+    /**
+     * {@link IScheduler#uptimeMillis()} of the last prepare of the engine.
+     * Only written on the audio thread.
+     */
+    private volatile long prepareStartTime;
+
+    /**
+     * Duration of the last prepare of the engine in ms.
+     */
+    private volatile long lastPrepareTime = -1;
+
+    /**
+     * {@link IScheduler#uptimeMillis()} of the start of the current play
+     * back, -1 while not playing. Only written on the audio thread, as are
+     * the following times.
+     */
+    private volatile long playingSince = -1;
+
+    /**
+     * {@link Process#getElapsedCpuTime()} at the start of the current play
+     * back.
+     */
+    private volatile long cpuTimeSince;
+
+    /**
+     * Total time of all finished play backs in ms.
+     */
+    private volatile long playTime = 0;
+
+    /**
+     * CPU time consumed during all finished play backs in ms.
+     */
+    private volatile long cpuTime = 0;
 
     @Inject
     public TimedSleepPlayer(final Injector injector) {
-        this.gui = injector.getInstance(IOceanWavesGui.class);
-        this.injector = injector;
-
-        this.timerHandler = injector.getInstance(Handler.class);
-        this.timerRunnable = createTimerRunnable(timerHandler);
+        this(injector.getInstance(IOceanWavesGui.class), injector.getInstance(AudioSource.class), injector
+                .getInstance(IAudioEngine.class), injector.getInstance(AudioCommandThread.class), injector
+                .getInstance(IScheduler.class));
     }
 
-    protected Runnable createTimerRunnable(final Handler timerHandler) {
-        Runnable r = new Runnable() {
+    /**
+     * 
+     * @param gui
+     *            the controlled GUI.
+     * @param audioSource
+     *            the audio to play.
+     * @param player
+     *            the used audio engine.
+     * @param audioThread
+     *            the thread that owns the audio engine.
+     * @param scheduler
+     *            scheduler of the GUI thread, runs the sleep timer and provides
+     *            the time.
+     */
+    public TimedSleepPlayer(final IOceanWavesGui gui, final AudioSource audioSource, final IAudioEngine player,
+            final AudioCommandThread audioThread, final IScheduler scheduler) {
+        this.gui = gui;
+        this.audioSource = audioSource;
+        this.player = player;
+        this.audioThread = audioThread;
 
+        this.scheduler = scheduler;
+        this.events = new PlayerEventLog(scheduler);
+        this.state = new PlayerStateMachine(events);
+        this.sleepTimer = createSleepTimer(scheduler);
+        this.guiPipeline = new GuiUpdatePipeline(gui, scheduler);
+        this.timerStarter = new Runnable() {
             public void run() {
-                timerHandler.removeCallbacks(this);
-                currentTime -= TimeConstants.SECOND;
-                updateTime();
-                if (currentTime <= 0) {
-                    stopPlayer();
+                if (playRequested) {
+                    events.record(PlayerEventLog.Event.TIMER_STARTED, sleepTimer.getDuration(), 0);
+                    sleepTimer.start();
+                    scheduleFadeOut();
+                }
+            }
+        };
+        this.startCommand = new Runnable() {
+            public void run() {
+                startPending = true;
+                audioThread.remove(dropIdleCommand);
+                if (state.transition(State.IDLE, State.PREPARING)) {
+                    initializePlayer();
+                }
+                else {
+                    startIfPending();
+                }
+            }
+        };
+        this.pauseCommand = new Runnable() {
+            public void run() {
+                startPending = false;
+                if (state.transition(State.PLAYING, State.PAUSED)) {
+                    player.pause();
+                    finishPlayTime();
+                }
+            }
+        };
+        this.stopCommand = new Runnable() {
+            public void run() {
+                startPending = false;
+                if (state.transition(State.PLAYING, State.PAUSED)) {
+                    player.pause();
+                    finishPlayTime();
+                }
+                if (keepWarmTime > 0 && (state.get() == State.PAUSED || state.get() == State.PREPARED)) {
+                    player.rewind();
+                    audioThread.remove(dropIdleCommand);
+                    audioThread.executeDelayed(dropIdleCommand, keepWarmTime);
                 }
                 else {
-                    timerHandler.postDelayed(this, TimeConstants.SECOND);
+                    releaseEngine();
+                }
+            }
+        };
+        this.dropIdleCommand = new Runnable() {
+            public void run() {
+                if (state.get() != State.PLAYING) {
+                    releaseEngine();
+                }
+            }
+        };
+        this.releaseCommand = new Runnable() {
+            public void run() {
+                releaseEngine();
+                state.transition(State.IDLE, State.RELEASED);
+            }
+        };
+        this.fadeOutCommand = new Runnable() {
+            public void run() {
+                if (state.get() == State.PLAYING) {
+                    long remaining = fadeOutEnd - scheduler.elapsedRealtime();
+                    player.fadeOut((int) Math.max(0, remaining), fadeOutTime);
+                }
+            }
+        };
+        this.prepareListener = new IAudioEngine.PrepareListener() {
+            public void onPrepared() {
+                lastPrepareTime = scheduler.uptimeMillis() - prepareStartTime;
+                if (state.transition(State.PREPARING, State.PREPARED)) {
+                    startIfPending();
+                }
+            }
+
+            public void onError(Exception cause) {
+                startPending = false;
+                startRequestTime.set(-1);
+                events.record(PlayerEventLog.Event.PREPARE_FAILED);
+                Log.e(TimedSleepPlayer.class.getName(), cause.getMessage(), cause);
+                Log.e(TimedSleepPlayer.class.getName(), "Recent player events:\n" + events);
+                if (state.transition(State.PREPARING, State.STOPPING)) {
+                    player.release();
+                    state.transition(State.STOPPING, State.IDLE);
+                }
+            }
+
+            public void onStarted() {
+                long requested = startRequestTime.getAndSet(-1);
+                if (requested >= 0) {
+                    lastStartLatency = scheduler.uptimeMillis() - requested;
+                    Log.d(TimedSleepPlayer.class.getName(), "Play back started after " + lastStartLatency + " ms");
                 }
             }
         };
-        return r;
+    }
+
+    protected SleepTimer createSleepTimer(final IScheduler scheduler) {
+        SleepTimer.Listener listener = new SleepTimer.Listener() {
+
+            public void onTick() {
+                events.record(PlayerEventLog.Event.TIMER_TICK, sleepTimer.getRemainingTime(), 0);
+                updateTime();
+            }
+
+            public void onExpired() {
+                events.record(PlayerEventLog.Event.TIMER_EXPIRED);
+                stopPlayer();
+            }
+        };
+        return new SleepTimer(scheduler, listener);
     }
 
     /*
@@ -87,27 +344,70 @@ public class TimedSleepPlayer implements ITimedSleepPlayer {
      * @see com.github.arnehaber.android.ITimedSleepPlayer#getSleepTime()
      */
     public int getSleepTime() {
-        return sleepTime;
+        return sleepTimer.getDuration();
     }
 
     /**
-     * Initializes the used {@link MediaPlayer} with the audio file served from
-     * the {@link IOceanWavesGui}.
+     * Starts preparing the used {@link IAudioEngine} with the
+     * {@link AudioSource}. Runs on the audio thread.
      */
     private void initializePlayer() {
-        AssetFileDescriptor audioFile = gui.getSelectedAudioFile();
-        player = injector.getInstance(MediaPlayer.class);
-
         try {
-
-            player.setDataSource(audioFile.getFileDescriptor(), audioFile.getStartOffset(), audioFile.getLength());
-            audioFile.close();
-            player.prepare();
-            player.setLooping(true);
-            playerIsInitialized = true;
+            prepareStartTime = scheduler.uptimeMillis();
+            player.prepareAsync(audioSource, prepareListener);
         }
         catch (Exception e) {
-            Log.e(getClass().getName(), e.getMessage(), e);
+            prepareListener.onError(e);
+        }
+    }
+
+    /**
+     * Starts the prepared engine if a start is pending. Runs on the audio
+     * thread.
+     */
+    private void startIfPending() {
+        if (startPending && (state.transition(State.PREPARED, State.PLAYING) || state.transition(State.PAUSED, State.PLAYING))) {
+            startPending = false;
+            // the fade out is scheduled again with the sleep timer
+            player.cancelFadeOut();
+            player.start();
+            cpuTimeSince = Process.getElapsedCpuTime();
+            playingSince = scheduler.uptimeMillis();
+            scheduler.post(timerStarter);
+        }
+    }
+
+    /**
+     * Adds the current play back to the total play and CPU time. Runs on the
+     * audio thread.
+     */
+    private void finishPlayTime() {
+        long since = playingSince;
+        if (since >= 0) {
+            // cleared before the totals grow, see getMetrics()
+            playingSince = -1;
+            playTime += scheduler.uptimeMillis() - since;
+            cpuTime += Process.getElapsedCpuTime() - cpuTimeSince;
+        }
+    }
+
+    /**
+     * Stops and releases the engine if it holds any resources. Runs on the
+     * audio thread.
+     */
+    private void releaseEngine() {
+        startPending = false;
+        audioThread.remove(dropIdleCommand);
+        if (state.stopPrepared() != null) {
+            finishPlayTime();
+            player.stop();
+            player.release();
+            state.transition(State.STOPPING, State.IDLE);
+        }
+        else if (state.transition(State.PREPARING, State.STOPPING)) {
+            // a preparing engine must not be stopped
+            player.release();
+            state.transition(State.STOPPING, State.IDLE);
         }
     }
 
@@ -117,14 +417,13 @@ public class TimedSleepPlayer implements ITimedSleepPlayer {
      * @see com.github.arnehaber.android.ITimedSleepPlayer#pausePlayer()
      */
     public void pausePlayer() {
-        if (playerIsInitialized) {
-            currentTime = sleepTime;
-            updateTime();
-            if (player.isPlaying()) {
-                timerHandler.removeCallbacks(timerRunnable);
-            }
-            player.pause();
-        }
+        events.record(PlayerEventLog.Event.PAUSE_REQUESTED);
+        playRequested = false;
+        startRequestTime.set(-1);
+        sleepTimer.cancel();
+        scheduler.removeCallbacks(timerStarter);
+        updateTime();
+        audioThread.execute(pauseCommand);
     }
 
     /*
@@ -133,18 +432,11 @@ public class TimedSleepPlayer implements ITimedSleepPlayer {
      * @see com.github.arnehaber.android.ITimedSleepPlayer#startPlayer()
      */
     public void startPlayer() {
-        if (!playerIsInitialized) {
-            initializePlayer();
-        }
-        if (!player.isPlaying()) {
-            Thread t = new Thread(new Runnable() {
-                public void run() {
-                    player.start();
-                    timerHandler.postDelayed(timerRunnable, TimeConstants.SECOND);
-                }
-            });
-            t.start();
-        }
+        events.record(PlayerEventLog.Event.START_REQUESTED);
+        playRequested = true;
+        // repeated requests while the start is pending keep the first one
+        startRequestTime.compareAndSet(-1, scheduler.uptimeMillis());
+        audioThread.execute(startCommand);
     }
 
     /*
@@ -153,22 +445,158 @@ public class TimedSleepPlayer implements ITimedSleepPlayer {
      * @see com.github.arnehaber.android.ITimedSleepPlayer#stopPlayer()
      */
     public void stopPlayer() {
-        if (playerIsInitialized) {
-            pausePlayer();
-            gui.updateProgress(0);
-            playerIsInitialized = false;
-            player.stop();
-            player.reset();
-            player.release();
+        events.record(PlayerEventLog.Event.STOP_REQUESTED);
+        pausePlayer();
+        if (state.isPrepared()) {
+            guiPipeline.setProgress(0);
+        }
+        audioThread.execute(stopCommand);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.ITimedSleepPlayer#release()
+     */
+    public void release() {
+        events.record(PlayerEventLog.Event.RELEASE_REQUESTED);
+        playRequested = false;
+        sleepTimer.cancel();
+        scheduler.removeCallbacks(timerStarter);
+        audioThread.execute(releaseCommand);
+        audioThread.quit();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.arnehaber.android.ITimedSleepPlayer#setAudioSource(com.github
+     * .arnehaber.android.audio.AudioSource)
+     */
+    public void setAudioSource(final AudioSource audioSource) {
+        final boolean restart = playRequested;
+        audioThread.execute(new Runnable() {
+            public void run() {
+                if (audioSource != TimedSleepPlayer.this.audioSource) {
+                    TimedSleepPlayer.this.audioSource = audioSource;
+                    // the engine is prepared with the old audio
+                    releaseEngine();
+                    if (restart) {
+                        startCommand.run();
+                    }
+                }
+            }
+        });
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.ITimedSleepPlayer#onTrimMemory(int)
+     */
+    public void onTrimMemory(int level) {
+        // keep the warm engine while the app is merely hidden
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW && level != ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            audioThread.execute(dropIdleCommand);
         }
     }
 
+    /**
+     * Sets the time a stopped engine stays prepared.
+     * 
+     * @param keepWarmTime
+     *            the time in ms. 0 releases the engine on every stop.
+     */
+    public void setKeepWarmTime(int keepWarmTime) {
+        this.keepWarmTime = keepWarmTime;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.ITimedSleepPlayer#getFadeOutTime()
+     */
+    public int getFadeOutTime() {
+        return fadeOutTime;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.ITimedSleepPlayer#setFadeOutTime(int)
+     */
+    public void setFadeOutTime(int fadeOutTime) {
+        if (fadeOutTime != 0
+                && (fadeOutTime < TimeConstants.MIN_FADE_OUT_TIME || fadeOutTime > TimeConstants.MAX_FADE_OUT_TIME)) {
+            throw new IllegalArgumentException("Invalid fade out time: " + fadeOutTime + " ms");
+        }
+        this.fadeOutTime = fadeOutTime;
+        if (sleepTimer.isRunning()) {
+            scheduleFadeOut();
+        }
+    }
+
+    /**
+     * Lets the engine fade out towards the expiry of the running sleep timer.
+     * Runs on the GUI thread.
+     */
+    private void scheduleFadeOut() {
+        fadeOutEnd = scheduler.elapsedRealtime() + sleepTimer.getRemainingTime();
+        audioThread.execute(fadeOutCommand);
+    }
+
+    /**
+     * 
+     * @return the current life cycle state of the engine.
+     */
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * 
+     * @return the log of recent player events.
+     */
+    public PlayerEventLog getEventLog() {
+        return events;
+    }
+
+    /**
+     * 
+     * @return the time from the first play request until the engine reported
+     *         its first audio in ms, or -1 if play back has not been started
+     *         yet. For a MediaPlayer based engine it ends when the player
+     *         accepted the start, without the latency of its output.
+     */
+    public long getLastStartLatency() {
+        return lastStartLatency;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.ITimedSleepPlayer#getMetrics()
+     */
+    public PlayerMetrics getMetrics() {
+        // totals first, a play back finished in between is missed rather
+        // than counted twice
+        long totalPlayTime = playTime;
+        long totalCpuTime = cpuTime;
+        long since = playingSince;
+        if (since >= 0) {
+            totalPlayTime += scheduler.uptimeMillis() - since;
+            totalCpuTime += Process.getElapsedCpuTime() - cpuTimeSince;
+        }
+        return new PlayerMetrics(lastStartLatency, lastPrepareTime, player.getUnderrunCount(),
+                sleepTimer.getWakeupCount(), guiPipeline.getUpdateCount(), totalPlayTime, totalCpuTime);
+    }
+
     private void updateTime() {
-        String time = TimeConstants.timeToString(currentTime);
-        gui.updateTime(time);
-        if (playerIsInitialized && player.isPlaying()) {
-            int pos = player.getCurrentPosition();
-            gui.updateProgress(pos);
+        guiPipeline.setTime(sleepTimer.getRemainingTime());
+        // the engine is not queried for a GUI nobody sees
+        if (guiPipeline.isVisible() && state.get() == State.PLAYING) {
+            guiPipeline.setProgress(player.getCurrentPosition());
         }
     }
 
@@ -178,7 +606,7 @@ public class TimedSleepPlayer implements ITimedSleepPlayer {
      * @see com.github.arnehaber.android.ITimedSleepPlayer#getDuration()
      */
     public int getDuration() {
-        if (playerIsInitialized) {
+        if (state.isPrepared()) {
             return player.getDuration();
         }
         else {
@@ -192,9 +620,25 @@ public class TimedSleepPlayer implements ITimedSleepPlayer {
      * @see com.github.arnehaber.android.ITimedSleepPlayer#updateSleepTime(int)
      */
     public void setSleepTime(int progress) {
-        currentTime = progress;
-        sleepTime = progress;
+        sleepTimer.setDuration(progress);
+        if (sleepTimer.isRunning()) {
+            scheduleFadeOut();
+        }
         updateTime();
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.arnehaber.android.ITimedSleepPlayer#setDisplayVisible(boolean)
+     */
+    public void setDisplayVisible(boolean visible) {
+        sleepTimer.setDisplayVisible(visible);
+        guiPipeline.setVisible(visible);
+        if (visible) {
+            updateTime();
+        }
+    }
+
 }
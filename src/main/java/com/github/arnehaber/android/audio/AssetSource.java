@@ -0,0 +1,44 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+
+import android.content.res.AssetFileDescriptor;
+
+/**
+ * {@link AudioSource} backed by a compressed audio file on the device, which
+ * the {@link MediaPlayerEngine} can play without decoding it.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public interface AssetSource extends AudioSource {
+
+    /**
+     * Opens the compressed audio file. The caller closes the descriptor.
+     * 
+     * @return the descriptor of the audio file.
+     * @throws IOException
+     *             if the file cannot be opened.
+     */
+    AssetFileDescriptor openFd() throws IOException;
+}
@@ -0,0 +1,103 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.Executor;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+/**
+ * Single {@link HandlerThread} that owns an {@link IAudioEngine}. Commands are
+ * executed one after another in the order they were posted. The thread has a
+ * {@link android.os.Looper}, so asynchronous engine callbacks are delivered
+ * on it as well. It is started with the first command.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class AudioCommandThread implements Executor {
+
+    private HandlerThread thread;
+
+    private Handler handler;
+
+    /**
+     * Enqueues the given command.
+     * 
+     * @param command
+     *            the command to execute on the audio thread.
+     */
+    public void execute(Runnable command) {
+        getHandler().post(command);
+    }
+
+    /**
+     * Enqueues the given command to be executed after the given delay.
+     * 
+     * @param command
+     *            the command to execute on the audio thread.
+     * @param delayMillis
+     *            the delay in ms.
+     */
+    public void executeDelayed(Runnable command, long delayMillis) {
+        getHandler().postDelayed(command, delayMillis);
+    }
+
+    /**
+     * Removes pending executions of the given command.
+     * 
+     * @param command
+     *            the command to remove.
+     */
+    public synchronized void remove(Runnable command) {
+        if (handler != null) {
+            handler.removeCallbacks(command);
+        }
+    }
+
+    /**
+     * Stops the thread after all pending commands have been executed. The
+     * next command starts a new thread.
+     */
+    public synchronized void quit() {
+        if (thread != null) {
+            final HandlerThread finished = thread;
+            handler.post(new Runnable() {
+                public void run() {
+                    finished.quit();
+                }
+            });
+            thread = null;
+            handler = null;
+        }
+    }
+
+    private synchronized Handler getHandler() {
+        if (handler == null) {
+            thread = new HandlerThread(getClass().getSimpleName(), Process.THREAD_PRIORITY_AUDIO);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+        return handler;
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import android.os.Build;
+
+/**
+ * Available {@link IAudioEngine} implementations.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public enum AudioEngineType {
+
+    /**
+     * Gapless loop through {@link PcmLoopEngine}. Requires API level 16.
+     */
+    PCM_LOOP,
+
+    /**
+     * Loop through {@link MediaPlayerEngine}.
+     */
+    MEDIA_PLAYER,
+
+    /**
+     * Synthesized surf through {@link SurfSynthEngine}. Ignores the selected
+     * audio file.
+     */
+    SURF_SYNTH,
+
+    /**
+     * Gapless loop mixed with further layers through {@link MixingEngine}.
+     * Requires API level 16.
+     */
+    MIXER,
+
+    /**
+     * Non repeating granular resynthesis of the audio file through
+     * {@link GranularEngine}. Requires API level 16.
+     */
+    GRANULAR;
+
+    /**
+     * 
+     * @return the best engine type supported by the running device.
+     */
+    public static AudioEngineType getDefault() {
+        return Build.VERSION.SDK_INT >= 16 ? PCM_LOOP : MEDIA_PLAYER;
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+
+/**
+ * Audio an {@link IAudioEngine} can play, such as a raw resource, a local
+ * file or a synthesizer. Plain Java and independent of the GUI, so sources
+ * can be decoded and played back off the device.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public interface AudioSource {
+
+    /**
+     * 
+     * @return a key that identifies the audio of this source, made of
+     *         letters, digits, '.', '_' and '-', used to cache the decoded
+     *         audio. Null if it must not be cached.
+     * @throws IOException
+     *             if the source cannot be accessed.
+     */
+    String getKey() throws IOException;
+
+    /**
+     * Opens the audio of this source. The caller closes the stream.
+     * 
+     * @return the decoded audio.
+     * @throws IOException
+     *             if the audio cannot be opened.
+     */
+    PcmStream open() throws IOException;
+}
@@ -0,0 +1,415 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * {@link IAudioEngine} that streams an {@link ISampleSource} through an
+ * {@link AudioTrack}. A single render thread per prepared source feeds the
+ * track and does not allocate. Subclasses provide the source, which is faded
+ * out through a {@link FadingSampleSource}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public abstract class AudioTrackEngine implements IAudioEngine {
+
+    /**
+     * Minimum number of frames rendered per block.
+     */
+    public static final int MIN_BLOCK_FRAMES = 2048;
+
+    private final Object lock = new Object();
+
+    private AudioTrack track;
+
+    private Thread renderThread;
+
+    private volatile FadingSampleSource fade;
+
+    private volatile boolean playing = false;
+
+    private volatile boolean released = true;
+
+    /**
+     * Number of flushes requested by {@link #stop()}. Only written under
+     * {@link #lock}.
+     */
+    private volatile int flushRequests = 0;
+
+    /**
+     * Number of flushes the render thread has completed. Guarded by
+     * {@link #lock}.
+     */
+    private int flushesDone = 0;
+
+    /**
+     * True while the render thread of the current track runs. Guarded by
+     * {@link #lock}.
+     */
+    private boolean rendering = false;
+
+    /**
+     * Number of calls to {@link #start()}. Only written under {@link #lock}.
+     */
+    private volatile int starts = 0;
+
+    /**
+     * Number of underruns of all tracks so far. Only written on the render
+     * thread.
+     */
+    private volatile long underruns = 0;
+
+    /**
+     * Opens the source to play. Called on the owning thread.
+     * 
+     * @param source
+     *            the audio passed to
+     *            {@link #prepareAsync(AudioSource, PrepareListener)}.
+     * @return the source to stream.
+     * @throws IOException
+     *             if the source cannot be opened.
+     */
+    protected abstract ISampleSource openSource(AudioSource source) throws IOException;
+
+    /**
+     * Opens the source and wraps it into the fade streamed to the track.
+     * Called on the owning thread. Rendering the result without an
+     * {@link AudioTrack} measures the render path off the device.
+     * 
+     * @param audio
+     *            the audio to play.
+     * @return the faded source.
+     * @throws IOException
+     *             if the source cannot be opened.
+     */
+    public FadingSampleSource openFadingSource(AudioSource audio) throws IOException {
+        ISampleSource source = openSource(audio);
+        return new FadingSampleSource(source, getLevel());
+    }
+
+    /**
+     * 
+     * @return the gain applied on top of the fade to the source opened last,
+     *         1 by default.
+     */
+    protected float getLevel() {
+        return 1f;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.arnehaber.android.audio.IAudioEngine#prepareAsync(com.github
+     * .arnehaber.android.audio.AudioSource,
+     * com.github.arnehaber.android.audio.IAudioEngine.PrepareListener)
+     */
+    public void prepareAsync(AudioSource audio, PrepareListener listener) throws IOException {
+        FadingSampleSource source = openFadingSource(audio);
+
+        int channelConfig = source.getChannelCount() == 1 ? AudioFormat.CHANNEL_OUT_MONO
+                : AudioFormat.CHANNEL_OUT_STEREO;
+        int frameBytes = 2 * source.getChannelCount();
+        int minBufferBytes = AudioTrack.getMinBufferSize(source.getSampleRate(), channelConfig,
+                AudioFormat.ENCODING_PCM_16BIT);
+        int blockFrames = Math.max(MIN_BLOCK_FRAMES, minBufferBytes / frameBytes / 2);
+        track = createTrack(source.getSampleRate(), channelConfig, 2 * blockFrames * frameBytes);
+        if (track.getState() != AudioTrack.STATE_INITIALIZED) {
+            track.release();
+            track = null;
+            throw new IOException("Unable to initialize AudioTrack");
+        }
+
+        synchronized (lock) {
+            released = false;
+            rendering = true;
+            flushesDone = flushRequests;
+        }
+        fade = source;
+        renderThread = new Thread(new RenderLoop(new PcmRenderer(source, blockFrames), track, listener),
+                getClass().getSimpleName());
+        renderThread.start();
+        listener.onPrepared();
+    }
+
+    /**
+     * Creates the streaming track. Called on the owning thread.
+     * 
+     * @param sampleRate
+     *            the sample rate in Hz.
+     * @param channelConfig
+     *            the {@link AudioFormat} channel configuration.
+     * @param bufferBytes
+     *            the size of the track buffer in bytes.
+     * @return the track, possibly not initialized.
+     */
+    protected AudioTrack createTrack(int sampleRate, int channelConfig, int bufferBytes) {
+        return new AudioTrack(AudioManager.STREAM_MUSIC, sampleRate, channelConfig, AudioFormat.ENCODING_PCM_16BIT,
+                bufferBytes, AudioTrack.MODE_STREAM);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#start()
+     */
+    public void start() {
+        synchronized (lock) {
+            // a write blocked during the stop may have queued the rest of its
+            // block, which the render thread drops first
+            while (flushesDone != flushRequests && rendering) {
+                try {
+                    lock.wait();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            track.play();
+            playing = true;
+            starts++;
+            lock.notifyAll();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#pause()
+     */
+    public void pause() {
+        synchronized (lock) {
+            playing = false;
+            track.pause();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#stop()
+     */
+    public void stop() {
+        synchronized (lock) {
+            playing = false;
+            track.pause();
+            flushRequests++;
+            // frees the buffer, so a write blocked on the paused track returns
+            track.flush();
+            lock.notifyAll();
+        }
+        rewind();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#release()
+     */
+    public void release() {
+        if (track == null) {
+            // never prepared, or the prepare failed before the track existed
+            released = true;
+            fade = null;
+            return;
+        }
+        synchronized (lock) {
+            playing = false;
+            released = true;
+            lock.notifyAll();
+            // unblocks a pending write
+            track.stop();
+        }
+        try {
+            renderThread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        track.release();
+        track = null;
+        renderThread = null;
+        fade = null;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#fadeOut(int, int)
+     */
+    public void fadeOut(int remaining, int length) {
+        FadingSampleSource current = fade;
+        if (current != null) {
+            current.fadeOut(remaining, length);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#cancelFadeOut()
+     */
+    public void cancelFadeOut() {
+        FadingSampleSource current = fade;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#isPlaying()
+     */
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#getUnderrunCount()
+     */
+    public long getUnderrunCount() {
+        return underruns;
+    }
+
+    /**
+     * Feeds the {@link AudioTrack} while playing and waits while paused.
+     */
+    private class RenderLoop implements Runnable {
+
+        private final PcmRenderer renderer;
+
+        private final AudioTrack output;
+
+        private final short[] block;
+
+        private final PrepareListener listener;
+
+        /**
+         * Frames written to the track, wrapping like its play back head
+         * position.
+         */
+        private int writtenFrames = 0;
+
+        /**
+         * Value of {@link AudioTrackEngine#flushRequests} when the track was
+         * last flushed by this thread.
+         */
+        private int flushGeneration = 0;
+
+        /**
+         * Value of {@link AudioTrackEngine#starts} when the first block after
+         * a start was last reported to the {@link #listener}.
+         */
+        private int reportedStarts = 0;
+
+        RenderLoop(PcmRenderer renderer, AudioTrack output, PrepareListener listener) {
+            this.renderer = renderer;
+            this.output = output;
+            this.listener = listener;
+            this.block = new short[renderer.getBlockFrames() * renderer.getSource().getChannelCount()];
+            this.flushGeneration = flushRequests;
+            this.reportedStarts = starts;
+        }
+
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_AUDIO);
+            final int frames = renderer.getBlockFrames();
+            final int channels = renderer.getSource().getChannelCount();
+            try {
+                while (awaitPlaying()) {
+                    // the track has played everything written so far
+                    if (writtenFrames != 0 && writtenFrames - output.getPlaybackHeadPosition() <= 0) {
+                        underruns++;
+                    }
+                    int samples = renderer.render(block, frames);
+                    int offset = 0;
+                    // stops writing the block once the track is flushed
+                    while (offset < samples && !released && flushGeneration == flushRequests) {
+                        int written = output.write(block, offset, samples - offset);
+                        if (written < 0) {
+                            Log.e(getClass().getName(), "AudioTrack write failed: " + written);
+                            return;
+                        }
+                        offset += written;
+                    }
+                    writtenFrames += offset / channels;
+                    // play back starts with the first block written after
+                    // the track plays
+                    int started = starts;
+                    if (offset > 0 && started != reportedStarts) {
+                        reportedStarts = started;
+                        listener.onStarted();
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finally {
+                synchronized (lock) {
+                    rendering = false;
+                    lock.notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Blocks until play back is running. Flushes the track again after a
+         * stop, because a write that was blocked on the paused track may have
+         * queued audio after the first flush. The track stays paused until
+         * then.
+         * 
+         * @return false, if the engine has been released.
+         * @throws InterruptedException
+         *             if the render thread is interrupted.
+         */
+        private boolean awaitPlaying() throws InterruptedException {
+            synchronized (lock) {
+                while (true) {
+                    if (flushesDone != flushRequests) {
+                        output.flush();
+                        flushesDone = flushRequests;
+                        flushGeneration = flushesDone;
+                        // the play back head starts over
+                        writtenFrames = 0;
+                        lock.notifyAll();
+                    }
+                    if (playing || released) {
+                        return !released;
+                    }
+                    lock.wait();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Fades an {@link ISampleSource} out towards a deadline. The gain follows a
+ * precomputed curve that falls by {@link #RANGE_DB} dB linearly in dB and
+ * ends in silence, which lasts until the source is no longer read. The gain
+ * changes with every frame and is derived from the number of rendered frames,
+ * so the fade needs no timer of its own.
+ * <p>
+ * Fades are requested from any single control thread and picked up by the
+ * render thread with its next block. The gain glides from the last applied
+ * value over one block, so rescheduling or cancelling a fade does not click.
+ * <p>
+ * A constant level, such as a loudness correction, is folded into the gain of
+ * the fade. At full level and without a fade the samples pass untouched,
+ * otherwise each sample is multiplied once.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class FadingSampleSource implements ISampleSource {
+
+    /**
+     * Level at the end of the curve, before the final step to silence.
+     */
+    static final double RANGE_DB = 60;
+
+    /**
+     * Number of segments of the curve table.
+     */
+    static final int CURVE_SEGMENTS = 256;
+
+    /**
+     * Gain by fade progress in [0, 1], shared by all instances.
+     */
+    private static final float[] CURVE = createCurve();
+
+    private final ISampleSource source;
+
+    /**
+     * Incremented before and after each request, so it is odd while a request
+     * is written.
+     */
+    private volatile int requestSequence = 0;
+
+    /**
+     * Requested frames until silence, or -1 for no fade.
+     */
+    private volatile long requestRemaining = -1;
+
+    /**
+     * Requested fade length in frames.
+     */
+    private volatile long requestLength;
+
+    /**
+     * Gain applied on top of the fade.
+     */
+    private volatile float level = 1f;
+
+    /*
+     * The following fields are only accessed on the render thread.
+     */
+
+    private int appliedSequence = 0;
+
+    /**
+     * Number of frames read so far.
+     */
+    private long frame = 0;
+
+    /**
+     * Frame at which silence is reached, only valid while fading.
+     */
+    private long fadeEnd;
+
+    /**
+     * Fade length in frames, 0 if not fading.
+     */
+    private long fadeLength = 0;
+
+    /**
+     * Gain applied to the last frame, including the level.
+     */
+    private float gain = 1f;
+
+    /**
+     * 
+     * @param source
+     *            the faded source.
+     */
+    public FadingSampleSource(ISampleSource source) {
+        this(source, 1f);
+    }
+
+    /**
+     * 
+     * @param source
+     *            the faded source.
+     * @param level
+     *            the gain applied on top of the fade from the first frame on.
+     */
+    public FadingSampleSource(ISampleSource source, float level) {
+        this.source = source;
+        setLevel(level);
+        this.gain = level;
+    }
+
+    private static float[] createCurve() {
+        float[] curve = new float[CURVE_SEGMENTS + 1];
+        double floor = Math.pow(10, -RANGE_DB / 20);
+        for (int i = 0; i <= CURVE_SEGMENTS; i++) {
+            double level = Math.pow(10, -RANGE_DB / 20 * i / CURVE_SEGMENTS);
+            // shifted, so the curve starts at 1 and ends at 0
+            curve[i] = (float) ((level - floor) / (1 - floor));
+        }
+        return curve;
+    }
+
+    /**
+     * Fades the source out, so that it is silent after <b>remaining</b> ms. If
+     * <b>remaining</b> is shorter than <b>length</b>, the fade starts at the
+     * matching point of its curve. Replaces an earlier fade.
+     * 
+     * @param remaining
+     *            time in ms until silence.
+     * @param length
+     *            length of the whole fade in ms, 0 for none.
+     */
+    public void fadeOut(int remaining, int length) {
+        if (length <= 0) {
+            request(-1, 0);
+        }
+        else {
+            long rate = source.getSampleRate();
+            request(Math.max(0, remaining * rate / 1000), length * rate / 1000);
+        }
+    }
+
+    /**
+     * Sets the gain applied on top of the fade. May be called from any
+     * thread; the gain glides to the new level over one block.
+     * 
+     * @param level
+     *            the linear gain, not negative.
+     */
+    public void setLevel(float level) {
+        if (!(level >= 0) || Float.isInfinite(level)) {
+            throw new IllegalArgumentException("Invalid level: " + level);
+        }
+        this.level = level;
+    }
+
+    /**
+     * 
+     * @return the gain applied on top of the fade.
+     */
+    public float getLevel() {
+        return level;
+    }
+
+    /**
+     * Cancels the fade and returns to full gain.
+     */
+    public void cancel() {
+        request(-1, 0);
+    }
+
+    private void request(long remaining, long length) {
+        requestSequence++;
+        requestRemaining = remaining;
+        requestLength = length;
+        requestSequence++;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.ISampleSource#getSampleRate()
+     */
+    public int getSampleRate() {
+        return source.getSampleRate();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.ISampleSource#getChannelCount()
+     */
+    public int getChannelCount() {
+        return source.getChannelCount();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.ISampleSource#read(float[], int,
+     * int)
+     */
+    public void read(float[] buffer, int offset, int frames) {
+        source.read(buffer, offset, frames);
+        pollRequest();
+        final float start = gain;
+        final float end = gainAt(frame + frames) * level;
+        frame += frames;
+        gain = end;
+        if (start == 1f && end == 1f) {
+            return;
+        }
+
+        final int channels = source.getChannelCount();
+        final int last = offset + frames * channels;
+        if (start == 0f && end == 0f) {
+            for (int i = offset; i < last; i++) {
+                buffer[i] = 0f;
+            }
+            return;
+        }
+        if (start == end) {
+            for (int i = offset; i < last; i++) {
+                buffer[i] *= end;
+            }
+            return;
+        }
+        final float step = (end - start) / frames;
+        final int lastFrame = last - channels;
+        float g = start;
+        for (int i = offset; i < last; i += channels) {
+            // the last frame gets the exact end gain
+            g = i < lastFrame ? g + step : end;
+            for (int c = 0; c < channels; c++) {
+                buffer[i + c] *= g;
+            }
+        }
+    }
+
+    /**
+     * Takes over a new request, if any. Uses the request only if it has not
+     * been changed while reading it.
+     */
+    private void pollRequest() {
+        int sequence = requestSequence;
+        if (sequence == appliedSequence || (sequence & 1) != 0) {
+            return;
+        }
+        long remaining = requestRemaining;
+        long length = requestLength;
+        if (sequence != requestSequence) {
+            return;
+        }
+        appliedSequence = sequence;
+        if (remaining < 0) {
+            fadeLength = 0;
+        }
+        else {
+            fadeLength = Math.max(1, length);
+            fadeEnd = frame + remaining;
+        }
+    }
+
+    /**
+     * 
+     * @param at
+     *            a frame index.
+     * @return the gain of the current fade at the given frame.
+     */
+    private float gainAt(long at) {
+        if (fadeLength == 0) {
+            return 1f;
+        }
+        long remaining = fadeEnd - at;
+        if (remaining >= fadeLength) {
+            return 1f;
+        }
+        if (remaining <= 0) {
+            return 0f;
+        }
+        float position = (float) ((double) (fadeLength - remaining) * CURVE_SEGMENTS / fadeLength);
+        int index = (int) position;
+        if (index >= CURVE_SEGMENTS) {
+            return CURVE[CURVE_SEGMENTS];
+        }
+        float fraction = position - index;
+        return CURVE[index] + fraction * (CURVE[index + 1] - CURVE[index]);
+    }
+
+    /**
+     * 
+     * @return the gain applied to the last frame read, including the level.
+     */
+    public float getGain() {
+        return gain;
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * In place radix 2 fast Fourier transform of complex data, used for offline
+ * analysis.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public final class Fft {
+
+    /**
+     * Private constructor to prevent utility class instantiation.
+     */
+    private Fft() {
+
+    }
+
+    /**
+     * Transforms <b>re</b> and <b>im</b> in place. The inverse transform is
+     * scaled by 1 / n, so it restores the input of the forward transform.
+     * 
+     * @param re
+     *            real parts, the length must be a power of two.
+     * @param im
+     *            imaginary parts, as long as <b>re</b>.
+     * @param inverse
+     *            true for the inverse transform.
+     */
+    public static void transform(double[] re, double[] im, boolean inverse) {
+        final int n = re.length;
+        if (n == 0 || (n & (n - 1)) != 0 || im.length != n) {
+            throw new IllegalArgumentException("Invalid transform length " + n);
+        }
+
+        // bit reversal permutation
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+
+        for (int length = 2; length <= n; length <<= 1) {
+            double angle = (inverse ? 2 : -2) * Math.PI / length;
+            double stepRe = Math.cos(angle);
+            double stepIm = Math.sin(angle);
+            int half = length >> 1;
+            for (int start = 0; start < n; start += length) {
+                double wRe = 1;
+                double wIm = 0;
+                for (int k = 0; k < half; k++) {
+                    int a = start + k;
+                    int b = a + half;
+                    double bRe = re[b] * wRe - im[b] * wIm;
+                    double bIm = re[b] * wIm + im[b] * wRe;
+                    re[b] = re[a] - bRe;
+                    im[b] = im[a] - bIm;
+                    re[a] += bRe;
+                    im[a] += bIm;
+                    double t = wRe * stepRe - wIm * stepIm;
+                    wIm = wRe * stepIm + wIm * stepRe;
+                    wRe = t;
+                }
+            }
+        }
+
+        if (inverse) {
+            for (int i = 0; i < n; i++) {
+                re[i] /= n;
+                im[i] /= n;
+            }
+        }
+    }
+
+    /**
+     * 
+     * @param n
+     *            a positive number.
+     * @return the smallest power of two not less than <b>n</b>.
+     */
+    public static int size(int n) {
+        int size = 1;
+        while (size < n) {
+            size <<= 1;
+        }
+        return size;
+    }
+}
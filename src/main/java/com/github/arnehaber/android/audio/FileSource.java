@@ -0,0 +1,92 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.IOException;
+
+import android.content.res.AssetFileDescriptor;
+import android.os.ParcelFileDescriptor;
+
+/**
+ * {@link AssetSource} of a compressed local audio file, decoded by a
+ * {@link PcmDecoder}. WAVE files are better played from a {@link WavSource}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class FileSource implements AssetSource {
+
+    private final File file;
+
+    /**
+     * 
+     * @param file
+     *            the audio file.
+     */
+    public FileSource(File file) {
+        this.file = file;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.AudioSource#getKey()
+     */
+    public String getKey() {
+        return PcmCache.getKey("file", file);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.AssetSource#openFd()
+     */
+    public AssetFileDescriptor openFd() throws IOException {
+        ParcelFileDescriptor fd = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+        return new AssetFileDescriptor(fd, 0, fd.getStatSize());
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.AudioSource#open()
+     */
+    public PcmStream open() throws IOException {
+        AssetFileDescriptor audioFile = openFd();
+        try {
+            return new PcmDecoder().decode(audioFile).openStream();
+        }
+        finally {
+            audioFile.close();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+}
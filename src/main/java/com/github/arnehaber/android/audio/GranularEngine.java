@@ -0,0 +1,73 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+
+import com.google.inject.Inject;
+
+/**
+ * {@link PcmLoopEngine} that plays the decoded audio file through a
+ * {@link GranularSampleSource} instead of a loop, so long sessions never
+ * repeat. The stream has no duration and no position, both are reported as 0.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class GranularEngine extends PcmLoopEngine {
+
+    /**
+     * Decodes without a cache.
+     */
+    @Inject
+    public GranularEngine() {
+        super();
+    }
+
+    /**
+     * 
+     * @param loader
+     *            loads the decoded audio and its loop points.
+     */
+    public GranularEngine(PcmLoader loader) {
+        super(loader);
+    }
+
+    @Override
+    protected ISampleSource openSource(AudioSource source) throws IOException {
+        return new GranularSampleSource(decode(source));
+    }
+
+    @Override
+    public void rewind() {
+        // an endless stream has no start to return to
+    }
+
+    @Override
+    public int getDuration() {
+        return 0;
+    }
+
+    @Override
+    public int getCurrentPosition() {
+        return 0;
+    }
+}
@@ -0,0 +1,307 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ShortBuffer;
+
+/**
+ * Resynthesizes a {@link PcmBuffer} into an endless stream that does not
+ * repeat. Grains taken from random positions of the audio are windowed and
+ * overlap added. A new grain starts every half grain length, and the sine
+ * window makes the power of overlapping grains add up to a constant, because
+ * grains from random positions are uncorrelated.
+ * <p>
+ * Grains come from a pool allocated up front, and the window is read from a
+ * precomputed table, so reading does not allocate.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class GranularSampleSource implements ISampleSource {
+
+    /**
+     * Default grain length in ms, long enough to keep the sound of single
+     * waves.
+     */
+    public static final int DEFAULT_GRAIN_TIME = 2000;
+
+    /**
+     * Number of segments of the window table.
+     */
+    static final int WINDOW_SEGMENTS = 4096;
+
+    /**
+     * Fraction bits of the fixed point window position.
+     */
+    private static final int PHASE_BITS = 16;
+
+    private static final int PHASE_MASK = (1 << PHASE_BITS) - 1;
+
+    private static final float PHASE_TO_FLOAT = 1f / (1 << PHASE_BITS);
+
+    private static final float SHORT_TO_FLOAT = 1f / 32768f;
+
+    /**
+     * Sine window, shared by all instances.
+     */
+    private static final float[] WINDOW = createWindow();
+
+    /**
+     * A grain being played.
+     */
+    private static final class Grain {
+
+        /**
+         * Next frame to read from the audio.
+         */
+        private int position;
+
+        /**
+         * Number of frames left, 0 if the grain is free.
+         */
+        private int remaining;
+
+        /**
+         * Fixed point position in the window table.
+         */
+        private int phase;
+    }
+
+    private final PcmBuffer pcm;
+
+    private final int grainFrames;
+
+    private final int hopFrames;
+
+    /**
+     * Window table step per frame, fixed point.
+     */
+    private final int phaseStep;
+
+    private final Grain[] pool;
+
+    /**
+     * State of the xorshift generator, never 0.
+     */
+    private long random;
+
+    /**
+     * Frames until the next grain starts.
+     */
+    private int untilNextGrain = 0;
+
+    /**
+     * Uses grains of {@link #DEFAULT_GRAIN_TIME}, seeded from the clock.
+     * 
+     * @param pcm
+     *            the audio to resynthesize.
+     */
+    public GranularSampleSource(PcmBuffer pcm) {
+        this(pcm, (int) Math.min(pcm.getFrames(), (long) DEFAULT_GRAIN_TIME * pcm.getSampleRate() / 1000), System
+                .nanoTime());
+    }
+
+    /**
+     * 
+     * @param pcm
+     *            the audio to resynthesize.
+     * @param grainFrames
+     *            grain length in frames, at least 2 and at most the length of
+     *            <b>pcm</b>. Rounded down to an even number.
+     * @param seed
+     *            seed of the grain positions. Equal seeds produce equal
+     *            output.
+     */
+    public GranularSampleSource(PcmBuffer pcm, int grainFrames, long seed) {
+        if (grainFrames < 2 || grainFrames > pcm.getFrames()) {
+            throw new IllegalArgumentException("Invalid grain length of " + grainFrames + " frames");
+        }
+        this.pcm = pcm;
+        this.grainFrames = grainFrames & ~1;
+        this.hopFrames = this.grainFrames / 2;
+        this.phaseStep = (int) (((long) WINDOW_SEGMENTS << PHASE_BITS) / this.grainFrames);
+        this.random = seed != 0 ? seed : 0x9E3779B97F4A7C15L;
+        this.pool = new Grain[3];
+        for (int i = 0; i < pool.length; i++) {
+            pool[i] = new Grain();
+        }
+        // start with a grain at its peak instead of fading in
+        Grain first = startGrain();
+        first.position += hopFrames;
+        first.remaining -= hopFrames;
+        first.phase = hopFrames * phaseStep;
+    }
+
+    private static float[] createWindow() {
+        float[] window = new float[WINDOW_SEGMENTS + 1];
+        for (int i = 0; i <= WINDOW_SEGMENTS; i++) {
+            window[i] = (float) Math.sin(Math.PI * i / WINDOW_SEGMENTS);
+        }
+        return window;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.ISampleSource#getSampleRate()
+     */
+    public int getSampleRate() {
+        return pcm.getSampleRate();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.ISampleSource#getChannelCount()
+     */
+    public int getChannelCount() {
+        return pcm.getChannelCount();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.ISampleSource#read(float[], int,
+     * int)
+     */
+    public void read(float[] buffer, int offset, int frames) {
+        final int channels = pcm.getChannelCount();
+        final int last = offset + frames * channels;
+        for (int i = offset; i < last; i++) {
+            buffer[i] = 0f;
+        }
+        int done = 0;
+        while (done < frames) {
+            if (untilNextGrain == 0) {
+                startGrain();
+                untilNextGrain = hopFrames;
+            }
+            int chunk = Math.min(frames - done, untilNextGrain);
+            for (Grain grain : pool) {
+                if (grain.remaining > 0) {
+                    mix(grain, buffer, offset + done * channels, chunk);
+                }
+            }
+            done += chunk;
+            untilNextGrain -= chunk;
+        }
+    }
+
+    /**
+     * Adds up to <b>frames</b> windowed frames of <b>grain</b> to
+     * <b>buffer</b>.
+     */
+    private void mix(Grain grain, float[] buffer, int out, int frames) {
+        final ShortBuffer samples = pcm.getSamples();
+        final short[] array = samples.hasArray() ? samples.array() : null;
+        final int channels = pcm.getChannelCount();
+        final int count = Math.min(frames, grain.remaining);
+        final int end = out + count * channels;
+        int in = grain.position * channels;
+        int phase = grain.phase;
+        if (array != null && channels == 2) {
+            in += samples.arrayOffset();
+            while (out < end) {
+                float gain = windowGain(phase);
+                buffer[out++] += array[in++] * gain;
+                buffer[out++] += array[in++] * gain;
+                phase += phaseStep;
+            }
+        }
+        else if (array != null) {
+            in += samples.arrayOffset();
+            while (out < end) {
+                float gain = windowGain(phase);
+                for (int c = 0; c < channels; c++) {
+                    buffer[out++] += array[in++] * gain;
+                }
+                phase += phaseStep;
+            }
+        }
+        else {
+            // mapped file
+            while (out < end) {
+                float gain = windowGain(phase);
+                for (int c = 0; c < channels; c++) {
+                    buffer[out++] += samples.get(in++) * gain;
+                }
+                phase += phaseStep;
+            }
+        }
+        grain.position += count;
+        grain.remaining -= count;
+        grain.phase = phase;
+    }
+
+    /**
+     * 
+     * @param phase
+     *            fixed point position in the window table.
+     * @return the interpolated window, scaled for 16 bit samples.
+     */
+    private static float windowGain(int phase) {
+        int index = phase >>> PHASE_BITS;
+        float a = WINDOW[index];
+        return (a + (phase & PHASE_MASK) * PHASE_TO_FLOAT * (WINDOW[index + 1] - a)) * SHORT_TO_FLOAT;
+    }
+
+    /**
+     * Starts a grain at a random position of the audio.
+     * 
+     * @return the started grain.
+     */
+    private Grain startGrain() {
+        for (Grain grain : pool) {
+            if (grain.remaining == 0) {
+                grain.position = nextInt(pcm.getFrames() - grainFrames + 1);
+                grain.remaining = grainFrames;
+                grain.phase = 0;
+                return grain;
+            }
+        }
+        // a grain ends when the next but one starts, so the pool never runs
+        // empty
+        throw new IllegalStateException("Grain pool exhausted");
+    }
+
+    /**
+     * 
+     * @param bound
+     *            a positive number.
+     * @return a uniform random number in [0, <b>bound</b>).
+     */
+    private int nextInt(int bound) {
+        long x = random;
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        random = x;
+        return (int) ((((x * 2685821657736338717L) >>> 33) * bound) >>> 31);
+    }
+
+    /**
+     * 
+     * @return the grain length in frames.
+     */
+    public int getGrainFrames() {
+        return grainFrames;
+    }
+}
@@ -0,0 +1,151 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+
+/**
+ * Playback engine that loops a single audio file. Used by the
+ * {@link com.github.arnehaber.android.TimedSleepPlayer} to produce sound.
+ * <p>
+ * An engine is owned by a single thread with a {@link android.os.Looper},
+ * usually the {@link AudioCommandThread}. Only {@link #isPlaying()},
+ * {@link #getDuration()}, {@link #getCurrentPosition()} and
+ * {@link #getUnderrunCount()} may be called from other threads.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public interface IAudioEngine {
+
+    /**
+     * Receives the result of {@link IAudioEngine#prepareAsync} and the start
+     * of play back of the prepared audio.
+     */
+    interface PrepareListener {
+
+        /**
+         * Called on the owning thread when the engine is ready to start.
+         */
+        void onPrepared();
+
+        /**
+         * Called on the owning thread when preparing failed.
+         * 
+         * @param cause
+         *            the cause of the failure.
+         */
+        void onError(Exception cause);
+
+        /**
+         * Called once per {@link IAudioEngine#start()} when the first audio
+         * after it has been handed to the output. May be called on any
+         * thread, also before {@link IAudioEngine#start()} returns.
+         */
+        void onStarted();
+    }
+
+    /**
+     * Starts preparing the engine to loop the audio of the given source. The
+     * engine opens and closes the source itself.
+     * 
+     * @param source
+     *            the audio to play.
+     * @param listener
+     *            informed when the engine is prepared. May be called before
+     *            this method returns.
+     * @throws IOException
+     *             if the audio cannot be read or the engine cannot play this
+     *             kind of source.
+     */
+    void prepareAsync(AudioSource source, PrepareListener listener) throws IOException;
+
+    /**
+     * Starts or resumes play back.
+     */
+    void start();
+
+    /**
+     * Pauses play back and keeps the current position.
+     */
+    void pause();
+
+    /**
+     * Stops play back.
+     */
+    void stop();
+
+    /**
+     * Moves the play back position to the start of the audio file. Only valid
+     * while the engine is prepared and not playing.
+     */
+    void rewind();
+
+    /**
+     * Fades play back out, so that it is silent after <b>remaining</b> ms of
+     * play back. Replaces an earlier fade. Only valid while the engine is
+     * prepared.
+     * 
+     * @param remaining
+     *            time in ms until silence.
+     * @param length
+     *            length of the whole fade in ms. If <b>remaining</b> is
+     *            shorter, the fade starts partly done.
+     */
+    void fadeOut(int remaining, int length);
+
+    /**
+     * Cancels a fade and returns to full volume.
+     */
+    void cancelFadeOut();
+
+    /**
+     * Releases all internal resources. The engine has to be prepared again
+     * before it can be started. Does nothing if the engine holds no
+     * resources, e.g. because its prepare failed.
+     */
+    void release();
+
+    /**
+     * 
+     * @return true, if the engine is currently playing.
+     */
+    boolean isPlaying();
+
+    /**
+     * 
+     * @return the duration of the loaded audio in ms.
+     */
+    int getDuration();
+
+    /**
+     * 
+     * @return the current play back position within the audio in ms.
+     */
+    int getCurrentPosition();
+
+    /**
+     * 
+     * @return the number of times the audio output ran dry since the engine
+     *         was created, 0 if the engine cannot tell.
+     */
+    long getUnderrunCount();
+}
@@ -0,0 +1,55 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Endless source of interleaved float samples in the range [-1, 1]. Sources
+ * are read from the audio render thread and must not allocate while reading.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public interface ISampleSource {
+
+    /**
+     * 
+     * @return the sample rate in Hz.
+     */
+    int getSampleRate();
+
+    /**
+     * 
+     * @return the number of interleaved channels per frame.
+     */
+    int getChannelCount();
+
+    /**
+     * Writes the next <b>frames</b> frames into <b>buffer</b>.
+     * 
+     * @param buffer
+     *            destination of the interleaved samples.
+     * @param offset
+     *            first sample index to write in <b>buffer</b>.
+     * @param frames
+     *            number of frames to write.
+     */
+    void read(float[] buffer, int offset, int frames);
+}
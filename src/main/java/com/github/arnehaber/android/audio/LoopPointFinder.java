@@ -0,0 +1,202 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ShortBuffer;
+
+/**
+ * Finds the loop boundary at which a recording continues most seamlessly
+ * from its tail into its head. A window at the start of the loop is
+ * compared with every position near the end of the recording by normalized
+ * cross-correlation, computed with an {@link Fft} on a decimated mono mix.
+ * The best match is refined at full rate. The loop starts after a pre-roll,
+ * so a crossfade at the seam can blend in the audio before the loop start.
+ * <p>
+ * The analysis allocates and takes a while, so run it once per audio file
+ * and keep the result.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class LoopPointFinder {
+
+    /**
+     * Length of the compared window in ms.
+     */
+    static final int WINDOW_TIME = 250;
+
+    /**
+     * Length of the searched range at the end of the recording in ms.
+     */
+    static final int SEARCH_TIME = 2000;
+
+    /**
+     * Length of the audio before the loop start in ms, which limits the
+     * length of the crossfade.
+     */
+    public static final int MAX_CROSSFADE_TIME = 500;
+
+    /**
+     * Frames averaged into one frame of the coarse search.
+     */
+    static final int DECIMATION = 4;
+
+    /**
+     * Finds the loop boundaries of <b>pcm</b>. Recordings too short for the
+     * analysis are looped as a whole.
+     * 
+     * @param pcm
+     *            the decoded audio.
+     * @return the best loop boundaries.
+     */
+    public LoopPoints find(PcmBuffer pcm) {
+        int rate = pcm.getSampleRate();
+        int window = frames(WINDOW_TIME, rate) / DECIMATION * DECIMATION;
+        int search = frames(SEARCH_TIME, rate) / DECIMATION * DECIMATION;
+        int start = frames(MAX_CROSSFADE_TIME, rate);
+        // candidates for the loop end, each followed by a full window and a
+        // margin for the refinement
+        int first = pcm.getFrames() - search - window - DECIMATION;
+        if (window < DECIMATION || first < start + window) {
+            return new LoopPoints(0, pcm.getFrames());
+        }
+
+        float[] head = mono(pcm, start, window);
+        float[] tail = mono(pcm, first - DECIMATION, search + window + 2 * DECIMATION);
+        int coarse = coarseSearch(decimate(head), decimate(tail, DECIMATION, search + window));
+        int end = refine(head, tail, DECIMATION + coarse * DECIMATION, window, search);
+        return new LoopPoints(start, first - DECIMATION + end);
+    }
+
+    private static int frames(int time, int rate) {
+        return (int) ((long) time * rate / 1000);
+    }
+
+    /**
+     * Mixes frames of <b>pcm</b> down to mono.
+     */
+    private static float[] mono(PcmBuffer pcm, int from, int count) {
+        ShortBuffer samples = pcm.getSamples();
+        int channels = pcm.getChannelCount();
+        float[] result = new float[count];
+        for (int f = 0; f < count; f++) {
+            int index = (from + f) * channels;
+            float sum = 0;
+            for (int c = 0; c < channels; c++) {
+                sum += samples.get(index + c);
+            }
+            result[f] = sum / channels;
+        }
+        return result;
+    }
+
+    private static float[] decimate(float[] signal) {
+        return decimate(signal, 0, signal.length);
+    }
+
+    /**
+     * Averages blocks of {@link #DECIMATION} frames of <b>signal</b>, starting
+     * at <b>from</b>.
+     */
+    private static float[] decimate(float[] signal, int from, int count) {
+        float[] result = new float[count / DECIMATION];
+        for (int i = 0; i < result.length; i++) {
+            float sum = 0;
+            for (int k = 0; k < DECIMATION; k++) {
+                sum += signal[from + i * DECIMATION + k];
+            }
+            result[i] = sum / DECIMATION;
+        }
+        return result;
+    }
+
+    /**
+     * 
+     * @return the offset in <b>signal</b> where <b>reference</b> matches best.
+     */
+    private static int coarseSearch(float[] reference, float[] signal) {
+        int n = Fft.size(signal.length + reference.length);
+        double[] sigRe = new double[n];
+        double[] sigIm = new double[n];
+        double[] refRe = new double[n];
+        double[] refIm = new double[n];
+        for (int i = 0; i < signal.length; i++) {
+            sigRe[i] = signal[i];
+        }
+        for (int i = 0; i < reference.length; i++) {
+            refRe[i] = reference[i];
+        }
+        Fft.transform(sigRe, sigIm, false);
+        Fft.transform(refRe, refIm, false);
+        // cross spectrum: signal times the conjugate reference
+        for (int i = 0; i < n; i++) {
+            double re = sigRe[i] * refRe[i] + sigIm[i] * refIm[i];
+            double im = sigIm[i] * refRe[i] - sigRe[i] * refIm[i];
+            sigRe[i] = re;
+            sigIm[i] = im;
+        }
+        Fft.transform(sigRe, sigIm, true);
+
+        // energy of the signal under the sliding window from prefix sums
+        double[] energy = new double[signal.length + 1];
+        for (int i = 0; i < signal.length; i++) {
+            energy[i + 1] = energy[i] + (double) signal[i] * signal[i];
+        }
+        int best = 0;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int t = 0; t + reference.length <= signal.length; t++) {
+            double e = energy[t + reference.length] - energy[t];
+            double score = e > 0 ? sigRe[t] / Math.sqrt(e) : 0;
+            if (score > bestScore) {
+                bestScore = score;
+                best = t;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Searches the best match at full rate around <b>guess</b>.
+     * 
+     * @return the offset in <b>tail</b> where <b>head</b> matches best.
+     */
+    private static int refine(float[] head, float[] tail, int guess, int window, int search) {
+        int from = Math.max(DECIMATION, guess - DECIMATION);
+        int to = Math.min(DECIMATION + search, guess + DECIMATION);
+        int best = guess;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int t = from; t <= to; t++) {
+            double product = 0;
+            double energy = 0;
+            for (int k = 0; k < window; k++) {
+                double s = tail[t + k];
+                product += s * head[k];
+                energy += s * s;
+            }
+            double score = energy > 0 ? product / Math.sqrt(energy) : 0;
+            if (score > bestScore) {
+                bestScore = score;
+                best = t;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Boundaries of a loop within decoded audio, as found by the
+ * {@link LoopPointFinder}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public final class LoopPoints {
+
+    private final int start;
+
+    private final int end;
+
+    /**
+     * 
+     * @param start
+     *            first frame of the loop.
+     * @param end
+     *            frame after the last frame of the loop.
+     */
+    public LoopPoints(int start, int end) {
+        if (start < 0 || start >= end) {
+            throw new IllegalArgumentException("Invalid loop [" + start + ", " + end + ")");
+        }
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * 
+     * @return the first frame of the loop.
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * 
+     * @return the frame after the last frame of the loop.
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "[" + start + ", " + end + ")";
+    }
+}
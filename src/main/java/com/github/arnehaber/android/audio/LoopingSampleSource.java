@@ -0,0 +1,250 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ShortBuffer;
+
+/**
+ * Plays a {@link PcmBuffer} in an endless loop. The frame after the last
+ * frame of the loop is its first frame, so there is no gap at the seam.
+ * Optionally, the end of the loop is blended with an equal power crossfade
+ * into the audio that precedes the loop start, which hides the seam.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class LoopingSampleSource implements ISampleSource {
+
+    /**
+     * Scales 16 bit samples into [-1, 1).
+     */
+    private static final float SHORT_TO_FLOAT = 1f / 32768f;
+
+    private final PcmBuffer pcm;
+
+    private final int loopStart;
+
+    private final int loopEnd;
+
+    /**
+     * First frame of the crossfade, equals {@link #loopEnd} without
+     * crossfade.
+     */
+    private final int crossfadeStart;
+
+    /**
+     * Gain of the loop end by crossfade frame.
+     */
+    private final float[] fadeOutGains;
+
+    /**
+     * Gain of the audio before the loop start by crossfade frame.
+     */
+    private final float[] fadeInGains;
+
+    /**
+     * Next frame to read. Written by the render thread only, read by any
+     * thread.
+     */
+    private volatile int position;
+
+    /**
+     * Set by {@link #rewind()} on a control thread, taken over by the render
+     * thread with its next read.
+     */
+    private volatile boolean rewindRequested = false;
+
+    /**
+     * Loops the whole buffer.
+     * 
+     * @param pcm
+     *            the audio to loop.
+     */
+    public LoopingSampleSource(PcmBuffer pcm) {
+        this(pcm, 0, pcm.getFrames());
+    }
+
+    /**
+     * 
+     * @param pcm
+     *            the audio to loop.
+     * @param loopStart
+     *            first frame of the loop.
+     * @param loopEnd
+     *            frame after the last frame of the loop.
+     */
+    public LoopingSampleSource(PcmBuffer pcm, int loopStart, int loopEnd) {
+        this(pcm, loopStart, loopEnd, 0);
+    }
+
+    /**
+     * 
+     * @param pcm
+     *            the audio to loop.
+     * @param loopStart
+     *            first frame of the loop.
+     * @param loopEnd
+     *            frame after the last frame of the loop.
+     * @param crossfadeFrames
+     *            length of the crossfade at the end of the loop, at most
+     *            <b>loopStart</b> and the loop length.
+     */
+    public LoopingSampleSource(PcmBuffer pcm, int loopStart, int loopEnd, int crossfadeFrames) {
+        if (loopStart < 0 || loopEnd > pcm.getFrames() || loopStart >= loopEnd) {
+            throw new IllegalArgumentException("Invalid loop [" + loopStart + ", " + loopEnd + ")");
+        }
+        if (crossfadeFrames < 0 || crossfadeFrames > loopStart || crossfadeFrames > loopEnd - loopStart) {
+            throw new IllegalArgumentException("Invalid crossfade of " + crossfadeFrames + " frames");
+        }
+        this.pcm = pcm;
+        this.loopStart = loopStart;
+        this.loopEnd = loopEnd;
+        this.position = loopStart;
+        this.crossfadeStart = loopEnd - crossfadeFrames;
+        this.fadeOutGains = new float[crossfadeFrames];
+        this.fadeInGains = new float[crossfadeFrames];
+        for (int k = 0; k < crossfadeFrames; k++) {
+            double angle = Math.PI / 2 * (k + 0.5) / crossfadeFrames;
+            fadeOutGains[k] = (float) Math.cos(angle);
+            fadeInGains[k] = (float) Math.sin(angle);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.ISampleSource#getSampleRate()
+     */
+    public int getSampleRate() {
+        return pcm.getSampleRate();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.ISampleSource#getChannelCount()
+     */
+    public int getChannelCount() {
+        return pcm.getChannelCount();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.ISampleSource#read(float[], int,
+     * int)
+     */
+    public void read(float[] buffer, int offset, int frames) {
+        final ShortBuffer samples = pcm.getSamples();
+        final short[] array = samples.hasArray() ? samples.array() : null;
+        final int arrayOffset = array != null ? samples.arrayOffset() : 0;
+        final int channels = pcm.getChannelCount();
+        int pos = position;
+        if (rewindRequested) {
+            rewindRequested = false;
+            pos = loopStart;
+        }
+        int out = offset;
+        int remaining = frames;
+        while (remaining > 0) {
+            if (pos >= crossfadeStart) {
+                int chunk = Math.min(remaining, loopEnd - pos);
+                crossfade(buffer, out, pos, chunk);
+                out += chunk * channels;
+                remaining -= chunk;
+                pos += chunk;
+                if (pos == loopEnd) {
+                    pos = loopStart;
+                }
+                continue;
+            }
+            int chunk = Math.min(remaining, crossfadeStart - pos);
+            int in = pos * channels;
+            int end = out + chunk * channels;
+            if (array != null) {
+                in += arrayOffset;
+                while (out < end) {
+                    buffer[out++] = array[in++] * SHORT_TO_FLOAT;
+                }
+            }
+            else {
+                // mapped file
+                while (out < end) {
+                    buffer[out++] = samples.get(in++) * SHORT_TO_FLOAT;
+                }
+            }
+            remaining -= chunk;
+            pos += chunk;
+        }
+        position = pos;
+    }
+
+    /**
+     * Writes <b>frames</b> crossfaded frames starting at frame <b>pos</b>
+     * into <b>buffer</b>.
+     */
+    private void crossfade(float[] buffer, int out, int pos, int frames) {
+        final ShortBuffer samples = pcm.getSamples();
+        final int channels = pcm.getChannelCount();
+        int k = pos - crossfadeStart;
+        int tail = pos * channels;
+        int head = (loopStart - fadeInGains.length + k) * channels;
+        for (int f = 0; f < frames; f++, k++) {
+            float fadeOut = fadeOutGains[k] * SHORT_TO_FLOAT;
+            float fadeIn = fadeInGains[k] * SHORT_TO_FLOAT;
+            for (int c = 0; c < channels; c++) {
+                buffer[out++] = samples.get(tail++) * fadeOut + samples.get(head++) * fadeIn;
+            }
+        }
+    }
+
+    /**
+     * 
+     * @return the next frame to be read.
+     */
+    public int getPosition() {
+        return rewindRequested ? loopStart : position;
+    }
+
+    /**
+     * 
+     * @return the first frame of the loop.
+     */
+    public int getLoopStart() {
+        return loopStart;
+    }
+
+    /**
+     * 
+     * @return the length of the loop in frames.
+     */
+    public int getLoopFrames() {
+        return loopEnd - loopStart;
+    }
+
+    /**
+     * Moves the read position back to the start of the loop with the next
+     * read. May be called from any thread.
+     */
+    public void rewind() {
+        rewindRequested = true;
+    }
+}
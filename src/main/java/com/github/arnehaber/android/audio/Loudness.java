@@ -0,0 +1,93 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Integrated loudness and sample peak of decoded audio, as measured by the
+ * {@link LoudnessMeter}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public final class Loudness {
+
+    private final float loudness;
+
+    private final float peak;
+
+    /**
+     * 
+     * @param loudness
+     *            integrated loudness in LUFS, negative infinity for silence.
+     * @param peak
+     *            largest absolute sample value, 1 is full scale.
+     */
+    public Loudness(float loudness, float peak) {
+        if (Float.isNaN(loudness) || loudness == Float.POSITIVE_INFINITY || !(peak >= 0)) {
+            throw new IllegalArgumentException("Invalid loudness " + loudness + " LUFS, peak " + peak);
+        }
+        this.loudness = loudness;
+        this.peak = peak;
+    }
+
+    /**
+     * 
+     * @return the integrated loudness in LUFS, negative infinity for
+     *         silence.
+     */
+    public float getLoudness() {
+        return loudness;
+    }
+
+    /**
+     * 
+     * @return the largest absolute sample value, 1 is full scale.
+     */
+    public float getPeak() {
+        return peak;
+    }
+
+    /**
+     * Computes the gain that brings the audio to the target loudness. Quiet
+     * audio is amplified only as far as its peak stays below full scale.
+     * 
+     * @param target
+     *            the target loudness in LUFS.
+     * @return the linear gain, 1 for silence.
+     */
+    public float getGain(double target) {
+        if (loudness == Float.NEGATIVE_INFINITY || peak == 0) {
+            return 1f;
+        }
+        double gain = Math.pow(10, (target - loudness) / 20);
+        return (float) Math.min(gain, 1 / peak);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%.1f LUFS, peak %.3f", loudness, peak);
+    }
+}
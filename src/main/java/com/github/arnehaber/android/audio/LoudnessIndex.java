@@ -0,0 +1,207 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Persistent index of the {@link Loudness} of audio sources, so each source
+ * is analysed only once. Entries are found by the key of the source, which
+ * changes whenever its audio changes, so new and changed audio is analysed
+ * again while unchanged audio is not.
+ * <p>
+ * The index is a single small file, loaded on first use and rewritten after
+ * each change. It starts with a little endian header: magic, format version
+ * and number of entries. Each entry holds the hash of the key, the loudness
+ * and the peak. A file that does not match its header is ignored. At most
+ * {@link #MAX_ENTRIES} entries are kept, the oldest are dropped first.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class LoudnessIndex {
+
+    /**
+     * "OWLN"
+     */
+    static final int MAGIC = 0x4F574C4E;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_BYTES = 12;
+
+    static final int ENTRY_BYTES = 16;
+
+    /**
+     * Maximum number of entries.
+     */
+    public static final int MAX_ENTRIES = 256;
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File file;
+
+    /**
+     * Entries by key hash in insertion order, null until loaded.
+     */
+    private LinkedHashMap<Long, Loudness> entries;
+
+    /**
+     * 
+     * @param file
+     *            the index file, created on first change.
+     */
+    public LoudnessIndex(File file) {
+        this.file = file;
+    }
+
+    /**
+     * 
+     * @param key
+     *            key of the source, see {@link AudioSource#getKey()}.
+     * @return the indexed loudness, or null if the source has not been
+     *         analysed.
+     * @throws IOException
+     *             if the index cannot be read.
+     */
+    public synchronized Loudness get(String key) throws IOException {
+        return getEntries().get(PcmCache.hash(key));
+    }
+
+    /**
+     * Adds the loudness of a source and writes the index.
+     * 
+     * @param key
+     *            key of the source, see {@link AudioSource#getKey()}.
+     * @param loudness
+     *            the measured loudness.
+     * @throws IOException
+     *             if the index cannot be written.
+     */
+    public synchronized void put(String key, Loudness loudness) throws IOException {
+        Map<Long, Loudness> current = getEntries();
+        Long hash = PcmCache.hash(key);
+        // re-inserted, so it becomes the newest entry
+        current.remove(hash);
+        current.put(hash, loudness);
+        Iterator<Long> oldest = current.keySet().iterator();
+        while (current.size() > MAX_ENTRIES) {
+            oldest.next();
+            oldest.remove();
+        }
+        write(current);
+    }
+
+    /**
+     * 
+     * @return the number of entries.
+     * @throws IOException
+     *             if the index cannot be read.
+     */
+    public synchronized int size() throws IOException {
+        return getEntries().size();
+    }
+
+    private LinkedHashMap<Long, Loudness> getEntries() throws IOException {
+        if (entries == null) {
+            entries = read();
+        }
+        return entries;
+    }
+
+    private LinkedHashMap<Long, Loudness> read() throws IOException {
+        LinkedHashMap<Long, Loudness> result = new LinkedHashMap<Long, Loudness>();
+        if (!file.isFile()) {
+            return result;
+        }
+        ByteBuffer data;
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            long length = in.length();
+            if (length < HEADER_BYTES || length > HEADER_BYTES + (long) MAX_ENTRIES * ENTRY_BYTES) {
+                return result;
+            }
+            data = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+            in.readFully(data.array());
+        }
+        finally {
+            in.close();
+        }
+        int count = data.getInt(8);
+        if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION
+                || data.capacity() != HEADER_BYTES + count * ENTRY_BYTES) {
+            return result;
+        }
+        data.position(HEADER_BYTES);
+        for (int i = 0; i < count; i++) {
+            long hash = data.getLong();
+            float loudness = data.getFloat();
+            float peak = data.getFloat();
+            try {
+                result.put(hash, new Loudness(loudness, peak));
+            }
+            catch (IllegalArgumentException e) {
+                result.clear();
+                return result;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes a temporary file and moves it over the index, so readers never
+     * see a partly written index.
+     */
+    private void write(Map<Long, Loudness> current) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(HEADER_BYTES + current.size() * ENTRY_BYTES).order(
+                ByteOrder.LITTLE_ENDIAN);
+        data.putInt(MAGIC).putInt(VERSION).putInt(current.size());
+        for (Map.Entry<Long, Loudness> entry : current.entrySet()) {
+            data.putLong(entry.getKey());
+            data.putFloat(entry.getValue().getLoudness()).putFloat(entry.getValue().getPeak());
+        }
+
+        File directory = file.getParentFile();
+        if (directory != null) {
+            directory.mkdirs();
+        }
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(data.array());
+        }
+        finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Unable to write " + file);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ShortBuffer;
+
+/**
+ * Measures the integrated loudness of decoded audio as specified by ITU-R
+ * BS.1770 and EBU R128: the channels are K-weighted, their mean square is
+ * taken over blocks of 400 ms that overlap by 75 % and blocks below an
+ * absolute gate of -70 LUFS and a relative gate of -10 LU are ignored. The
+ * first two channels are weighted equally, which covers mono and stereo
+ * audio. The peak is the sample peak, not the oversampled true peak.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class LoudnessMeter {
+
+    /**
+     * Length of the gating blocks in ms.
+     */
+    static final int BLOCK_TIME = 400;
+
+    /**
+     * Number of steps per gating block.
+     */
+    static final int STEPS_PER_BLOCK = 4;
+
+    static final double ABSOLUTE_GATE = -70;
+
+    static final double RELATIVE_GATE = -10;
+
+    private static final float SHORT_TO_FLOAT = 1f / 32768;
+
+    /**
+     * Measures the whole audio.
+     * 
+     * @param pcm
+     *            the decoded audio.
+     * @return its loudness.
+     */
+    public Loudness measure(PcmBuffer pcm) {
+        final int channels = pcm.getChannelCount();
+        final int frames = pcm.getFrames();
+        final int stepFrames = Math.max(1, pcm.getSampleRate() * BLOCK_TIME / STEPS_PER_BLOCK / 1000);
+        final int steps = frames / stepFrames;
+        final ShortBuffer samples = pcm.getSamples();
+
+        // sum of squares of the K-weighted samples of all channels per step
+        double[] energy = new double[steps];
+        double[][] filter = createFilter(pcm.getSampleRate());
+        double[][] state = new double[channels][4];
+        float peak = 0;
+        int in = 0;
+        for (int step = 0; step < steps; step++) {
+            double sum = 0;
+            for (int f = 0; f < stepFrames; f++) {
+                for (int c = 0; c < channels; c++) {
+                    float sample = samples.get(in++) * SHORT_TO_FLOAT;
+                    peak = Math.max(peak, Math.abs(sample));
+                    double weighted = filter(filter, state[c], sample);
+                    sum += weighted * weighted;
+                }
+            }
+            energy[step] = sum;
+        }
+        // the frames after the last full step belong to no block
+        for (int end = frames * channels; in < end; in++) {
+            peak = Math.max(peak, Math.abs(samples.get(in) * SHORT_TO_FLOAT));
+        }
+
+        int blocks = Math.max(0, steps - STEPS_PER_BLOCK + 1);
+        double[] power = new double[blocks];
+        double blockFrames = (double) stepFrames * STEPS_PER_BLOCK;
+        for (int b = 0; b < blocks; b++) {
+            double sum = 0;
+            for (int s = b; s < b + STEPS_PER_BLOCK; s++) {
+                sum += energy[s];
+            }
+            power[b] = sum / blockFrames;
+        }
+        double absolute = gatedMean(power, powerOf(ABSOLUTE_GATE));
+        if (Double.isNaN(absolute)) {
+            return new Loudness(Float.NEGATIVE_INFINITY, peak);
+        }
+        double relative = gatedMean(power, absolute * powerOf(RELATIVE_GATE));
+        return new Loudness((float) loudnessOf(relative), peak);
+    }
+
+    /**
+     * 
+     * @return the mean of all values above <b>gate</b>, NaN if there are
+     *         none.
+     */
+    private static double gatedMean(double[] power, double gate) {
+        double sum = 0;
+        int count = 0;
+        for (double p : power) {
+            if (p > gate) {
+                sum += p;
+                count++;
+            }
+        }
+        return count > 0 ? sum / count : Double.NaN;
+    }
+
+    private static double loudnessOf(double power) {
+        return -0.691 + 10 * Math.log10(power);
+    }
+
+    private static double powerOf(double loudness) {
+        return Math.pow(10, (loudness + 0.691) / 10);
+    }
+
+    /**
+     * Creates the K-weighting filter for the sample rate, a high shelf
+     * followed by a high pass, from the analog prototypes of BS.1770.
+     * 
+     * @return numerator and denominator coefficients of both biquads, b0, b1,
+     *         b2, a1, a2 each.
+     */
+    static double[][] createFilter(int sampleRate) {
+        double k = Math.tan(Math.PI * 1681.974450955533 / sampleRate);
+        double q = 0.7071752369554196;
+        double vh = Math.pow(10, 3.999843853973347 / 20);
+        double vb = Math.pow(vh, 0.4996667741545416);
+        double a0 = 1 + k / q + k * k;
+        double[] shelf = { (vh + vb * k / q + k * k) / a0, 2 * (k * k - vh) / a0, (vh - vb * k / q + k * k) / a0,
+                2 * (k * k - 1) / a0, (1 - k / q + k * k) / a0 };
+
+        k = Math.tan(Math.PI * 38.13547087602444 / sampleRate);
+        q = 0.5003270373238773;
+        a0 = 1 + k / q + k * k;
+        double[] highPass = { 1, -2, 1, 2 * (k * k - 1) / a0, (1 - k / q + k * k) / a0 };
+        return new double[][] { shelf, highPass };
+    }
+
+    /**
+     * Runs a sample through both biquads in direct form II transposed.
+     * 
+     * @param state
+     *            two state variables per biquad.
+     */
+    private static double filter(double[][] filter, double[] state, double x) {
+        for (int i = 0; i < filter.length; i++) {
+            double[] f = filter[i];
+            int s = 2 * i;
+            double y = f[0] * x + state[s];
+            state[s] = f[1] * x - f[3] * y + state[s + 1];
+            state[s + 1] = f[2] * x - f[4] * y;
+            x = y;
+        }
+        return x;
+    }
+}
@@ -0,0 +1,211 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+
+import android.content.res.AssetFileDescriptor;
+import android.media.MediaPlayer;
+import android.media.MediaPlayer.OnErrorListener;
+import android.media.MediaPlayer.OnPreparedListener;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+
+/**
+ * {@link IAudioEngine} based on {@link MediaPlayer#setLooping(boolean)}. Used
+ * as fallback on devices that cannot decode audio into PCM. Plays only
+ * {@link AssetSource}s, since {@link MediaPlayer} reads the encoded file
+ * itself.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class MediaPlayerEngine implements IAudioEngine {
+
+    /**
+     * Provides a fresh {@link MediaPlayer} for each prepare.
+     */
+    private final Provider<MediaPlayer> playerProvider;
+
+    private volatile MediaPlayer player;
+
+    private volatile PrepareListener listener;
+
+    /**
+     * 
+     * @param playerProvider
+     *            provides the used {@link MediaPlayer} instances.
+     */
+    @Inject
+    public MediaPlayerEngine(Provider<MediaPlayer> playerProvider) {
+        this.playerProvider = playerProvider;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.arnehaber.android.audio.IAudioEngine#prepareAsync(com.github
+     * .arnehaber.android.audio.AudioSource,
+     * com.github.arnehaber.android.audio.IAudioEngine.PrepareListener)
+     */
+    public void prepareAsync(AudioSource source, final PrepareListener listener) throws IOException {
+        if (!(source instanceof AssetSource)) {
+            throw new IOException("MediaPlayer can only play files");
+        }
+        AssetFileDescriptor audioFile = ((AssetSource) source).openFd();
+        this.listener = listener;
+        player = playerProvider.get();
+        player.setOnPreparedListener(new OnPreparedListener() {
+            public void onPrepared(MediaPlayer mp) {
+                mp.setLooping(true);
+                listener.onPrepared();
+            }
+        });
+        player.setOnErrorListener(new OnErrorListener() {
+            public boolean onError(MediaPlayer mp, int what, int extra) {
+                listener.onError(new IOException("MediaPlayer error " + what + ", " + extra));
+                return true;
+            }
+        });
+        try {
+            player.setDataSource(audioFile.getFileDescriptor(), audioFile.getStartOffset(), audioFile.getLength());
+        }
+        finally {
+            audioFile.close();
+        }
+        player.prepareAsync();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#start()
+     */
+    public void start() {
+        player.start();
+        // MediaPlayer does not report its first audio, so the start counts
+        // once it is accepted; the latency of its output path is not included
+        listener.onStarted();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#pause()
+     */
+    public void pause() {
+        player.pause();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#stop()
+     */
+    public void stop() {
+        player.stop();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#rewind()
+     */
+    public void rewind() {
+        player.seekTo(0);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#fadeOut(int, int)
+     */
+    public void fadeOut(int remaining, int length) {
+        // MediaPlayer volume can only be stepped from timed callbacks, so play
+        // back just stops when the sleep timer expires
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#cancelFadeOut()
+     */
+    public void cancelFadeOut() {
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#release()
+     */
+    public void release() {
+        MediaPlayer released = player;
+        player = null;
+        // null if the prepare failed before a player was created
+        if (released != null) {
+            released.reset();
+            released.release();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#isPlaying()
+     */
+    public boolean isPlaying() {
+        MediaPlayer current = player;
+        return current != null && current.isPlaying();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#getDuration()
+     */
+    public int getDuration() {
+        MediaPlayer current = player;
+        return current != null ? current.getDuration() : 0;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#getCurrentPosition()
+     */
+    public int getCurrentPosition() {
+        MediaPlayer current = player;
+        return current != null ? current.getCurrentPosition() : 0;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#getUnderrunCount()
+     */
+    public long getUnderrunCount() {
+        // MediaPlayer does not report underruns
+        return 0;
+    }
+
+}
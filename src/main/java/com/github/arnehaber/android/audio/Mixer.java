@@ -0,0 +1,295 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * {@link ISampleSource} that sums any number of layers into one stream, so a
+ * single output track plays all of them. Each layer has a gain that follows
+ * changes smoothly within a few ms, and the sum passes a soft clipper that
+ * leaves samples below {@value #KNEE} untouched and bends louder ones towards
+ * full scale.
+ * <p>
+ * Layers may be added, removed and changed from any thread. New layers fade
+ * in. Reading is done by the render thread and does not allocate.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class Mixer implements ISampleSource {
+
+    /**
+     * Level above which the sum is soft clipped.
+     */
+    static final float KNEE = 0.8f;
+
+    /**
+     * Time constant of the gain smoothing in s.
+     */
+    private static final float SMOOTHING_TIME = 0.02f;
+
+    private static final Layer[] NO_LAYERS = new Layer[0];
+
+    /**
+     * A source mixed into the output.
+     */
+    public static final class Layer {
+
+        private final ISampleSource source;
+
+        private volatile float targetGain;
+
+        /**
+         * Current smoothed gain. Only accessed on the render thread.
+         */
+        private float gain = 0f;
+
+        private Layer(ISampleSource source, float gain) {
+            this.source = source;
+            this.targetGain = gain;
+        }
+
+        /**
+         * 
+         * @return the mixed source.
+         */
+        public ISampleSource getSource() {
+            return source;
+        }
+
+        /**
+         * 
+         * @return the gain the layer is faded to.
+         */
+        public float getGain() {
+            return targetGain;
+        }
+
+        /**
+         * Fades the layer to a new gain.
+         * 
+         * @param gain
+         *            the new linear gain, not negative.
+         */
+        public void setGain(float gain) {
+            if (gain < 0f) {
+                throw new IllegalArgumentException("Negative gain " + gain);
+            }
+            this.targetGain = gain;
+        }
+    }
+
+    private final int sampleRate;
+
+    private final int channels;
+
+    private final int blockFrames;
+
+    /**
+     * Receives the samples of one layer.
+     */
+    private final float[] scratch;
+
+    /**
+     * Per frame coefficient of the gain smoothing.
+     */
+    private final float smoothing;
+
+    /**
+     * Replaced on every change, so the render thread reads a consistent
+     * array without locking.
+     */
+    private volatile Layer[] layers = NO_LAYERS;
+
+    /**
+     * 
+     * @param sampleRate
+     *            the sample rate in Hz, shared by all layers.
+     * @param channels
+     *            the number of output channels. Layers have as many channels
+     *            or are mono.
+     * @param blockFrames
+     *            number of frames mixed at once.
+     */
+    public Mixer(int sampleRate, int channels, int blockFrames) {
+        if (sampleRate < 1 || channels < 1 || blockFrames < 1) {
+            throw new IllegalArgumentException("Invalid format: " + channels + " channels, " + sampleRate + " Hz, "
+                    + blockFrames + " frames per block");
+        }
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.blockFrames = blockFrames;
+        this.scratch = new float[blockFrames * channels];
+        this.smoothing = 1f - (float) Math.exp(-1.0 / (SMOOTHING_TIME * sampleRate));
+    }
+
+    /**
+     * Adds a layer that fades in to <b>gain</b>.
+     * 
+     * @param source
+     *            the source to mix.
+     * @param gain
+     *            the linear gain, not negative.
+     * @return the added layer.
+     */
+    public synchronized Layer addLayer(ISampleSource source, float gain) {
+        if (source.getSampleRate() != sampleRate) {
+            throw new IllegalArgumentException("Sample rate " + source.getSampleRate() + " Hz, expected "
+                    + sampleRate + " Hz");
+        }
+        if (source.getChannelCount() != channels && source.getChannelCount() != 1) {
+            throw new IllegalArgumentException(source.getChannelCount() + " channels, expected " + channels
+                    + " or 1");
+        }
+        Layer result = new Layer(source, 0f);
+        result.setGain(gain);
+        Layer[] current = layers;
+        Layer[] changed = new Layer[current.length + 1];
+        System.arraycopy(current, 0, changed, 0, current.length);
+        changed[current.length] = result;
+        layers = changed;
+        return result;
+    }
+
+    /**
+     * Removes a layer immediately. Fade it out with {@link Layer#setGain(float)}
+     * first to avoid a click.
+     * 
+     * @param layer
+     *            the layer to remove.
+     * @return true if the layer was mixed.
+     */
+    public synchronized boolean removeLayer(Layer layer) {
+        Layer[] current = layers;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == layer) {
+                Layer[] changed = new Layer[current.length - 1];
+                System.arraycopy(current, 0, changed, 0, i);
+                System.arraycopy(current, i + 1, changed, i, changed.length - i);
+                layers = changed;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 
+     * @return the number of mixed layers.
+     */
+    public int getLayerCount() {
+        return layers.length;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.ISampleSource#getSampleRate()
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.ISampleSource#getChannelCount()
+     */
+    public int getChannelCount() {
+        return channels;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.ISampleSource#read(float[], int,
+     * int)
+     */
+    public void read(float[] buffer, int offset, int frames) {
+        final Layer[] current = layers;
+        int out = offset;
+        int remaining = frames;
+        while (remaining > 0) {
+            int chunk = Math.min(remaining, blockFrames);
+            int samples = chunk * channels;
+            Arrays.fill(buffer, out, out + samples, 0f);
+            for (Layer layer : current) {
+                mix(layer, buffer, out, chunk);
+            }
+            for (int i = out; i < out + samples; i++) {
+                buffer[i] = softClip(buffer[i]);
+            }
+            out += samples;
+            remaining -= chunk;
+        }
+    }
+
+    /**
+     * Adds <b>frames</b> frames of <b>layer</b> to <b>buffer</b>.
+     */
+    private void mix(Layer layer, float[] buffer, int offset, int frames) {
+        layer.source.read(scratch, 0, frames);
+        final float target = layer.targetGain;
+        final float k = smoothing;
+        float gain = layer.gain;
+        int out = offset;
+        if (layer.source.getChannelCount() == channels) {
+            int in = 0;
+            for (int f = 0; f < frames; f++) {
+                gain += k * (target - gain);
+                for (int c = 0; c < channels; c++) {
+                    buffer[out++] += gain * scratch[in++];
+                }
+            }
+        }
+        else {
+            // mono layer on all channels
+            for (int f = 0; f < frames; f++) {
+                gain += k * (target - gain);
+                float value = gain * scratch[f];
+                for (int c = 0; c < channels; c++) {
+                    buffer[out++] += value;
+                }
+            }
+        }
+        layer.gain = gain;
+    }
+
+    /**
+     * Passes samples up to {@link #KNEE} and maps louder ones smoothly into
+     * (KNEE, 1] with a rational approximation of tanh.
+     * 
+     * @param x
+     *            the sample.
+     * @return the clipped sample in [-1, 1].
+     */
+    static float softClip(float x) {
+        float a = x < 0f ? -x : x;
+        if (a <= KNEE) {
+            return x;
+        }
+        float z = (a - KNEE) / (1f - KNEE);
+        float y = z >= 3f ? 1f : z * (27f + z * z) / (27f + 9f * z * z);
+        float result = KNEE + (1f - KNEE) * y;
+        return x < 0f ? -result : result;
+    }
+}
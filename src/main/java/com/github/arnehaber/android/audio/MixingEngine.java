@@ -0,0 +1,120 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+
+import com.google.inject.Inject;
+
+/**
+ * {@link PcmLoopEngine} that plays the decoded audio file as main layer of a
+ * {@link Mixer}. Further layers, such as rain or a {@link SurfSynthesizer},
+ * are added through {@link #getMixer()} and share the single output track.
+ * Duration and position are those of the main layer. A main layer of another
+ * sample rate is resampled to {@link #SAMPLE_RATE}, a mono one is upmixed by
+ * the mixer.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class MixingEngine extends PcmLoopEngine {
+
+    /**
+     * Sample rate of the mix in Hz. All further layers must use it.
+     */
+    public static final int SAMPLE_RATE = 44100;
+
+    /**
+     * Number of channels of the mix. Layers have as many channels or are
+     * mono.
+     */
+    public static final int CHANNELS = 2;
+
+    /**
+     * Number of frames mixed at once.
+     */
+    private static final int BLOCK_FRAMES = 1024;
+
+    private final Mixer mixer = new Mixer(SAMPLE_RATE, CHANNELS, BLOCK_FRAMES);
+
+    /**
+     * The layer of the decoded audio file. Only accessed on the owning thread.
+     */
+    private Mixer.Layer main;
+
+    /**
+     * Decodes without a cache.
+     */
+    @Inject
+    public MixingEngine() {
+        super();
+    }
+
+    /**
+     * 
+     * @param loader
+     *            loads the decoded audio and its loop points.
+     */
+    public MixingEngine(PcmLoader loader) {
+        super(loader);
+    }
+
+    @Override
+    protected ISampleSource openSource(AudioSource source) throws IOException {
+        removeMain();
+        ISampleSource decoded = super.openSource(source);
+        if (decoded.getChannelCount() > CHANNELS) {
+            throw new IOException("Unable to mix " + decoded.getChannelCount() + " channels");
+        }
+        if (decoded.getSampleRate() != SAMPLE_RATE) {
+            decoded = new ResamplingSource(decoded, SAMPLE_RATE);
+        }
+        // normalizes the main layer only, the other layers keep their gain
+        main = mixer.addLayer(decoded, super.getLevel());
+        return mixer;
+    }
+
+    @Override
+    protected float getLevel() {
+        return 1f;
+    }
+
+    @Override
+    public void release() {
+        super.release();
+        removeMain();
+    }
+
+    private void removeMain() {
+        if (main != null) {
+            mixer.removeLayer(main);
+            main = null;
+        }
+    }
+
+    /**
+     * 
+     * @return the mixer that feeds the output track.
+     */
+    public Mixer getMixer() {
+        return mixer;
+    }
+}
@@ -0,0 +1,221 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.nio.ShortBuffer;
+
+/**
+ * Decoded 16 bit PCM audio, held in memory or mapped from a file.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public final class PcmBuffer {
+
+    /**
+     * Initial capacity in frames when reading a stream of unknown length.
+     */
+    private static final int INITIAL_FRAMES = 65536;
+
+    private final ShortBuffer samples;
+
+    private final int frames;
+
+    private final int channelCount;
+
+    private final int sampleRate;
+
+    /**
+     * 
+     * @param samples
+     *            interleaved samples, at least <b>frames</b> *
+     *            <b>channelCount</b> long.
+     * @param frames
+     *            number of valid frames in <b>samples</b>.
+     * @param channelCount
+     *            number of channels.
+     * @param sampleRate
+     *            sample rate in Hz.
+     */
+    public PcmBuffer(short[] samples, int frames, int channelCount, int sampleRate) {
+        this(ShortBuffer.wrap(samples), frames, channelCount, sampleRate);
+    }
+
+    /**
+     * 
+     * @param samples
+     *            interleaved samples from index 0, at least <b>frames</b> *
+     *            <b>channelCount</b> long. Only read with absolute gets.
+     * @param frames
+     *            number of valid frames in <b>samples</b>.
+     * @param channelCount
+     *            number of channels.
+     * @param sampleRate
+     *            sample rate in Hz.
+     */
+    public PcmBuffer(ShortBuffer samples, int frames, int channelCount, int sampleRate) {
+        if (channelCount < 1 || sampleRate < 1 || frames < 1) {
+            throw new IllegalArgumentException("Invalid PCM format: " + frames + " frames, " + channelCount
+                    + " channels, " + sampleRate + " Hz");
+        }
+        if (samples.capacity() < frames * channelCount) {
+            throw new IllegalArgumentException("Sample array too short for " + frames + " frames");
+        }
+        this.samples = samples;
+        this.frames = frames;
+        this.channelCount = channelCount;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * 
+     * @return the interleaved samples, shared by all readers. Use absolute
+     *         gets only.
+     */
+    public ShortBuffer getSamples() {
+        return samples;
+    }
+
+    /**
+     * 
+     * @return the number of valid frames.
+     */
+    public int getFrames() {
+        return frames;
+    }
+
+    /**
+     * 
+     * @return the number of channels.
+     */
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    /**
+     * 
+     * @return the sample rate in Hz.
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * 
+     * @return the duration in ms.
+     */
+    public int getDuration() {
+        return (int) (frames * 1000L / sampleRate);
+    }
+
+    /**
+     * 
+     * @return a stream of the samples from the first frame on.
+     */
+    public PcmStream openStream() {
+        return new Stream(this);
+    }
+
+    /**
+     * Reads a stream completely into memory. A stream opened by
+     * {@link #openStream()} and not read yet is not copied.
+     * 
+     * @param stream
+     *            the stream to read, stays open.
+     * @return the read audio.
+     * @throws IOException
+     *             if the stream cannot be read or is empty.
+     */
+    public static PcmBuffer read(PcmStream stream) throws IOException {
+        if (stream instanceof Stream && ((Stream) stream).position == 0) {
+            return ((Stream) stream).pcm;
+        }
+        int channels = stream.getChannelCount();
+        int expected = stream.getFrames();
+        // one spare frame, so a stream of the expected length ends without
+        // growing the array
+        short[] samples = new short[(expected >= 0 ? expected + 1 : INITIAL_FRAMES) * channels];
+        int written = 0;
+        while (true) {
+            if (samples.length - written < channels) {
+                int capacity = samples.length / channels;
+                short[] grown = new short[(capacity + Math.max(capacity / 2, INITIAL_FRAMES)) * channels];
+                System.arraycopy(samples, 0, grown, 0, written);
+                samples = grown;
+            }
+            int read = stream.read(samples, written, samples.length - written);
+            if (read < 0) {
+                break;
+            }
+            written += read;
+        }
+        if (written < channels) {
+            throw new IOException("Audio stream is empty");
+        }
+        return new PcmBuffer(samples, written / channels, channels, stream.getSampleRate());
+    }
+
+    /**
+     * Streams the samples of a {@link PcmBuffer}.
+     */
+    private static final class Stream implements PcmStream {
+
+        private final PcmBuffer pcm;
+
+        /**
+         * Index of the next sample.
+         */
+        private int position = 0;
+
+        Stream(PcmBuffer pcm) {
+            this.pcm = pcm;
+        }
+
+        public int getSampleRate() {
+            return pcm.sampleRate;
+        }
+
+        public int getChannelCount() {
+            return pcm.channelCount;
+        }
+
+        public int getFrames() {
+            return pcm.frames;
+        }
+
+        public int read(short[] samples, int offset, int length) {
+            int end = pcm.frames * pcm.channelCount;
+            if (position == end) {
+                return -1;
+            }
+            int count = Math.min(length / pcm.channelCount * pcm.channelCount, end - position);
+            for (int i = 0; i < count; i++) {
+                samples[offset + i] = pcm.samples.get(position + i);
+            }
+            position += count;
+            return count;
+        }
+
+        public void close() {
+        }
+    }
+}
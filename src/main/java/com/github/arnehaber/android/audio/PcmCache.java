@@ -0,0 +1,353 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Stores decoded audio in a directory, so it is decoded only once. Cached
+ * audio is memory mapped and read straight from the file.
+ * <p>
+ * Cached audio is named after the key of its {@link AudioSource}. A cache
+ * file starts with a little endian header: magic, format version, hash of the
+ * key, sample rate, channel count and number of frames. The interleaved 16
+ * bit little endian samples follow. A file whose header does not match the
+ * key or whose size does not match the header is deleted when it is loaded.
+ * <p>
+ * Next to the audio, the cache keeps the {@link LoopPoints} found for a
+ * source in a small file of the same layout: magic, version, hash of the key,
+ * loop start and loop end. Loop points survive {@link #clear()}, so the
+ * analysis runs once per install.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class PcmCache {
+
+    /**
+     * "OWPC"
+     */
+    static final int MAGIC = 0x4F575043;
+
+    static final int VERSION = 2;
+
+    static final int HEADER_BYTES = 28;
+
+    /**
+     * "OWLP"
+     */
+    static final int LOOP_MAGIC = 0x4F574C50;
+
+    static final int LOOP_VERSION = 2;
+
+    static final int LOOP_BYTES = 24;
+
+    /**
+     * Free space in bytes that the cache never uses up.
+     */
+    public static final long DEFAULT_MIN_FREE_SPACE = 64L * 1024 * 1024;
+
+    private static final String SUFFIX = ".pcm";
+
+    private static final String LOOP_SUFFIX = ".loop";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+
+    private final long minFreeSpace;
+
+    /**
+     * 
+     * @param directory
+     *            the cache directory, created on first use.
+     */
+    public PcmCache(File directory) {
+        this(directory, DEFAULT_MIN_FREE_SPACE);
+    }
+
+    /**
+     * 
+     * @param directory
+     *            the cache directory, created on first use.
+     * @param minFreeSpace
+     *            free space in bytes that must remain after storing.
+     */
+    public PcmCache(File directory, long minFreeSpace) {
+        this.directory = directory;
+        this.minFreeSpace = minFreeSpace;
+    }
+
+    /**
+     * Maps the cached audio of a source.
+     * 
+     * @param key
+     *            key of the source, see {@link AudioSource#getKey()}.
+     * @return the mapped audio, or null if it is not cached.
+     * @throws IOException
+     *             if the cache file cannot be read.
+     */
+    public PcmBuffer load(String key) throws IOException {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        PcmBuffer result = null;
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size >= HEADER_BYTES) {
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                map.order(ByteOrder.LITTLE_ENDIAN);
+                int sampleRate = map.getInt(16);
+                int channels = map.getInt(20);
+                int frames = map.getInt(24);
+                boolean valid = map.getInt(0) == MAGIC && map.getInt(4) == VERSION && map.getLong(8) == hash(key)
+                        && sampleRate > 0 && channels > 0 && frames > 0
+                        && size == HEADER_BYTES + 2L * frames * channels;
+                if (valid) {
+                    map.position(HEADER_BYTES);
+                    ShortBuffer samples = map.slice().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+                    result = new PcmBuffer(samples, frames, channels, sampleRate);
+                }
+            }
+        }
+        finally {
+            // the mapping stays valid
+            in.close();
+        }
+        if (result == null) {
+            file.delete();
+        }
+        return result;
+    }
+
+    /**
+     * Writes decoded audio into the cache, unless storage is low. Then the
+     * whole cache is evicted instead.
+     * 
+     * @param key
+     *            key of the source, see {@link AudioSource#getKey()}.
+     * @param pcm
+     *            the decoded audio.
+     * @return true if the audio was stored.
+     * @throws IOException
+     *             if the cache file cannot be written.
+     */
+    public boolean store(String key, PcmBuffer pcm) throws IOException {
+        int samples = pcm.getFrames() * pcm.getChannelCount();
+        long bytes = HEADER_BYTES + 2L * samples;
+        directory.mkdirs();
+        if (directory.getUsableSpace() - bytes < minFreeSpace) {
+            clear();
+            return false;
+        }
+
+        File file = getFile(key);
+        File temp = new File(directory, file.getName() + TEMP_SUFFIX);
+        boolean written = false;
+        RandomAccessFile out = new RandomAccessFile(temp, "rw");
+        try {
+            out.setLength(bytes);
+            MappedByteBuffer map = out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            map.putInt(MAGIC).putInt(VERSION).putLong(hash(key));
+            map.putInt(pcm.getSampleRate()).putInt(pcm.getChannelCount()).putInt(pcm.getFrames());
+            ShortBuffer source = pcm.getSamples().duplicate();
+            source.clear();
+            source.limit(samples);
+            map.slice().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().put(source);
+            map.force();
+            written = true;
+        }
+        finally {
+            out.close();
+            if (!written) {
+                temp.delete();
+            }
+        }
+        replace(temp, file);
+        return true;
+    }
+
+    /**
+     * Reads the cached loop points of a source.
+     * 
+     * @param key
+     *            key of the source, see {@link AudioSource#getKey()}.
+     * @return the loop points, or null if they are not cached.
+     * @throws IOException
+     *             if the cache file cannot be read.
+     */
+    public LoopPoints loadLoopPoints(String key) throws IOException {
+        File file = getLoopFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        ByteBuffer data = ByteBuffer.allocate(LOOP_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        boolean complete;
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            complete = in.length() == LOOP_BYTES;
+            if (complete) {
+                in.readFully(data.array());
+            }
+        }
+        finally {
+            in.close();
+        }
+        int start = data.getInt(16);
+        int end = data.getInt(20);
+        if (complete && data.getInt(0) == LOOP_MAGIC && data.getInt(4) == LOOP_VERSION
+                && data.getLong(8) == hash(key) && start >= 0 && start < end) {
+            return new LoopPoints(start, end);
+        }
+        file.delete();
+        return null;
+    }
+
+    /**
+     * Writes the loop points of a source into the cache.
+     * 
+     * @param key
+     *            key of the source, see {@link AudioSource#getKey()}.
+     * @param points
+     *            the loop points of the decoded audio.
+     * @throws IOException
+     *             if the cache file cannot be written.
+     */
+    public void storeLoopPoints(String key, LoopPoints points) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(LOOP_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        data.putInt(LOOP_MAGIC).putInt(LOOP_VERSION).putLong(hash(key));
+        data.putInt(points.getStart()).putInt(points.getEnd());
+
+        directory.mkdirs();
+        File file = getLoopFile(key);
+        File temp = new File(directory, file.getName() + TEMP_SUFFIX);
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(data.array());
+        }
+        finally {
+            out.close();
+        }
+        replace(temp, file);
+    }
+
+    /**
+     * Moves a completely written temporary file to its final name, so readers
+     * never see a partly written file.
+     */
+    private static void replace(File temp, File file) throws IOException {
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Unable to write " + file);
+        }
+    }
+
+    /**
+     * Deletes all cached audio, but keeps the loop points. Audio that is
+     * already mapped stays readable.
+     */
+    public void clear() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(SUFFIX) || file.getName().endsWith(TEMP_SUFFIX)) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the key of a local file, which changes whenever the file is
+     * replaced or modified.
+     * 
+     * @param type
+     *            prefix that tells how the file is decoded.
+     * @param file
+     *            the file.
+     * @return a key for {@link AudioSource#getKey()}.
+     */
+    public static String getKey(String type, File file) {
+        return type + "-" + Integer.toHexString(file.getAbsolutePath().hashCode()) + "-"
+                + Long.toHexString(file.length()) + "-" + Long.toHexString(file.lastModified());
+    }
+
+    /**
+     * 
+     * @param key
+     *            key of the source.
+     * @return the cache file of the source.
+     */
+    File getFile(String key) {
+        return new File(directory, checkKey(key) + SUFFIX);
+    }
+
+    /**
+     * 
+     * @param key
+     *            key of the source.
+     * @return the loop points file of the source.
+     */
+    File getLoopFile(String key) {
+        return new File(directory, checkKey(key) + LOOP_SUFFIX);
+    }
+
+    /**
+     * Keys become file names, so only a few characters are allowed.
+     */
+    private static String checkKey(String key) {
+        boolean valid = key.length() > 0;
+        for (int i = 0; i < key.length() && valid; i++) {
+            char c = key.charAt(i);
+            valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.'
+                    || c == '_' || c == '-';
+        }
+        if (!valid || key.startsWith(".")) {
+            throw new IllegalArgumentException("Invalid cache key: " + key);
+        }
+        return key;
+    }
+
+    /**
+     * 
+     * @return the 64 bit FNV-1a hash of <b>key</b>.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,203 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+import android.annotation.TargetApi;
+import android.content.res.AssetFileDescriptor;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+
+/**
+ * Decodes a compressed audio file completely into a {@link PcmBuffer}.
+ * Requires API level 16.
+ * 
+ * @author Arne Haber
+ * 
+ */
+@TargetApi(16)
+public class PcmDecoder {
+
+    /**
+     * Timeout for codec buffer operations in us.
+     */
+    private static final long TIMEOUT_US = 10000;
+
+    /**
+     * Extra frames allocated beyond the announced duration, which is rounded
+     * by most extractors.
+     */
+    private static final int SLACK_FRAMES = 4096;
+
+    /**
+     * Optional format keys of the decoder delay and padding. Trimming them
+     * keeps the loop seam gapless.
+     */
+    private static final String KEY_ENCODER_DELAY = "encoder-delay";
+
+    private static final String KEY_ENCODER_PADDING = "encoder-padding";
+
+    /**
+     * Decodes the given audio file.
+     * 
+     * @param audioFile
+     *            the file to decode, stays open.
+     * @return the decoded audio.
+     * @throws IOException
+     *             if the file contains no decodable audio track.
+     */
+    public PcmBuffer decode(AssetFileDescriptor audioFile) throws IOException {
+        return decode(audioFile.getFileDescriptor(), audioFile.getStartOffset(), audioFile.getLength());
+    }
+
+    /**
+     * Decodes the audio file at the given part of a file.
+     * 
+     * @param fd
+     *            the file, stays open.
+     * @param offset
+     *            start of the audio file in bytes.
+     * @param length
+     *            length of the audio file in bytes.
+     * @return the decoded audio.
+     * @throws IOException
+     *             if the file contains no decodable audio track.
+     */
+    public PcmBuffer decode(FileDescriptor fd, long offset, long length) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(fd, offset, length);
+            MediaFormat format = selectAudioTrack(extractor);
+            return decode(extractor, format);
+        }
+        finally {
+            extractor.release();
+        }
+    }
+
+    /**
+     * Selects the first audio track of the <b>extractor</b>.
+     * 
+     * @param extractor
+     *            the extractor to use.
+     * @return the format of the selected track.
+     * @throws IOException
+     *             if there is no audio track.
+     */
+    private MediaFormat selectAudioTrack(MediaExtractor extractor) throws IOException {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            MediaFormat format = extractor.getTrackFormat(i);
+            String mime = format.getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("audio/")) {
+                extractor.selectTrack(i);
+                return format;
+            }
+        }
+        throw new IOException("No audio track found");
+    }
+
+    private PcmBuffer decode(MediaExtractor extractor, MediaFormat format) throws IOException {
+        int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+        int channels = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+        long durationUs = format.containsKey(MediaFormat.KEY_DURATION) ? format.getLong(MediaFormat.KEY_DURATION) : 0;
+        int capacity = (int) (durationUs * sampleRate / 1000000L + SLACK_FRAMES) * channels;
+        short[] samples = new short[capacity];
+        int written = 0;
+
+        MediaCodec codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+        try {
+            codec.configure(format, null, null, 0);
+            codec.start();
+            ByteBuffer[] inputs = codec.getInputBuffers();
+            ByteBuffer[] outputs = codec.getOutputBuffers();
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            boolean inputDone = false;
+            boolean outputDone = false;
+            while (!outputDone) {
+                if (!inputDone) {
+                    int in = codec.dequeueInputBuffer(TIMEOUT_US);
+                    if (in >= 0) {
+                        int size = extractor.readSampleData(inputs[in], 0);
+                        if (size < 0) {
+                            codec.queueInputBuffer(in, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        }
+                        else {
+                            codec.queueInputBuffer(in, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+                int out = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+                if (out >= 0) {
+                    ByteBuffer data = outputs[out];
+                    data.position(info.offset);
+                    data.limit(info.offset + info.size);
+                    ShortBuffer decoded = data.order(ByteOrder.nativeOrder()).asShortBuffer();
+                    int count = decoded.remaining();
+                    if (written + count > samples.length) {
+                        samples = grow(samples, written + count);
+                    }
+                    decoded.get(samples, written, count);
+                    written += count;
+                    codec.releaseOutputBuffer(out, false);
+                    outputDone = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+                }
+                else if (out == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+                    outputs = codec.getOutputBuffers();
+                }
+                else if (out == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    MediaFormat outputFormat = codec.getOutputFormat();
+                    sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                    channels = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                }
+            }
+            codec.stop();
+        }
+        finally {
+            codec.release();
+        }
+
+        int frames = written / channels;
+        int delay = format.containsKey(KEY_ENCODER_DELAY) ? format.getInteger(KEY_ENCODER_DELAY) : 0;
+        int padding = format.containsKey(KEY_ENCODER_PADDING) ? format.getInteger(KEY_ENCODER_PADDING) : 0;
+        if (delay + padding > 0 && delay + padding < frames) {
+            System.arraycopy(samples, delay * channels, samples, 0, (frames - delay) * channels);
+            frames -= delay + padding;
+        }
+        if (frames < 1) {
+            throw new IOException("Audio track is empty");
+        }
+        return new PcmBuffer(samples, frames, channels, sampleRate);
+    }
+
+    private static short[] grow(short[] samples, int minCapacity) {
+        short[] result = new short[Math.max(minCapacity, samples.length + samples.length / 2)];
+        System.arraycopy(samples, 0, result, 0, samples.length);
+        return result;
+    }
+}
@@ -0,0 +1,271 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+
+import android.util.Log;
+
+import com.github.arnehaber.android.helper.LruCache;
+
+/**
+ * Loads the decoded audio and the loop points of {@link AudioSource}s for the
+ * engines and the {@link SoundCatalog}. Recently used audio of sources with a
+ * key is kept in a {@link MemoryCache}, so switching back to it needs neither
+ * decoding nor file access. Otherwise a source is decoded only on first use
+ * and later mapped from a {@link PcmCache}. Both caches are optional and may
+ * be shared by several loaders.
+ * <p>
+ * With a {@link LoudnessIndex}, the loader normalizes the loudness of all
+ * sources with a key to {@link #TARGET_LOUDNESS}. Each source is measured
+ * once, when it is loaded for the first time.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class PcmLoader {
+
+    /**
+     * Loudness all sources are normalized to in LUFS, as recommended by EBU
+     * R128.
+     */
+    public static final double TARGET_LOUDNESS = -23;
+
+    /**
+     * Decoded audio by source key, limited by the heap it takes in bytes.
+     * Audio mapped from the {@link PcmCache} takes no heap and counts as
+     * empty; its pages are reclaimed by the system.
+     */
+    public static class MemoryCache extends LruCache<String, PcmBuffer> {
+
+        /**
+         * 
+         * @param maxBytes
+         *            maximum heap taken by all cached audio in bytes.
+         */
+        public MemoryCache(long maxBytes) {
+            super(maxBytes);
+        }
+
+        @Override
+        protected long sizeOf(String key, PcmBuffer value) {
+            if (!value.getSamples().hasArray()) {
+                // mapped file
+                return 0;
+            }
+            return 2L * value.getFrames() * value.getChannelCount();
+        }
+    }
+
+    private final PcmCache cache;
+
+    private final MemoryCache memory;
+
+    private final LoudnessIndex loudnessIndex;
+
+    private final LoopPointFinder loopPointFinder = new LoopPointFinder();
+
+    /**
+     * Decodes on every load.
+     */
+    public PcmLoader() {
+        this(null, null);
+    }
+
+    /**
+     * 
+     * @param cache
+     *            cache of decoded audio on storage, may be null.
+     * @param memory
+     *            cache of recently used audio, may be null.
+     */
+    public PcmLoader(PcmCache cache, MemoryCache memory) {
+        this(cache, memory, null);
+    }
+
+    /**
+     * 
+     * @param cache
+     *            cache of decoded audio on storage, may be null.
+     * @param memory
+     *            cache of recently used audio, may be null.
+     * @param loudnessIndex
+     *            index of measured loudness, null to play sources as they
+     *            are.
+     */
+    public PcmLoader(PcmCache cache, MemoryCache memory, LoudnessIndex loudnessIndex) {
+        this.cache = cache;
+        this.memory = memory;
+        this.loudnessIndex = loudnessIndex;
+    }
+
+    /**
+     * Decodes the audio of the source, or takes it from one of the caches.
+     * May block for seconds, so it must not be called on the GUI thread.
+     * 
+     * @param source
+     *            the audio to decode.
+     * @return the decoded audio.
+     * @throws IOException
+     *             if the audio cannot be decoded.
+     */
+    public PcmBuffer load(AudioSource source) throws IOException {
+        String key = cache != null || memory != null ? source.getKey() : null;
+        if (key == null) {
+            return read(source);
+        }
+        PcmBuffer pcm = memory != null ? memory.get(key) : null;
+        if (pcm != null) {
+            return pcm;
+        }
+        if (cache != null) {
+            try {
+                pcm = cache.load(key);
+            }
+            catch (IOException e) {
+                Log.w(getClass().getName(), e.getMessage(), e);
+            }
+        }
+        if (pcm == null) {
+            pcm = read(source);
+            if (cache != null) {
+                try {
+                    cache.store(key, pcm);
+                }
+                catch (IOException e) {
+                    // the decoded audio is played anyway
+                    Log.w(getClass().getName(), e.getMessage(), e);
+                }
+            }
+        }
+        if (memory != null) {
+            memory.put(key, pcm);
+        }
+        return pcm;
+    }
+
+    /**
+     * Finds the loop points of decoded audio, or reads them from the
+     * {@link PcmCache}.
+     * 
+     * @param key
+     *            key of the source, see {@link AudioSource#getKey()}, may be
+     *            null.
+     * @param pcm
+     *            the decoded audio of the source.
+     * @return the loop points.
+     */
+    public LoopPoints findLoopPoints(String key, PcmBuffer pcm) {
+        if (cache != null && key != null) {
+            try {
+                LoopPoints points = cache.loadLoopPoints(key);
+                if (points != null && points.getEnd() <= pcm.getFrames()) {
+                    return points;
+                }
+            }
+            catch (IOException e) {
+                Log.w(getClass().getName(), e.getMessage(), e);
+            }
+        }
+        LoopPoints points = loopPointFinder.find(pcm);
+        Log.d(getClass().getName(), "Loop points " + points);
+        if (cache != null && key != null) {
+            try {
+                cache.storeLoopPoints(key, points);
+            }
+            catch (IOException e) {
+                Log.w(getClass().getName(), e.getMessage(), e);
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Measures the loudness of decoded audio, or reads it from the
+     * {@link LoudnessIndex}.
+     * 
+     * @param key
+     *            key of the source, see {@link AudioSource#getKey()}, may be
+     *            null.
+     * @param pcm
+     *            the decoded audio of the source.
+     * @return the loudness.
+     */
+    public Loudness getLoudness(String key, PcmBuffer pcm) {
+        if (loudnessIndex != null && key != null) {
+            try {
+                Loudness loudness = loudnessIndex.get(key);
+                if (loudness != null) {
+                    return loudness;
+                }
+            }
+            catch (IOException e) {
+                Log.w(getClass().getName(), e.getMessage(), e);
+            }
+        }
+        Loudness loudness = new LoudnessMeter().measure(pcm);
+        Log.d(getClass().getName(), "Loudness " + loudness);
+        if (loudnessIndex != null && key != null) {
+            try {
+                loudnessIndex.put(key, loudness);
+            }
+            catch (IOException e) {
+                Log.w(getClass().getName(), e.getMessage(), e);
+            }
+        }
+        return loudness;
+    }
+
+    /**
+     * 
+     * @param key
+     *            key of the source, see {@link AudioSource#getKey()}, may be
+     *            null.
+     * @param pcm
+     *            the decoded audio of the source.
+     * @return the gain that normalizes the loudness of the source, 1 without
+     *         a {@link LoudnessIndex} or key.
+     */
+    public float getGain(String key, PcmBuffer pcm) {
+        if (loudnessIndex == null || key == null) {
+            return 1f;
+        }
+        return getLoudness(key, pcm).getGain(TARGET_LOUDNESS);
+    }
+
+    /**
+     * 
+     * @return the cache of recently used audio, or null.
+     */
+    public MemoryCache getMemoryCache() {
+        return memory;
+    }
+
+    private static PcmBuffer read(AudioSource source) throws IOException {
+        PcmStream stream = source.open();
+        try {
+            return PcmBuffer.read(stream);
+        }
+        finally {
+            stream.close();
+        }
+    }
+}
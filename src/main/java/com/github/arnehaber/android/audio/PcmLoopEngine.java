@@ -0,0 +1,161 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+
+import com.google.inject.Inject;
+
+/**
+ * {@link IAudioEngine} that decodes the audio of an {@link AudioSource} once
+ * into memory and streams it in a gapless loop through an
+ * {@link android.media.AudioTrack}. Decoding happens synchronously on the
+ * owning thread. The audio is loaded by a {@link PcmLoader}; with its caches
+ * a source with a key is decoded only on first use.
+ * <p>
+ * The loop boundaries are found by a {@link LoopPointFinder}, and the seam is
+ * hidden by a crossfade. With a {@link PcmCache} the loop points are found
+ * only once as well.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class PcmLoopEngine extends AudioTrackEngine {
+
+    /**
+     * Default length of the crossfade at the loop seam in ms.
+     */
+    public static final int DEFAULT_CROSSFADE_TIME = 150;
+
+    private final PcmLoader loader;
+
+    /**
+     * Length of the crossfade at the loop seam in ms.
+     */
+    private volatile int crossfadeTime = DEFAULT_CROSSFADE_TIME;
+
+    private volatile LoopingSampleSource source;
+
+    /**
+     * Gain that normalizes the loudness of the audio decoded last. Only
+     * accessed on the owning thread.
+     */
+    private float level = 1f;
+
+    /**
+     * Decodes without a cache.
+     */
+    @Inject
+    public PcmLoopEngine() {
+        this(new PcmLoader());
+    }
+
+    /**
+     * 
+     * @param loader
+     *            loads the decoded audio and its loop points.
+     */
+    public PcmLoopEngine(PcmLoader loader) {
+        this.loader = loader;
+    }
+
+    @Override
+    protected ISampleSource openSource(AudioSource audio) throws IOException {
+        PcmBuffer pcm = decode(audio);
+        LoopPoints points = loader.findLoopPoints(audio.getKey(), pcm);
+        int crossfade = (int) ((long) crossfadeTime * pcm.getSampleRate() / 1000);
+        // recordings too short for the analysis are looped without crossfade
+        crossfade = Math.min(crossfade, Math.min(points.getStart(), points.getEnd() - points.getStart()));
+        source = new LoopingSampleSource(pcm, points.getStart(), points.getEnd(), crossfade);
+        return source;
+    }
+
+    /**
+     * Sets the length of the crossfade at the loop seam. Applies to the next
+     * prepare.
+     * 
+     * @param crossfadeTime
+     *            the time in ms, between 0 and
+     *            {@link LoopPointFinder#MAX_CROSSFADE_TIME}.
+     */
+    public void setCrossfadeTime(int crossfadeTime) {
+        if (crossfadeTime < 0 || crossfadeTime > LoopPointFinder.MAX_CROSSFADE_TIME) {
+            throw new IllegalArgumentException("Invalid crossfade time: " + crossfadeTime + " ms");
+        }
+        this.crossfadeTime = crossfadeTime;
+    }
+
+    /**
+     * Decodes the audio of the source, or maps its decoded audio from the
+     * caches, and looks up its loudness. Called on the owning thread.
+     * 
+     * @param source
+     *            the audio to decode.
+     * @return the decoded audio.
+     * @throws IOException
+     *             if the audio cannot be decoded.
+     */
+    protected PcmBuffer decode(AudioSource source) throws IOException {
+        PcmBuffer pcm = loader.load(source);
+        level = loader.getGain(source.getKey(), pcm);
+        return pcm;
+    }
+
+    @Override
+    protected float getLevel() {
+        return level;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#rewind()
+     */
+    public void rewind() {
+        source.rewind();
+    }
+
+    @Override
+    public void release() {
+        super.release();
+        source = null;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#getDuration()
+     */
+    public int getDuration() {
+        LoopingSampleSource current = source;
+        return current != null ? (int) (current.getLoopFrames() * 1000L / current.getSampleRate()) : 0;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#getCurrentPosition()
+     */
+    public int getCurrentPosition() {
+        LoopingSampleSource current = source;
+        return current != null ? (int) ((current.getPosition() - current.getLoopStart()) * 1000L / current.getSampleRate()) : 0;
+    }
+}
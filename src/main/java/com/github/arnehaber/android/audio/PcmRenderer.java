@@ -0,0 +1,97 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Renders an {@link ISampleSource} into 16 bit PCM blocks as expected by
+ * {@link android.media.AudioTrack}. All buffers are allocated up front, so
+ * rendering does not allocate.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class PcmRenderer {
+
+    private final ISampleSource source;
+
+    private final int blockFrames;
+
+    private final float[] floatBlock;
+
+    /**
+     * 
+     * @param source
+     *            the source to render.
+     * @param blockFrames
+     *            maximum number of frames rendered per call.
+     */
+    public PcmRenderer(ISampleSource source, int blockFrames) {
+        this.source = source;
+        this.blockFrames = blockFrames;
+        this.floatBlock = new float[blockFrames * source.getChannelCount()];
+    }
+
+    /**
+     * Renders the next <b>frames</b> frames into <b>out</b>.
+     * 
+     * @param out
+     *            destination of the interleaved 16 bit samples.
+     * @param frames
+     *            number of frames to render, at most the block size.
+     * @return the number of samples written.
+     */
+    public int render(short[] out, int frames) {
+        if (frames > blockFrames) {
+            throw new IllegalArgumentException("At most " + blockFrames + " frames per block");
+        }
+        source.read(floatBlock, 0, frames);
+        int samples = frames * source.getChannelCount();
+        for (int i = 0; i < samples; i++) {
+            float s = floatBlock[i];
+            if (s >= 1f) {
+                out[i] = Short.MAX_VALUE;
+            }
+            else if (s <= -1f) {
+                out[i] = Short.MIN_VALUE;
+            }
+            else {
+                out[i] = (short) (s * 32768f);
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * 
+     * @return the rendered source.
+     */
+    public ISampleSource getSource() {
+        return source;
+    }
+
+    /**
+     * 
+     * @return the maximum number of frames per block.
+     */
+    public int getBlockFrames() {
+        return blockFrames;
+    }
+}
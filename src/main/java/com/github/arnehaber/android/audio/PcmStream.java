@@ -0,0 +1,69 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Sequential stream of interleaved 16 bit PCM samples, as opened from an
+ * {@link AudioSource}. Plain Java, so decoding can run off the device.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public interface PcmStream extends Closeable {
+
+    /**
+     * 
+     * @return the sample rate in Hz.
+     */
+    int getSampleRate();
+
+    /**
+     * 
+     * @return the number of interleaved channels.
+     */
+    int getChannelCount();
+
+    /**
+     * 
+     * @return the number of frames in the stream, or -1 if it is not known in
+     *         advance.
+     */
+    int getFrames();
+
+    /**
+     * Reads the next samples. Only whole frames are read.
+     * 
+     * @param samples
+     *            destination of the interleaved samples.
+     * @param offset
+     *            index of the first sample to write.
+     * @param length
+     *            maximum number of samples to read, at least the channel
+     *            count.
+     * @return the number of samples read, or -1 at the end of the stream.
+     * @throws IOException
+     *             if the audio cannot be read.
+     */
+    int read(short[] samples, int offset, int length) throws IOException;
+}
@@ -0,0 +1,106 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.Resources;
+
+/**
+ * {@link AssetSource} of a compressed raw resource of the app, decoded by a
+ * {@link PcmDecoder}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class RawResourceSource implements AssetSource {
+
+    private final Resources resources;
+
+    private final int id;
+
+    /**
+     * Key derived from the position of the resource in the APK, which
+     * changes with every update of the app. Created on first use.
+     */
+    private volatile String key;
+
+    /**
+     * 
+     * @param resources
+     *            the resources of the app.
+     * @param id
+     *            id of the raw resource, which must be stored uncompressed in
+     *            the APK.
+     */
+    public RawResourceSource(Resources resources, int id) {
+        this.resources = resources;
+        this.id = id;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.AudioSource#getKey()
+     */
+    public String getKey() throws IOException {
+        if (key == null) {
+            AssetFileDescriptor audioFile = openFd();
+            try {
+                key = "raw-" + Long.toHexString(audioFile.getStartOffset()) + "-"
+                        + Long.toHexString(audioFile.getLength());
+            }
+            finally {
+                audioFile.close();
+            }
+        }
+        return key;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.AssetSource#openFd()
+     */
+    public AssetFileDescriptor openFd() throws IOException {
+        AssetFileDescriptor audioFile = resources.openRawResourceFd(id);
+        if (audioFile == null) {
+            throw new IOException("Raw resource " + Integer.toHexString(id) + " is compressed");
+        }
+        return audioFile;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.AudioSource#open()
+     */
+    public PcmStream open() throws IOException {
+        AssetFileDescriptor audioFile = openFd();
+        try {
+            return new PcmDecoder().decode(audioFile).openStream();
+        }
+        finally {
+            audioFile.close();
+        }
+    }
+}
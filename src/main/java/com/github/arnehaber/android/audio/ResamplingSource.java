@@ -0,0 +1,151 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+/**
+ * {@link ISampleSource} that converts the sample rate of another source by
+ * linear interpolation. The rates are stepped exactly, so the output does not
+ * drift against the source. Meant for broadband ambient recordings, where
+ * the aliasing of the interpolation is not audible.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class ResamplingSource implements ISampleSource {
+
+    /**
+     * Number of source frames read at once.
+     */
+    private static final int BLOCK_FRAMES = 256;
+
+    private final ISampleSource source;
+
+    private final int sampleRate;
+
+    private final int channels;
+
+    /**
+     * Source frames read ahead.
+     */
+    private final float[] block;
+
+    /**
+     * Next frame to take from {@link #block}.
+     */
+    private int blockPosition = BLOCK_FRAMES;
+
+    /**
+     * Source frame before the current output frame.
+     */
+    private float[] previous;
+
+    /**
+     * Source frame after the current output frame.
+     */
+    private float[] next;
+
+    /**
+     * Distance of the output frame from {@link #previous}, in units of
+     * 1 / {@link #sampleRate} source frames.
+     */
+    private int phase = 0;
+
+    private boolean primed = false;
+
+    /**
+     * 
+     * @param source
+     *            the source to convert.
+     * @param sampleRate
+     *            the output sample rate in Hz.
+     */
+    public ResamplingSource(ISampleSource source, int sampleRate) {
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("Invalid sample rate " + sampleRate + " Hz");
+        }
+        this.source = source;
+        this.sampleRate = sampleRate;
+        this.channels = source.getChannelCount();
+        this.block = new float[BLOCK_FRAMES * channels];
+        this.previous = new float[channels];
+        this.next = new float[channels];
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.ISampleSource#getSampleRate()
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.ISampleSource#getChannelCount()
+     */
+    public int getChannelCount() {
+        return channels;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.ISampleSource#read(float[], int,
+     * int)
+     */
+    public void read(float[] buffer, int offset, int frames) {
+        if (!primed) {
+            fetch(previous);
+            fetch(next);
+            primed = true;
+        }
+        final int step = source.getSampleRate();
+        final float scale = 1f / sampleRate;
+        int out = offset;
+        for (int f = 0; f < frames; f++) {
+            float t = phase * scale;
+            for (int c = 0; c < channels; c++) {
+                buffer[out++] = previous[c] + (next[c] - previous[c]) * t;
+            }
+            phase += step;
+            while (phase >= sampleRate) {
+                phase -= sampleRate;
+                float[] swap = previous;
+                previous = next;
+                next = swap;
+                fetch(next);
+            }
+        }
+    }
+
+    /**
+     * Copies the next source frame into <b>frame</b>.
+     */
+    private void fetch(float[] frame) {
+        if (blockPosition == BLOCK_FRAMES) {
+            source.read(block, 0, BLOCK_FRAMES);
+            blockPosition = 0;
+        }
+        System.arraycopy(block, blockPosition * channels, frame, 0, channels);
+        blockPosition++;
+    }
+}
@@ -0,0 +1,272 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import android.content.ComponentCallbacks2;
+
+/**
+ * Indexed list of the sounds the app can play. The metadata of a sound is
+ * loaded on first request and kept for the lifetime of the catalog. The
+ * decoded audio is loaded through a {@link PcmLoader}, so a sound just
+ * analysed or recently played is still in its {@link PcmLoader.MemoryCache}
+ * when it is played, as long as the byte budget of the cache allows.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class SoundCatalog {
+
+    /**
+     * A sound of the catalog.
+     */
+    public static class Sound {
+
+        private final String id;
+
+        private final AudioSource source;
+
+        private volatile Info info;
+
+        Sound(String id, AudioSource source) {
+            this.id = id;
+            this.source = source;
+        }
+
+        /**
+         * 
+         * @return the unique id of the sound.
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * 
+         * @return the audio of the sound.
+         */
+        public AudioSource getSource() {
+            return source;
+        }
+    }
+
+    /**
+     * Metadata of a decoded sound.
+     */
+    public static class Info {
+
+        private final int duration;
+
+        private final int sampleRate;
+
+        private final int channelCount;
+
+        private final LoopPoints loopPoints;
+
+        private final Loudness loudness;
+
+        /**
+         * 
+         * @param pcm
+         *            the decoded audio.
+         * @param loopPoints
+         *            the loop points of the decoded audio.
+         * @param loudness
+         *            the loudness of the decoded audio.
+         */
+        public Info(PcmBuffer pcm, LoopPoints loopPoints, Loudness loudness) {
+            this.duration = (int) (pcm.getFrames() * 1000L / pcm.getSampleRate());
+            this.sampleRate = pcm.getSampleRate();
+            this.channelCount = pcm.getChannelCount();
+            this.loopPoints = loopPoints;
+            this.loudness = loudness;
+        }
+
+        /**
+         * 
+         * @return the length of the decoded audio in ms.
+         */
+        public int getDuration() {
+            return duration;
+        }
+
+        /**
+         * 
+         * @return the sample rate in Hz.
+         */
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        /**
+         * 
+         * @return the number of channels.
+         */
+        public int getChannelCount() {
+            return channelCount;
+        }
+
+        /**
+         * 
+         * @return the loop points in frames.
+         */
+        public LoopPoints getLoopPoints() {
+            return loopPoints;
+        }
+
+        /**
+         * 
+         * @return the integrated loudness and peak.
+         */
+        public Loudness getLoudness() {
+            return loudness;
+        }
+    }
+
+    private final List<Sound> sounds = new ArrayList<Sound>();
+
+    private final PcmLoader loader;
+
+    /**
+     * 
+     * @param loader
+     *            loads the audio of the sounds, should be the loader of the
+     *            engines to share its caches.
+     */
+    public SoundCatalog(PcmLoader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Appends a sound. Sounds are added while the app starts and never
+     * removed.
+     * 
+     * @param id
+     *            unique id of the sound.
+     * @param source
+     *            the audio of the sound.
+     */
+    public synchronized void add(String id, AudioSource source) {
+        if (indexOf(id) >= 0) {
+            throw new IllegalArgumentException("Duplicate sound: " + id);
+        }
+        sounds.add(new Sound(id, source));
+    }
+
+    /**
+     * 
+     * @return the number of sounds.
+     */
+    public synchronized int size() {
+        return sounds.size();
+    }
+
+    /**
+     * 
+     * @param index
+     *            index of the sound.
+     * @return the sound at <b>index</b>.
+     */
+    public synchronized Sound get(int index) {
+        return sounds.get(index);
+    }
+
+    /**
+     * 
+     * @param id
+     *            id of a sound.
+     * @return the index of the sound, or -1 if there is none.
+     */
+    public synchronized int indexOf(String id) {
+        for (int i = 0; i < sounds.size(); i++) {
+            if (sounds.get(i).id.equals(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the metadata of a sound, decoding and analysing it on the first
+     * request. Must not be called on the GUI thread.
+     * 
+     * @param index
+     *            index of the sound.
+     * @return the metadata of the sound.
+     * @throws IOException
+     *             if the sound cannot be decoded.
+     */
+    public Info getInfo(int index) throws IOException {
+        Sound sound = get(index);
+        Info info = sound.info;
+        if (info == null) {
+            PcmBuffer pcm = loader.load(sound.source);
+            String key = sound.source.getKey();
+            info = new Info(pcm, loader.findLoopPoints(key, pcm), loader.getLoudness(key, pcm));
+            sound.info = info;
+        }
+        return info;
+    }
+
+    /**
+     * Shrinks the cache of recently used audio. Audio in use stays valid.
+     * 
+     * @param level
+     *            the level passed to
+     *            {@link ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    public void onTrimMemory(int level) {
+        PcmLoader.MemoryCache memory = loader.getMemoryCache();
+        if (memory == null) {
+            return;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            memory.evictAll();
+        }
+        else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                && level != ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            memory.trimToSize(memory.maxSize() / 2);
+        }
+    }
+
+    /**
+     * 
+     * @return the number of loads served by the cache of recently used audio.
+     */
+    public long getCacheHits() {
+        PcmLoader.MemoryCache memory = loader.getMemoryCache();
+        return memory != null ? memory.hitCount() : 0;
+    }
+
+    /**
+     * 
+     * @return the number of loads the cache of recently used audio could not
+     *         serve.
+     */
+    public long getCacheMisses() {
+        PcmLoader.MemoryCache memory = loader.getMemoryCache();
+        return memory != null ? memory.missCount() : 0;
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * {@link IAudioEngine} that plays endless surf from a {@link SurfSynthesizer}
+ * instead of an {@link AudioSource}, so nothing is decoded or held in memory. The surf
+ * has no duration and no position, both are reported as 0.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class SurfSynthEngine extends AudioTrackEngine {
+
+    /**
+     * Ignores <b>source</b>.
+     */
+    @Override
+    protected ISampleSource openSource(AudioSource source) {
+        return new SurfSynthesizer();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#rewind()
+     */
+    public void rewind() {
+        // endless surf has no start to return to
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#getDuration()
+     */
+    public int getDuration() {
+        return 0;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.IAudioEngine#getCurrentPosition()
+     */
+    public int getCurrentPosition() {
+        return 0;
+    }
+}
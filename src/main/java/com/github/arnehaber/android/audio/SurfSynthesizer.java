@@ -0,0 +1,309 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Endless {@link ISampleSource} that synthesizes ocean surf from shaped noise.
+ * A quiet bed of brown noise models the distant sea. Waves are pink noise
+ * through a low pass whose cut off follows a swell envelope: a wave builds up
+ * slowly, breaks and washes out. Period, height and stereo position of each
+ * wave are random, and the noise comes from a xorshift generator with a
+ * period of 2^64 - 1, so the output does not repeat within any realistic play
+ * time.
+ * <p>
+ * Envelope and filter coefficients are computed once per control block of
+ * {@value #CONTROL_FRAMES} frames and interpolated in between. Reading does
+ * not allocate.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class SurfSynthesizer implements ISampleSource {
+
+    /**
+     * Default sample rate in Hz.
+     */
+    public static final int DEFAULT_SAMPLE_RATE = 44100;
+
+    /**
+     * Number of frames per control block.
+     */
+    static final int CONTROL_FRAMES = 64;
+
+    /**
+     * Minimum period of a wave in s.
+     */
+    static final float MIN_PERIOD = 6f;
+
+    /**
+     * Maximum period of a wave in s.
+     */
+    static final float MAX_PERIOD = 14f;
+
+    /**
+     * Share of the period in which a wave builds up.
+     */
+    private static final float RISE = 0.35f;
+
+    /**
+     * Level of the brown noise bed.
+     */
+    private static final float BED_GAIN = 0.25f;
+
+    /**
+     * Level of the breaking waves.
+     */
+    private static final float SURF_GAIN = 0.7f;
+
+    /**
+     * Low pass cut off of a calm sea in Hz.
+     */
+    private static final float MIN_CUTOFF = 200f;
+
+    /**
+     * Low pass cut off of a breaking wave in Hz.
+     */
+    private static final float MAX_CUTOFF = 3200f;
+
+    /**
+     * Scales the upper 24 bits of a random long into [-1, 1).
+     */
+    private static final float RANDOM_TO_FLOAT = 1f / (1 << 23);
+
+    private final int sampleRate;
+
+    private final int channels;
+
+    /**
+     * State of the xorshift generator, never 0.
+     */
+    private long random;
+
+    /**
+     * Position in the current wave in [0, 1).
+     */
+    private float phase = 1f;
+
+    /**
+     * Phase increment per control block of the current wave.
+     */
+    private float phaseStep;
+
+    /**
+     * Height of the current wave in [0.5, 1].
+     */
+    private float height;
+
+    /**
+     * Decay rate of the current wave after it broke.
+     */
+    private float decay;
+
+    /**
+     * Stereo position of the current wave in [-0.5, 0.5].
+     */
+    private float pan;
+
+    private float envelope = 0f;
+
+    private float envelopeStep = 0f;
+
+    /**
+     * Low pass coefficient of the current control block.
+     */
+    private float lowPass;
+
+    /**
+     * Frames left in the current control block.
+     */
+    private int controlFrames = 0;
+
+    // filter states and wave gain per channel
+    private final float[] brown;
+
+    private final float[] pink0;
+
+    private final float[] pink1;
+
+    private final float[] pink2;
+
+    private final float[] low;
+
+    private final float[] gain;
+
+    /**
+     * Stereo surf at the default sample rate, seeded from the clock.
+     */
+    public SurfSynthesizer() {
+        this(DEFAULT_SAMPLE_RATE, 2, System.nanoTime());
+    }
+
+    /**
+     * 
+     * @param sampleRate
+     *            the sample rate in Hz.
+     * @param channels
+     *            number of channels, 1 or 2.
+     * @param seed
+     *            seed of the noise and of the random wave parameters. Equal
+     *            seeds produce equal output.
+     */
+    public SurfSynthesizer(int sampleRate, int channels, long seed) {
+        if (sampleRate < 1 || channels < 1 || channels > 2) {
+            throw new IllegalArgumentException("Invalid format: " + channels + " channels, " + sampleRate + " Hz");
+        }
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        // a zero state would only produce zeros
+        this.random = seed != 0 ? seed : 0x9E3779B97F4A7C15L;
+        this.brown = new float[channels];
+        this.pink0 = new float[channels];
+        this.pink1 = new float[channels];
+        this.pink2 = new float[channels];
+        this.low = new float[channels];
+        this.gain = new float[channels];
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.ISampleSource#getSampleRate()
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.ISampleSource#getChannelCount()
+     */
+    public int getChannelCount() {
+        return channels;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.ISampleSource#read(float[], int,
+     * int)
+     */
+    public void read(float[] buffer, int offset, int frames) {
+        int out = offset;
+        int remaining = frames;
+        while (remaining > 0) {
+            if (controlFrames == 0) {
+                updateControl();
+            }
+            int chunk = Math.min(remaining, controlFrames);
+            float env = envelope;
+            final float step = envelopeStep;
+            final float a = lowPass;
+            for (int i = 0; i < chunk; i++) {
+                env += step;
+                for (int c = 0; c < channels; c++) {
+                    float white = nextNoise();
+                    // leaky integrator
+                    float b = (brown[c] + 0.02f * white) * 0.98f;
+                    brown[c] = b;
+                    // pink noise after Paul Kellet's economy filter
+                    float p0 = 0.99765f * pink0[c] + 0.0990460f * white;
+                    float p1 = 0.96300f * pink1[c] + 0.2965164f * white;
+                    float p2 = 0.57000f * pink2[c] + 1.0526913f * white;
+                    pink0[c] = p0;
+                    pink1[c] = p1;
+                    pink2[c] = p2;
+                    float pink = (p0 + p1 + p2 + 0.1848f * white) * 0.11f;
+                    float l = low[c] + a * (pink - low[c]);
+                    low[c] = l;
+                    buffer[out++] = BED_GAIN * 3.5f * b + SURF_GAIN * env * gain[c] * l;
+                }
+            }
+            envelope = env;
+            controlFrames -= chunk;
+            remaining -= chunk;
+        }
+    }
+
+    /**
+     * Advances the swell by one control block and computes its envelope
+     * target, cut off and channel gains.
+     */
+    private void updateControl() {
+        phase += phaseStep;
+        if (phase >= 1f) {
+            startWave();
+        }
+        float target;
+        if (phase < RISE) {
+            float x = phase / RISE;
+            target = height * x * x * (3f - 2f * x);
+        }
+        else {
+            target = height * (float) Math.exp(-decay * (phase - RISE) / (1f - RISE));
+        }
+        envelopeStep = (target - envelope) / CONTROL_FRAMES;
+
+        float cutoff = MIN_CUTOFF + (MAX_CUTOFF - MIN_CUTOFF) * target;
+        lowPass = 1f - (float) Math.exp(-2 * Math.PI * cutoff / sampleRate);
+        controlFrames = CONTROL_FRAMES;
+    }
+
+    /**
+     * Draws the parameters of the next wave.
+     */
+    private void startWave() {
+        float period = MIN_PERIOD + (MAX_PERIOD - MIN_PERIOD) * nextUniform();
+        phase = 0f;
+        phaseStep = CONTROL_FRAMES / (period * sampleRate);
+        height = 0.5f + 0.5f * nextUniform();
+        decay = 3f + 2f * nextUniform();
+        pan = nextUniform() - 0.5f;
+        if (channels == 1) {
+            gain[0] = 1f;
+        }
+        else {
+            gain[0] = 1f - pan;
+            gain[1] = 1f + pan;
+        }
+    }
+
+    /**
+     * 
+     * @return white noise in [-1, 1).
+     */
+    private float nextNoise() {
+        long x = random;
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        random = x;
+        return ((x * 2685821657736338717L) >> 40) * RANDOM_TO_FLOAT;
+    }
+
+    /**
+     * 
+     * @return a uniform random number in [0, 1).
+     */
+    private float nextUniform() {
+        return 0.5f * (nextNoise() + 1f);
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.google.inject.Provider;
+
+/**
+ * {@link AudioSource} that renders a synthesizer, such as the
+ * {@link SurfSynthesizer}, for a fixed duration. Each stream renders a new
+ * synthesizer. Synthesized audio is cheaper to render again than to read
+ * from a cache, so it is not cached.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class SynthesizedSource implements AudioSource {
+
+    /**
+     * Number of frames rendered at once.
+     */
+    private static final int BLOCK_FRAMES = 1024;
+
+    private final Provider<? extends ISampleSource> synthesizers;
+
+    private final int duration;
+
+    /**
+     * 
+     * @param synthesizers
+     *            provides a new synthesizer for each stream.
+     * @param duration
+     *            length of each stream in ms.
+     */
+    public SynthesizedSource(Provider<? extends ISampleSource> synthesizers, int duration) {
+        if (duration <= 0) {
+            throw new IllegalArgumentException("Invalid duration: " + duration + " ms");
+        }
+        this.synthesizers = synthesizers;
+        this.duration = duration;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.AudioSource#getKey()
+     */
+    public String getKey() {
+        return null;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.AudioSource#open()
+     */
+    public PcmStream open() {
+        ISampleSource synthesizer = synthesizers.get();
+        int frames = (int) ((long) duration * synthesizer.getSampleRate() / 1000);
+        return new SynthesizedStream(new PcmRenderer(synthesizer, BLOCK_FRAMES), frames);
+    }
+
+    /**
+     * Renders blocks of the synthesizer until the duration is reached.
+     */
+    private static final class SynthesizedStream implements PcmStream {
+
+        private final PcmRenderer renderer;
+
+        private final int channels;
+
+        private final int frames;
+
+        private final short[] block;
+
+        private int framesRead = 0;
+
+        SynthesizedStream(PcmRenderer renderer, int frames) {
+            this.renderer = renderer;
+            this.channels = renderer.getSource().getChannelCount();
+            this.frames = frames;
+            this.block = new short[BLOCK_FRAMES * channels];
+        }
+
+        public int getSampleRate() {
+            return renderer.getSource().getSampleRate();
+        }
+
+        public int getChannelCount() {
+            return channels;
+        }
+
+        public int getFrames() {
+            return frames;
+        }
+
+        public int read(short[] samples, int offset, int length) {
+            int count = Math.min(Math.min(length / channels, BLOCK_FRAMES), frames - framesRead);
+            if (count <= 0) {
+                return -1;
+            }
+            int written = renderer.render(block, count);
+            System.arraycopy(block, 0, samples, offset, written);
+            framesRead += count;
+            return written;
+        }
+
+        public void close() {
+        }
+    }
+}
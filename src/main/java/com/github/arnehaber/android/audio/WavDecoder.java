@@ -0,0 +1,282 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes RIFF WAVE audio in plain Java. Supports integer PCM with 8, 16, 24
+ * and 32 bits and 32 bit float samples, also in the extensible format.
+ * Samples are converted to 16 bit while they are streamed, so nothing but a
+ * small block is held in memory.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class WavDecoder {
+
+    static final int FORMAT_PCM = 1;
+
+    static final int FORMAT_FLOAT = 3;
+
+    static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+    /**
+     * Number of frames converted at once.
+     */
+    private static final int BLOCK_FRAMES = 4096;
+
+    /**
+     * 
+     * @param header
+     *            the first 12 bytes of a file.
+     * @return true, if <b>header</b> starts a RIFF WAVE file.
+     */
+    public static boolean isWave(byte[] header) {
+        return header.length >= 12 && header[0] == 'R' && header[1] == 'I' && header[2] == 'F' && header[3] == 'F'
+                && header[8] == 'W' && header[9] == 'A' && header[10] == 'V' && header[11] == 'E';
+    }
+
+    /**
+     * Reads the header of a WAVE file up to the samples.
+     * 
+     * @param in
+     *            the WAVE file, closed by the returned stream.
+     * @return a stream of the samples.
+     * @throws IOException
+     *             if <b>in</b> is not a supported WAVE file.
+     */
+    public PcmStream decode(InputStream in) throws IOException {
+        boolean decoded = false;
+        try {
+            byte[] chunk = new byte[40];
+            readFully(in, chunk, 12);
+            if (!isWave(chunk)) {
+                throw new IOException("Not a RIFF WAVE file");
+            }
+            int format = 0;
+            int channels = 0;
+            int sampleRate = 0;
+            int blockAlign = 0;
+            int bits = 0;
+            while (true) {
+                readFully(in, chunk, 8);
+                long size = getInt(chunk, 4) & 0xFFFFFFFFL;
+                if (matches(chunk, "fmt ")) {
+                    if (size < 16) {
+                        throw new IOException("Invalid fmt chunk");
+                    }
+                    int read = (int) Math.min(size, chunk.length);
+                    readFully(in, chunk, read);
+                    skip(in, size - read + (size & 1));
+                    format = getShort(chunk, 0);
+                    channels = getShort(chunk, 2);
+                    sampleRate = getInt(chunk, 4);
+                    blockAlign = getShort(chunk, 12);
+                    bits = getShort(chunk, 14);
+                    if (format == FORMAT_EXTENSIBLE && read >= 26) {
+                        // the sub format GUID starts with the format code
+                        format = getShort(chunk, 24);
+                    }
+                }
+                else if (matches(chunk, "data")) {
+                    if (channels == 0) {
+                        throw new IOException("Missing fmt chunk");
+                    }
+                    if (format != FORMAT_PCM && !(format == FORMAT_FLOAT && bits == 32)) {
+                        throw new IOException("Unsupported WAVE format " + format + " with " + bits + " bits");
+                    }
+                    if ((bits != 8 && bits != 16 && bits != 24 && bits != 32) || blockAlign != channels * bits / 8
+                            || sampleRate <= 0) {
+                        throw new IOException("Unsupported WAVE layout: " + channels + " channels, " + bits
+                                + " bits, " + sampleRate + " Hz");
+                    }
+                    // a size of 0 or beyond the file is written by streaming
+                    // encoders, such data is read up to the end
+                    long frames = size > 0 ? size / blockAlign : -1;
+                    PcmStream result = new WavStream(in, format, channels, sampleRate, bits, frames);
+                    decoded = true;
+                    return result;
+                }
+                else {
+                    skip(in, size + (size & 1));
+                }
+            }
+        }
+        finally {
+            if (!decoded) {
+                in.close();
+            }
+        }
+    }
+
+    private static boolean matches(byte[] chunk, String id) {
+        for (int i = 0; i < 4; i++) {
+            if (chunk[i] != id.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int getShort(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8;
+    }
+
+    private static int getInt(byte[] data, int offset) {
+        return getShort(data, offset) | getShort(data, offset + 2) << 16;
+    }
+
+    private static void readFully(InputStream in, byte[] buffer, int length) throws IOException {
+        if (read(in, buffer, length) < length) {
+            throw new EOFException("Truncated WAVE file");
+        }
+    }
+
+    /**
+     * Reads until <b>length</b> bytes are read or the stream ends.
+     * 
+     * @return the number of bytes read.
+     */
+    private static int read(InputStream in, byte[] buffer, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(buffer, offset, length - offset);
+            if (read < 0) {
+                break;
+            }
+            offset += read;
+        }
+        return offset;
+    }
+
+    private static void skip(InputStream in, long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = in.skip(bytes);
+            if (skipped <= 0) {
+                // skip may give up before the end, read tells the end
+                if (in.read() < 0) {
+                    throw new EOFException("Truncated WAVE file");
+                }
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+    }
+
+    /**
+     * Converts the samples of the data chunk to 16 bit.
+     */
+    private static final class WavStream implements PcmStream {
+
+        private final InputStream in;
+
+        private final int format;
+
+        private final int channels;
+
+        private final int sampleRate;
+
+        private final int bytesPerSample;
+
+        /**
+         * Frames in the data chunk, -1 if the chunk lasts up to the end.
+         */
+        private final long frames;
+
+        private final byte[] block;
+
+        private long framesRead = 0;
+
+        WavStream(InputStream in, int format, int channels, int sampleRate, int bits, long frames) {
+            this.in = in;
+            this.format = format;
+            this.channels = channels;
+            this.sampleRate = sampleRate;
+            this.bytesPerSample = bits / 8;
+            this.frames = frames;
+            this.block = new byte[BLOCK_FRAMES * channels * bytesPerSample];
+        }
+
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        public int getChannelCount() {
+            return channels;
+        }
+
+        public int getFrames() {
+            return frames >= 0 && frames <= Integer.MAX_VALUE ? (int) frames : -1;
+        }
+
+        public int read(short[] samples, int offset, int length) throws IOException {
+            long count = Math.min(length / channels, BLOCK_FRAMES);
+            if (frames >= 0) {
+                count = Math.min(count, frames - framesRead);
+            }
+            int frameBytes = channels * bytesPerSample;
+            int bytes = WavDecoder.read(in, block, (int) count * frameBytes);
+            // a truncated last frame is dropped
+            int read = bytes / frameBytes;
+            if (read == 0) {
+                return -1;
+            }
+            framesRead += read;
+            int sampleCount = read * channels;
+            if (bytesPerSample == 2) {
+                for (int i = 0, b = 0; i < sampleCount; i++, b += 2) {
+                    samples[offset + i] = (short) ((block[b] & 0xFF) | block[b + 1] << 8);
+                }
+            }
+            else if (bytesPerSample == 1) {
+                // 8 bit samples are unsigned
+                for (int i = 0; i < sampleCount; i++) {
+                    samples[offset + i] = (short) (((block[i] & 0xFF) - 128) << 8);
+                }
+            }
+            else if (bytesPerSample == 3) {
+                for (int i = 0, b = 0; i < sampleCount; i++, b += 3) {
+                    samples[offset + i] = (short) ((block[b + 1] & 0xFF) | block[b + 2] << 8);
+                }
+            }
+            else if (format == FORMAT_FLOAT) {
+                for (int i = 0, b = 0; i < sampleCount; i++, b += 4) {
+                    float s = Float.intBitsToFloat(getInt(block, b));
+                    samples[offset + i] = s >= 1f ? Short.MAX_VALUE : s <= -1f ? Short.MIN_VALUE
+                            : (short) (s * 32768f);
+                }
+            }
+            else {
+                for (int i = 0, b = 0; i < sampleCount; i++, b += 4) {
+                    samples[offset + i] = (short) ((block[b + 2] & 0xFF) | block[b + 3] << 8);
+                }
+            }
+            return sampleCount;
+        }
+
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * {@link AudioSource} of a local WAVE file, decoded in plain Java by a
+ * {@link WavDecoder}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class WavSource implements AudioSource {
+
+    private final File file;
+
+    /**
+     * 
+     * @param file
+     *            the WAVE file.
+     */
+    public WavSource(File file) {
+        this.file = file;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.AudioSource#getKey()
+     */
+    public String getKey() throws IOException {
+        return PcmCache.getKey("wav", file);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.audio.AudioSource#open()
+     */
+    public PcmStream open() throws IOException {
+        return new WavDecoder().decode(new BufferedInputStream(new FileInputStream(file)));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+}
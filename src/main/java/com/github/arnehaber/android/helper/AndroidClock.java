@@ -0,0 +1,50 @@
+package com.github.arnehaber.android.helper;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import android.os.SystemClock;
+
+/**
+ * {@link IClock} of the device, based on {@link SystemClock}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class AndroidClock implements IClock {
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.helper.IClock#uptimeMillis()
+     */
+    public long uptimeMillis() {
+        return SystemClock.uptimeMillis();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.helper.IClock#elapsedRealtime()
+     */
+    public long elapsedRealtime() {
+        return SystemClock.elapsedRealtime();
+    }
+}
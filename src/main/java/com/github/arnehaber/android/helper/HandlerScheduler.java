@@ -0,0 +1,166 @@
+package com.github.arnehaber.android.helper;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.view.Choreographer;
+
+import com.google.inject.Inject;
+
+/**
+ * {@link IScheduler} on the thread of a {@link Handler}. Display frames are
+ * taken from the {@link Choreographer} of that thread on devices that provide
+ * it, elsewhere frames are posted like any other {@link Runnable}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class HandlerScheduler extends AndroidClock implements IScheduler {
+
+    private final Handler handler;
+
+    /**
+     * Frame callback of each {@link Runnable} posted to the
+     * {@link Choreographer}, null on devices without it. Created once per
+     * {@link Runnable}, so posting a frame does not allocate.
+     */
+    private final Map<Runnable, ChoreographerFrame> frames;
+
+    /**
+     * 
+     * @param handler
+     *            handler of the scheduling thread.
+     */
+    @Inject
+    public HandlerScheduler(Handler handler) {
+        this.handler = handler;
+        this.frames = Build.VERSION.SDK_INT >= 16 ? new IdentityHashMap<Runnable, ChoreographerFrame>() : null;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.arnehaber.android.helper.IScheduler#post(java.lang.Runnable)
+     */
+    public void post(Runnable r) {
+        handler.post(r);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.arnehaber.android.helper.IScheduler#postDelayed(java.lang.
+     * Runnable, long)
+     */
+    public void postDelayed(Runnable r, long delayMillis) {
+        handler.postDelayed(r, delayMillis);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.arnehaber.android.helper.IScheduler#removeCallbacks(java.lang
+     * .Runnable)
+     */
+    public void removeCallbacks(Runnable r) {
+        handler.removeCallbacks(r);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.arnehaber.android.helper.IScheduler#postFrame(java.lang.Runnable
+     * )
+     */
+    public void postFrame(Runnable r) {
+        if (frames == null) {
+            handler.post(r);
+            return;
+        }
+        ChoreographerFrame frame = frames.get(r);
+        if (frame == null) {
+            frame = new ChoreographerFrame(r);
+            frames.put(r, frame);
+        }
+        frame.post();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.arnehaber.android.helper.IScheduler#removeFrame(java.lang.
+     * Runnable)
+     */
+    public void removeFrame(Runnable r) {
+        if (frames == null) {
+            handler.removeCallbacks(r);
+            return;
+        }
+        ChoreographerFrame frame = frames.get(r);
+        if (frame != null) {
+            frame.remove();
+        }
+    }
+
+    /**
+     * Runs a {@link Runnable} on the next frame of the
+     * {@link Choreographer} of the calling thread. Only loaded on devices
+     * that provide it.
+     */
+    @TargetApi(16)
+    private static final class ChoreographerFrame implements Choreographer.FrameCallback {
+
+        private final Choreographer choreographer = Choreographer.getInstance();
+
+        private final Runnable runnable;
+
+        ChoreographerFrame(Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        void post() {
+            choreographer.postFrameCallback(this);
+        }
+
+        void remove() {
+            choreographer.removeFrameCallback(this);
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see android.view.Choreographer.FrameCallback#doFrame(long)
+         */
+        public void doFrame(long frameTimeNanos) {
+            runnable.run();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.arnehaber.android.helper;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Source of the current time. Lets tests and simulations run on virtual
+ * time.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public interface IClock {
+
+    /**
+     * 
+     * @return the time in ms since boot, not counting deep sleep.
+     */
+    long uptimeMillis();
+
+    /**
+     * 
+     * @return the time in ms since boot, including deep sleep.
+     */
+    long elapsedRealtime();
+}
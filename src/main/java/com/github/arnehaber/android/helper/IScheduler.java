@@ -0,0 +1,77 @@
+package com.github.arnehaber.android.helper;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Runs {@link Runnable}s on a single thread, now, after a delay in
+ * {@link #uptimeMillis()} or with the next display frame. The clock may be
+ * read from any thread, all other methods must be called on the scheduling
+ * thread.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public interface IScheduler extends IClock {
+
+    /**
+     * Runs the given {@link Runnable} after all pending ones that are due.
+     * 
+     * @param r
+     *            the {@link Runnable} to run.
+     */
+    void post(Runnable r);
+
+    /**
+     * Runs the given {@link Runnable} after the given delay.
+     * 
+     * @param r
+     *            the {@link Runnable} to run.
+     * @param delayMillis
+     *            the delay in ms.
+     */
+    void postDelayed(Runnable r, long delayMillis);
+
+    /**
+     * Removes pending runs of the given {@link Runnable} posted by
+     * {@link #post(Runnable)} or {@link #postDelayed(Runnable, long)}.
+     * 
+     * @param r
+     *            the {@link Runnable} to remove.
+     */
+    void removeCallbacks(Runnable r);
+
+    /**
+     * Runs the given {@link Runnable} with the next display frame.
+     * 
+     * @param r
+     *            the {@link Runnable} to run.
+     */
+    void postFrame(Runnable r);
+
+    /**
+     * Removes a pending run of the given {@link Runnable} posted by
+     * {@link #postFrame(Runnable)}.
+     * 
+     * @param r
+     *            the {@link Runnable} to remove.
+     */
+    void removeFrame(Runnable r);
+}
@@ -0,0 +1,184 @@
+package com.github.arnehaber.android.helper;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread safe cache that holds values up to a total size and evicts the least
+ * recently used values first. Stands in for android.util.LruCache, which
+ * requires API level 12.
+ * 
+ * @author Arne Haber
+ * 
+ * @param <K>
+ *            type of the keys.
+ * @param <V>
+ *            type of the values.
+ */
+public abstract class LruCache<K, V> {
+
+    /**
+     * Entries in access order, least recently used first.
+     */
+    private final LinkedHashMap<K, V> map = new LinkedHashMap<K, V>(16, 0.75f, true);
+
+    private final long maxSize;
+
+    private long size = 0;
+
+    private long hitCount = 0;
+
+    private long missCount = 0;
+
+    /**
+     * 
+     * @param maxSize
+     *            maximum total size of all values, in the unit of
+     *            {@link #sizeOf(Object, Object)}.
+     */
+    public LruCache(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid maximum size: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 
+     * @param key
+     *            key of a value.
+     * @param value
+     *            the value.
+     * @return the size of <b>value</b>, not negative and constant while it is
+     *         cached.
+     */
+    protected abstract long sizeOf(K key, V value);
+
+    /**
+     * 
+     * @param key
+     *            key of the requested value.
+     * @return the cached value, or null if there is none.
+     */
+    public synchronized V get(K key) {
+        V value = map.get(key);
+        if (value != null) {
+            hitCount++;
+        }
+        else {
+            missCount++;
+        }
+        return value;
+    }
+
+    /**
+     * Caches <b>value</b>, evicting the least recently used values if the
+     * cache gets too large. A value larger than the cache is not kept.
+     * 
+     * @param key
+     *            key of the value.
+     * @param value
+     *            the value.
+     * @return the value previously cached under <b>key</b>, or null.
+     */
+    public synchronized V put(K key, V value) {
+        V previous = map.put(key, value);
+        if (previous != null) {
+            size -= sizeOf(key, previous);
+        }
+        size += sizeOf(key, value);
+        trimToSize(maxSize);
+        return previous;
+    }
+
+    /**
+     * 
+     * @param key
+     *            key of the value to remove.
+     * @return the removed value, or null.
+     */
+    public synchronized V remove(K key) {
+        V previous = map.remove(key);
+        if (previous != null) {
+            size -= sizeOf(key, previous);
+        }
+        return previous;
+    }
+
+    /**
+     * Evicts the least recently used values until the total size is at most
+     * <b>maxSize</b>.
+     * 
+     * @param maxSize
+     *            the size to trim to, -1 to evict all values.
+     */
+    public synchronized void trimToSize(long maxSize) {
+        Iterator<Map.Entry<K, V>> entries = map.entrySet().iterator();
+        while (size > maxSize && entries.hasNext()) {
+            Map.Entry<K, V> eldest = entries.next();
+            size -= sizeOf(eldest.getKey(), eldest.getValue());
+            entries.remove();
+        }
+    }
+
+    /**
+     * Evicts all values.
+     */
+    public void evictAll() {
+        trimToSize(-1);
+    }
+
+    /**
+     * 
+     * @return the total size of all cached values.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * 
+     * @return the number of calls to {@link #get(Object)} that returned a
+     *         value.
+     */
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * 
+     * @return the number of calls to {@link #get(Object)} that returned null.
+     */
+    public synchronized long missCount() {
+        return missCount;
+    }
+
+    /**
+     * 
+     * @return the maximum total size of all cached values.
+     */
+    public long maxSize() {
+        return maxSize;
+    }
+}
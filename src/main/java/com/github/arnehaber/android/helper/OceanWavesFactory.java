@@ -0,0 +1,159 @@
+package com.github.arnehaber.android.helper;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import android.media.MediaPlayer;
+import android.os.Handler;
+
+import com.github.arnehaber.android.IOceanWavesGui;
+import com.github.arnehaber.android.ITimedSleepPlayer;
+import com.github.arnehaber.android.TimedSleepPlayer;
+import com.github.arnehaber.android.audio.AudioCommandThread;
+import com.github.arnehaber.android.audio.AudioEngineType;
+import com.github.arnehaber.android.audio.AudioSource;
+import com.github.arnehaber.android.audio.GranularEngine;
+import com.github.arnehaber.android.audio.IAudioEngine;
+import com.github.arnehaber.android.audio.MediaPlayerEngine;
+import com.github.arnehaber.android.audio.MixingEngine;
+import com.github.arnehaber.android.audio.PcmLoader;
+import com.github.arnehaber.android.audio.PcmLoopEngine;
+import com.github.arnehaber.android.audio.SurfSynthEngine;
+import com.google.inject.Provider;
+
+/**
+ * Hand written factory with the same bindings as the
+ * {@link OceanWavesModule}. Creates the object graph with plain constructor
+ * calls, so app start up does not pay for creating a Guice injector.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class OceanWavesFactory {
+
+    /**
+     * The used {@link IOceanWavesGui} provider.
+     */
+    private final Provider<IOceanWavesGui> provider;
+
+    /**
+     * The played audio.
+     */
+    private final AudioSource source;
+
+    /**
+     * The used audio engine.
+     */
+    private final AudioEngineType engineType;
+
+    /**
+     * Loads the audio of the decoding engines.
+     */
+    private final PcmLoader loader;
+
+    /**
+     * Uses the default audio engine of the device.
+     * 
+     * @param provider
+     *            the {@link IOceanWavesGui} provider to use.
+     * @param source
+     *            the audio to play.
+     */
+    public OceanWavesFactory(Provider<IOceanWavesGui> provider, AudioSource source) {
+        this(provider, source, AudioEngineType.getDefault());
+    }
+
+    /**
+     * 
+     * @param provider
+     *            the {@link IOceanWavesGui} provider to use.
+     * @param source
+     *            the audio to play.
+     * @param engineType
+     *            the audio engine to use.
+     */
+    public OceanWavesFactory(Provider<IOceanWavesGui> provider, AudioSource source, AudioEngineType engineType) {
+        this(provider, source, engineType, new PcmLoader());
+    }
+
+    /**
+     * 
+     * @param provider
+     *            the {@link IOceanWavesGui} provider to use.
+     * @param source
+     *            the audio to play.
+     * @param engineType
+     *            the audio engine to use.
+     * @param loader
+     *            loads the audio of the decoding engines.
+     */
+    public OceanWavesFactory(Provider<IOceanWavesGui> provider, AudioSource source, AudioEngineType engineType,
+            PcmLoader loader) {
+        this.provider = provider;
+        this.source = source;
+        this.engineType = engineType;
+        this.loader = loader;
+    }
+
+    /**
+     * Must be called on the GUI thread, which is used for the sleep timer.
+     * 
+     * @return a new {@link TimedSleepPlayer}.
+     */
+    public ITimedSleepPlayer createPlayer() {
+        return new TimedSleepPlayer(provider.get(), source, createAudioEngine(), createAudioThread(),
+                new HandlerScheduler(new Handler()));
+    }
+
+    /**
+     * 
+     * @return a new {@link AudioCommandThread}, started on first use.
+     */
+    public AudioCommandThread createAudioThread() {
+        return new AudioCommandThread();
+    }
+
+    /**
+     * 
+     * @return a new {@link IAudioEngine} of the configured type.
+     */
+    public IAudioEngine createAudioEngine() {
+        if (engineType == AudioEngineType.PCM_LOOP) {
+            return new PcmLoopEngine(loader);
+        }
+        else if (engineType == AudioEngineType.SURF_SYNTH) {
+            return new SurfSynthEngine();
+        }
+        else if (engineType == AudioEngineType.MIXER) {
+            return new MixingEngine(loader);
+        }
+        else if (engineType == AudioEngineType.GRANULAR) {
+            return new GranularEngine(loader);
+        }
+        else {
+            return new MediaPlayerEngine(new Provider<MediaPlayer>() {
+                public MediaPlayer get() {
+                    return new MediaPlayer();
+                }
+            });
+        }
+    }
+
+}
@@ -23,11 +23,20 @@ package com.github.arnehaber.android.helper;
 import com.github.arnehaber.android.ITimedSleepPlayer;
 import com.github.arnehaber.android.IOceanWavesGui;
 import com.github.arnehaber.android.TimedSleepPlayer;
+import com.github.arnehaber.android.audio.AudioEngineType;
+import com.github.arnehaber.android.audio.AudioSource;
+import com.github.arnehaber.android.audio.GranularEngine;
+import com.github.arnehaber.android.audio.IAudioEngine;
+import com.github.arnehaber.android.audio.MediaPlayerEngine;
+import com.github.arnehaber.android.audio.MixingEngine;
+import com.github.arnehaber.android.audio.PcmLoopEngine;
+import com.github.arnehaber.android.audio.SurfSynthEngine;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provider;
 
 /**
- * Default guice module.
+ * Default guice module. The {@link OceanWavesFactory} creates the same object
+ * graph without Guice and is used on app start up.
  * 
  * @author Arne Haber
  * 
@@ -39,13 +48,41 @@ public class OceanWavesModule extends AbstractModule {
      */
     private final Provider<IOceanWavesGui> provider;
 
+    /**
+     * The played audio.
+     */
+    private final AudioSource source;
+
+    /**
+     * The used audio engine.
+     */
+    private final AudioEngineType engineType;
+
+    /**
+     * Uses the default audio engine of the device.
+     * 
+     * @param provider
+     *            the {@link IOceanWavesGui} provider to use.
+     * @param source
+     *            the audio to play.
+     */
+    public OceanWavesModule(Provider<IOceanWavesGui> provider, AudioSource source) {
+        this(provider, source, AudioEngineType.getDefault());
+    }
+
     /**
      * 
      * @param provider
      *            the {@link IOceanWavesGui} provider to use.
+     * @param source
+     *            the audio to play.
+     * @param engineType
+     *            the audio engine to use.
      */
-    public OceanWavesModule(Provider<IOceanWavesGui> provider) {
+    public OceanWavesModule(Provider<IOceanWavesGui> provider, AudioSource source, AudioEngineType engineType) {
         this.provider = provider;
+        this.source = source;
+        this.engineType = engineType;
     }
 
     @Override
@@ -53,6 +90,26 @@ public class OceanWavesModule extends AbstractModule {
         bind(ITimedSleepPlayer.class).to(TimedSleepPlayer.class);
 
         bind(IOceanWavesGui.class).toProvider(provider);
+
+        bind(AudioSource.class).toInstance(source);
+
+        bind(IScheduler.class).to(HandlerScheduler.class);
+
+        if (engineType == AudioEngineType.PCM_LOOP) {
+            bind(IAudioEngine.class).to(PcmLoopEngine.class);
+        }
+        else if (engineType == AudioEngineType.SURF_SYNTH) {
+            bind(IAudioEngine.class).to(SurfSynthEngine.class);
+        }
+        else if (engineType == AudioEngineType.MIXER) {
+            bind(IAudioEngine.class).to(MixingEngine.class);
+        }
+        else if (engineType == AudioEngineType.GRANULAR) {
+            bind(IAudioEngine.class).to(GranularEngine.class);
+        }
+        else {
+            bind(IAudioEngine.class).to(MediaPlayerEngine.class);
+        }
     }
 
 }
@@ -43,6 +43,31 @@ public class TimeConstants {
      */
     public static final int MAX_SLEEP_TIME = 60 * 60 * SECOND;
 
+    /**
+     * Default time a stopped player is kept prepared for a quick restart.
+     */
+    public static final int DEFAULT_KEEP_WARM_TIME = 15 * 60 * SECOND;
+
+    /**
+     * Shortest fade out before the sleep timer expires, apart from none.
+     */
+    public static final int MIN_FADE_OUT_TIME = 30 * SECOND;
+
+    /**
+     * Longest fade out before the sleep timer expires.
+     */
+    public static final int MAX_FADE_OUT_TIME = 5 * 60 * SECOND;
+
+    /**
+     * Default fade out before the sleep timer expires.
+     */
+    public static final int DEFAULT_FADE_OUT_TIME = 60 * SECOND;
+
+    /**
+     * Maximum number of chars written by {@link #timeToChars(int, char[])}.
+     */
+    public static final int MAX_TIME_LENGTH = 8;
+
     /**
      * Private constructor to prevent utility class instantiation.
      */
@@ -58,16 +83,39 @@ public class TimeConstants {
      * @return the given time as a readable string.
      */
     public static String timeToString(int ms) {
-        int minutes = (ms / TimeConstants.SECOND);
-        StringBuilder sb = new StringBuilder();
-        sb.append((minutes / 60));
-        sb.append(":");
-        int mod = minutes % 60;
-        if (mod < 10) {
-            sb.append("0");
+        char[] time = new char[MAX_TIME_LENGTH];
+        int length = timeToChars(ms, time);
+        return new String(time, 0, length);
+    }
+
+    /**
+     * Writes the given time in format mm:ss into <b>out</b> without allocating
+     * memory.
+     * 
+     * @param ms
+     *            time to print in ms, not negative.
+     * @param out
+     *            receives the formatted time, at least
+     *            {@link #MAX_TIME_LENGTH} chars long.
+     * @return the number of chars written.
+     */
+    public static int timeToChars(int ms, char[] out) {
+        int seconds = ms / SECOND;
+        int minutes = seconds / 60;
+        int mod = seconds % 60;
+
+        int digits = 1;
+        for (int m = minutes; m >= 10; m /= 10) {
+            digits++;
+        }
+        for (int i = digits - 1; i >= 0; i--) {
+            out[i] = (char) ('0' + minutes % 10);
+            minutes /= 10;
         }
-        sb.append(mod);
-        return sb.toString();
+        out[digits] = ':';
+        out[digits + 1] = (char) ('0' + mod / 10);
+        out[digits + 2] = (char) ('0' + mod % 10);
+        return digits + 3;
     }
 
 }
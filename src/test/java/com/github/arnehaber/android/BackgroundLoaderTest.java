@@ -0,0 +1,114 @@
+package com.github.arnehaber.android;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowViewTreeObserver;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.view.View;
+
+/**
+ * Tests for {@link BackgroundLoader}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BackgroundLoaderTest {
+
+    private final BackgroundLoader.Cache cache = new BackgroundLoader.Cache(1 << 24);
+
+    @Test
+    public void testSampleSize() {
+        assertEquals(1, BackgroundLoader.getSampleSize(1422, 800, 1280, 720));
+        assertEquals(1, BackgroundLoader.getSampleSize(1422, 800, 711, 401));
+        assertEquals(2, BackgroundLoader.getSampleSize(1422, 800, 711, 400));
+        assertEquals(2, BackgroundLoader.getSampleSize(1422, 800, 480, 320));
+        assertEquals(4, BackgroundLoader.getSampleSize(1422, 800, 320, 200));
+        // the view is larger than the image
+        assertEquals(1, BackgroundLoader.getSampleSize(1422, 800, 2560, 1600));
+    }
+
+    @Test
+    public void testDecodesAfterLayout() {
+        View view = new View(Robolectric.application);
+        Robolectric.getBackgroundScheduler().pause();
+        new BackgroundLoader(view, R.drawable.background, cache).start();
+        assertNull(view.getBackground());
+
+        view.layout(0, 0, 480, 320);
+        ShadowViewTreeObserver observer = Robolectric.shadowOf_(view.getViewTreeObserver());
+        observer.fireOnGlobalLayoutListeners();
+        assertTrue(observer.getOnGlobalLayoutListeners().isEmpty());
+        assertNull("decoded on the GUI thread", view.getBackground());
+        assertEquals(0, cache.size());
+
+        Robolectric.getBackgroundScheduler().unPause();
+        Robolectric.runUiThreadTasks();
+        assertTrue(view.getBackground() instanceof BitmapDrawable);
+        assertTrue(cache.size() > 0);
+    }
+
+    @Test
+    public void testRecreatedViewHitsCache() {
+        View first = new View(Robolectric.application);
+        first.layout(0, 0, 480, 320);
+        new BackgroundLoader(first, R.drawable.background, cache).start();
+        Robolectric.runBackgroundTasks();
+        Robolectric.runUiThreadTasks();
+        Bitmap decoded = ((BitmapDrawable) first.getBackground()).getBitmap();
+        long size = cache.size();
+
+        Robolectric.getBackgroundScheduler().pause();
+        View second = new View(Robolectric.application);
+        second.layout(0, 0, 480, 320);
+        new BackgroundLoader(second, R.drawable.background, cache).start();
+
+        assertNotNull(second.getBackground());
+        assertSame(decoded, ((BitmapDrawable) second.getBackground()).getBitmap());
+        assertEquals(size, cache.size());
+    }
+
+    @Test
+    public void testCancel() {
+        View view = new View(Robolectric.application);
+        view.layout(0, 0, 480, 320);
+        Robolectric.getBackgroundScheduler().pause();
+        BackgroundLoader testee = new BackgroundLoader(view, R.drawable.background, cache);
+        testee.start();
+        testee.cancel();
+
+        Robolectric.getBackgroundScheduler().unPause();
+        Robolectric.runUiThreadTasks();
+        assertNull(view.getBackground());
+    }
+}
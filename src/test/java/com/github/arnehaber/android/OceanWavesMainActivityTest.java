@@ -21,31 +21,44 @@ package com.github.arnehaber.android;
  */
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import java.io.IOException;
 import java.lang.reflect.Field;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowActivity;
+import org.robolectric.shadows.ShadowSeekBar;
 import org.robolectric.util.ActivityController;
 
-import android.content.res.AssetFileDescriptor;
+import android.content.ComponentName;
+import android.os.Bundle;
 import android.widget.Button;
 import android.widget.ProgressBar;
 import android.widget.SeekBar;
 import android.widget.TextView;
 
-import com.github.arnehaber.android.helper.OceanWavesModule;
+import com.github.arnehaber.android.audio.AudioCommandThread;
+import com.github.arnehaber.android.audio.AudioSource;
+import com.github.arnehaber.android.audio.IAudioEngine;
+import com.github.arnehaber.android.helper.OceanWavesFactory;
 import com.github.arnehaber.android.helper.TimeConstants;
-import com.google.inject.Guice;
-import com.google.inject.Injector;
-import com.google.inject.Module;
 
 /**
  * Tests for {@link OceanWavesMainActivity}.
@@ -64,17 +77,51 @@ public class OceanWavesMainActivityTest {
     
     private ActivityController<OceanWavesMainActivity> controller;
 
+    private static IAudioEngine mockedEngine;
+
+    /**
+     * {@link OceanWavesService} with a mocked audio engine that prepares
+     * immediately.
+     */
+    public static class PlayingService extends OceanWavesService {
+        @Override
+        protected OceanWavesFactory createFactory() {
+            return new OceanWavesFactory(null, null) {
+                @Override
+                public IAudioEngine createAudioEngine() {
+                    return mockedEngine;
+                }
+
+                @Override
+                public AudioCommandThread createAudioThread() {
+                    return new AudioCommandThread() {
+                        @Override
+                        public void execute(Runnable command) {
+                            command.run();
+                        }
+                    };
+                }
+            };
+        }
+    }
+
     @Before
     public void setUp() {
+        bindService();
         controller = Robolectric.buildActivity(OceanWavesMainActivity.class).create().start();
         
         testee = controller.get();
-        // setup guice
-        Module mod = new OceanWavesModule(testee);
-        Injector injector = Guice.createInjector(mod);
+    }
 
-        // inject player
-        player = injector.getInstance(ITimedSleepPlayer.class);
+    /**
+     * Lets bindService connect to a new {@link OceanWavesService}.
+     */
+    private void bindService() {
+        OceanWavesService service = Robolectric.buildService(OceanWavesService.class).create().get();
+        OceanWavesService.PlayerBinder binder = (OceanWavesService.PlayerBinder) service.onBind(null);
+        player = binder.getPlayer();
+        Robolectric.getShadowApplication().setComponentNameAndServiceForBindService(
+                new ComponentName(service, OceanWavesService.class), binder);
     }
 
     @Test
@@ -107,20 +154,27 @@ public class OceanWavesMainActivityTest {
     @Test
     public void testAdjustSleepTime() {
         replacePlayerWithMock();
-        SeekBar sleepTimeSetter = (SeekBar) testee.findViewById(R.id.sleepTimeSetter);
         int progress = 25;
-        sleepTimeSetter.setProgress(progress);
+        moveSleepTimeSetter(testee, progress);
         verify(mockedPlayer, times(1)).setSleepTime(progress);
     }
 
+    @Test
+    public void testProgrammaticSleepTimeIsNotForwarded() {
+        replacePlayerWithMock();
+        SeekBar sleepTimeSetter = (SeekBar) testee.findViewById(R.id.sleepTimeSetter);
+        sleepTimeSetter.setProgress(25);
+        verify(mockedPlayer, never()).setSleepTime(Mockito.anyInt());
+    }
+
     @Test
     public void testUpdateTime() {
         TextView timeTextView = (TextView) testee.findViewById(R.id.textTime);
 
         String expected = "47:00";
-        testee.updateTime(expected);
+        testee.updateTime("47:00xyz".toCharArray(), 5);
 
-        assertEquals(expected, timeTextView.getText());
+        assertEquals(expected, timeTextView.getText().toString());
     }
 
     @Test
@@ -150,13 +204,6 @@ public class OceanWavesMainActivityTest {
 
     }
 
-    @Test
-    public void testGetSelectedAudioFile() {
-        AssetFileDescriptor expected = testee.getResources().openRawResourceFd(R.raw.ocean_mp3);
-        AssetFileDescriptor actual = testee.getSelectedAudioFile();
-        assertEquals(expected, actual);
-    }
-
     @Test
     public void testProvider() {
         IOceanWavesGui expected = testee;
@@ -168,21 +215,147 @@ public class OceanWavesMainActivityTest {
     public void testSaveAndRestoreSleepTime() {
         replacePlayerWithMock();
         int timeToSet = TimeConstants.MAX_SLEEP_TIME;
-        SeekBar sleepTimeSetter = (SeekBar) testee.findViewById(R.id.sleepTimeSetter);
-        sleepTimeSetter.setProgress(timeToSet);
+        moveSleepTimeSetter(testee, timeToSet);
         
         verify(mockedPlayer, times(1)).setSleepTime(timeToSet);        
         
         controller.stop();
         controller.start();
         
-        sleepTimeSetter = (SeekBar) testee.findViewById(R.id.sleepTimeSetter);
+        SeekBar sleepTimeSetter = (SeekBar) testee.findViewById(R.id.sleepTimeSetter);
         
         assertEquals(timeToSet, sleepTimeSetter.getProgress());
         
         
     }
 
+    @Test
+    public void testActivitiesSharePlayer() {
+        assertSame(player, getPlayer(testee));
+
+        OceanWavesMainActivity other = Robolectric.buildActivity(OceanWavesMainActivity.class).create().start().get();
+        assertSame(player, getPlayer(other));
+    }
+
+    @Test
+    public void testDestroyUnbindsService() {
+        controller.stop().destroy();
+        assertEquals(1, Robolectric.getShadowApplication().getUnboundServiceConnections().size());
+    }
+
+    @Test
+    public void testConfigurationChangeKeepsConnection() {
+        Object connection = testee.onRetainNonConfigurationInstance();
+        assertNotNull(connection);
+        controller.stop().destroy();
+        assertTrue(Robolectric.getShadowApplication().getUnboundServiceConnections().isEmpty());
+    }
+
+    @Test
+    public void testRotationWhilePlayingKeepsSleepTimer() throws IOException {
+        String remaining = startPlaying();
+
+        Bundle state = new Bundle();
+        controller.saveInstanceState(state);
+        Object connection = testee.onRetainNonConfigurationInstance();
+        controller.pause().stop().destroy();
+
+        ActivityController<OceanWavesMainActivity> recreated = Robolectric
+                .buildActivity(OceanWavesMainActivity.class);
+        ShadowActivity shadow = Robolectric.shadowOf_(recreated.get());
+        shadow.setLastNonConfigurationInstance(connection);
+        recreated.create(state).start().restoreInstanceState(state).resume();
+
+        assertRemainingTimeKept(recreated.get(), remaining);
+    }
+
+    @Test
+    public void testRelaunchWhilePlayingKeepsSleepTimer() throws IOException {
+        String remaining = startPlaying();
+
+        Bundle state = new Bundle();
+        controller.saveInstanceState(state);
+        controller.pause().stop().destroy();
+
+        ActivityController<OceanWavesMainActivity> relaunched = Robolectric
+                .buildActivity(OceanWavesMainActivity.class);
+        relaunched.create(state).start().restoreInstanceState(state).resume();
+
+        assertRemainingTimeKept(relaunched.get(), remaining);
+    }
+
+    /**
+     * Binds a {@link PlayingService}, creates a new activity and lets the
+     * sleep timer run for a minute of play back.
+     * 
+     * @return the displayed remaining time.
+     */
+    private String startPlaying() throws IOException {
+        mockedEngine = mock(IAudioEngine.class);
+        doAnswer(new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation) {
+                ((IAudioEngine.PrepareListener) invocation.getArguments()[1]).onPrepared();
+                return null;
+            }
+        }).when(mockedEngine).prepareAsync(Mockito.any(AudioSource.class),
+                Mockito.any(IAudioEngine.PrepareListener.class));
+        OceanWavesService service = Robolectric.buildService(PlayingService.class).create().get();
+        OceanWavesService.PlayerBinder binder = (OceanWavesService.PlayerBinder) service.onBind(null);
+        player = binder.getPlayer();
+        Robolectric.getShadowApplication().setComponentNameAndServiceForBindService(
+                new ComponentName(service, OceanWavesService.class), binder);
+        controller = Robolectric.buildActivity(OceanWavesMainActivity.class).create().start().resume();
+        testee = controller.get();
+
+        moveSleepTimeSetter(testee, TimeConstants.MAX_SLEEP_TIME);
+        testee.findViewById(R.id.buttonPlay).performClick();
+        // lifecycle calls must not run the sleep timer to its end
+        Robolectric.pauseMainLooper();
+        Robolectric.getUiThreadScheduler().advanceBy(60 * TimeConstants.SECOND);
+        String remaining = getDisplayedTime(testee);
+        assertFalse(TimeConstants.timeToString(TimeConstants.MAX_SLEEP_TIME).equals(remaining));
+        Mockito.reset(mockedEngine);
+        return remaining;
+    }
+
+    /**
+     * Asserts that the new activity shows the sleep time of the player and
+     * that neither the sleep timer nor the fade out was restarted.
+     */
+    private void assertRemainingTimeKept(OceanWavesMainActivity activity, String remaining) {
+        SeekBar sleepTimeSetter = (SeekBar) activity.findViewById(R.id.sleepTimeSetter);
+        assertEquals(player.getSleepTime(), sleepTimeSetter.getProgress());
+        verify(mockedEngine, never()).fadeOut(Mockito.anyInt(), Mockito.anyInt());
+        assertEquals(remaining, getDisplayedTime(activity));
+    }
+
+    private String getDisplayedTime(OceanWavesMainActivity activity) {
+        Robolectric.runUiThreadTasks();
+        return ((TextView) activity.findViewById(R.id.textTime)).getText().toString();
+    }
+
+    /**
+     * Moves the sleep time setter of <b>activity</b> like the user does.
+     */
+    private void moveSleepTimeSetter(OceanWavesMainActivity activity, int progress) {
+        SeekBar sleepTimeSetter = (SeekBar) activity.findViewById(R.id.sleepTimeSetter);
+        sleepTimeSetter.setProgress(progress);
+        ShadowSeekBar shadow = Robolectric.shadowOf_(sleepTimeSetter);
+        shadow.getOnSeekBarChangeListener().onProgressChanged(sleepTimeSetter, progress, true);
+    }
+
+    private ITimedSleepPlayer getPlayer(OceanWavesMainActivity activity) {
+        try {
+            Field player = activity.getClass().getDeclaredField("player");
+            player.setAccessible(true);
+            return (ITimedSleepPlayer) player.get(activity);
+        }
+        catch (Exception e) {
+            fail(e.getMessage());
+        }
+        return null;
+    }
+
     private void replacePlayerWithMock() {
         try {
             Field player = testee.getClass().getDeclaredField("player");
@@ -0,0 +1,161 @@
+package com.github.arnehaber.android;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowService;
+import org.robolectric.util.ServiceController;
+
+import com.github.arnehaber.android.audio.AudioCommandThread;
+import com.github.arnehaber.android.audio.IAudioEngine;
+import com.github.arnehaber.android.audio.RawResourceSource;
+import com.github.arnehaber.android.helper.OceanWavesFactory;
+
+/**
+ * Tests for {@link OceanWavesService}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+@RunWith(RobolectricTestRunner.class)
+public class OceanWavesServiceTest {
+
+    private static IAudioEngine mockedEngine;
+
+    /**
+     * {@link OceanWavesService} with a mocked audio engine.
+     */
+    public static class TestService extends OceanWavesService {
+        @Override
+        protected OceanWavesFactory createFactory() {
+            return new OceanWavesFactory(null, null) {
+                @Override
+                public IAudioEngine createAudioEngine() {
+                    return mockedEngine;
+                }
+
+                @Override
+                public AudioCommandThread createAudioThread() {
+                    // execute audio commands synchronously
+                    return new AudioCommandThread() {
+                        @Override
+                        public void execute(Runnable command) {
+                            command.run();
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    private ServiceController<TestService> controller;
+
+    private OceanWavesService.PlayerBinder binder;
+
+    private final IOceanWavesGui mockedGui = Mockito.mock(IOceanWavesGui.class);
+
+    @Before
+    public void setUp() {
+        mockedEngine = Mockito.mock(IAudioEngine.class);
+        controller = Robolectric.buildService(TestService.class).create();
+        binder = (OceanWavesService.PlayerBinder) controller.get().onBind(null);
+    }
+
+    @Test
+    public void testBindersSharePlayer() {
+        OceanWavesService.PlayerBinder other = (OceanWavesService.PlayerBinder) controller.get().onBind(null);
+        assertNotNull(binder.getPlayer());
+        assertSame(binder.getPlayer(), other.getPlayer());
+    }
+
+    @Test
+    public void testAttachedGuiIsUpdated() {
+        binder.attach(mockedGui);
+        binder.getPlayer().setSleepTime(2000);
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+        verify(mockedGui).updateTime(Mockito.any(char[].class), Mockito.eq(4));
+
+        binder.detach(mockedGui);
+        Mockito.reset(mockedGui);
+        binder.getPlayer().setSleepTime(3000);
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+        Mockito.verifyZeroInteractions(mockedGui);
+    }
+
+    @Test
+    public void testDetachOtherGuiKeepsAttached() {
+        binder.attach(mockedGui);
+        binder.detach(Mockito.mock(IOceanWavesGui.class));
+        binder.getPlayer().setSleepTime(2000);
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+        verify(mockedGui).updateTime(Mockito.any(char[].class), Mockito.eq(4));
+    }
+
+    @Test
+    public void testForegroundWhilePlaying() {
+        ShadowService shadow = Robolectric.shadowOf_(controller.get());
+        binder.getPlayer().startPlayer();
+        assertNotNull(shadow.getLastForegroundNotification());
+        assertNotNull(Robolectric.getShadowApplication().getNextStartedService());
+        assertFalse(shadow.isStoppedBySelf());
+
+        binder.getPlayer().pausePlayer();
+        assertTrue(shadow.isForegroundStopped());
+        assertTrue(shadow.isStoppedBySelf());
+    }
+
+    @Test
+    public void testDestroyReleasesPlayer() throws IOException {
+        binder.getPlayer().startPlayer();
+        verify(mockedEngine).prepareAsync(Mockito.isA(RawResourceSource.class),
+                Mockito.any(IAudioEngine.PrepareListener.class));
+        verify(mockedEngine, never()).release();
+
+        controller.destroy();
+        verify(mockedEngine).release();
+    }
+
+    @Test
+    public void testDumpMetrics() {
+        StringWriter out = new StringWriter();
+        controller.get().dump(null, new PrintWriter(out), new String[0]);
+        assertTrue(out.toString(), out.toString().contains("state=IDLE"));
+        assertTrue(out.toString(), out.toString().contains("underruns=0"));
+        assertTrue(out.toString(), out.toString().contains("events:"));
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.github.arnehaber.android;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.github.arnehaber.android.PlayerEventLog.Event;
+import com.github.arnehaber.android.PlayerStateMachine.State;
+import com.github.arnehaber.android.benchmark.AllocationCounter;
+
+/**
+ * Tests for {@link PlayerEventLog}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class PlayerEventLogTest {
+
+    /**
+     * {@link PlayerEventLog} with a fixed clock.
+     */
+    private static class TestLog extends PlayerEventLog {
+
+        private volatile long now = 1000;
+
+        TestLog(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        protected long uptimeMillis() {
+            return now;
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacityPowerOfTwo() {
+        new TestLog(6);
+    }
+
+    @Test
+    public void testEmpty() {
+        PlayerEventLog testee = new TestLog(4);
+        assertEquals(0, testee.getCount());
+        assertEquals("", testee.toString());
+    }
+
+    @Test
+    public void testKeepsMostRecentEvents() {
+        TestLog testee = new TestLog(4);
+        testee.record(Event.START_REQUESTED);
+        testee.record(Event.TIMER_STARTED, 5000, 0);
+        testee.record(Event.TIMER_TICK, 4000, 0);
+        testee.record(Event.TIMER_TICK, 3000, 0);
+        testee.now = 3500;
+        testee.recordTransition(State.PLAYING, State.PAUSED);
+        testee.record(Event.PAUSE_REQUESTED);
+
+        String[] lines = testee.toString().split("\n");
+        assertEquals(6, testee.getCount());
+        assertEquals(4, lines.length);
+        assertEquals("1000 TIMER_TICK 4000 0", lines[0]);
+        assertEquals("1000 TIMER_TICK 3000 0", lines[1]);
+        assertEquals("3500 TRANSITION PLAYING -> PAUSED", lines[2]);
+        assertEquals("3500 PAUSE_REQUESTED", lines[3]);
+    }
+
+    @Test
+    public void testArgumentsKeepSign() {
+        TestLog testee = new TestLog(4);
+        testee.now = 86400000L * 365;
+        testee.record(Event.TIMER_TICK, -1, Integer.MIN_VALUE);
+        testee.record(Event.TIMER_TICK, Integer.MAX_VALUE, -7);
+
+        String[] lines = testee.toString().split("\n");
+        assertEquals("31536000000 TIMER_TICK -1 " + Integer.MIN_VALUE, lines[0]);
+        assertEquals("31536000000 TIMER_TICK " + Integer.MAX_VALUE + " -7", lines[1]);
+    }
+
+    @Test
+    public void testConcurrentWriters() throws InterruptedException {
+        final PlayerEventLog testee = new TestLog(64);
+        final int perThread = 10000;
+        List<Thread> writers = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            final int id = t;
+            writers.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        testee.record(Event.TIMER_TICK, id, i);
+                    }
+                }
+            });
+        }
+        for (Thread writer : writers) {
+            writer.start();
+        }
+        // dumping while writing must not report torn events
+        for (int i = 0; i < 100; i++) {
+            for (String line : testee.toString().split("\n")) {
+                assertTrue(line, line.isEmpty() || line.contains(" TIMER_TICK "));
+            }
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals(4 * perThread, testee.getCount());
+        assertEquals(64, testee.toString().split("\n").length);
+    }
+
+    @Test
+    public void testRecordAllocationFree() {
+        PlayerEventLog testee = new TestLog(16);
+        AllocationCounter counter = new AllocationCounter();
+        Assume.assumeTrue(counter.isSupported());
+        // warm up
+        for (int i = 0; i < 1000; i++) {
+            testee.record(Event.TIMER_TICK, i, 0);
+            testee.recordTransition(State.PAUSED, State.PLAYING);
+        }
+        counter.reset();
+        for (int i = 0; i < 1000; i++) {
+            testee.record(Event.TIMER_TICK, i, 0);
+            testee.recordTransition(State.PAUSED, State.PLAYING);
+        }
+        assertEquals(0, counter.getAllocatedBytes());
+    }
+}
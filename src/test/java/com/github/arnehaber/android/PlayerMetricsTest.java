@@ -0,0 +1,58 @@
+package com.github.arnehaber.android;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link PlayerMetrics}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class PlayerMetricsTest {
+
+    @Test
+    public void testCpuTimePerHour() {
+        assertEquals(-1, new PlayerMetrics(-1, -1, 0, 0, 0, 0, 0).getCpuTimePerHour());
+        // 3 s CPU in 30 min of play back
+        assertEquals(6000, new PlayerMetrics(-1, -1, 0, 0, 0, 30 * 60 * 1000, 3000).getCpuTimePerHour());
+    }
+
+    @Test
+    public void testDump() {
+        StringWriter out = new StringWriter();
+        new PlayerMetrics(120, 80, 2, 7, 11, 60 * 60 * 1000, 4000).dump(new PrintWriter(out, true), "  ");
+        String text = out.toString();
+        assertTrue(text, text.contains("  startLatency=120 ms"));
+        assertTrue(text, text.contains("  prepareTime=80 ms"));
+        assertTrue(text, text.contains("  underruns=2"));
+        assertTrue(text, text.contains("  timerWakeups=7"));
+        assertTrue(text, text.contains("  guiUpdates=11"));
+        assertTrue(text, text.contains("  cpuTimePerHour=4000 ms"));
+    }
+}
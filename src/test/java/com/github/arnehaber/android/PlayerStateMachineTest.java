@@ -0,0 +1,197 @@
+package com.github.arnehaber.android;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.github.arnehaber.android.PlayerStateMachine.State;
+
+/**
+ * Tests for the {@link PlayerStateMachine}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class PlayerStateMachineTest {
+
+    private static final int THREADS = 8;
+
+    private static final int ITERATIONS = 20000;
+
+    private PlayerStateMachine testee = new PlayerStateMachine();
+
+    @Test
+    public void testLifeCycle() {
+        assertEquals(State.IDLE, testee.get());
+        assertTrue(testee.transition(State.IDLE, State.PREPARING));
+        assertFalse(testee.isPrepared());
+        assertTrue(testee.transition(State.PREPARING, State.PREPARED));
+        assertTrue(testee.isPrepared());
+        assertTrue(testee.transition(State.PREPARED, State.PLAYING));
+        assertTrue(testee.transition(State.PLAYING, State.PAUSED));
+        assertTrue(testee.transition(State.PAUSED, State.PLAYING));
+        assertEquals(State.PLAYING, testee.stopPrepared());
+        assertEquals(State.STOPPING, testee.get());
+        assertNull(testee.stopPrepared());
+        assertTrue(testee.transition(State.STOPPING, State.IDLE));
+        assertTrue(testee.transition(State.IDLE, State.RELEASED));
+    }
+
+    @Test
+    public void testTransitionFromWrongState() {
+        assertFalse(testee.transition(State.PREPARING, State.PREPARED));
+        assertFalse(testee.transition(State.PLAYING, State.PAUSED));
+        assertEquals(State.IDLE, testee.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalTransition() {
+        testee.transition(State.IDLE, State.PLAYING);
+    }
+
+    @Test
+    public void testReleasedIsFinal() {
+        assertTrue(testee.transition(State.IDLE, State.RELEASED));
+        for (State target : State.values()) {
+            assertFalse(State.RELEASED.canTransitionTo(target));
+        }
+        assertNull(testee.stopPrepared());
+    }
+
+    @Test
+    public void testSingleWinner() throws InterruptedException {
+        final CountDownLatch startGate = new CountDownLatch(1);
+        final AtomicInteger winners = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < THREADS; i++) {
+            Thread t = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        startGate.await();
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                    if (testee.transition(State.IDLE, State.PREPARING)) {
+                        winners.incrementAndGet();
+                    }
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        startGate.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(1, winners.get());
+    }
+
+    /**
+     * Several threads tap play, pause and stop as fast as possible. The engine
+     * must never be prepared or released twice. Whether a started engine is
+     * prepared cannot be read atomically with the state while other threads
+     * run, so it is checked once all threads have finished.
+     */
+    @Test
+    public void testConcurrentTransitions() throws InterruptedException {
+        final AtomicBoolean enginePrepared = new AtomicBoolean(false);
+        final AtomicInteger prepares = new AtomicInteger();
+        final AtomicInteger releases = new AtomicInteger();
+        final AtomicInteger starts = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch startGate = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < THREADS; i++) {
+            final Random random = new Random(i);
+            Thread t = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        startGate.await();
+                        for (int j = 0; j < ITERATIONS; j++) {
+                            switch (random.nextInt(4)) {
+                            case 0:
+                                if (testee.transition(State.IDLE, State.PREPARING)) {
+                                    if (enginePrepared.getAndSet(true)) {
+                                        throw new IllegalStateException("prepared twice");
+                                    }
+                                    prepares.incrementAndGet();
+                                    assertTrue(testee.transition(State.PREPARING, State.PREPARED));
+                                }
+                                break;
+                            case 1:
+                                if (testee.transition(State.PREPARED, State.PLAYING) || testee.transition(State.PAUSED, State.PLAYING)) {
+                                    starts.incrementAndGet();
+                                }
+                                break;
+                            case 2:
+                                testee.transition(State.PLAYING, State.PAUSED);
+                                break;
+                            default:
+                                if (testee.stopPrepared() != null) {
+                                    if (!enginePrepared.getAndSet(false)) {
+                                        throw new IllegalStateException("released twice");
+                                    }
+                                    releases.incrementAndGet();
+                                    assertTrue(testee.transition(State.STOPPING, State.IDLE));
+                                }
+                                break;
+                            }
+                        }
+                    }
+                    catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        startGate.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        if (failure.get() != null) {
+            failure.get().printStackTrace();
+            fail(failure.get().toString());
+        }
+        assertTrue(prepares.get() > 0);
+        assertTrue(starts.get() > 0);
+        assertEquals(enginePrepared.get() ? 1 : 0, prepares.get() - releases.get());
+        assertEquals(enginePrepared.get(), testee.isPrepared());
+    }
+}
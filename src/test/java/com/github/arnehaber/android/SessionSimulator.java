@@ -0,0 +1,595 @@
+package com.github.arnehaber.android;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import android.content.ComponentCallbacks2;
+
+import com.github.arnehaber.android.PlayerStateMachine.State;
+import com.github.arnehaber.android.audio.AudioCommandThread;
+import com.github.arnehaber.android.audio.AudioSource;
+import com.github.arnehaber.android.audio.IAudioEngine;
+import com.github.arnehaber.android.benchmark.Percentiles;
+import com.github.arnehaber.android.helper.TimeConstants;
+import com.github.arnehaber.android.helper.VirtualScheduler;
+
+/**
+ * Simulates sessions of a {@link TimedSleepPlayer} on a
+ * {@link VirtualScheduler}. The GUI and the audio thread share the virtual
+ * scheduler and the audio engine is simulated, so hours of play back take
+ * milliseconds. Each session applies random Play, Pause, Stop, sleep time,
+ * display and trim memory events and checks after each of them that the
+ * player's state matches the engine, that the engine plays exactly when the
+ * user wants it to and that play back ends when the sleep timer is due.
+ * Simulations with the same seed are reproducible.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class SessionSimulator {
+
+    /**
+     * Maximum number of violation messages kept in a {@link Report}.
+     */
+    private static final int MAX_MESSAGES = 20;
+
+    /**
+     * Mean time between two user events in ms.
+     */
+    private static final int MEAN_EVENT_INTERVAL = 8 * 60 * TimeConstants.SECOND;
+
+    /**
+     * Maximum time the simulated engine needs to prepare in ms.
+     */
+    private static final int MAX_PREPARE_TIME = 500;
+
+    /**
+     * Probability that preparing the simulated engine fails.
+     */
+    private static final double PREPARE_FAILURE_RATE = 0.01;
+
+    private final Random random;
+
+    private final Report report = new Report();
+
+    private VirtualScheduler scheduler;
+
+    private SimulatedEngine engine;
+
+    private TimedSleepPlayer player;
+
+    /**
+     * True, if the user wants to hear audio.
+     */
+    private boolean playWanted;
+
+    /**
+     * The sleep time set by the user in ms.
+     */
+    private int sleepTime;
+
+    /**
+     * Time the sleep timer is expected to expire, or -1.
+     */
+    private long deadline;
+
+    /**
+     * {@link AudioCommandThread} that executes all commands on a
+     * {@link VirtualScheduler}.
+     */
+    public static class VirtualAudioThread extends AudioCommandThread {
+
+        private final VirtualScheduler scheduler;
+
+        /**
+         * 
+         * @param scheduler
+         *            the scheduler to execute the commands on.
+         */
+        public VirtualAudioThread(VirtualScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            scheduler.post(command);
+        }
+
+        @Override
+        public void executeDelayed(Runnable command, long delayMillis) {
+            scheduler.postDelayed(command, delayMillis);
+        }
+
+        @Override
+        public void remove(Runnable command) {
+            scheduler.removeCallbacks(command);
+        }
+
+        @Override
+        public void quit() {
+            // pending commands are still executed
+        }
+    }
+
+    /**
+     * Results of a simulation.
+     */
+    public static class Report {
+
+        private int sessions = 0;
+
+        private long simulatedTime = 0;
+
+        private long userEvents = 0;
+
+        private long wakeups = 0;
+
+        private long guiUpdates = 0;
+
+        private long violations = 0;
+
+        private final Percentiles timerErrors = new Percentiles("timer error", 1024);
+
+        private final List<String> messages = new ArrayList<String>();
+
+        /**
+         * 
+         * @return the number of simulated sessions.
+         */
+        public int getSessions() {
+            return sessions;
+        }
+
+        /**
+         * 
+         * @return the simulated time of all sessions in ms.
+         */
+        public long getSimulatedTime() {
+            return simulatedTime;
+        }
+
+        /**
+         * 
+         * @return the number of applied user events.
+         */
+        public long getUserEvents() {
+            return userEvents;
+        }
+
+        /**
+         * 
+         * @return the number of sleep timer wakeups.
+         */
+        public long getWakeups() {
+            return wakeups;
+        }
+
+        /**
+         * 
+         * @return the number of GUI updates.
+         */
+        public long getGuiUpdates() {
+            return guiUpdates;
+        }
+
+        /**
+         * 
+         * @return the end of play back minus the due time of the sleep timer
+         *         in ms, one sample per expired timer.
+         */
+        public Percentiles getTimerErrors() {
+            return timerErrors;
+        }
+
+        /**
+         * 
+         * @return the number of detected state machine violations.
+         */
+        public long getViolations() {
+            return violations;
+        }
+
+        /**
+         * 
+         * @return the first detected violations.
+         */
+        public List<String> getMessages() {
+            return messages;
+        }
+
+        private void violation(int session, long time, String message) {
+            violations++;
+            if (messages.size() < MAX_MESSAGES) {
+                messages.add("session " + session + " at " + time + " ms: " + message);
+            }
+        }
+
+        @Override
+        public String toString() {
+            double hours = simulatedTime / (3600.0 * TimeConstants.SECOND);
+            StringBuilder result = new StringBuilder();
+            result.append(String.format("%-20s %d%n", "sessions", sessions));
+            result.append(String.format("%-20s %.1f h%n", "simulated time", hours));
+            result.append(String.format("%-20s %d%n", "user events", userEvents));
+            if (timerErrors.size() > 0) {
+                result.append(String.format("%-20s n=%4d p50=%d ms p99=%d ms max=%d ms%n", "timer error",
+                        timerErrors.size(), timerErrors.get(50), timerErrors.get(99), timerErrors.get(100)));
+            }
+            result.append(String.format("%-20s %d (%.1f/h)%n", "wakeups", wakeups, wakeups / hours));
+            result.append(String.format("%-20s %d (%.1f/h)%n", "GUI updates", guiUpdates, guiUpdates / hours));
+            result.append(String.format("%-20s %d", "violations", violations));
+            for (String message : messages) {
+                result.append(String.format("%n  %s", message));
+            }
+            return result.toString();
+        }
+    }
+
+    /**
+     * Engine states as documented for {@link android.media.MediaPlayer}.
+     */
+    private enum EngineState {
+        IDLE, PREPARING, PREPARED, STARTED, PAUSED, STOPPED
+    }
+
+    /**
+     * {@link IAudioEngine} on virtual time. Prepares after a random delay, fails
+     * either synchronously or asynchronously, and reports calls that are
+     * illegal in its current state as violations. Like the real engines, it
+     * accepts a release in any state.
+     */
+    private class SimulatedEngine implements IAudioEngine {
+
+        private EngineState state = EngineState.IDLE;
+
+        /**
+         * Incremented on release, so callbacks of a released preparation are
+         * dropped.
+         */
+        private int generation = 0;
+
+        private long position = 0;
+
+        private long startedAt = 0;
+
+        private PrepareListener listener;
+
+        /**
+         * Time the scheduled fade out becomes silent, or -1.
+         */
+        private long silentAt = -1;
+
+        public void prepareAsync(AudioSource source, final PrepareListener listener) throws IOException {
+            require("prepareAsync", EngineState.IDLE);
+            final boolean fails = random.nextDouble() < PREPARE_FAILURE_RATE;
+            if (fails && random.nextBoolean()) {
+                // e.g. a source that cannot be opened; nothing was acquired
+                playWanted = false;
+                throw new IOException("Simulated synchronous failure");
+            }
+            state = EngineState.PREPARING;
+            this.listener = listener;
+            final int prepared = generation;
+            scheduler.postDelayed(new Runnable() {
+                public void run() {
+                    if (generation != prepared) {
+                        return;
+                    }
+                    if (fails) {
+                        playWanted = false;
+                        listener.onError(new IOException("Simulated failure"));
+                    }
+                    else {
+                        state = EngineState.PREPARED;
+                        listener.onPrepared();
+                    }
+                }
+            }, random.nextInt(MAX_PREPARE_TIME));
+        }
+
+        public void start() {
+            require("start", EngineState.PREPARED, EngineState.PAUSED);
+            state = EngineState.STARTED;
+            startedAt = scheduler.elapsedRealtime();
+            // the sleep timer starts along with play back
+            deadline = startedAt + sleepTime;
+            listener.onStarted();
+        }
+
+        public void pause() {
+            require("pause", EngineState.STARTED);
+            stopped();
+            state = EngineState.PAUSED;
+        }
+
+        public void stop() {
+            require("stop", EngineState.PREPARED, EngineState.STARTED, EngineState.PAUSED);
+            stopped();
+            state = EngineState.STOPPED;
+        }
+
+        public void rewind() {
+            require("rewind", EngineState.PREPARED, EngineState.PAUSED);
+            position = 0;
+        }
+
+        public void fadeOut(int remaining, int length) {
+            require("fadeOut", EngineState.PREPARED, EngineState.STARTED, EngineState.PAUSED);
+            silentAt = length > 0 ? scheduler.elapsedRealtime() + remaining : -1;
+        }
+
+        public void cancelFadeOut() {
+            silentAt = -1;
+        }
+
+        public void release() {
+            if (state == EngineState.STARTED) {
+                stopped();
+            }
+            state = EngineState.IDLE;
+            generation++;
+            position = 0;
+            silentAt = -1;
+        }
+
+        public boolean isPlaying() {
+            return state == EngineState.STARTED;
+        }
+
+        public int getDuration() {
+            require("getDuration", EngineState.PREPARED, EngineState.STARTED, EngineState.PAUSED);
+            return 30 * TimeConstants.SECOND;
+        }
+
+        public int getCurrentPosition() {
+            require("getCurrentPosition", EngineState.PREPARED, EngineState.STARTED, EngineState.PAUSED);
+            long current = position;
+            if (state == EngineState.STARTED) {
+                current += scheduler.elapsedRealtime() - startedAt;
+            }
+            return (int) (current % getDuration());
+        }
+
+        public long getUnderrunCount() {
+            return 0;
+        }
+
+        /**
+         * Ends play back. Play back the user still wants must have been ended
+         * by the sleep timer.
+         */
+        private void stopped() {
+            if (state != EngineState.STARTED) {
+                return;
+            }
+            long now = scheduler.elapsedRealtime();
+            position += now - startedAt;
+            if (playWanted) {
+                if (deadline < 0) {
+                    violation("play back ended without request or running timer");
+                }
+                else {
+                    report.timerErrors.add(now - deadline);
+                }
+                playWanted = false;
+            }
+            deadline = -1;
+        }
+
+        private void require(String method, EngineState... legal) {
+            for (EngineState s : legal) {
+                if (state == s) {
+                    return;
+                }
+            }
+            violation(method + " called in " + state);
+        }
+    }
+
+    /**
+     * 
+     * @param seed
+     *            seed of the random events.
+     */
+    public SessionSimulator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Runs further sessions.
+     * 
+     * @param sessions
+     *            the number of sessions to run.
+     * @param sessionTime
+     *            the simulated time of each session in ms.
+     * @return the results of all sessions run so far.
+     */
+    public Report run(int sessions, long sessionTime) {
+        for (int i = 0; i < sessions; i++) {
+            runSession(sessionTime);
+        }
+        return report;
+    }
+
+    private void runSession(long sessionTime) {
+        scheduler = new VirtualScheduler();
+        engine = new SimulatedEngine();
+        player = new TimedSleepPlayer(new IOceanWavesGui() {
+            public void updateTime(char[] time, int length) {
+            }
+
+            public void updateProgress(int progress) {
+            }
+        }, null, engine, new VirtualAudioThread(scheduler), scheduler);
+        playWanted = false;
+        deadline = -1;
+        sleepTime = player.getSleepTime();
+        player.setKeepWarmTime(random.nextBoolean() ? TimeConstants.DEFAULT_KEEP_WARM_TIME : 0);
+        player.setFadeOutTime(random.nextBoolean() ? TimeConstants.DEFAULT_FADE_OUT_TIME : 0);
+        boolean visible = random.nextBoolean();
+        player.setDisplayVisible(visible);
+
+        long next = nextEventTime();
+        while (next < sessionTime) {
+            advanceTo(next);
+            visible = applyRandomEvent(visible);
+            report.userEvents++;
+            advanceTo(next);
+            next = nextEventTime();
+        }
+        advanceTo(sessionTime);
+        report.wakeups += player.getMetrics().getTimerWakeups();
+        report.guiUpdates += player.getMetrics().getGuiUpdates();
+
+        playWanted = false;
+        deadline = -1;
+        player.release();
+        advanceTo(sessionTime);
+        if (player.getState() != State.RELEASED || engine.state != EngineState.IDLE) {
+            violation("released player is " + player.getState() + ", engine is " + engine.state);
+        }
+        // nothing may keep waking up a released player
+        scheduler.advanceBy(TimeConstants.MAX_SLEEP_TIME);
+        if (scheduler.getPendingCount() > 0) {
+            violation(scheduler.getPendingCount() + " callbacks pending after release");
+        }
+        report.simulatedTime += sessionTime;
+        report.sessions++;
+    }
+
+    private long nextEventTime() {
+        double interval = -Math.log(1 - random.nextDouble()) * MEAN_EVENT_INTERVAL;
+        return scheduler.elapsedRealtime() + 1 + (long) interval;
+    }
+
+    /**
+     * Applies a random user event.
+     * 
+     * @param visible
+     *            true, if the display is visible.
+     * @return true, if the display is visible afterwards.
+     */
+    private boolean applyRandomEvent(boolean visible) {
+        int event = random.nextInt(100);
+        if (event < 30) {
+            playWanted = true;
+            player.startPlayer();
+        }
+        else if (event < 40) {
+            userStop();
+            player.pausePlayer();
+        }
+        else if (event < 50) {
+            userStop();
+            player.stopPlayer();
+        }
+        else if (event < 75) {
+            // mostly full length sleep times, some shorter than a fade out
+            sleepTime = random.nextInt(5) == 0 ? TimeConstants.SECOND * (1 + random.nextInt(120))
+                    : TimeConstants.SECOND * (60 + random.nextInt(TimeConstants.MAX_SLEEP_TIME / TimeConstants.SECOND - 59));
+            if (deadline >= 0) {
+                deadline = scheduler.elapsedRealtime() + sleepTime;
+            }
+            player.setSleepTime(sleepTime);
+        }
+        else if (event < 95) {
+            visible = !visible;
+            player.setDisplayVisible(visible);
+        }
+        else {
+            player.onTrimMemory(random.nextBoolean() ? ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+                    : ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+        return visible;
+    }
+
+    private void userStop() {
+        playWanted = false;
+        deadline = -1;
+    }
+
+    /**
+     * Runs all callbacks up to the given time and checks the player each
+     * time the virtual clock moved on.
+     */
+    private void advanceTo(long time) {
+        long next = scheduler.getNextTime();
+        while (next >= 0 && next <= time) {
+            scheduler.advanceTo(next);
+            check();
+            next = scheduler.getNextTime();
+        }
+        scheduler.advanceTo(time);
+        check();
+    }
+
+    private void check() {
+        State state = player.getState();
+        EngineState expected;
+        switch (state) {
+        case PREPARING:
+            expected = EngineState.PREPARING;
+            break;
+        case PREPARED:
+            expected = EngineState.PREPARED;
+            break;
+        case PLAYING:
+            expected = EngineState.STARTED;
+            break;
+        case PAUSED:
+            expected = EngineState.PAUSED;
+            break;
+        case STOPPING:
+            violation("player stuck in " + state);
+            return;
+        default:
+            expected = EngineState.IDLE;
+        }
+        if (engine.state != expected) {
+            violation("player is " + state + ", engine is " + engine.state);
+        }
+        boolean playing = engine.state == EngineState.STARTED;
+        if (playWanted && !playing && engine.state != EngineState.PREPARING) {
+            violation("engine is " + engine.state + " although play back was requested");
+        }
+        if (!playWanted && playing) {
+            violation("engine plays although play back was not requested");
+        }
+        long now = scheduler.elapsedRealtime();
+        if (playing && deadline >= 0 && now > deadline) {
+            violation("engine still plays " + (now - deadline) + " ms after the sleep timer expired");
+        }
+        if (playing && player.getFadeOutTime() > 0 && engine.silentAt != deadline) {
+            violation("fade out ends at " + engine.silentAt + ", sleep timer at " + deadline);
+        }
+        if (player.getSleepTime() != sleepTime) {
+            violation("sleep time is " + player.getSleepTime() + " instead of " + sleepTime);
+        }
+    }
+
+    private void violation(String message) {
+        report.violation(report.sessions, scheduler.elapsedRealtime(), message);
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.arnehaber.android;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import com.github.arnehaber.android.benchmark.Percentiles;
+import com.github.arnehaber.android.helper.TimeConstants;
+
+/**
+ * Runs random sessions of the {@link TimedSleepPlayer} on virtual time with
+ * the {@link SessionSimulator}. The number of sessions, their simulated
+ * length in hours and the seed can be overridden with the system properties
+ * <code>simulation.sessions</code>, <code>simulation.hours</code> and
+ * <code>simulation.seed</code>.
+ * 
+ * @author Arne Haber
+ * 
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SessionSimulatorTest {
+
+    private static final String PREFIX = "simulation.";
+
+    private static final long HOUR = 3600L * TimeConstants.SECOND;
+
+    @Test
+    public void testRandomSessions() {
+        int sessions = Integer.getInteger(PREFIX + "sessions", 2000);
+        long sessionTime = Long.getLong(PREFIX + "hours", 4) * HOUR;
+        long seed = Long.getLong(PREFIX + "seed", 42);
+
+        long mark = System.nanoTime();
+        SessionSimulator.Report report = new SessionSimulator(seed).run(sessions, sessionTime);
+        long wallTime = System.nanoTime() - mark;
+
+        System.out.println(report);
+        System.out.println(String.format("%-20s %.3f s", "wall time", wallTime / 1e9));
+
+        assertEquals(report.toString(), 0, report.getViolations());
+        // virtual time has no jitter, so play back ends exactly on time
+        Percentiles timerErrors = report.getTimerErrors();
+        assertTrue(timerErrors.size() > 0);
+        assertEquals(0, timerErrors.get(Double.MIN_VALUE));
+        assertEquals(0, timerErrors.get(100));
+    }
+
+    @Test
+    public void testReproducible() {
+        SessionSimulator.Report first = new SessionSimulator(7).run(20, HOUR);
+        SessionSimulator.Report second = new SessionSimulator(7).run(20, HOUR);
+
+        assertEquals(first.toString(), second.toString());
+    }
+}
@@ -0,0 +1,194 @@
+package com.github.arnehaber.android;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.robolectric.RobolectricTestRunner;
+
+import com.github.arnehaber.android.helper.IScheduler;
+import com.github.arnehaber.android.helper.TimeConstants;
+
+/**
+ * Tests for the {@link SleepTimer}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SleepTimerTest {
+
+    private IScheduler mockedScheduler = Mockito.mock(IScheduler.class);
+
+    private SleepTimer.Listener mockedListener = Mockito.mock(SleepTimer.Listener.class);
+
+    private long now = 1000000;
+
+    private SleepTimer testee;
+
+    @Before
+    public void setUp() {
+        testee = new SleepTimer(mockedScheduler, mockedListener) {
+            @Override
+            protected long elapsedRealtime() {
+                return now;
+            }
+        };
+    }
+
+    @Test
+    public void testRemainingTimeNotRunning() {
+        assertFalse(testee.isRunning());
+        assertEquals(TimeConstants.DEFAULT_TIME, testee.getRemainingTime());
+        testee.setDuration(5000);
+        assertEquals(5000, testee.getRemainingTime());
+    }
+
+    @Test
+    public void testStartSchedulesSingleWakeup() {
+        testee.setDuration(5000);
+        testee.start();
+        assertTrue(testee.isRunning());
+        verify(mockedScheduler, times(1)).postDelayed(Mockito.any(Runnable.class), Mockito.anyLong());
+        verify(mockedScheduler, times(1)).postDelayed(Mockito.any(Runnable.class), Mockito.eq(5000L));
+    }
+
+    @Test
+    public void testRemainingTimeFollowsDeadline() {
+        testee.setDuration(5000);
+        testee.start();
+        now += 1234;
+        assertEquals(5000 - 1234, testee.getRemainingTime());
+        now += 10000;
+        assertEquals(0, testee.getRemainingTime());
+    }
+
+    @Test
+    public void testEarlyWakeupReschedules() {
+        testee.setDuration(5000);
+        testee.start();
+        Runnable expiry = captureLastPosted();
+
+        now += 4000;
+        expiry.run();
+        assertTrue(testee.isRunning());
+        verify(mockedScheduler, times(1)).postDelayed(expiry, 1000L);
+        verify(mockedListener, never()).onExpired();
+    }
+
+    @Test
+    public void testExpiry() {
+        testee.setDuration(5000);
+        testee.start();
+        Runnable expiry = captureLastPosted();
+
+        now += 5017;
+        expiry.run();
+        assertFalse(testee.isRunning());
+        verify(mockedListener, times(1)).onExpired();
+        assertEquals(5000, testee.getRemainingTime());
+    }
+
+    @Test
+    public void testCancel() {
+        testee.setDuration(5000);
+        testee.start();
+        now += 2000;
+        testee.cancel();
+        assertFalse(testee.isRunning());
+        assertEquals(5000, testee.getRemainingTime());
+    }
+
+    @Test
+    public void testSetDurationWhileRunningRestarts() {
+        testee.setDuration(5000);
+        testee.start();
+        now += 2000;
+        testee.setDuration(8000);
+        assertTrue(testee.isRunning());
+        assertEquals(8000, testee.getRemainingTime());
+        verify(mockedScheduler, times(1)).postDelayed(Mockito.any(Runnable.class), Mockito.eq(8000L));
+    }
+
+    @Test
+    public void testNoTicksWhileInvisible() {
+        testee.setDuration(5000);
+        testee.start();
+        // only the expiry wakeup
+        verify(mockedScheduler, times(1)).postDelayed(Mockito.any(Runnable.class), Mockito.anyLong());
+    }
+
+    @Test
+    public void testTicksAlignToDisplayedSecond() {
+        testee.setDuration(5000);
+        testee.start();
+        now += 300;
+        testee.setDisplayVisible(true);
+        // next display change when 3999 ms remain
+        verify(mockedScheduler, times(1)).postDelayed(Mockito.any(Runnable.class), Mockito.eq(701L));
+        Runnable tick = captureLastPosted();
+
+        // a late tick still schedules the next change from the deadline
+        now += 950;
+        tick.run();
+        verify(mockedListener, times(1)).onTick();
+        verify(mockedScheduler, times(1)).postDelayed(tick, 751L);
+    }
+
+    @Test
+    public void testHideStopsTicks() {
+        testee.setDuration(5000);
+        testee.start();
+        testee.setDisplayVisible(true);
+        Runnable tick = captureLastPosted();
+        testee.setDisplayVisible(false);
+        verify(mockedScheduler, Mockito.atLeastOnce()).removeCallbacks(tick);
+    }
+
+    @Test
+    public void testWakeupCount() {
+        testee.setDuration(5000);
+        testee.start();
+        testee.setDisplayVisible(true);
+        assertEquals(0, testee.getWakeupCount());
+
+        Runnable tick = captureLastPosted();
+        now += 1000;
+        tick.run();
+        assertEquals(1, testee.getWakeupCount());
+    }
+
+    private Runnable captureLastPosted() {
+        ArgumentCaptor<Runnable> runnable = ArgumentCaptor.forClass(Runnable.class);
+        verify(mockedScheduler, Mockito.atLeastOnce()).postDelayed(runnable.capture(), Mockito.anyLong());
+        return runnable.getValue();
+    }
+}
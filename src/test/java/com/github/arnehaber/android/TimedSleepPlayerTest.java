@@ -26,28 +26,51 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 
+import android.content.ComponentCallbacks2;
 import android.content.res.AssetFileDescriptor;
 import android.media.MediaPlayer;
+import android.media.MediaPlayer.OnErrorListener;
+import android.media.MediaPlayer.OnPreparedListener;
 import android.os.Handler;
 
+import com.github.arnehaber.android.PlayerStateMachine.State;
+import com.github.arnehaber.android.audio.AssetSource;
+import com.github.arnehaber.android.audio.AudioCommandThread;
+import com.github.arnehaber.android.audio.AudioSource;
+import com.github.arnehaber.android.audio.IAudioEngine;
+import com.github.arnehaber.android.audio.MediaPlayerEngine;
+import com.github.arnehaber.android.audio.PcmLoopEngine;
+import com.github.arnehaber.android.benchmark.AllocationCounter;
+import com.github.arnehaber.android.helper.HandlerScheduler;
+import com.github.arnehaber.android.helper.IScheduler;
 import com.github.arnehaber.android.helper.TimeConstants;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.google.inject.Provider;
 
 /**
  * Tests for the {@link TimedSleepPlayer}.
@@ -59,25 +82,75 @@ import com.google.inject.Injector;
 public class TimedSleepPlayerTest {
 
     private IOceanWavesGui mockedGui = Mockito.mock(IOceanWavesGui.class);
+    private AssetSource mockedSource = Mockito.mock(AssetSource.class);
     private MediaPlayer mockedPlayer = Mockito.mock(MediaPlayer.class);
     private Handler mockedHandler = Mockito.mock(Handler.class);
+    private IAudioEngine spiedEngine = Mockito.spy(new MediaPlayerEngine(new Provider<MediaPlayer>() {
+        public MediaPlayer get() {
+            return mockedPlayer;
+        }
+    }));
+
+    /**
+     * The last command executed delayed on the audio thread.
+     */
+    private Runnable delayedCommand;
+
+    private long commandDelay;
+
+    /**
+     * All times displayed by the GUI.
+     */
+    private List<String> displayedTimes = new ArrayList<String>();
 
     private TimedSleepPlayer testee;
 
     @Before
     public void setUp() {
+        // the time buffer is reused, so record its content on each call
+        Mockito.doAnswer(new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation) {
+                Object[] args = invocation.getArguments();
+                displayedTimes.add(new String((char[]) args[0], 0, (Integer) args[1]));
+                return null;
+            }
+        }).when(mockedGui).updateTime(Mockito.any(char[].class), Mockito.anyInt());
+
         final AbstractModule testModule = new AbstractModule() {
             @Override
             protected void configure() {
                 bind(IOceanWavesGui.class).toInstance(mockedGui);
+                bind(AudioSource.class).toInstance(mockedSource);
                 bind(MediaPlayer.class).toInstance(mockedPlayer);
-                bind(Handler.class).toInstance(mockedHandler);
+                bind(IAudioEngine.class).toInstance(spiedEngine);
+                bind(IScheduler.class).toInstance(new HandlerScheduler(mockedHandler));
+                // execute audio commands synchronously
+                bind(AudioCommandThread.class).toInstance(new AudioCommandThread() {
+                    @Override
+                    public void execute(Runnable command) {
+                        command.run();
+                    }
+
+                    @Override
+                    public void executeDelayed(Runnable command, long delayMillis) {
+                        delayedCommand = command;
+                        commandDelay = delayMillis;
+                    }
+
+                    @Override
+                    public void remove(Runnable command) {
+                        if (command == delayedCommand) {
+                            delayedCommand = null;
+                        }
+                    }
+                });
                 bind(ITimedSleepPlayer.class).to(TimedSleepPlayer.class);
             }
         };
 
         Injector i = Guice.createInjector(testModule);
         testee = i.getInstance(TimedSleepPlayer.class);
+        testee.setDisplayVisible(true);
     }
 
     @Test
@@ -93,7 +166,7 @@ public class TimedSleepPlayerTest {
         int pos = 123;
         int expected = 2003;
         testee.setSleepTime(expected);
-        verify(mockedGui).updateTime("0:02");
+        assertTimeDisplayed("0:02", 1);
         when(mockedPlayer.getCurrentPosition()).thenReturn(pos);
         verify(mockedPlayer, never()).isPlaying();
         verify(mockedPlayer, never()).getCurrentPosition();
@@ -107,12 +180,12 @@ public class TimedSleepPlayerTest {
     public void setSleepTimeInitialized() {
         int pos = 123;
         int expected = 2003;
-        when(mockedPlayer.isPlaying()).thenReturn(true);
         when(mockedPlayer.getCurrentPosition()).thenReturn(pos);
         testInitializeTestee();
+        testee.startPlayer();
         testee.setSleepTime(expected);
 
-        verify(mockedGui).updateTime(TimeConstants.timeToString(expected));
+        assertTimeDisplayed(TimeConstants.timeToString(expected), 1);
 
         verify(mockedGui, times(1)).updateProgress(pos);
 
@@ -122,15 +195,21 @@ public class TimedSleepPlayerTest {
     @Test
     public void testInitializeTestee() {
         try {
-            when(mockedGui.getSelectedAudioFile()).thenReturn(mock(AssetFileDescriptor.class));
+            when(mockedSource.openFd()).thenReturn(mock(AssetFileDescriptor.class));
+            assertTrue(getStateMachine().transition(State.IDLE, State.PREPARING));
             Method initializePlayer = testee.getClass().getDeclaredMethod("initializePlayer");
             initializePlayer.setAccessible(true);
             initializePlayer.invoke(testee);
-            verify(mockedGui, times(1)).getSelectedAudioFile();
+            verify(mockedSource, times(1)).openFd();
             verify(mockedPlayer, times(1)).setDataSource(null, 0, 0);
-            verify(mockedPlayer, times(1)).prepare();
+            verify(mockedPlayer, times(1)).prepareAsync();
+            verify(mockedPlayer, never()).prepare();
+            assertFalse(isInitialized());
+
+            firePrepared();
             verify(mockedPlayer, times(1)).setLooping(true);
             assertTrue(isInitialized());
+            assertEquals(State.PREPARED, testee.getState());
         }
         catch (Exception e) {
             e.printStackTrace();
@@ -141,7 +220,7 @@ public class TimedSleepPlayerTest {
     @Test
     public void testPausePlayerUninitialized() {
         testee.pausePlayer();
-        verify(mockedGui, never()).updateTime(null);
+        verify(mockedGui, never()).updateTime(null, 0);
         verify(mockedPlayer, never()).isPlaying();
         verify(mockedPlayer, never()).pause();
     }
@@ -150,59 +229,59 @@ public class TimedSleepPlayerTest {
     public void testPausePlayerInitializedPlaying() {
         int pos = 123;
         when(mockedPlayer.getCurrentPosition()).thenReturn(pos);
-        when(mockedPlayer.isPlaying()).thenReturn(true);
-        ArgumentCaptor<Runnable> argument = ArgumentCaptor.forClass(Runnable.class);
         testInitializeTestee();
+        testee.startPlayer();
+        getSleepTimer().start();
 
         testee.pausePlayer();
 
-        verify(mockedGui, times(1)).updateTime(TimeConstants.timeToString(TimeConstants.DEFAULT_TIME));
-        verify(mockedPlayer, times(2)).isPlaying();
+        assertTimeDisplayed(TimeConstants.timeToString(TimeConstants.DEFAULT_TIME), 1);
         verify(mockedGui, times(1)).updateProgress(pos);
-        verify(mockedHandler, times(1)).removeCallbacks(argument.capture());
+        assertFalse(getSleepTimer().isRunning());
         verify(mockedPlayer, times(1)).pause();
+        assertEquals(State.PAUSED, testee.getState());
     }
 
     @Test
     public void testPausePlayerInitializedNotPlaying() {
         int pos = 123;
         when(mockedPlayer.getCurrentPosition()).thenReturn(pos);
-        when(mockedPlayer.isPlaying()).thenReturn(false);
-        ArgumentCaptor<Runnable> argument = ArgumentCaptor.forClass(Runnable.class);
         testInitializeTestee();
 
         testee.pausePlayer();
 
-        verify(mockedGui, times(1)).updateTime(TimeConstants.timeToString(TimeConstants.DEFAULT_TIME));
-        verify(mockedPlayer, times(2)).isPlaying();
+        assertTimeDisplayed(TimeConstants.timeToString(TimeConstants.DEFAULT_TIME), 1);
         verify(mockedGui, never()).updateProgress(pos);
-        verify(mockedHandler, never()).removeCallbacks(argument.capture());
-        verify(mockedPlayer, times(1)).pause();
+        assertFalse(getSleepTimer().isRunning());
+        verify(mockedPlayer, never()).pause();
+        assertEquals(State.PREPARED, testee.getState());
     }
 
     @Test
-    public void testStartPlayerUninitialized() {
+    public void testStartPlayerUninitialized() throws IOException {
         assertFalse(isInitialized());
-        when(mockedPlayer.isPlaying()).thenReturn(false);
-        when(mockedGui.getSelectedAudioFile()).thenReturn(mock(AssetFileDescriptor.class));
+        when(mockedSource.openFd()).thenReturn(mock(AssetFileDescriptor.class));
         ArgumentCaptor<Runnable> runnable = ArgumentCaptor.forClass(Runnable.class);
-        ArgumentCaptor<Integer> delay = ArgumentCaptor.forClass(Integer.class);
         testee.startPlayer();
-        // we have to wait a bit to let the started Thread finish
-        try {
-            Thread.sleep(100);
-        }
-        catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+
+        // play back starts when the player is prepared
+        verify(mockedPlayer, times(1)).prepareAsync();
+        verify(mockedPlayer, never()).start();
+        firePrepared();
 
         // check, if the player is initialized
         assertTrue(isInitialized());
         verify(mockedPlayer, times(1)).setLooping(true);
 
-        verify(mockedPlayer, times(1)).isPlaying();
         verify(mockedPlayer, times(1)).start();
-        verify(mockedHandler, times(1)).postDelayed(runnable.capture(), delay.capture());
+        assertEquals(State.PLAYING, testee.getState());
+        verify(mockedHandler, times(1)).post(runnable.capture());
+        assertTrue(testee.getLastStartLatency() >= 0);
+
+        // the posted runnable starts the sleep timer
+        runnable.getValue().run();
+        assertTrue(getSleepTimer().isRunning());
+        verify(mockedHandler, times(1)).postDelayed(Mockito.any(Runnable.class), Mockito.eq((long) TimeConstants.DEFAULT_TIME));
     }
 
     @Test
@@ -212,24 +291,20 @@ public class TimedSleepPlayerTest {
         // reset player mock to remove initialized calls from
         // testInitializeTestee.
         Mockito.reset(mockedPlayer);
-        when(mockedPlayer.isPlaying()).thenReturn(false);
 
         ArgumentCaptor<Runnable> runnable = ArgumentCaptor.forClass(Runnable.class);
-        ArgumentCaptor<Integer> delay = ArgumentCaptor.forClass(Integer.class);
         testee.startPlayer();
-        // we have to wait a bit to let the started Thread finish
-        try {
-            Thread.sleep(100);
-        }
-        catch (InterruptedException e) {
-            e.printStackTrace();
-        }
         // check, that init has not been called
+        verify(mockedPlayer, never()).prepareAsync();
         verify(mockedPlayer, never()).setLooping(true);
 
-        verify(mockedPlayer, times(1)).isPlaying();
         verify(mockedPlayer, times(1)).start();
-        verify(mockedHandler, times(1)).postDelayed(runnable.capture(), delay.capture());
+        verify(mockedHandler, times(1)).post(runnable.capture());
+
+        // the posted runnable starts the sleep timer
+        runnable.getValue().run();
+        assertTrue(getSleepTimer().isRunning());
+        verify(mockedHandler, times(1)).postDelayed(Mockito.any(Runnable.class), Mockito.eq((long) TimeConstants.DEFAULT_TIME));
     }
 
     @Test
@@ -238,21 +313,298 @@ public class TimedSleepPlayerTest {
         assertTrue(isInitialized());
         // reset player mock to remove initialized calls from
         // testInitializeTestee.
+        testee.startPlayer();
         Mockito.reset(mockedPlayer);
-        when(mockedPlayer.isPlaying()).thenReturn(true);
 
         testee.startPlayer();
-        // we have to wait a bit to let the started Thread finish
-        try {
-            Thread.sleep(100);
-        }
-        catch (InterruptedException e) {
-            e.printStackTrace();
-        }
         // check, that init has not been called
         verify(mockedPlayer, never()).setLooping(true);
 
         verify(mockedPlayer, never()).start();
+        assertEquals(State.PLAYING, testee.getState());
+    }
+
+    @Test
+    public void testResumePausedPlayer() {
+        testInitializeTestee();
+        testee.startPlayer();
+        testee.pausePlayer();
+        testee.startPlayer();
+
+        verify(mockedPlayer, times(1)).prepareAsync();
+        verify(mockedPlayer, times(2)).start();
+        assertEquals(State.PLAYING, testee.getState());
+    }
+
+    @Test
+    public void testSetAudioSourceWhilePlaying() throws IOException {
+        testInitializeTestee();
+        testee.startPlayer();
+        AssetSource other = mock(AssetSource.class);
+        when(other.openFd()).thenReturn(mock(AssetFileDescriptor.class));
+
+        testee.setAudioSource(other);
+
+        // the engine is prepared again with the new audio and restarts
+        verify(mockedPlayer, times(1)).release();
+        verify(other, times(1)).openFd();
+        assertEquals(State.PREPARING, testee.getState());
+        firePrepared();
+        verify(mockedPlayer, times(2)).start();
+        assertEquals(State.PLAYING, testee.getState());
+    }
+
+    @Test
+    public void testSetAudioSourceWhilePaused() throws IOException {
+        testInitializeTestee();
+        AssetSource other = mock(AssetSource.class);
+
+        testee.setAudioSource(other);
+        testee.setAudioSource(other);
+
+        verify(mockedPlayer, times(1)).release();
+        verify(other, never()).openFd();
+        assertEquals(State.IDLE, testee.getState());
+    }
+
+    @Test
+    public void testWarmRestartAfterStop() {
+        testInitializeTestee();
+        testee.startPlayer();
+        testee.stopPlayer();
+        assertEquals(State.PAUSED, testee.getState());
+        verify(mockedPlayer, times(1)).seekTo(0);
+
+        // restart uses the warm player
+        testee.startPlayer();
+        verify(mockedPlayer, times(1)).prepareAsync();
+        verify(mockedPlayer, times(2)).start();
+        assertEquals(State.PLAYING, testee.getState());
+        assertEquals(null, delayedCommand);
+    }
+
+    @Test
+    public void testRestartAfterKeepWarmTime() {
+        testInitializeTestee();
+        testee.startPlayer();
+        testee.stopPlayer();
+        delayedCommand.run();
+        assertEquals(State.IDLE, testee.getState());
+
+        testee.startPlayer();
+        verify(mockedPlayer, times(2)).prepareAsync();
+        assertEquals(State.PREPARING, testee.getState());
+    }
+
+    @Test
+    public void testKeepWarmDisabled() {
+        testee.setKeepWarmTime(0);
+        testInitializeTestee();
+        testee.startPlayer();
+        testee.stopPlayer();
+
+        verify(mockedPlayer, times(1)).stop();
+        verify(mockedPlayer, times(1)).release();
+        assertEquals(State.IDLE, testee.getState());
+        assertEquals(null, delayedCommand);
+    }
+
+    @Test
+    public void testTrimMemory() {
+        testInitializeTestee();
+        testee.startPlayer();
+        testee.stopPlayer();
+
+        // hidden UI keeps the warm player
+        testee.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        verify(mockedPlayer, never()).release();
+
+        testee.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        verify(mockedPlayer, times(1)).release();
+        assertEquals(State.IDLE, testee.getState());
+    }
+
+    @Test
+    public void testTrimMemoryWhilePlaying() {
+        testInitializeTestee();
+        testee.startPlayer();
+
+        testee.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        verify(mockedPlayer, never()).release();
+        assertEquals(State.PLAYING, testee.getState());
+    }
+
+    @Test
+    public void testRepeatedStop() {
+        testInitializeTestee();
+        testee.startPlayer();
+        testee.stopPlayer();
+        testee.stopPlayer();
+        testee.stopPlayer();
+        delayedCommand.run();
+
+        verify(mockedPlayer, times(1)).pause();
+        verify(mockedPlayer, times(1)).stop();
+        verify(mockedPlayer, times(1)).release();
+    }
+
+    @Test
+    public void testRelease() {
+        testInitializeTestee();
+        testee.startPlayer();
+        testee.release();
+
+        verify(mockedPlayer, times(1)).stop();
+        verify(mockedPlayer, times(1)).release();
+        assertEquals(State.RELEASED, testee.getState());
+
+        // a released player cannot be started again
+        testee.startPlayer();
+        verify(mockedPlayer, times(1)).prepareAsync();
+        verify(mockedPlayer, times(1)).start();
+    }
+
+    @Test
+    public void testStartPlayerTwiceWhilePreparing() throws IOException {
+        when(mockedSource.openFd()).thenReturn(mock(AssetFileDescriptor.class));
+        testee.startPlayer();
+        testee.startPlayer();
+        verify(mockedPlayer, times(1)).prepareAsync();
+
+        firePrepared();
+        verify(mockedPlayer, times(1)).start();
+    }
+
+    @Test
+    public void testPausePlayerWhilePreparing() throws IOException {
+        when(mockedSource.openFd()).thenReturn(mock(AssetFileDescriptor.class));
+        testee.startPlayer();
+        testee.pausePlayer();
+
+        firePrepared();
+        assertTrue(isInitialized());
+        verify(mockedPlayer, never()).start();
+    }
+
+    @Test
+    public void testFadeOutStartsWithTimer() {
+        testInitializeTestee();
+        ArgumentCaptor<Runnable> runnable = ArgumentCaptor.forClass(Runnable.class);
+        testee.startPlayer();
+        verify(spiedEngine, times(1)).cancelFadeOut();
+        verify(mockedHandler, times(1)).post(runnable.capture());
+        verify(spiedEngine, never()).fadeOut(Mockito.anyInt(), Mockito.anyInt());
+
+        runnable.getValue().run();
+        verify(spiedEngine, times(1)).fadeOut(TimeConstants.DEFAULT_TIME, TimeConstants.DEFAULT_FADE_OUT_TIME);
+    }
+
+    @Test
+    public void testSleepTimeChangeMovesFadeOut() {
+        testInitializeTestee();
+        ArgumentCaptor<Runnable> runnable = ArgumentCaptor.forClass(Runnable.class);
+        testee.startPlayer();
+        verify(mockedHandler, times(1)).post(runnable.capture());
+        runnable.getValue().run();
+
+        testee.setSleepTime(10 * 60 * TimeConstants.SECOND);
+        verify(spiedEngine, times(1)).fadeOut(10 * 60 * TimeConstants.SECOND, TimeConstants.DEFAULT_FADE_OUT_TIME);
+    }
+
+    @Test
+    public void testSetFadeOutTime() {
+        testee.setFadeOutTime(TimeConstants.MAX_FADE_OUT_TIME);
+        assertEquals(TimeConstants.MAX_FADE_OUT_TIME, testee.getFadeOutTime());
+        // not playing
+        verify(spiedEngine, never()).fadeOut(Mockito.anyInt(), Mockito.anyInt());
+
+        testInitializeTestee();
+        ArgumentCaptor<Runnable> runnable = ArgumentCaptor.forClass(Runnable.class);
+        testee.startPlayer();
+        verify(mockedHandler, times(1)).post(runnable.capture());
+        runnable.getValue().run();
+        verify(spiedEngine, times(1)).fadeOut(TimeConstants.DEFAULT_TIME, TimeConstants.MAX_FADE_OUT_TIME);
+
+        testee.setFadeOutTime(0);
+        verify(spiedEngine, times(1)).fadeOut(TimeConstants.DEFAULT_TIME, 0);
+    }
+
+    @Test
+    public void testInvalidFadeOutTime() {
+        int[] invalid = { -1, TimeConstants.MIN_FADE_OUT_TIME - 1, TimeConstants.MAX_FADE_OUT_TIME + 1 };
+        for (int fadeOutTime : invalid) {
+            try {
+                testee.setFadeOutTime(fadeOutTime);
+                fail("Accepted " + fadeOutTime);
+            }
+            catch (IllegalArgumentException e) {
+                assertEquals(TimeConstants.DEFAULT_FADE_OUT_TIME, testee.getFadeOutTime());
+            }
+        }
+    }
+
+    @Test
+    public void testTimerNotStartedAfterPause() {
+        testInitializeTestee();
+        ArgumentCaptor<Runnable> runnable = ArgumentCaptor.forClass(Runnable.class);
+        testee.startPlayer();
+        verify(mockedHandler, times(1)).post(runnable.capture());
+
+        // pause arrives before the posted timer start runs
+        testee.pausePlayer();
+        runnable.getValue().run();
+        assertFalse(getSleepTimer().isRunning());
+    }
+
+    @Test
+    public void testPrepareError() throws IOException {
+        when(mockedSource.openFd()).thenReturn(mock(AssetFileDescriptor.class));
+        testee.startPlayer();
+
+        ArgumentCaptor<OnErrorListener> listener = ArgumentCaptor.forClass(OnErrorListener.class);
+        verify(mockedPlayer).setOnErrorListener(listener.capture());
+        listener.getValue().onError(mockedPlayer, MediaPlayer.MEDIA_ERROR_UNKNOWN, 0);
+
+        assertFalse(isInitialized());
+        verify(mockedPlayer, never()).start();
+        verify(mockedPlayer, times(1)).release();
+        assertEquals(State.IDLE, testee.getState());
+        assertEquals(-1, testee.getLastStartLatency());
+    }
+
+    @Test
+    public void testSynchronousPrepareError() throws IOException {
+        AudioSource failing = mock(AudioSource.class);
+        when(failing.open()).thenThrow(new IOException("Corrupt audio"));
+        TimedSleepPlayer player = createSynchronousPlayer(failing, new PcmLoopEngine());
+
+        player.startPlayer();
+        assertEquals(State.IDLE, player.getState());
+        // the next start tries again
+        player.startPlayer();
+        assertEquals(State.IDLE, player.getState());
+        verify(failing, times(2)).open();
+    }
+
+    @Test
+    public void testUnsupportedSourceError() {
+        TimedSleepPlayer player = createSynchronousPlayer(mock(AudioSource.class), spiedEngine);
+
+        player.startPlayer();
+        assertEquals(State.IDLE, player.getState());
+        verify(mockedPlayer, never()).prepareAsync();
+    }
+
+    /**
+     * Creates a player that executes audio commands synchronously.
+     */
+    private TimedSleepPlayer createSynchronousPlayer(AudioSource source, IAudioEngine engine) {
+        return new TimedSleepPlayer(mockedGui, source, engine, new AudioCommandThread() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        }, new HandlerScheduler(mockedHandler));
     }
 
     @Test
@@ -271,10 +623,31 @@ public class TimedSleepPlayerTest {
         testInitializeTestee();
         testee.stopPlayer();
 
+        runFrames();
         verify(mockedGui, times(1)).updateProgress(0);
+        // the player is kept warm
+        verify(mockedPlayer, times(1)).seekTo(0);
+        verify(mockedPlayer, never()).release();
+        assertTrue(isInitialized());
+        assertEquals(TimeConstants.DEFAULT_KEEP_WARM_TIME, commandDelay);
+
+        delayedCommand.run();
         verify(mockedPlayer, times(1)).stop();
         verify(mockedPlayer, times(1)).reset();
         verify(mockedPlayer, times(1)).release();
+        assertFalse(isInitialized());
+    }
+
+    @Test
+    public void testStopPlayerWhilePreparing() throws IOException {
+        when(mockedSource.openFd()).thenReturn(mock(AssetFileDescriptor.class));
+        testee.startPlayer();
+        testee.stopPlayer();
+
+        // a preparing MediaPlayer must not be stopped, only released
+        verify(mockedPlayer, never()).stop();
+        verify(mockedPlayer, times(1)).reset();
+        verify(mockedPlayer, times(1)).release();
     }
 
     @Test
@@ -295,97 +668,238 @@ public class TimedSleepPlayerTest {
     }
 
     private boolean isInitialized() {
-        try {
-            Field playerIsInitialized = testee.getClass().getDeclaredField("playerIsInitialized");
-            playerIsInitialized.setAccessible(true);
-            boolean result = playerIsInitialized.getBoolean(testee);
-            return result;
-        }
-        catch (Exception e) {
-            fail(e.getMessage());
-        }
-        return false;
+        return getStateMachine().isPrepared();
     }
 
-    private int getCurrentTime() {
+    private PlayerStateMachine getStateMachine() {
         try {
-            Field currentTime = testee.getClass().getDeclaredField("currentTime");
-            currentTime.setAccessible(true);
-            int result = currentTime.getInt(testee);
-            return result;
+            Field state = testee.getClass().getDeclaredField("state");
+            state.setAccessible(true);
+            return (PlayerStateMachine) state.get(testee);
         }
         catch (Exception e) {
             fail(e.getMessage());
         }
-        return Integer.MAX_VALUE;
+        return null;
+    }
+
+    /**
+     * Runs the pending frame callbacks of the GUI thread.
+     */
+    private void runFrames() {
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
     }
 
-    private void setCurrentTime(int time) {
+    private void assertTimeDisplayed(String time, int times) {
+        runFrames();
+        assertEquals(displayedTimes.toString(), times, Collections.frequency(displayedTimes, time));
+    }
+
+    private void firePrepared() {
+        ArgumentCaptor<OnPreparedListener> listener = ArgumentCaptor.forClass(OnPreparedListener.class);
+        verify(mockedPlayer, Mockito.atLeastOnce()).setOnPreparedListener(listener.capture());
+        listener.getValue().onPrepared(mockedPlayer);
+    }
+
+    private SleepTimer getSleepTimer() {
         try {
-            Field currentTime = testee.getClass().getDeclaredField("currentTime");
-            currentTime.setAccessible(true);
-            currentTime.setInt(testee, time);
+            Field sleepTimer = testee.getClass().getDeclaredField("sleepTimer");
+            sleepTimer.setAccessible(true);
+            return (SleepTimer) sleepTimer.get(testee);
         }
         catch (Exception e) {
             fail(e.getMessage());
         }
+        return null;
     }
 
     @Test
-    public void testRunTimerRunnable_updateCurrentTime() {
-        int currentTimeBeforeCall = getCurrentTime();
-        int expectedTimeAfterCall = currentTimeBeforeCall - TimeConstants.SECOND;
-        String timeBeforeCall = TimeConstants.timeToString(currentTimeBeforeCall);
-
-        Runnable r = testee.createTimerRunnable(mockedHandler);
-        r.run();
-        int currentTimeAfterCall = getCurrentTime();
-        String timeAfterCall = TimeConstants.timeToString(currentTimeAfterCall);
-
-        verify(mockedHandler, times(1)).removeCallbacks(r);
+    public void testTimerExpiryStopsPlayer() {
+        testInitializeTestee();
+        testee.setSleepTime(0);
+        getSleepTimer().start();
 
-        // check called updateTiem
-        verify(mockedGui, never()).updateTime(timeBeforeCall);
-        verify(mockedGui, times(1)).updateTime(timeAfterCall);
+        ArgumentCaptor<Runnable> expiry = ArgumentCaptor.forClass(Runnable.class);
+        verify(mockedHandler, times(1)).postDelayed(expiry.capture(), Mockito.eq(0L));
+        expiry.getValue().run();
 
-        assertEquals(expectedTimeAfterCall, currentTimeAfterCall);
+        // check player stopped
+        assertFalse(getSleepTimer().isRunning());
+        runFrames();
+        verify(mockedGui, times(1)).updateProgress(0);
+        verify(mockedPlayer, times(1)).seekTo(0);
+        assertEquals(TimeConstants.DEFAULT_KEEP_WARM_TIME, commandDelay);
     }
 
     @Test
-    public void testRunTimerRunnable_currentTimeGreaterZero() {
+    public void testTimerNotExpiredKeepsPlaying() {
         testInitializeTestee();
-        setCurrentTime(2 * TimeConstants.SECOND);
-        Runnable r = testee.createTimerRunnable(mockedHandler);
-        r.run();
-        verify(mockedHandler, times(1)).postDelayed(r, TimeConstants.SECOND);
+        testee.setSleepTime(2 * TimeConstants.SECOND);
+        getSleepTimer().start();
+
+        verify(mockedHandler, times(1)).postDelayed(Mockito.any(Runnable.class), Mockito.eq(2L * TimeConstants.SECOND));
+        assertTrue(getSleepTimer().isRunning());
         verify(mockedGui, never()).updateProgress(0);
         verify(mockedPlayer, never()).stop();
     }
 
     @Test
-    public void testRunTimerRunnable_currentTimeEqualsZero() {
+    public void testUpdateTimeAllocationFree() {
+        AllocationCounter counter = new AllocationCounter();
+        Assume.assumeTrue(counter.isSupported());
+        IOceanWavesGui gui = new IOceanWavesGui() {
+            public void updateTime(char[] time, int length) {
+            }
+
+            public void updateProgress(int progress) {
+            }
+        };
+        TimedSleepPlayer player = new TimedSleepPlayer(gui, mockedSource, Mockito.mock(IAudioEngine.class),
+                new AudioCommandThread(), new HandlerScheduler(mockedHandler));
+        player.setDisplayVisible(true);
+        // warm up
+        for (int ms = 0; ms < TimeConstants.MAX_SLEEP_TIME; ms += TimeConstants.SECOND) {
+            player.setSleepTime(ms);
+        }
+
+        // the same update runs on every timer tick
+        counter.reset();
+        for (int ms = 0; ms < TimeConstants.MAX_SLEEP_TIME; ms += TimeConstants.SECOND) {
+            player.setSleepTime(ms);
+        }
+        long allocated = counter.getAllocatedBytes();
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    @Test
+    public void testSetDisplayVisible() {
+        assertTimeDisplayed(TimeConstants.timeToString(TimeConstants.DEFAULT_TIME), 1);
+
+        testee.setDisplayVisible(false);
+        testee.setSleepTime(2003);
+        assertTimeDisplayed("0:02", 0);
+
+        testee.setDisplayVisible(true);
+        assertTimeDisplayed("0:02", 1);
+        assertTimeDisplayed(TimeConstants.timeToString(TimeConstants.DEFAULT_TIME), 1);
+    }
+
+    @Test
+    public void testHiddenDisplayDoesNotQueryPosition() {
         testInitializeTestee();
-        setCurrentTime(0);
-        Runnable r = testee.createTimerRunnable(mockedHandler);
-        r.run();
-        verify(mockedHandler, never()).postDelayed(r, TimeConstants.SECOND);
+        testee.startPlayer();
+        testee.setDisplayVisible(false);
+        reset(mockedPlayer);
 
-        // check player stopped
-        verify(mockedGui, times(1)).updateProgress(0);
-        verify(mockedPlayer, times(1)).stop();
+        getSleepTimer().start();
+        testee.setSleepTime(2003);
+        testee.pausePlayer();
+
+        verify(mockedPlayer, never()).getCurrentPosition();
+        verify(mockedGui, never()).updateProgress(Mockito.anyInt());
     }
 
     @Test
-    public void testRunTimerRunnable_currentTimeLesserZero() {
+    public void testUnchangedValuesAreSkipped() {
+        int pos = 123;
+        when(mockedPlayer.getCurrentPosition()).thenReturn(pos);
         testInitializeTestee();
-        setCurrentTime(-1);
-        Runnable r = testee.createTimerRunnable(mockedHandler);
-        r.run();
-        verify(mockedHandler, never()).postDelayed(r, TimeConstants.SECOND);
+        testee.startPlayer();
 
-        // check player stopped
-        verify(mockedGui, times(1)).updateProgress(0);
-        verify(mockedPlayer, times(1)).stop();
+        testee.setSleepTime(2003);
+        testee.setSleepTime(2999);
+        testee.setSleepTime(2000);
+
+        assertTimeDisplayed("0:02", 1);
+        verify(mockedGui, times(1)).updateProgress(pos);
+    }
+
+    @Test
+    public void testUpdatesAreCoalescedPerFrame() {
+        runFrames();
+        displayedTimes.clear();
+
+        testee.setSleepTime(1000);
+        testee.setSleepTime(2000);
+        testee.setSleepTime(3000);
+        assertTrue(displayedTimes.isEmpty());
+
+        runFrames();
+        assertEquals(1, displayedTimes.size());
+        assertTimeDisplayed("0:03", 1);
+    }
+
+    @Test
+    public void testStartLatencyFromFirstRequest() throws IOException {
+        when(mockedSource.openFd()).thenReturn(mock(AssetFileDescriptor.class));
+        testee.startPlayer();
+        Robolectric.getUiThreadScheduler().advanceBy(40);
+        // a repeated request while preparing keeps the first one
+        testee.startPlayer();
+        Robolectric.getUiThreadScheduler().advanceBy(20);
+        firePrepared();
+        assertEquals(60, testee.getLastStartLatency());
+    }
+
+    @Test
+    public void testStartLatencyAfterPause() throws IOException {
+        when(mockedSource.openFd()).thenReturn(mock(AssetFileDescriptor.class));
+        testee.startPlayer();
+        testee.pausePlayer();
+        Robolectric.getUiThreadScheduler().advanceBy(100);
+        // the pause ended the first request
+        testee.startPlayer();
+        Robolectric.getUiThreadScheduler().advanceBy(10);
+        firePrepared();
+        assertEquals(10, testee.getLastStartLatency());
+    }
+
+    @Test
+    public void testMetrics() throws IOException {
+        PlayerMetrics metrics = testee.getMetrics();
+        assertEquals(-1, metrics.getStartLatency());
+        assertEquals(-1, metrics.getPrepareTime());
+        assertEquals(0, metrics.getPlayTime());
+        assertEquals(-1, metrics.getCpuTimePerHour());
+
+        when(mockedSource.openFd()).thenReturn(mock(AssetFileDescriptor.class));
+        testee.startPlayer();
+        Robolectric.getUiThreadScheduler().advanceBy(40);
+        firePrepared();
+        metrics = testee.getMetrics();
+        assertEquals(40, metrics.getPrepareTime());
+        assertEquals(40, metrics.getStartLatency());
+
+        // the running play back is included
+        Robolectric.getUiThreadScheduler().advanceBy(1000);
+        assertEquals(1000, testee.getMetrics().getPlayTime());
+
+        testee.pausePlayer();
+        Robolectric.getUiThreadScheduler().advanceBy(500);
+        runFrames();
+        metrics = testee.getMetrics();
+        assertEquals(1000, metrics.getPlayTime());
+        assertTrue(metrics.getCpuTime() >= 0);
+        // the displayed times and the progress of the pause
+        assertEquals(displayedTimes.size() + 1, metrics.getGuiUpdates());
+        verify(mockedGui, times(1)).updateProgress(Mockito.anyInt());
+        assertEquals(0, metrics.getUnderruns());
+    }
+
+    @Test
+    public void testEventsRecorded() throws IOException {
+        when(mockedSource.openFd()).thenReturn(mock(AssetFileDescriptor.class));
+        testee.startPlayer();
+        firePrepared();
+        testee.pausePlayer();
+
+        String[] expected = { "START_REQUESTED", "TRANSITION IDLE -> PREPARING", "TRANSITION PREPARING -> PREPARED",
+                "TRANSITION PREPARED -> PLAYING", "PAUSE_REQUESTED", "TRANSITION PLAYING -> PAUSED" };
+        String[] lines = testee.getEventLog().toString().split("\n");
+        assertEquals(testee.getEventLog().toString(), expected.length, lines.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue(lines[i], lines[i].endsWith(" " + expected[i]));
+        }
     }
 
 }
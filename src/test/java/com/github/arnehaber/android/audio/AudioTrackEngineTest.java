@@ -0,0 +1,318 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+
+/**
+ * Tests for the {@link AudioTrackEngine}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AudioTrackEngineTest {
+
+    /**
+     * Samples of a stereo block.
+     */
+    private static final int BLOCK_SAMPLES = 2 * AudioTrackEngine.MIN_BLOCK_FRAMES;
+
+    /**
+     * {@link AudioTrack} that queues written samples until its buffer is full
+     * and never plays them. A write to a full buffer blocks until the buffer
+     * is flushed, like a streaming track that has not played the buffer yet.
+     */
+    private static class BlockingTrack extends AudioTrack {
+
+        private final int capacity;
+
+        private int queued = 0;
+
+        /**
+         * Non-zero samples written since the last flush.
+         */
+        private int loudSinceFlush = 0;
+
+        /**
+         * Silent samples written since the last flush.
+         */
+        private int silentSinceFlush = 0;
+
+        private boolean trackPlaying = false;
+
+        private boolean stopped = false;
+
+        private boolean blocked = false;
+
+        private int queuedAtPlay = -1;
+
+        BlockingTrack(int capacity) {
+            super(AudioManager.STREAM_MUSIC, 44100, AudioFormat.CHANNEL_OUT_STEREO, AudioFormat.ENCODING_PCM_16BIT,
+                    2 * capacity, AudioTrack.MODE_STREAM);
+            this.capacity = capacity;
+        }
+
+        @Override
+        public int getState() {
+            return STATE_INITIALIZED;
+        }
+
+        @Override
+        public int getPlaybackHeadPosition() {
+            return 0;
+        }
+
+        @Override
+        public synchronized void play() {
+            queuedAtPlay = queued;
+            trackPlaying = true;
+        }
+
+        @Override
+        public synchronized void pause() {
+            trackPlaying = false;
+        }
+
+        @Override
+        public synchronized void flush() {
+            if (!trackPlaying) {
+                queued = 0;
+                loudSinceFlush = 0;
+                silentSinceFlush = 0;
+                notifyAll();
+            }
+        }
+
+        @Override
+        public synchronized void stop() {
+            stopped = true;
+            trackPlaying = false;
+            notifyAll();
+        }
+
+        @Override
+        public void release() {
+        }
+
+        @Override
+        public synchronized int write(short[] audioData, int offsetInShorts, int sizeInShorts) {
+            int written = 0;
+            while (written < sizeInShorts && !stopped) {
+                if (queued < capacity) {
+                    int chunk = Math.min(capacity - queued, sizeInShorts - written);
+                    for (int i = offsetInShorts + written; i < offsetInShorts + written + chunk; i++) {
+                        if (audioData[i] != 0) {
+                            loudSinceFlush++;
+                        }
+                        else {
+                            silentSinceFlush++;
+                        }
+                    }
+                    queued += chunk;
+                    written += chunk;
+                    notifyAll();
+                }
+                else {
+                    blocked = true;
+                    notifyAll();
+                    try {
+                        wait();
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    blocked = false;
+                }
+            }
+            return written;
+        }
+
+        /**
+         * Waits until a write blocks on the full buffer.
+         */
+        synchronized void awaitBlockedWrite() throws InterruptedException {
+            while (!blocked) {
+                wait();
+            }
+        }
+
+        /**
+         * Waits until silent samples have been written since the last flush.
+         */
+        synchronized void awaitSilence() throws InterruptedException {
+            while (silentSinceFlush == 0) {
+                wait();
+            }
+        }
+
+        /**
+         * 
+         * @return the non-zero samples written since the last flush.
+         */
+        synchronized int getLoudSinceFlush() {
+            return loudSinceFlush;
+        }
+
+        /**
+         * 
+         * @return the samples queued when play back was started last.
+         */
+        synchronized int getQueuedAtPlay() {
+            return queuedAtPlay;
+        }
+    }
+
+    /**
+     * Streams a constant {@link #value} into a {@link BlockingTrack}.
+     */
+    private static class TestEngine extends AudioTrackEngine {
+
+        private final AudioTrack track;
+
+        private volatile float value = 0.5f;
+
+        TestEngine(AudioTrack track) {
+            this.track = track;
+        }
+
+        @Override
+        protected ISampleSource openSource(AudioSource source) {
+            return new ISampleSource() {
+                public int getSampleRate() {
+                    return 44100;
+                }
+
+                public int getChannelCount() {
+                    return 2;
+                }
+
+                public void read(float[] buffer, int offset, int frames) {
+                    Arrays.fill(buffer, offset, offset + 2 * frames, value);
+                }
+            };
+        }
+
+        @Override
+        protected AudioTrack createTrack(int sampleRate, int channelConfig, int bufferBytes) {
+            return track;
+        }
+
+        public void rewind() {
+        }
+
+        public int getDuration() {
+            return 0;
+        }
+
+        public int getCurrentPosition() {
+            return 0;
+        }
+    }
+
+    private BlockingTrack track;
+
+    private TestEngine testee;
+
+    private IAudioEngine.PrepareListener listener = mock(IAudioEngine.PrepareListener.class);
+
+    @Before
+    public void setUp() throws IOException {
+        // one and a half blocks, so the second block written while paused
+        // blocks half way
+        track = new BlockingTrack(3 * BLOCK_SAMPLES / 2);
+        testee = new TestEngine(track);
+        testee.prepareAsync(mock(AudioSource.class), listener);
+    }
+
+    @After
+    public void tearDown() {
+        testee.release();
+    }
+
+    @Test(timeout = 10000)
+    public void testStopDropsRestOfBlockedWrite() throws InterruptedException {
+        testee.start();
+        track.awaitBlockedWrite();
+
+        testee.pause();
+        testee.stop();
+        // audio rendered after the stop is silent
+        testee.value = 0f;
+        testee.start();
+        track.awaitSilence();
+
+        assertEquals(0, track.getQueuedAtPlay());
+        assertEquals(0, track.getLoudSinceFlush());
+    }
+
+    @Test(timeout = 10000)
+    public void testStopWhileIdle() {
+        testee.stop();
+        testee.start();
+
+        assertEquals(0, track.getQueuedAtPlay());
+    }
+
+    @Test(timeout = 10000)
+    public void testResumeKeepsQueuedAudio() throws InterruptedException {
+        testee.start();
+        track.awaitBlockedWrite();
+
+        testee.pause();
+        testee.start();
+
+        assertEquals(3 * BLOCK_SAMPLES / 2, track.getQueuedAtPlay());
+    }
+
+    @Test(timeout = 10000)
+    public void testStartReportedWithFirstBlock() throws InterruptedException {
+        verify(listener, never()).onStarted();
+        testee.start();
+        // the first block is written completely, the second one blocks
+        track.awaitBlockedWrite();
+        verify(listener, times(1)).onStarted();
+
+        // the rest of the blocked write does not count for the next start
+        testee.pause();
+        testee.stop();
+        testee.start();
+        verify(listener, timeout(5000).times(2)).onStarted();
+    }
+}
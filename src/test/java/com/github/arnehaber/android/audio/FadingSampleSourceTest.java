@@ -0,0 +1,190 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link FadingSampleSource}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class FadingSampleSourceTest {
+
+    /**
+     * One frame per ms, so times and frames match.
+     */
+    private static final int SAMPLE_RATE = 1000;
+
+    private static final int BLOCK = 50;
+
+    /**
+     * Stereo source of constant full scale samples.
+     */
+    private static final ISampleSource ONES = new ISampleSource() {
+        public int getSampleRate() {
+            return SAMPLE_RATE;
+        }
+
+        public int getChannelCount() {
+            return 2;
+        }
+
+        public void read(float[] buffer, int offset, int frames) {
+            for (int i = 0; i < 2 * frames; i++) {
+                buffer[offset + i] = 1f;
+            }
+        }
+    };
+
+    private final FadingSampleSource testee = new FadingSampleSource(ONES);
+
+    /**
+     * Reads <b>frames</b> frames in blocks and returns the gain of each frame.
+     */
+    private float[] readGains(int frames) {
+        float[] gains = new float[frames];
+        float[] block = new float[2 * BLOCK];
+        for (int f = 0; f < frames; f += BLOCK) {
+            testee.read(block, 0, BLOCK);
+            for (int i = 0; i < BLOCK; i++) {
+                assertEquals(block[2 * i], block[2 * i + 1], 0f);
+                gains[f + i] = block[2 * i];
+            }
+        }
+        return gains;
+    }
+
+    @Test
+    public void testNoFadeKeepsSamples() {
+        for (float gain : readGains(1000)) {
+            assertEquals(1f, gain, 0f);
+        }
+    }
+
+    @Test
+    public void testFadeEndsInSilenceAtDeadline() {
+        testee.fadeOut(1000, 500);
+        float[] gains = readGains(2000);
+
+        for (int i = 0; i < 500; i++) {
+            assertEquals(1f, gains[i], 0f);
+        }
+        for (int i = 500; i < 1000; i++) {
+            assertTrue("Gain rises at " + i, gains[i] <= gains[i - 1]);
+        }
+        assertTrue(gains[600] < 1f);
+        assertTrue(gains[990] > 0f);
+        for (int i = 1000; i < 2000; i++) {
+            assertEquals(0f, gains[i], 0f);
+        }
+    }
+
+    @Test
+    public void testInitialLevel() {
+        FadingSampleSource quiet = new FadingSampleSource(ONES, 0.25f);
+        float[] block = new float[2 * BLOCK];
+        quiet.read(block, 0, BLOCK);
+
+        for (float sample : block) {
+            assertEquals(0.25f, sample, 0f);
+        }
+    }
+
+    @Test
+    public void testLevelChangeGlides() {
+        testee.setLevel(0.5f);
+        float[] gains = readGains(200);
+
+        assertTrue(gains[0] > 0.5f);
+        for (int i = BLOCK - 1; i < 200; i++) {
+            assertEquals(0.5f, gains[i], 0f);
+        }
+    }
+
+    @Test
+    public void testLevelAppliesToFade() {
+        testee.setLevel(0.5f);
+        testee.fadeOut(1000, 500);
+        float[] gains = readGains(2000);
+
+        assertEquals(0.5f, gains[400], 0f);
+        assertTrue(gains[750] < 0.5f);
+        assertEquals(0f, gains[1500], 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLevel() {
+        testee.setLevel(Float.NaN);
+    }
+
+    @Test
+    public void testCurveFallsLinearlyInDb() {
+        testee.fadeOut(1000, 1000);
+        readGains(500);
+
+        double floor = Math.pow(10, -FadingSampleSource.RANGE_DB / 20);
+        double expected = (Math.pow(10, -FadingSampleSource.RANGE_DB / 40) - floor) / (1 - floor);
+        assertEquals(expected, testee.getGain(), 1e-4);
+    }
+
+    @Test
+    public void testLateFadeStartsWithoutClick() {
+        readGains(100);
+        testee.fadeOut(250, 1000);
+        float[] gains = readGains(300);
+
+        // the gain glides down within the first block instead of jumping
+        assertTrue(gains[0] > 0.9f);
+        for (int i = 1; i < gains.length; i++) {
+            assertTrue("Click at " + i, Math.abs(gains[i] - gains[i - 1]) < 0.05f);
+        }
+        assertEquals(0f, gains[250], 0f);
+    }
+
+    @Test
+    public void testCancelRestoresGain() {
+        testee.fadeOut(100, 100);
+        readGains(200);
+        assertEquals(0f, testee.getGain(), 0f);
+
+        testee.cancel();
+        float[] gains = readGains(2 * BLOCK);
+        assertTrue(gains[0] < 0.1f);
+        assertEquals(1f, gains[BLOCK - 1], 0f);
+        assertEquals(1f, gains[BLOCK], 0f);
+    }
+
+    @Test
+    public void testRescheduleReplacesFade() {
+        testee.fadeOut(100, 100);
+        testee.fadeOut(1000, 100);
+        float[] gains = readGains(900);
+
+        for (float gain : gains) {
+            assertEquals(1f, gain, 0f);
+        }
+    }
+}
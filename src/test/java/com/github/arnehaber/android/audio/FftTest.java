@@ -0,0 +1,94 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link Fft}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class FftTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void testImpulseHasFlatSpectrum() {
+        double[] re = new double[16];
+        double[] im = new double[16];
+        re[0] = 1;
+        Fft.transform(re, im, false);
+        for (int i = 0; i < 16; i++) {
+            assertEquals(1, re[i], DELTA);
+            assertEquals(0, im[i], DELTA);
+        }
+    }
+
+    @Test
+    public void testSineMatchesItsBin() {
+        int n = 64;
+        double[] re = new double[n];
+        double[] im = new double[n];
+        for (int i = 0; i < n; i++) {
+            re[i] = Math.cos(2 * Math.PI * 5 * i / n);
+        }
+        Fft.transform(re, im, false);
+        for (int i = 0; i < n; i++) {
+            double expected = i == 5 || i == n - 5 ? n / 2 : 0;
+            assertEquals(expected, Math.hypot(re[i], im[i]), DELTA);
+        }
+    }
+
+    @Test
+    public void testInverseRestoresInput() {
+        Random random = new Random(1);
+        double[] re = new double[128];
+        double[] im = new double[128];
+        double[] expected = new double[128];
+        for (int i = 0; i < re.length; i++) {
+            re[i] = expected[i] = random.nextGaussian();
+        }
+        Fft.transform(re, im, false);
+        Fft.transform(re, im, true);
+        for (int i = 0; i < re.length; i++) {
+            assertEquals(expected[i], re[i], DELTA);
+            assertEquals(0, im[i], DELTA);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsOtherLengths() {
+        Fft.transform(new double[12], new double[12], false);
+    }
+
+    @Test
+    public void testSize() {
+        assertEquals(1, Fft.size(1));
+        assertEquals(16, Fft.size(16));
+        assertEquals(32, Fft.size(17));
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.util.Random;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.github.arnehaber.android.benchmark.AllocationCounter;
+
+/**
+ * Tests for the {@link GranularSampleSource}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class GranularSampleSourceTest {
+
+    private static final int SAMPLE_RATE = 8000;
+
+    private static final int CLIP_FRAMES = 4 * SAMPLE_RATE;
+
+    private static final int GRAIN_FRAMES = SAMPLE_RATE / 2;
+
+    private static final int BLOCK = 512;
+
+    private static final float[] NOISE = createNoise();
+
+    private static float[] createNoise() {
+        Random random = new Random(3);
+        float[] noise = new float[2 * CLIP_FRAMES];
+        for (int i = 0; i < noise.length; i++) {
+            noise[i] = (float) random.nextGaussian() * 0.1f;
+        }
+        return noise;
+    }
+
+    private static PcmBuffer createPcm() {
+        short[] samples = new short[NOISE.length];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (NOISE[i] * 32768f);
+        }
+        return new PcmBuffer(samples, CLIP_FRAMES, 2, SAMPLE_RATE);
+    }
+
+    private static float[] render(ISampleSource source, int frames) {
+        float[] out = new float[2 * frames];
+        for (int f = 0; f < frames; f += BLOCK) {
+            source.read(out, 2 * f, Math.min(BLOCK, frames - f));
+        }
+        return out;
+    }
+
+    private static double rms(float[] samples, int from, int count) {
+        double sum = 0;
+        for (int i = from; i < from + count; i++) {
+            sum += samples[i] * samples[i];
+        }
+        return Math.sqrt(sum / count);
+    }
+
+    @Test
+    public void testEqualSeedsProduceEqualOutput() {
+        float[] a = render(new GranularSampleSource(createPcm(), GRAIN_FRAMES, 5), 3 * SAMPLE_RATE);
+        float[] b = render(new GranularSampleSource(createPcm(), GRAIN_FRAMES, 5), 3 * SAMPLE_RATE);
+        assertArrayEquals(a, b, 0f);
+    }
+
+    @Test
+    public void testPowerIsConstant() {
+        float[] out = render(new GranularSampleSource(createPcm(), GRAIN_FRAMES, 5), 20 * SAMPLE_RATE);
+        double expected = rms(NOISE, 0, NOISE.length);
+
+        assertEquals(expected, rms(out, 0, out.length), 0.05 * expected);
+        // also at the start, which does not fade in
+        int block = GRAIN_FRAMES / 4;
+        for (int i = 0; i + 2 * block <= out.length; i += 2 * block) {
+            double level = rms(out, i, 2 * block);
+            assertTrue("Level " + level + " at " + i, Math.abs(level - expected) < 0.3 * expected);
+        }
+    }
+
+    @Test
+    public void testDoesNotRepeatClip() {
+        float[] out = render(new GranularSampleSource(createPcm(), GRAIN_FRAMES, 5), 3 * CLIP_FRAMES);
+        int n = 2 * SAMPLE_RATE;
+        for (int period = 1; period <= 2; period++) {
+            double product = 0;
+            for (int i = 0; i < n; i++) {
+                product += out[i] * out[i + 2 * period * CLIP_FRAMES];
+            }
+            double correlation = product / (rms(out, 0, n) * rms(out, 2 * period * CLIP_FRAMES, n) * n);
+            assertTrue("Correlation " + correlation, Math.abs(correlation) < 0.2);
+        }
+    }
+
+    @Test
+    public void testMappedAudioMatchesArray() {
+        PcmBuffer pcm = createPcm();
+        ShortBuffer direct = ByteBuffer.allocateDirect(2 * NOISE.length).asShortBuffer();
+        direct.put(pcm.getSamples());
+        PcmBuffer mapped = new PcmBuffer(direct, CLIP_FRAMES, 2, SAMPLE_RATE);
+
+        float[] expected = render(new GranularSampleSource(pcm, GRAIN_FRAMES, 9), 2 * SAMPLE_RATE);
+        float[] actual = render(new GranularSampleSource(mapped, GRAIN_FRAMES, 9), 2 * SAMPLE_RATE);
+        assertArrayEquals(expected, actual, 0f);
+    }
+
+    @Test
+    public void testReadAllocationFree() {
+        AllocationCounter counter = new AllocationCounter();
+        Assume.assumeTrue(counter.isSupported());
+        GranularSampleSource testee = new GranularSampleSource(createPcm(), GRAIN_FRAMES, 5);
+        float[] block = new float[2 * BLOCK];
+        // warm up
+        for (int i = 0; i < 1000; i++) {
+            testee.read(block, 0, BLOCK);
+        }
+
+        counter.reset();
+        for (int i = 0; i < 1000; i++) {
+            testee.read(block, 0, BLOCK);
+        }
+        long allocated = counter.getAllocatedBytes();
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGrainLongerThanAudio() {
+        new GranularSampleSource(createPcm(), CLIP_FRAMES + 1, 5);
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link LoopPointFinder}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class LoopPointFinderTest {
+
+    private static final int SAMPLE_RATE = 8000;
+
+    private final LoopPointFinder testee = new LoopPointFinder();
+
+    /**
+     * Creates stereo noise that repeats after <b>period</b> frames.
+     */
+    private static PcmBuffer createPeriodicNoise(int frames, int period) {
+        Random random = new Random(7);
+        short[] cycle = new short[2 * period];
+        for (int i = 0; i < cycle.length; i++) {
+            cycle[i] = (short) (random.nextGaussian() * 4000);
+        }
+        short[] samples = new short[2 * frames];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = cycle[i % cycle.length];
+        }
+        return new PcmBuffer(samples, frames, 2, SAMPLE_RATE);
+    }
+
+    @Test
+    public void testFindsPeriod() {
+        // an odd period is not aligned to the decimation
+        int period = 15003;
+        LoopPoints points = testee.find(createPeriodicNoise(40000, period));
+
+        int start = LoopPointFinder.MAX_CROSSFADE_TIME * SAMPLE_RATE / 1000;
+        assertEquals(start, points.getStart());
+        assertEquals(start + 2 * period, points.getEnd());
+    }
+
+    @Test
+    public void testShortAudioLoopsAsWhole() {
+        LoopPoints points = testee.find(createPeriodicNoise(SAMPLE_RATE, 1000));
+
+        assertEquals(0, points.getStart());
+        assertEquals(SAMPLE_RATE, points.getEnd());
+    }
+}
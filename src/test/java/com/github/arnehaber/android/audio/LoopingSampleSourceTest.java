@@ -0,0 +1,191 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link LoopingSampleSource}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class LoopingSampleSourceTest {
+
+    private static final float DELTA = 0f;
+
+    /**
+     * Creates a stereo buffer where each frame holds its own index in both
+     * channels.
+     */
+    private static PcmBuffer createCountingBuffer(int frames) {
+        short[] samples = new short[frames * 2];
+        for (int i = 0; i < frames; i++) {
+            samples[2 * i] = (short) i;
+            samples[2 * i + 1] = (short) -i;
+        }
+        return new PcmBuffer(samples, frames, 2, 44100);
+    }
+
+    private static int frameAt(float[] buffer, int frame) {
+        return Math.round(buffer[2 * frame] * 32768f);
+    }
+
+    @Test
+    public void testReadWithinLoop() {
+        LoopingSampleSource testee = new LoopingSampleSource(createCountingBuffer(10));
+        float[] buffer = new float[8];
+        testee.read(buffer, 0, 4);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, frameAt(buffer, i));
+            assertEquals(-i / 32768f, buffer[2 * i + 1], DELTA);
+        }
+        assertEquals(4, testee.getPosition());
+    }
+
+    @Test
+    public void testWrapIsSampleAccurate() {
+        int frames = 10;
+        LoopingSampleSource testee = new LoopingSampleSource(createCountingBuffer(frames));
+        float[] buffer = new float[2 * 35];
+        testee.read(buffer, 0, 35);
+        for (int i = 0; i < 35; i++) {
+            assertEquals(i % frames, frameAt(buffer, i));
+        }
+        assertEquals(5, testee.getPosition());
+    }
+
+    @Test
+    public void testWrapAcrossCalls() {
+        LoopingSampleSource testee = new LoopingSampleSource(createCountingBuffer(10));
+        float[] buffer = new float[2 * 7];
+        int expected = 0;
+        for (int call = 0; call < 5; call++) {
+            testee.read(buffer, 0, 7);
+            for (int i = 0; i < 7; i++) {
+                assertEquals(expected, frameAt(buffer, i));
+                expected = (expected + 1) % 10;
+            }
+        }
+    }
+
+    @Test
+    public void testLoopPoints() {
+        LoopingSampleSource testee = new LoopingSampleSource(createCountingBuffer(10), 2, 6);
+        float[] buffer = new float[2 * 9];
+        testee.read(buffer, 0, 9);
+        int[] expected = { 2, 3, 4, 5, 2, 3, 4, 5, 2 };
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], frameAt(buffer, i));
+        }
+        assertEquals(4, testee.getLoopFrames());
+    }
+
+    @Test
+    public void testReadAtOffset() {
+        LoopingSampleSource testee = new LoopingSampleSource(createCountingBuffer(10));
+        float[] buffer = new float[2 * 4];
+        testee.read(buffer, 4, 2);
+        assertEquals(0f, buffer[0], DELTA);
+        assertEquals(0, frameAt(buffer, 2));
+        assertEquals(1, frameAt(buffer, 3));
+    }
+
+    @Test
+    public void testRewind() {
+        LoopingSampleSource testee = new LoopingSampleSource(createCountingBuffer(10), 3, 10);
+        testee.read(new float[2 * 5], 0, 5);
+        testee.rewind();
+        assertEquals(3, testee.getPosition());
+    }
+
+    @Test
+    public void testReadAfterRewind() {
+        LoopingSampleSource testee = new LoopingSampleSource(createCountingBuffer(10), 3, 10);
+        float[] buffer = new float[2 * 2];
+        testee.read(new float[2 * 5], 0, 5);
+        testee.rewind();
+        testee.read(buffer, 0, 2);
+        assertEquals(3, frameAt(buffer, 0));
+        assertEquals(4, frameAt(buffer, 1));
+        assertEquals(5, testee.getPosition());
+    }
+
+    @Test
+    public void testCrossfadeBlendsPreRoll() {
+        // frames 0..3 precede the loop start, frames 16..19 are crossfaded
+        LoopingSampleSource testee = new LoopingSampleSource(createCountingBuffer(20), 4, 20, 4);
+        float[] buffer = new float[2 * 20];
+        testee.read(buffer, 0, 20);
+
+        for (int i = 0; i < 12; i++) {
+            assertEquals(4 + i, frameAt(buffer, i));
+        }
+        for (int k = 0; k < 4; k++) {
+            double angle = Math.PI / 2 * (k + 0.5) / 4;
+            double expected = (16 + k) * Math.cos(angle) + k * Math.sin(angle);
+            assertEquals(expected / 32768, buffer[2 * (12 + k)], 1e-6);
+            assertEquals(-expected / 32768, buffer[2 * (12 + k) + 1], 1e-6);
+        }
+        // the crossfade ends where the loop continues
+        assertEquals(4, frameAt(buffer, 16));
+        assertEquals(7, frameAt(buffer, 19));
+    }
+
+    @Test
+    public void testCrossfadeIsEqualPower() {
+        short[] samples = new short[2 * 20];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = 16384;
+        }
+        // silence before the loop start
+        for (int i = 0; i < 2 * 4; i++) {
+            samples[i] = 0;
+        }
+        LoopingSampleSource fadeOut = new LoopingSampleSource(new PcmBuffer(samples, 20, 2, 44100), 4, 20, 4);
+        samples = samples.clone();
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (16384 - samples[i]);
+        }
+        LoopingSampleSource fadeIn = new LoopingSampleSource(new PcmBuffer(samples, 20, 2, 44100), 4, 20, 4);
+
+        float[] out = new float[2 * 16];
+        float[] in = new float[2 * 16];
+        fadeOut.read(out, 0, 16);
+        fadeIn.read(in, 0, 16);
+        for (int k = 12; k < 16; k++) {
+            float power = out[2 * k] * out[2 * k] + in[2 * k] * in[2 * k];
+            assertEquals(0.25f, power, 1e-6f);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCrossfadeLongerThanPreRoll() {
+        new LoopingSampleSource(createCountingBuffer(20), 4, 20, 5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLoopPoints() {
+        new LoopingSampleSource(createCountingBuffer(10), 5, 5);
+    }
+}
@@ -0,0 +1,115 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the {@link LoudnessIndex}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class LoudnessIndexTest {
+
+    private static final String KEY = "raw-400-1000";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    private LoudnessIndex testee;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "index/loudness.idx");
+        testee = new LoudnessIndex(file);
+    }
+
+    @Test
+    public void testMissReturnsNull() throws IOException {
+        assertNull(testee.get(KEY));
+        assertEquals(0, testee.size());
+    }
+
+    @Test
+    public void testPersistent() throws IOException {
+        testee.put(KEY, new Loudness(-18.5f, 0.75f));
+
+        Loudness loaded = new LoudnessIndex(file).get(KEY);
+        assertEquals(-18.5f, loaded.getLoudness(), 0f);
+        assertEquals(0.75f, loaded.getPeak(), 0f);
+        assertNull(new LoudnessIndex(file).get("raw-400-1001"));
+    }
+
+    @Test
+    public void testSilencePersists() throws IOException {
+        testee.put(KEY, new Loudness(Float.NEGATIVE_INFINITY, 0f));
+
+        assertEquals(Float.NEGATIVE_INFINITY, new LoudnessIndex(file).get(KEY).getLoudness(), 0f);
+    }
+
+    @Test
+    public void testReplace() throws IOException {
+        testee.put(KEY, new Loudness(-18.5f, 0.75f));
+        testee.put(KEY, new Loudness(-20f, 0.5f));
+
+        assertEquals(1, new LoudnessIndex(file).size());
+        assertEquals(-20f, new LoudnessIndex(file).get(KEY).getLoudness(), 0f);
+    }
+
+    @Test
+    public void testOldestEntriesAreDropped() throws IOException {
+        for (int i = 0; i <= LoudnessIndex.MAX_ENTRIES; i++) {
+            testee.put("raw-" + i, new Loudness(-i, 1f));
+        }
+
+        LoudnessIndex loaded = new LoudnessIndex(file);
+        assertEquals(LoudnessIndex.MAX_ENTRIES, loaded.size());
+        assertNull(loaded.get("raw-0"));
+        assertEquals(-1f, loaded.get("raw-1").getLoudness(), 0f);
+    }
+
+    @Test
+    public void testTruncatedIndexIsIgnored() throws IOException {
+        testee.put(KEY, new Loudness(-18.5f, 0.75f));
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(out.length() - 1);
+        }
+        finally {
+            out.close();
+        }
+
+        assertNull(new LoudnessIndex(file).get(KEY));
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link LoudnessMeter}, with test signals of EBU Tech 3341.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class LoudnessMeterTest {
+
+    private final LoudnessMeter testee = new LoudnessMeter();
+
+    /**
+     * Creates 1 kHz sine segments of the given levels and lengths, with the
+     * same signal on all channels.
+     * 
+     * @param levels
+     *            peak level of each segment in dBFS.
+     * @param seconds
+     *            length of each segment in s.
+     */
+    private static PcmBuffer sine(int sampleRate, int channels, double[] levels, int[] seconds) {
+        int frames = 0;
+        for (int s : seconds) {
+            frames += s * sampleRate;
+        }
+        short[] samples = new short[frames * channels];
+        int frame = 0;
+        for (int segment = 0; segment < levels.length; segment++) {
+            double amplitude = 32767 * Math.pow(10, levels[segment] / 20);
+            for (int end = frame + seconds[segment] * sampleRate; frame < end; frame++) {
+                short value = (short) Math.round(amplitude * Math.sin(2 * Math.PI * 1000 * frame / sampleRate));
+                for (int c = 0; c < channels; c++) {
+                    samples[frame * channels + c] = value;
+                }
+            }
+        }
+        return new PcmBuffer(samples, frames, channels, sampleRate);
+    }
+
+    @Test
+    public void testStereoSine() {
+        Loudness actual = testee.measure(sine(48000, 2, new double[] { -23 }, new int[] { 20 }));
+
+        assertEquals(-23, actual.getLoudness(), 0.1);
+        assertEquals(Math.pow(10, -23.0 / 20), actual.getPeak(), 0.001);
+    }
+
+    @Test
+    public void testSampleRate() {
+        Loudness actual = testee.measure(sine(44100, 2, new double[] { -33 }, new int[] { 20 }));
+
+        assertEquals(-33, actual.getLoudness(), 0.1);
+    }
+
+    @Test
+    public void testMonoCountsOneChannel() {
+        Loudness actual = testee.measure(sine(48000, 1, new double[] { -23 }, new int[] { 20 }));
+
+        assertEquals(-26, actual.getLoudness(), 0.1);
+    }
+
+    @Test
+    public void testRelativeGate() {
+        Loudness actual = testee.measure(sine(48000, 2, new double[] { -36, -23, -36 }, new int[] { 10, 60, 10 }));
+
+        assertEquals(-23, actual.getLoudness(), 0.1);
+    }
+
+    @Test
+    public void testAbsoluteGate() {
+        Loudness actual = testee.measure(sine(48000, 2, new double[] { -72, -23, -72 }, new int[] { 10, 20, 10 }));
+
+        assertEquals(-23, actual.getLoudness(), 0.1);
+    }
+
+    @Test
+    public void testSilence() {
+        Loudness actual = testee.measure(new PcmBuffer(new short[2 * 48000], 48000, 2, 48000));
+
+        assertEquals(Float.NEGATIVE_INFINITY, actual.getLoudness(), 0f);
+        assertEquals(0f, actual.getPeak(), 0f);
+        assertEquals(1f, actual.getGain(-23), 0f);
+    }
+
+    @Test
+    public void testGain() {
+        // louder audio is attenuated
+        assertEquals(0.1f, new Loudness(-3, 1f).getGain(-23), 0.0001f);
+        // quieter audio is amplified until it would clip
+        assertEquals(2f, new Loudness(-33, 0.5f).getGain(-23), 0.0001f);
+        assertEquals(Math.pow(10, 0.5), new Loudness(-33, 0.1f).getGain(-23), 0.0001);
+    }
+}
@@ -0,0 +1,183 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.github.arnehaber.android.benchmark.AllocationCounter;
+
+/**
+ * Tests for the {@link Mixer}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class MixerTest {
+
+    private static final int RATE = 44100;
+
+    /**
+     * Source of a constant value.
+     */
+    private static class ConstantSource implements ISampleSource {
+
+        private final float value;
+
+        private final int channels;
+
+        ConstantSource(float value, int channels) {
+            this.value = value;
+            this.channels = channels;
+        }
+
+        public int getSampleRate() {
+            return RATE;
+        }
+
+        public int getChannelCount() {
+            return channels;
+        }
+
+        public void read(float[] buffer, int offset, int frames) {
+            for (int i = 0; i < frames * channels; i++) {
+                buffer[offset + i] = value;
+            }
+        }
+    }
+
+    /**
+     * Mixes one second, so all gains have settled.
+     * 
+     * @return the last frame.
+     */
+    private static float[] settle(Mixer testee) {
+        float[] buffer = new float[RATE * testee.getChannelCount()];
+        testee.read(buffer, 0, RATE);
+        float[] result = new float[testee.getChannelCount()];
+        System.arraycopy(buffer, buffer.length - result.length, result, 0, result.length);
+        return result;
+    }
+
+    @Test
+    public void testSumsLayersWithGain() {
+        Mixer testee = new Mixer(RATE, 2, 256);
+        testee.addLayer(new ConstantSource(0.5f, 2), 0.5f);
+        testee.addLayer(new ConstantSource(0.25f, 2), 1f);
+        float[] frame = settle(testee);
+        assertEquals(0.5f, frame[0], 1e-4f);
+        assertEquals(0.5f, frame[1], 1e-4f);
+        assertEquals(2, testee.getLayerCount());
+    }
+
+    @Test
+    public void testMonoLayerOnAllChannels() {
+        Mixer testee = new Mixer(RATE, 2, 256);
+        testee.addLayer(new ConstantSource(0.3f, 1), 1f);
+        float[] frame = settle(testee);
+        assertEquals(0.3f, frame[0], 1e-4f);
+        assertEquals(0.3f, frame[1], 1e-4f);
+    }
+
+    @Test
+    public void testGainIsSmoothed() {
+        Mixer testee = new Mixer(RATE, 1, 256);
+        Mixer.Layer layer = testee.addLayer(new ConstantSource(0.5f, 1), 1f);
+        float[] buffer = new float[64];
+        testee.read(buffer, 0, 64);
+        // fades in instead of jumping to the full level
+        assertTrue(buffer[0] > 0f && buffer[0] < 0.01f);
+        for (int i = 1; i < buffer.length; i++) {
+            assertTrue(buffer[i] > buffer[i - 1]);
+        }
+
+        settle(testee);
+        layer.setGain(0f);
+        testee.read(buffer, 0, 64);
+        assertTrue(buffer[0] > 0.49f);
+        assertTrue(buffer[63] < buffer[0]);
+        assertEquals(0f, settle(testee)[0], 1e-4f);
+    }
+
+    @Test
+    public void testRemoveLayer() {
+        Mixer testee = new Mixer(RATE, 1, 256);
+        Mixer.Layer layer = testee.addLayer(new ConstantSource(0.5f, 1), 1f);
+        assertTrue(testee.removeLayer(layer));
+        assertFalse(testee.removeLayer(layer));
+        assertEquals(0, testee.getLayerCount());
+        assertEquals(0f, settle(testee)[0], 0f);
+    }
+
+    @Test
+    public void testSoftClip() {
+        assertEquals(0.5f, Mixer.softClip(0.5f), 0f);
+        assertEquals(-Mixer.KNEE, Mixer.softClip(-Mixer.KNEE), 0f);
+        float previous = Mixer.KNEE;
+        for (float x = Mixer.KNEE + 0.01f; x < 4f; x += 0.01f) {
+            float y = Mixer.softClip(x);
+            assertTrue(y >= previous && y <= 1f);
+            assertEquals(-y, Mixer.softClip(-x), 0f);
+            previous = y;
+        }
+    }
+
+    @Test
+    public void testLoudMixIsClipped() {
+        Mixer testee = new Mixer(RATE, 2, 256);
+        for (int i = 0; i < 4; i++) {
+            testee.addLayer(new ConstantSource(0.9f, 2), 1f);
+        }
+        float[] frame = settle(testee);
+        assertTrue(frame[0] > Mixer.KNEE && frame[0] <= 1f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsOtherSampleRate() {
+        new Mixer(RATE / 2, 2, 256).addLayer(new ConstantSource(0f, 2), 1f);
+    }
+
+    @Test
+    public void testReadAllocationFree() {
+        AllocationCounter counter = new AllocationCounter();
+        Assume.assumeTrue(counter.isSupported());
+        Mixer testee = new Mixer(RATE, 2, 256);
+        testee.addLayer(new ConstantSource(0.1f, 2), 1f);
+        testee.addLayer(new ConstantSource(0.1f, 1), 0.5f);
+        testee.addLayer(new SurfSynthesizer(RATE, 2, 1), 0.5f);
+        float[] block = new float[2 * 2048];
+        // warm up
+        for (int i = 0; i < 1000; i++) {
+            testee.read(block, 0, 2048);
+        }
+
+        counter.reset();
+        for (int i = 0; i < 1000; i++) {
+            testee.read(block, 0, 2048);
+        }
+        long allocated = counter.getAllocatedBytes();
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
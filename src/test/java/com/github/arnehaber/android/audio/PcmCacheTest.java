@@ -0,0 +1,236 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the {@link PcmCache}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class PcmCacheTest {
+
+    private static final String KEY = "raw-400-1000";
+
+    private static final String OTHER_KEY = "raw-400-1001";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    private PcmCache testee;
+
+    private PcmBuffer pcm;
+
+    @Before
+    public void setUp() {
+        directory = new File(folder.getRoot(), "pcm");
+        testee = new PcmCache(directory, 0);
+        short[] samples = new short[2 * 100];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (i * 300 - 30000);
+        }
+        pcm = new PcmBuffer(samples, 100, 2, 22050);
+    }
+
+    @Test
+    public void testMissReturnsNull() throws IOException {
+        assertNull(testee.load(KEY));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        assertTrue(testee.store(KEY, pcm));
+
+        PcmBuffer loaded = testee.load(KEY);
+        assertNotNull(loaded);
+        assertEquals(100, loaded.getFrames());
+        assertEquals(2, loaded.getChannelCount());
+        assertEquals(22050, loaded.getSampleRate());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(pcm.getSamples().get(i), loaded.getSamples().get(i));
+        }
+    }
+
+    @Test
+    public void testMappedAudioPlaysLikeDecodedAudio() throws IOException {
+        testee.store(KEY, pcm);
+        LoopingSampleSource expected = new LoopingSampleSource(pcm);
+        LoopingSampleSource actual = new LoopingSampleSource(testee.load(KEY));
+
+        float[] expectedBuffer = new float[2 * 150];
+        float[] actualBuffer = new float[2 * 150];
+        expected.read(expectedBuffer, 0, 150);
+        actual.read(actualBuffer, 0, 150);
+        for (int i = 0; i < expectedBuffer.length; i++) {
+            assertEquals(expectedBuffer[i], actualBuffer[i], 0f);
+        }
+    }
+
+    @Test
+    public void testOtherSourceIsNotServed() throws IOException {
+        testee.store(KEY, pcm);
+
+        assertNull(testee.load(OTHER_KEY));
+    }
+
+    @Test
+    public void testMismatchingHeaderIsDeleted() throws IOException {
+        testee.store(KEY, pcm);
+        File file = testee.getFile(KEY);
+        writeLong(file, 8, PcmCache.hash(OTHER_KEY));
+
+        assertNull(testee.load(KEY));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testOtherVersionIsDeleted() throws IOException {
+        testee.store(KEY, pcm);
+        File file = testee.getFile(KEY);
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.seek(4);
+            out.writeInt(Integer.reverseBytes(PcmCache.VERSION + 1));
+        }
+        finally {
+            out.close();
+        }
+
+        assertNull(testee.load(KEY));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testTruncatedFileIsDeleted() throws IOException {
+        testee.store(KEY, pcm);
+        File file = testee.getFile(KEY);
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(out.length() - 2);
+        }
+        finally {
+            out.close();
+        }
+
+        assertNull(testee.load(KEY));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testLowStorageEvictsCache() throws IOException {
+        testee.store(KEY, pcm);
+        PcmCache full = new PcmCache(directory, Long.MAX_VALUE);
+
+        assertFalse(full.store(OTHER_KEY, pcm));
+        assertFalse(testee.getFile(KEY).exists());
+        assertFalse(testee.getFile(OTHER_KEY).exists());
+    }
+
+    @Test
+    public void testClear() throws IOException {
+        testee.store(KEY, pcm);
+        testee.clear();
+
+        assertNull(testee.load(KEY));
+        assertEquals(0, directory.list().length);
+    }
+
+    @Test
+    public void testLoopPointsRoundTrip() throws IOException {
+        assertNull(testee.loadLoopPoints(KEY));
+        testee.storeLoopPoints(KEY, new LoopPoints(22050, 1234567));
+
+        LoopPoints loaded = testee.loadLoopPoints(KEY);
+        assertEquals(22050, loaded.getStart());
+        assertEquals(1234567, loaded.getEnd());
+        assertNull(testee.loadLoopPoints(OTHER_KEY));
+    }
+
+    @Test
+    public void testMismatchingLoopPointsAreDeleted() throws IOException {
+        testee.storeLoopPoints(KEY, new LoopPoints(1, 2));
+        File file = testee.getLoopFile(KEY);
+        writeLong(file, 8, PcmCache.hash(OTHER_KEY));
+
+        assertNull(testee.loadLoopPoints(KEY));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testClearKeepsLoopPoints() throws IOException {
+        testee.store(KEY, pcm);
+        testee.storeLoopPoints(KEY, new LoopPoints(1, 2));
+        testee.clear();
+
+        assertNull(testee.load(KEY));
+        assertNotNull(testee.loadLoopPoints(KEY));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKeyMustNotLeaveDirectory() throws IOException {
+        testee.load("../raw-400-1000");
+    }
+
+    @Test
+    public void testFileKeyChangesWithContent() throws IOException {
+        File file = folder.newFile("ocean.wav");
+        String key = PcmCache.getKey("wav", file);
+        assertTrue(key.startsWith("wav-"));
+        assertTrue(testee.store(key, pcm));
+
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(16);
+        }
+        finally {
+            out.close();
+        }
+        assertNull(testee.load(PcmCache.getKey("wav", file)));
+    }
+
+    private static void writeLong(File file, long position, long value) throws IOException {
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.seek(position);
+            out.writeLong(Long.reverseBytes(value));
+        }
+        finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/**
+ * Tests for the {@link PcmLoader}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PcmLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PcmBuffer pcm;
+
+    /**
+     * Counts how often its audio is decoded.
+     */
+    private class CountingSource implements AudioSource {
+
+        private final String key;
+
+        private int opened = 0;
+
+        CountingSource(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public PcmStream open() {
+            opened++;
+            return pcm.openStream();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        short[] samples = new short[2 * 100];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (i * 300 - 30000);
+        }
+        pcm = new PcmBuffer(samples, 100, 2, 22050);
+    }
+
+    @Test
+    public void testDecodesWithoutCache() throws IOException {
+        CountingSource source = new CountingSource("raw-1");
+        PcmLoader testee = new PcmLoader();
+
+        testee.load(source);
+        testee.load(source);
+        assertEquals(2, source.opened);
+    }
+
+    @Test
+    public void testMemoryCacheServesRecentAudio() throws IOException {
+        CountingSource source = new CountingSource("raw-1");
+        PcmLoader.MemoryCache memory = new PcmLoader.MemoryCache(1000);
+        PcmLoader testee = new PcmLoader(null, memory);
+
+        PcmBuffer first = testee.load(source);
+        assertSame(first, testee.load(source));
+        assertEquals(1, source.opened);
+        assertEquals(1, memory.hitCount());
+        assertEquals(1, memory.missCount());
+        assertEquals(400, memory.size());
+    }
+
+    @Test
+    public void testEvictedAudioIsMappedFromStorage() throws IOException {
+        CountingSource source = new CountingSource("raw-1");
+        CountingSource other = new CountingSource("raw-2");
+        PcmLoader.MemoryCache memory = new PcmLoader.MemoryCache(400);
+        PcmLoader testee = new PcmLoader(new PcmCache(new File(folder.getRoot(), "pcm"), 0), memory);
+
+        testee.load(source);
+        // evicts the audio of source
+        testee.load(other);
+        PcmBuffer loaded = testee.load(source);
+
+        assertEquals(1, source.opened);
+        assertEquals(pcm.getFrames(), loaded.getFrames());
+        assertEquals(0, memory.hitCount());
+    }
+
+    @Test
+    public void testMappedAudioTakesNoHeap() {
+        PcmLoader.MemoryCache memory = new PcmLoader.MemoryCache(1000);
+        ShortBuffer mapped = ByteBuffer.allocateDirect(2 * pcm.getFrames() * pcm.getChannelCount())
+                .asShortBuffer();
+        memory.put("raw-1", pcm);
+        memory.put("raw-2", new PcmBuffer(mapped, pcm.getFrames(), pcm.getChannelCount(), pcm.getSampleRate()));
+
+        assertEquals(2L * pcm.getFrames() * pcm.getChannelCount(), memory.size());
+    }
+
+    @Test
+    public void testSourceWithoutKeyIsNotCached() throws IOException {
+        CountingSource source = new CountingSource(null);
+        PcmLoader.MemoryCache memory = new PcmLoader.MemoryCache(1000);
+        PcmLoader testee = new PcmLoader(null, memory);
+
+        testee.load(source);
+        testee.load(source);
+        assertEquals(2, source.opened);
+        assertEquals(0, memory.size());
+    }
+
+    @Test
+    public void testNoNormalizationWithoutIndex() throws IOException {
+        assertEquals(1f, new PcmLoader().getGain("raw-1", loud()), 0f);
+    }
+
+    @Test
+    public void testLoudnessIsMeasuredOncePerKey() throws IOException {
+        LoudnessIndex index = new LoudnessIndex(new File(folder.getRoot(), "loudness.idx"));
+        PcmLoader testee = new PcmLoader(null, null, index);
+
+        float gain = testee.getGain("raw-1", loud());
+        assertEquals(Math.pow(10, (PcmLoader.TARGET_LOUDNESS - index.get("raw-1").getLoudness()) / 20), gain, 1e-4);
+        assertTrue(gain < 0.5f);
+
+        // indexed sources are not measured again, changed ones get a new key
+        PcmBuffer silence = new PcmBuffer(new short[2 * 22050], 22050, 2, 22050);
+        assertEquals(gain, new PcmLoader(null, null, index).getGain("raw-1", silence), 0f);
+        assertEquals(1f, testee.getGain("raw-2", silence), 0f);
+        assertEquals(2, index.size());
+    }
+
+    /**
+     * 
+     * @return a second of a loud 1 kHz sine.
+     */
+    private static PcmBuffer loud() {
+        short[] samples = new short[2 * 22050];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (30000 * Math.sin(2 * Math.PI * 1000 * (i / 2) / 22050));
+        }
+        return new PcmBuffer(samples, 22050, 2, 22050);
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link PcmRenderer}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class PcmRendererTest {
+
+    /**
+     * Mono source that repeats a fixed sequence of samples.
+     */
+    private static class FixedSource implements ISampleSource {
+
+        private final float[] values;
+
+        private int index;
+
+        FixedSource(float... values) {
+            this.values = values;
+        }
+
+        public int getSampleRate() {
+            return 44100;
+        }
+
+        public int getChannelCount() {
+            return 1;
+        }
+
+        public void read(float[] buffer, int offset, int frames) {
+            for (int i = 0; i < frames; i++) {
+                buffer[offset + i] = values[index];
+                index = (index + 1) % values.length;
+            }
+        }
+    }
+
+    @Test
+    public void testRenderConvertsToShort() {
+        PcmRenderer testee = new PcmRenderer(new FixedSource(0f, 0.5f, -0.5f, -1f), 4);
+        short[] out = new short[4];
+        int samples = testee.render(out, 4);
+        assertEquals(4, samples);
+        assertEquals(0, out[0]);
+        assertEquals(16384, out[1]);
+        assertEquals(-16384, out[2]);
+        assertEquals(Short.MIN_VALUE, out[3]);
+    }
+
+    @Test
+    public void testRenderClips() {
+        PcmRenderer testee = new PcmRenderer(new FixedSource(1f, 2f, -2f), 3);
+        short[] out = new short[3];
+        testee.render(out, 3);
+        assertEquals(Short.MAX_VALUE, out[0]);
+        assertEquals(Short.MAX_VALUE, out[1]);
+        assertEquals(Short.MIN_VALUE, out[2]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRenderRejectsOversizedBlock() {
+        PcmRenderer testee = new PcmRenderer(new FixedSource(0f), 4);
+        testee.render(new short[8], 8);
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link ResamplingSource}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class ResamplingSourceTest {
+
+    private static final float DELTA = 1e-4f;
+
+    /**
+     * Stereo ramp, frame i is (i / 1000, -i / 1000).
+     */
+    private static class RampSource implements ISampleSource {
+
+        private final int sampleRate;
+
+        private int frame = 0;
+
+        RampSource(int sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        public int getChannelCount() {
+            return 2;
+        }
+
+        public void read(float[] buffer, int offset, int frames) {
+            for (int f = 0; f < frames; f++, frame++) {
+                buffer[offset++] = frame / 1000f;
+                buffer[offset++] = -frame / 1000f;
+            }
+        }
+    }
+
+    /**
+     * Reads <b>frames</b> frames in reads of odd length and checks that
+     * output frame n is the source ramp at n * source rate / output rate.
+     */
+    private static void assertRamp(int sourceRate, int sampleRate, int frames) {
+        ResamplingSource testee = new ResamplingSource(new RampSource(sourceRate), sampleRate);
+        assertEquals(sampleRate, testee.getSampleRate());
+        assertEquals(2, testee.getChannelCount());
+        float[] buffer = new float[2 * 37];
+        int n = 0;
+        while (n < frames) {
+            testee.read(buffer, 0, 37);
+            for (int f = 0; f < 37; f++, n++) {
+                float expected = (float) ((double) n * sourceRate / sampleRate / 1000);
+                assertEquals("frame " + n, expected, buffer[2 * f], DELTA);
+                assertEquals("frame " + n, -expected, buffer[2 * f + 1], DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void testSameRate() {
+        assertRamp(44100, 44100, 1000);
+    }
+
+    @Test
+    public void testUpsample() {
+        assertRamp(22050, 44100, 1000);
+    }
+
+    @Test
+    public void testDownsample() {
+        assertRamp(48000, 44100, 1000);
+    }
+
+    @Test
+    public void testDownsampleByMoreThanTwo() {
+        assertRamp(96000, 44100, 1000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRate() {
+        new ResamplingSource(new RampSource(44100), 0);
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.robolectric.RobolectricTestRunner;
+
+import android.content.ComponentCallbacks2;
+
+/**
+ * Tests for the {@link SoundCatalog}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SoundCatalogTest {
+
+    private final PcmLoader.MemoryCache memory = new PcmLoader.MemoryCache(1024 * 1024);
+
+    private final PcmLoader spiedLoader = Mockito.spy(new PcmLoader(null, memory));
+
+    private final SoundCatalog testee = new SoundCatalog(spiedLoader);
+
+    private final AudioSource ocean = Mockito.mock(AudioSource.class);
+
+    private final AudioSource rain = Mockito.mock(AudioSource.class);
+
+    @Before
+    public void setUp() throws IOException {
+        short[] samples = new short[2 * 22050];
+        final PcmBuffer pcm = new PcmBuffer(samples, 22050, 2, 22050);
+        Mockito.when(ocean.getKey()).thenReturn("raw-1");
+        Mockito.when(ocean.open()).thenAnswer(new Answer<PcmStream>() {
+            public PcmStream answer(InvocationOnMock invocation) {
+                return pcm.openStream();
+            }
+        });
+        testee.add("ocean", ocean);
+        testee.add("rain", rain);
+    }
+
+    @Test
+    public void testIndex() {
+        assertEquals(2, testee.size());
+        assertEquals("rain", testee.get(1).getId());
+        assertSame(rain, testee.get(1).getSource());
+        assertEquals(1, testee.indexOf("rain"));
+        assertEquals(-1, testee.indexOf("wind"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateId() {
+        testee.add("ocean", rain);
+    }
+
+    @Test
+    public void testInfoIsLoadedLazilyOnce() throws IOException {
+        Mockito.verify(spiedLoader, Mockito.never()).load(ocean);
+
+        SoundCatalog.Info info = testee.getInfo(0);
+        assertEquals(1000, info.getDuration());
+        assertEquals(22050, info.getSampleRate());
+        assertEquals(2, info.getChannelCount());
+        assertEquals(22050, info.getLoopPoints().getEnd());
+        assertEquals(Float.NEGATIVE_INFINITY, info.getLoudness().getLoudness(), 0f);
+
+        assertSame(info, testee.getInfo(0));
+        Mockito.verify(spiedLoader, Mockito.times(1)).load(ocean);
+        Mockito.verify(rain, Mockito.never()).open();
+    }
+
+    @Test
+    public void testCacheCounters() throws IOException {
+        testee.getInfo(0);
+        spiedLoader.load(ocean);
+
+        assertEquals(1, testee.getCacheHits());
+        assertEquals(1, testee.getCacheMisses());
+    }
+
+    @Test
+    public void testTrimMemory() {
+        PcmLoader.MemoryCache memory = new PcmLoader.MemoryCache(600);
+        SoundCatalog testee = new SoundCatalog(new PcmLoader(null, memory));
+        PcmBuffer small = new PcmBuffer(new short[100], 100, 1, 22050);
+        memory.put("a", small);
+        memory.put("b", small);
+        memory.put("c", small);
+
+        testee.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertEquals(600, memory.size());
+
+        testee.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertEquals(200, memory.size());
+
+        testee.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertEquals(0, memory.size());
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.github.arnehaber.android.benchmark.AllocationCounter;
+
+/**
+ * Tests for the {@link SurfSynthesizer}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class SurfSynthesizerTest {
+
+    private static final int RATE = SurfSynthesizer.DEFAULT_SAMPLE_RATE;
+
+    private static float[] render(SurfSynthesizer testee, int frames) {
+        float[] result = new float[frames * testee.getChannelCount()];
+        testee.read(result, 0, frames);
+        return result;
+    }
+
+    @Test
+    public void testOutputInRange() {
+        // two maximum wave periods
+        float[] samples = render(new SurfSynthesizer(RATE, 2, 1), (int) (2 * SurfSynthesizer.MAX_PERIOD * RATE));
+        double energy = 0;
+        for (float s : samples) {
+            assertTrue("Sample " + s, s > -1f && s < 1f);
+            energy += s * s;
+        }
+        double rms = Math.sqrt(energy / samples.length);
+        assertTrue("RMS " + rms, rms > 0.01);
+    }
+
+    @Test
+    public void testSameSeedSameOutput() {
+        float[] expected = render(new SurfSynthesizer(RATE, 2, 7), RATE);
+        float[] actual = render(new SurfSynthesizer(RATE, 2, 7), RATE);
+        assertArrayEquals(expected, actual, 0f);
+        assertFalse(Arrays.equals(expected, render(new SurfSynthesizer(RATE, 2, 8), RATE)));
+    }
+
+    @Test
+    public void testOutputIndependentOfBlockSize() {
+        float[] expected = render(new SurfSynthesizer(RATE, 2, 3), 1000);
+
+        SurfSynthesizer testee = new SurfSynthesizer(RATE, 2, 3);
+        float[] actual = new float[2000];
+        int frame = 0;
+        for (int block : new int[] { 1, 63, 64, 65, 300, 507 }) {
+            testee.read(actual, 2 * frame, block);
+            frame += block;
+        }
+        assertArrayEquals(expected, actual, 0f);
+    }
+
+    @Test
+    public void testChannelsAreIndependent() {
+        float[] samples = render(new SurfSynthesizer(RATE, 2, 5), 100);
+        int equal = 0;
+        for (int i = 0; i < samples.length; i += 2) {
+            if (samples[i] == samples[i + 1]) {
+                equal++;
+            }
+        }
+        assertTrue(equal < 5);
+    }
+
+    @Test
+    public void testReadAllocationFree() {
+        AllocationCounter counter = new AllocationCounter();
+        Assume.assumeTrue(counter.isSupported());
+        SurfSynthesizer testee = new SurfSynthesizer(RATE, 2, 9);
+        float[] block = new float[2 * 2048];
+        // warm up
+        for (int i = 0; i < 1000; i++) {
+            testee.read(block, 0, 2048);
+        }
+
+        counter.reset();
+        for (int i = 0; i < 1000; i++) {
+            testee.read(block, 0, 2048);
+        }
+        long allocated = counter.getAllocatedBytes();
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsInvalidChannelCount() {
+        new SurfSynthesizer(RATE, 3, 1);
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.google.inject.Provider;
+
+/**
+ * Tests for the {@link SynthesizedSource} and reading {@link PcmStream}s into
+ * a {@link PcmBuffer}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class SynthesizedSourceTest {
+
+    private final Provider<SurfSynthesizer> synthesizers = new Provider<SurfSynthesizer>() {
+        public SurfSynthesizer get() {
+            return new SurfSynthesizer(22050, 2, 42);
+        }
+    };
+
+    @Test
+    public void testRendersDuration() throws IOException {
+        SynthesizedSource testee = new SynthesizedSource(synthesizers, 1000);
+        assertNull(testee.getKey());
+
+        PcmBuffer pcm = PcmBuffer.read(testee.open());
+        assertEquals(22050, pcm.getFrames());
+        assertEquals(2, pcm.getChannelCount());
+        assertEquals(22050, pcm.getSampleRate());
+    }
+
+    @Test
+    public void testEachStreamStartsOver() throws IOException {
+        SynthesizedSource testee = new SynthesizedSource(synthesizers, 100);
+        PcmBuffer first = PcmBuffer.read(testee.open());
+        PcmBuffer second = PcmBuffer.read(testee.open());
+
+        assertEquals(first.getSamples(), second.getSamples());
+    }
+
+    @Test
+    public void testUnreadBufferStreamIsNotCopied() throws IOException {
+        PcmBuffer pcm = PcmBuffer.read(new SynthesizedSource(synthesizers, 100).open());
+
+        assertSame(pcm, PcmBuffer.read(pcm.openStream()));
+    }
+
+    @Test
+    public void testReadBufferStreamIsCopied() throws IOException {
+        PcmBuffer pcm = PcmBuffer.read(new SynthesizedSource(synthesizers, 100).open());
+        PcmStream stream = pcm.openStream();
+        short[] first = new short[2];
+        assertEquals(2, stream.read(first, 0, 3));
+
+        PcmBuffer rest = PcmBuffer.read(stream);
+        assertEquals(pcm.getFrames() - 1, rest.getFrames());
+        assertEquals(pcm.getSamples().get(2), rest.getSamples().get(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void testEmptyStreamIsRejected() throws IOException {
+        PcmStream stream = new SynthesizedSource(synthesizers, 100).open();
+        PcmBuffer.read(stream);
+        PcmBuffer.read(stream);
+    }
+}
@@ -0,0 +1,235 @@
+package com.github.arnehaber.android.audio;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the {@link WavDecoder} and the {@link WavSource}. The WAVE files
+ * are built in memory.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class WavDecoderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final WavDecoder testee = new WavDecoder();
+
+    @Test
+    public void test16BitStereo() throws IOException {
+        byte[] data = { 0x01, 0x00, (byte) 0xFF, (byte) 0xFF, 0x00, (byte) 0x80, (byte) 0xFF, 0x7F };
+        PcmStream stream = testee.decode(wave(WavDecoder.FORMAT_PCM, 2, 16, data));
+
+        assertEquals(44100, stream.getSampleRate());
+        assertEquals(2, stream.getChannelCount());
+        assertEquals(2, stream.getFrames());
+        assertSamples(new short[] { 1, -1, Short.MIN_VALUE, Short.MAX_VALUE }, stream);
+    }
+
+    @Test
+    public void test8BitIsUnsigned() throws IOException {
+        byte[] data = { (byte) 0x80, 0x00, (byte) 0xFF };
+        PcmStream stream = testee.decode(wave(WavDecoder.FORMAT_PCM, 1, 8, data));
+
+        assertSamples(new short[] { 0, Short.MIN_VALUE, 127 << 8 }, stream);
+    }
+
+    @Test
+    public void test24BitKeepsUpperBytes() throws IOException {
+        byte[] data = { 0x55, 0x34, 0x12, 0x00, 0x00, (byte) 0x80 };
+        PcmStream stream = testee.decode(wave(WavDecoder.FORMAT_PCM, 1, 24, data));
+
+        assertSamples(new short[] { 0x1234, Short.MIN_VALUE }, stream);
+    }
+
+    @Test
+    public void test32BitFloatIsClipped() throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (float sample : new float[] { 0.5f, -0.25f, 2f, -2f }) {
+            writeInt(data, Float.floatToIntBits(sample));
+        }
+        PcmStream stream = testee.decode(wave(WavDecoder.FORMAT_FLOAT, 2, 32, data.toByteArray()));
+
+        assertSamples(new short[] { 16384, -8192, Short.MAX_VALUE, Short.MIN_VALUE }, stream);
+    }
+
+    @Test
+    public void testUnknownChunksAreSkipped() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("RIFF".getBytes("US-ASCII"));
+        writeInt(out, 0);
+        out.write("WAVE".getBytes("US-ASCII"));
+        // odd sized chunks are padded to an even size
+        out.write("LIST".getBytes("US-ASCII"));
+        writeInt(out, 3);
+        out.write(new byte[] { 1, 2, 3, 0 });
+        writeFmt(out, WavDecoder.FORMAT_PCM, 1, 16);
+        out.write("data".getBytes("US-ASCII"));
+        writeInt(out, 2);
+        out.write(new byte[] { 0x34, 0x12 });
+        PcmStream stream = testee.decode(new ByteArrayInputStream(out.toByteArray()));
+
+        assertSamples(new short[] { 0x1234 }, stream);
+    }
+
+    @Test
+    public void testDataUpToTheEnd() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("RIFF".getBytes("US-ASCII"));
+        writeInt(out, 0);
+        out.write("WAVE".getBytes("US-ASCII"));
+        writeFmt(out, WavDecoder.FORMAT_PCM, 1, 16);
+        out.write("data".getBytes("US-ASCII"));
+        writeInt(out, 0);
+        // the truncated last frame is dropped
+        out.write(new byte[] { 1, 0, 2, 0, 3 });
+        PcmStream stream = testee.decode(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(-1, stream.getFrames());
+        assertSamples(new short[] { 1, 2 }, stream);
+    }
+
+    @Test
+    public void testRejectsOtherFiles() throws IOException {
+        byte[] mp3 = new byte[64];
+        mp3[0] = 'I';
+        mp3[1] = 'D';
+        mp3[2] = '3';
+        assertFalse(WavDecoder.isWave(mp3));
+        assertRejected(new ByteArrayInputStream(mp3));
+        assertRejected(wave(2, 1, 4, new byte[16]));
+        assertRejected(wave(WavDecoder.FORMAT_PCM, 1, 12, new byte[16]));
+    }
+
+    @Test
+    public void testWavSourcePlaysInLoop() throws IOException {
+        byte[] data = new byte[2 * 1000];
+        for (int i = 0; i < 1000; i++) {
+            data[2 * i + 1] = (byte) i;
+        }
+        File file = folder.newFile("ocean.wav");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(toByteArray(wave(WavDecoder.FORMAT_PCM, 1, 16, data)));
+        }
+        finally {
+            out.close();
+        }
+        WavSource source = new WavSource(file);
+        assertTrue(source.getKey().startsWith("wav-"));
+
+        PcmStream stream = source.open();
+        PcmBuffer pcm;
+        try {
+            pcm = PcmBuffer.read(stream);
+        }
+        finally {
+            stream.close();
+        }
+        assertEquals(1000, pcm.getFrames());
+        assertEquals(44100, pcm.getSampleRate());
+
+        LoopingSampleSource loop = new LoopingSampleSource(pcm);
+        float[] buffer = new float[1500];
+        loop.read(buffer, 0, 1500);
+        assertEquals((byte) 999 * 256 / 32768f, buffer[999], 0f);
+        assertEquals(buffer[1], buffer[1001], 0f);
+    }
+
+    private void assertRejected(ByteArrayInputStream in) {
+        try {
+            testee.decode(in);
+            fail("Decoded an unsupported file");
+        }
+        catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static void assertSamples(short[] expected, PcmStream stream) throws IOException {
+        short[] actual = new short[expected.length + 16];
+        int read = 0;
+        int count;
+        while ((count = stream.read(actual, read, actual.length - read)) >= 0) {
+            read += count;
+        }
+        assertEquals(expected.length, read);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i]);
+        }
+        stream.close();
+    }
+
+    private static ByteArrayInputStream wave(int format, int channels, int bits, byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("RIFF".getBytes("US-ASCII"));
+        writeInt(out, 36 + data.length);
+        out.write("WAVE".getBytes("US-ASCII"));
+        writeFmt(out, format, channels, bits);
+        out.write("data".getBytes("US-ASCII"));
+        writeInt(out, data.length);
+        out.write(data);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    private static void writeFmt(ByteArrayOutputStream out, int format, int channels, int bits) throws IOException {
+        out.write("fmt ".getBytes("US-ASCII"));
+        writeInt(out, 16);
+        writeShort(out, format);
+        writeShort(out, channels);
+        writeInt(out, 44100);
+        writeInt(out, 44100 * channels * bits / 8);
+        writeShort(out, channels * bits / 8);
+        writeShort(out, bits);
+    }
+
+    private static byte[] toByteArray(ByteArrayInputStream in) {
+        byte[] result = new byte[in.available()];
+        in.read(result, 0, result.length);
+        return result;
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >> 8);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        writeShort(out, value);
+        writeShort(out, value >> 16);
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.arnehaber.android.benchmark;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Counts the bytes allocated by the current thread. Requires a JVM that
+ * implements {@link com.sun.management.ThreadMXBean}, like HotSpot.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class AllocationCounter {
+
+    private final com.sun.management.ThreadMXBean bean;
+
+    private long start;
+
+    /**
+     * Creates a counter and starts counting.
+     */
+    public AllocationCounter() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+            bean = (com.sun.management.ThreadMXBean) threads;
+            bean.setThreadAllocatedMemoryEnabled(true);
+        }
+        else {
+            bean = null;
+        }
+        reset();
+    }
+
+    /**
+     * 
+     * @return true, if the JVM counts allocated bytes per thread.
+     */
+    public boolean isSupported() {
+        return bean != null;
+    }
+
+    /**
+     * Restarts counting.
+     */
+    public void reset() {
+        start = allocatedBytes();
+    }
+
+    /**
+     * 
+     * @return the number of bytes the current thread allocated since the
+     *         last reset.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes() - start;
+    }
+
+    private long allocatedBytes() {
+        return bean != null ? bean.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.arnehaber.android.benchmark;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * Collects samples of a benchmark and computes nearest rank percentiles.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class Percentiles {
+
+    private final String name;
+
+    private long[] samples;
+
+    private int size = 0;
+
+    /**
+     * 
+     * @param name
+     *            name of the measured value.
+     * @param capacity
+     *            expected number of samples.
+     */
+    public Percentiles(String name, int capacity) {
+        this.name = name;
+        this.samples = new long[Math.max(1, capacity)];
+    }
+
+    /**
+     * Adds a sample.
+     * 
+     * @param sample
+     *            the measured value.
+     */
+    public void add(long sample) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, 2 * size);
+        }
+        samples[size++] = sample;
+    }
+
+    /**
+     * 
+     * @return the name of the measured value.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 
+     * @return the number of samples.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 
+     * @param percentile
+     *            the percentile in (0, 100].
+     * @return the smallest sample that is greater than or equal to
+     *         <b>percentile</b> percent of all samples.
+     */
+    public long get(double percentile) {
+        if (size == 0) {
+            throw new IllegalStateException("No samples for " + name);
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * size);
+        return sorted[Math.min(size, Math.max(1, rank)) - 1];
+    }
+
+    /**
+     * Formats the median, 90th and 99th percentile and the maximum, with
+     * samples in ns printed as ms.
+     * 
+     * @return a single report line.
+     */
+    public String toMillisString() {
+        return String.format("%-20s n=%4d p50=%8.3f ms p90=%8.3f ms p99=%8.3f ms max=%8.3f ms", name, size,
+                get(50) / 1e6, get(90) / 1e6, get(99) / 1e6, get(100) / 1e6);
+    }
+}
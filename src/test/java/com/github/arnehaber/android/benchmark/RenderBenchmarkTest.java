@@ -0,0 +1,251 @@
+package com.github.arnehaber.android.benchmark;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import com.github.arnehaber.android.audio.AudioEngineType;
+import com.github.arnehaber.android.audio.AudioSource;
+import com.github.arnehaber.android.audio.AudioTrackEngine;
+import com.github.arnehaber.android.audio.FadingSampleSource;
+import com.github.arnehaber.android.audio.MixingEngine;
+import com.github.arnehaber.android.audio.PcmRenderer;
+import com.github.arnehaber.android.audio.SurfSynthesizer;
+import com.github.arnehaber.android.audio.SynthesizedSource;
+import com.github.arnehaber.android.helper.OceanWavesFactory;
+import com.github.arnehaber.android.helper.TimeConstants;
+import com.google.inject.Provider;
+
+/**
+ * Renders hours of play back offline through the sources of each
+ * {@link AudioTrackEngine}, the way its render thread feeds the track: loop
+ * with crossfade, mixer, synthesizer filters, the sleep timer fade out and the
+ * conversion to 16 bit. Reports the real-time factor, i.e. render time per
+ * played time, the time per sample, the allocation per played second and the
+ * garbage collections. The build fails if the real-time factor in CPU time or
+ * the allocation of an engine exceeds its budget.
+ * <p>
+ * Run with <code>mvn test -Pbenchmark -Dtest=RenderBenchmarkTest</code>. The
+ * played hours, the budgets and the engines can be overridden with the system
+ * properties <code>benchmark.render.hours</code>,
+ * <code>benchmark.render.&lt;engine&gt;.rtf</code>,
+ * <code>benchmark.render.allocation</code> in bytes per played second and
+ * <code>benchmark.render.engines</code>, a comma separated list.
+ * 
+ * @author Arne Haber
+ * 
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RenderBenchmarkTest {
+
+    private static final String PREFIX = "benchmark.render.";
+
+    private static final AudioEngineType[] ENGINES = { AudioEngineType.PCM_LOOP, AudioEngineType.MIXER,
+            AudioEngineType.GRANULAR, AudioEngineType.SURF_SYNTH };
+
+    /**
+     * Default budgets of the real-time factor in CPU time, indexed like
+     * {@link #ENGINES}. About twice the baseline of 0.00033, 0.0033, 0.00133
+     * and 0.00175.
+     */
+    private static final double[] DEFAULT_RTF_BUDGETS = { 0.0007, 0.0066, 0.0027, 0.0035 };
+
+    /**
+     * Default budget of the allocation in bytes per played second. The render
+     * thread must not allocate.
+     */
+    private static final long DEFAULT_ALLOCATION_BUDGET = 64;
+
+    private static final long HOUR = 60L * 60 * TimeConstants.SECOND;
+
+    private static final int SAMPLE_RATE = 44100;
+
+    /**
+     * Length of the looped audio in ms.
+     */
+    private static final int LOOP_TIME = 30 * TimeConstants.SECOND;
+
+    /**
+     * Played time rendered before measuring, so the JIT has compiled the
+     * render path.
+     */
+    private static final int WARMUP_TIME = 2 * 60 * TimeConstants.SECOND;
+
+    /**
+     * Gain of the synthesized layer added to the mixer.
+     */
+    private static final float LAYER_GAIN = 0.3f;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Result of rendering one engine.
+     */
+    private static class Result {
+
+        long playTime;
+
+        long samples;
+
+        long wallTime;
+
+        long cpuTime;
+
+        long allocatedBytes;
+
+        long collections;
+
+        long collectionTime;
+
+        double getRealTimeFactor() {
+            return wallTime / 1e6 / playTime;
+        }
+
+        double getCpuRealTimeFactor() {
+            return cpuTime / 1e6 / playTime;
+        }
+
+        long getAllocationPerSecond() {
+            return allocatedBytes * TimeConstants.SECOND / playTime;
+        }
+    }
+
+    @Test
+    public void testRender() throws IOException {
+        double hours = Double.parseDouble(System.getProperty(PREFIX + "hours", "1"));
+        long playTime = (long) (hours * HOUR);
+        String engines = System.getProperty(PREFIX + "engines");
+        long allocationBudget = Long.getLong(PREFIX + "allocation", DEFAULT_ALLOCATION_BUDGET);
+        AllocationCounter counter = new AllocationCounter();
+
+        List<String> exceeded = new ArrayList<String>();
+        System.out.println(String.format("Rendering %.2f h per engine", hours));
+        System.out.println(String.format("%-12s %8s %8s %10s %12s %6s %8s", "engine", "rtf", "cpu rtf",
+                "ns/sample", "bytes/s", "gcs", "gc ms"));
+        for (int e = 0; e < ENGINES.length; e++) {
+            String name = ENGINES[e].name().toLowerCase();
+            if (engines != null && !("," + engines + ",").contains("," + name + ",")) {
+                continue;
+            }
+            Result result = render(ENGINES[e], playTime, counter);
+            System.out.println(String.format("%-12s %8.5f %8.5f %10.2f %12s %6d %8d", name,
+                    result.getRealTimeFactor(), result.getCpuRealTimeFactor(), (double) result.wallTime
+                            / result.samples, counter.isSupported() ? result.getAllocationPerSecond() : "n/a",
+                    result.collections, result.collectionTime));
+
+            double rtfBudget = Double.parseDouble(System.getProperty(PREFIX + name + ".rtf",
+                    String.valueOf(DEFAULT_RTF_BUDGETS[e])));
+            if (result.getCpuRealTimeFactor() > rtfBudget) {
+                exceeded.add(name + " rtf " + result.getCpuRealTimeFactor() + " > " + rtfBudget);
+            }
+            if (counter.isSupported() && result.getAllocationPerSecond() > allocationBudget) {
+                exceeded.add(name + " allocation " + result.getAllocationPerSecond() + " B/s > "
+                        + allocationBudget + " B/s");
+            }
+        }
+        assertTrue("Render budget exceeded: " + exceeded, exceeded.isEmpty());
+    }
+
+    /**
+     * Opens the source of the engine and renders it block by block, while the
+     * sleep timer fades it out towards the end. The engine is never prepared,
+     * so no track is created.
+     */
+    private Result render(AudioEngineType type, long playTime, AllocationCounter counter) throws IOException {
+        AudioTrackEngine engine = (AudioTrackEngine) new OceanWavesFactory(null, null, type).createAudioEngine();
+        FadingSampleSource source = engine.openFadingSource(createLoop());
+        if (engine instanceof MixingEngine) {
+            ((MixingEngine) engine).getMixer().addLayer(new SurfSynthesizer(SAMPLE_RATE, 2, 7), LAYER_GAIN);
+        }
+        PcmRenderer renderer = new PcmRenderer(source, AudioTrackEngine.MIN_BLOCK_FRAMES);
+        short[] block = new short[renderer.getBlockFrames() * source.getChannelCount()];
+
+        renderFrames(renderer, block, (long) WARMUP_TIME * source.getSampleRate() / TimeConstants.SECOND);
+        source.fadeOut((int) Math.min(Integer.MAX_VALUE, playTime), TimeConstants.DEFAULT_FADE_OUT_TIME);
+
+        Result result = new Result();
+        result.playTime = playTime;
+        long collections = getCollectionCount();
+        long collectionTime = getCollectionTime();
+        long cpuTime = threads.getCurrentThreadCpuTime();
+        counter.reset();
+        long start = System.nanoTime();
+        result.samples = renderFrames(renderer, block, playTime * source.getSampleRate() / TimeConstants.SECOND);
+        result.wallTime = System.nanoTime() - start;
+        result.allocatedBytes = counter.getAllocatedBytes();
+        result.cpuTime = threads.getCurrentThreadCpuTime() - cpuTime;
+        result.collections = getCollectionCount() - collections;
+        result.collectionTime = getCollectionTime() - collectionTime;
+        return result;
+    }
+
+    /**
+     * 
+     * @return the number of rendered samples.
+     */
+    private static long renderFrames(PcmRenderer renderer, short[] block, long frames) {
+        long samples = 0;
+        for (long rendered = 0; rendered < frames; rendered += renderer.getBlockFrames()) {
+            samples += renderer.render(block, (int) Math.min(renderer.getBlockFrames(), frames - rendered));
+        }
+        return samples;
+    }
+
+    /**
+     * 
+     * @return synthesized surf in place of the recorded loop, so the benchmark
+     *         does not need the app resources.
+     */
+    private static AudioSource createLoop() {
+        return new SynthesizedSource(new Provider<SurfSynthesizer>() {
+            public SurfSynthesizer get() {
+                return new SurfSynthesizer(SAMPLE_RATE, 2, 42);
+            }
+        }, LOOP_TIME);
+    }
+
+    private static long getCollectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long getCollectionTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, bean.getCollectionTime());
+        }
+        return time;
+    }
+}
@@ -0,0 +1,192 @@
+package com.github.arnehaber.android.benchmark;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.util.ActivityController;
+
+import android.content.ComponentName;
+
+import com.github.arnehaber.android.OceanWavesMainActivity;
+import com.github.arnehaber.android.OceanWavesService;
+
+/**
+ * Measures the start up of the {@link OceanWavesMainActivity} from onCreate to
+ * a usable UI, split into layout inflation, view binding, creation of the
+ * {@link OceanWavesService} with its player and connecting the activity to
+ * the service. The first start in the JVM is reported as cold start, all
+ * further starts as warm starts. The build fails if the 90th percentile of a
+ * warm start phase, or the cold start, exceeds its budget.
+ * <p>
+ * Run with <code>mvn test -Pbenchmark</code>. Budgets in ms and the number of
+ * iterations can be overridden with the system properties
+ * <code>benchmark.startup.&lt;phase&gt;.budget</code> and
+ * <code>benchmark.startup.iterations</code>.
+ * 
+ * @author Arne Haber
+ * 
+ */
+@RunWith(RobolectricTestRunner.class)
+public class StartupBenchmarkTest {
+
+    private static final String PREFIX = "benchmark.startup.";
+
+    private static final int LAYOUT = 0;
+
+    private static final int BINDING = 1;
+
+    private static final int SERVICE = 2;
+
+    private static final int CONNECTION = 3;
+
+    private static final int TOTAL = 4;
+
+    private static final String[] PHASES = { "layout", "binding", "service", "connection", "total" };
+
+    /**
+     * Default warm start budgets of the 90th percentile in ms, indexed by
+     * phase. 1.75 to 2 times the baseline of 434 ms for the layout and 5 ms
+     * for the binding; the service and the connection stay around 1 ms and
+     * get the smallest budgets above rounding.
+     */
+    private static final long[] DEFAULT_BUDGETS = { 750, 10, 2, 1, 760 };
+
+    /**
+     * Default cold start budget in ms, about 1.75 times the baseline of 8 s.
+     */
+    private static final long DEFAULT_COLD_BUDGET = 14000;
+
+    private static final int WARMUP = 10;
+
+    /**
+     * {@link OceanWavesMainActivity} that records the duration of each start up
+     * phase in ns.
+     */
+    public static class InstrumentedActivity extends OceanWavesMainActivity {
+
+        private final long[] phases = new long[PHASES.length];
+
+        private long mark;
+
+        @Override
+        public void setContentView(int layoutResID) {
+            mark = System.nanoTime();
+            super.setContentView(layoutResID);
+            phases[LAYOUT] = lap();
+        }
+
+        @Override
+        protected void bindViews() {
+            super.bindViews();
+            phases[BINDING] = lap();
+        }
+
+        @Override
+        protected void onPlayerConnected(OceanWavesService.PlayerBinder binder) {
+            mark = System.nanoTime();
+            super.onPlayerConnected(binder);
+            phases[CONNECTION] = lap();
+        }
+
+        private long lap() {
+            long now = System.nanoTime();
+            long result = now - mark;
+            mark = now;
+            return result;
+        }
+    }
+
+    @Test
+    public void testStartup() {
+        int iterations = Integer.getInteger(PREFIX + "iterations", 50);
+
+        long[] cold = start();
+
+        for (int i = 0; i < WARMUP; i++) {
+            start();
+        }
+        List<Percentiles> warm = new ArrayList<Percentiles>();
+        for (String phase : PHASES) {
+            warm.add(new Percentiles(phase, iterations));
+        }
+        for (int i = 0; i < iterations; i++) {
+            long[] phases = start();
+            for (int p = 0; p < PHASES.length; p++) {
+                warm.get(p).add(phases[p]);
+            }
+        }
+
+        System.out.println("Cold start");
+        for (int p = 0; p < PHASES.length; p++) {
+            System.out.println(String.format("%-20s %8.3f ms", PHASES[p], cold[p] / 1e6));
+        }
+        System.out.println("Warm start");
+        for (Percentiles percentiles : warm) {
+            System.out.println(percentiles.toMillisString());
+        }
+
+        List<String> exceeded = new ArrayList<String>();
+        long coldBudget = Long.getLong(PREFIX + "cold.budget", DEFAULT_COLD_BUDGET);
+        if (cold[TOTAL] / 1000000 > coldBudget) {
+            exceeded.add("cold " + cold[TOTAL] / 1000000 + " ms > " + coldBudget + " ms");
+        }
+        for (int p = 0; p < PHASES.length; p++) {
+            long budget = Long.getLong(PREFIX + PHASES[p] + ".budget", DEFAULT_BUDGETS[p]);
+            long p90 = warm.get(p).get(90) / 1000000;
+            if (p90 > budget) {
+                exceeded.add(PHASES[p] + " p90 " + p90 + " ms > " + budget + " ms");
+            }
+        }
+        assertTrue("Start up budget exceeded: " + exceeded, exceeded.isEmpty());
+    }
+
+    /**
+     * Creates a service, then creates, starts and destroys a single activity
+     * bound to it.
+     * 
+     * @return the duration of each phase in ns.
+     */
+    private long[] start() {
+        long mark = System.nanoTime();
+        OceanWavesService service = Robolectric.buildService(OceanWavesService.class).create().get();
+        long serviceTime = System.nanoTime() - mark;
+        Robolectric.getShadowApplication().setComponentNameAndServiceForBindService(
+                new ComponentName(service, OceanWavesService.class), service.onBind(null));
+
+        ActivityController<InstrumentedActivity> controller = Robolectric.buildActivity(InstrumentedActivity.class);
+        InstrumentedActivity activity = controller.create().start().get();
+        controller.stop().destroy();
+        service.onDestroy();
+
+        long[] phases = activity.phases;
+        phases[SERVICE] = serviceTime;
+        phases[TOTAL] = phases[LAYOUT] + phases[BINDING] + phases[SERVICE] + phases[CONNECTION];
+        return phases;
+    }
+}
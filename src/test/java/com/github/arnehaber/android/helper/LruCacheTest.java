@@ -0,0 +1,117 @@
+package com.github.arnehaber.android.helper;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link LruCache}.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class LruCacheTest {
+
+    /**
+     * Sizes strings by their length.
+     */
+    private static class StringCache extends LruCache<Integer, String> {
+
+        StringCache(long maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected long sizeOf(Integer key, String value) {
+            return value.length();
+        }
+    }
+
+    private final StringCache testee = new StringCache(10);
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxSize() {
+        new StringCache(0);
+    }
+
+    @Test
+    public void testPutAndGet() {
+        assertNull(testee.put(1, "abc"));
+        assertEquals("abc", testee.get(1));
+        assertNull(testee.get(2));
+        assertEquals(3, testee.size());
+
+        assertEquals("abc", testee.put(1, "abcde"));
+        assertEquals(5, testee.size());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        testee.put(1, "aaaa");
+        testee.put(2, "bbbb");
+        // 1 is now more recently used than 2
+        testee.get(1);
+        testee.put(3, "cccc");
+
+        assertEquals("aaaa", testee.get(1));
+        assertNull(testee.get(2));
+        assertEquals("cccc", testee.get(3));
+        assertEquals(8, testee.size());
+    }
+
+    @Test
+    public void testValueLargerThanCache() {
+        testee.put(1, "aaaa");
+        testee.put(2, "bbbbbbbbbbb");
+
+        assertNull(testee.get(1));
+        assertNull(testee.get(2));
+        assertEquals(0, testee.size());
+    }
+
+    @Test
+    public void testRemoveAndEvictAll() {
+        testee.put(1, "aaaa");
+        testee.put(2, "bbbb");
+
+        assertEquals("aaaa", testee.remove(1));
+        assertNull(testee.remove(1));
+        assertEquals(4, testee.size());
+
+        testee.evictAll();
+        assertNull(testee.get(2));
+        assertEquals(0, testee.size());
+    }
+
+    @Test
+    public void testHitAndMissCount() {
+        testee.put(1, "aaaa");
+        testee.get(1);
+        testee.get(1);
+        testee.get(2);
+
+        assertEquals(2, testee.hitCount());
+        assertEquals(1, testee.missCount());
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.arnehaber.android.helper;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.robolectric.RobolectricTestRunner;
+
+import com.github.arnehaber.android.IOceanWavesGui;
+import com.github.arnehaber.android.ITimedSleepPlayer;
+import com.github.arnehaber.android.audio.AudioEngineType;
+import com.github.arnehaber.android.audio.AudioSource;
+import com.github.arnehaber.android.audio.IAudioEngine;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+
+/**
+ * Tests that the {@link OceanWavesFactory} matches the bindings of the
+ * {@link OceanWavesModule}.
+ *
+ * @author Arne Haber
+ *
+ */
+@RunWith(RobolectricTestRunner.class)
+public class OceanWavesFactoryTest {
+
+    private final IOceanWavesGui mockedGui = Mockito.mock(IOceanWavesGui.class);
+
+    private final AudioSource mockedSource = Mockito.mock(AudioSource.class);
+
+    private final Provider<IOceanWavesGui> provider = new Provider<IOceanWavesGui>() {
+        public IOceanWavesGui get() {
+            return mockedGui;
+        }
+    };
+
+    @Test
+    public void testPlayerMatchesModule() {
+        Injector injector = Guice.createInjector(new OceanWavesModule(provider, mockedSource));
+        ITimedSleepPlayer expected = injector.getInstance(ITimedSleepPlayer.class);
+        ITimedSleepPlayer actual = new OceanWavesFactory(provider, mockedSource).createPlayer();
+
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getSleepTime(), actual.getSleepTime());
+        assertEquals(expected.getDuration(), actual.getDuration());
+    }
+
+    @Test
+    public void testAudioEngineMatchesModule() {
+        for (AudioEngineType type : AudioEngineType.values()) {
+            Injector injector = Guice.createInjector(new OceanWavesModule(provider, mockedSource, type));
+            IAudioEngine expected = injector.getInstance(IAudioEngine.class);
+            IAudioEngine actual = new OceanWavesFactory(provider, mockedSource, type).createAudioEngine();
+
+            assertEquals(expected.getClass(), actual.getClass());
+        }
+    }
+
+}
@@ -23,8 +23,11 @@ package com.github.arnehaber.android.helper;
 import static com.github.arnehaber.android.helper.TimeConstants.*;
 import static org.junit.Assert.*;
 
+import org.junit.Assume;
 import org.junit.Test;
 
+import com.github.arnehaber.android.benchmark.AllocationCounter;
+
 /**
  * Tests for the {@link TimeConstants} helper class.
  * 
@@ -101,4 +104,35 @@ public class TimeConstantsTest {
             assertEquals(current, expected);
         }
     }
+
+    @Test
+    public void testTimeToChars() {
+        char[] out = new char[MAX_TIME_LENGTH];
+        int[] input = { 0, 59 * SECOND + 999, MAX_SLEEP_TIME, Integer.MAX_VALUE };
+        String[] expected = { "0:00", "0:59", "60:00", "35791:23" };
+        for (int i = 0; i < input.length; i++) {
+            int length = timeToChars(input[i], out);
+            assertEquals(expected[i], new String(out, 0, length));
+        }
+    }
+
+    @Test
+    public void testTimeToCharsAllocationFree() {
+        AllocationCounter counter = new AllocationCounter();
+        Assume.assumeTrue(counter.isSupported());
+        char[] out = new char[MAX_TIME_LENGTH];
+        int sum = 0;
+        // warm up
+        for (int ms = 0; ms < MAX_SLEEP_TIME; ms += SECOND) {
+            sum += timeToChars(ms, out);
+        }
+
+        counter.reset();
+        for (int ms = 0; ms < MAX_SLEEP_TIME; ms += SECOND) {
+            sum += timeToChars(ms, out);
+        }
+        long allocated = counter.getAllocatedBytes();
+        assertTrue(sum > 0);
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    }
 }
@@ -0,0 +1,228 @@
+package com.github.arnehaber.android.helper;
+
+/*
+ * #%L
+ * ocean-waves
+ * %%
+ * Copyright (C) 2014 Arne Haber
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * Deterministic {@link IScheduler} on virtual time. Nothing runs until time is
+ * advanced; then all due {@link Runnable}s run on the calling thread in the
+ * order of their due time, and in posting order at equal times. Frames are
+ * due at every multiple of {@link #FRAME_TIME}. Both clocks show the same
+ * virtual time, which starts at 0.
+ * 
+ * @author Arne Haber
+ * 
+ */
+public class VirtualScheduler implements IScheduler {
+
+    /**
+     * Time between two display frames in ms.
+     */
+    public static final int FRAME_TIME = 16;
+
+    private final PriorityQueue<Task> queue = new PriorityQueue<Task>();
+
+    private long now = 0;
+
+    /**
+     * Number of the next posted task, orders tasks of equal due time.
+     */
+    private long sequence = 0;
+
+    private long executed = 0;
+
+    private static final class Task implements Comparable<Task> {
+
+        final long time;
+
+        final long sequence;
+
+        final Runnable runnable;
+
+        final boolean frame;
+
+        Task(long time, long sequence, Runnable runnable, boolean frame) {
+            this.time = time;
+            this.sequence = sequence;
+            this.runnable = runnable;
+            this.frame = frame;
+        }
+
+        public int compareTo(Task other) {
+            if (time != other.time) {
+                return time < other.time ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : sequence == other.sequence ? 0 : 1;
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.helper.IClock#uptimeMillis()
+     */
+    public long uptimeMillis() {
+        return now;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.arnehaber.android.helper.IClock#elapsedRealtime()
+     */
+    public long elapsedRealtime() {
+        return now;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.arnehaber.android.helper.IScheduler#post(java.lang.Runnable)
+     */
+    public void post(Runnable r) {
+        postDelayed(r, 0);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.arnehaber.android.helper.IScheduler#postDelayed(java.lang.
+     * Runnable, long)
+     */
+    public void postDelayed(Runnable r, long delayMillis) {
+        queue.add(new Task(now + Math.max(0, delayMillis), sequence++, r, false));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.arnehaber.android.helper.IScheduler#removeCallbacks(java.lang
+     * .Runnable)
+     */
+    public void removeCallbacks(Runnable r) {
+        remove(r, false);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.arnehaber.android.helper.IScheduler#postFrame(java.lang.Runnable
+     * )
+     */
+    public void postFrame(Runnable r) {
+        queue.add(new Task((now / FRAME_TIME + 1) * FRAME_TIME, sequence++, r, true));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.arnehaber.android.helper.IScheduler#removeFrame(java.lang.
+     * Runnable)
+     */
+    public void removeFrame(Runnable r) {
+        remove(r, true);
+    }
+
+    private void remove(Runnable r, boolean frame) {
+        for (Iterator<Task> i = queue.iterator(); i.hasNext();) {
+            Task task = i.next();
+            if (task.runnable == r && task.frame == frame) {
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Runs all {@link Runnable}s due up to the given time, including those
+     * posted meanwhile, then sets the clock to that time.
+     * 
+     * @param time
+     *            the new virtual time in ms, not before the current time.
+     */
+    public void advanceTo(long time) {
+        if (time < now) {
+            throw new IllegalArgumentException("Time runs backwards: " + time + " < " + now);
+        }
+        while (!queue.isEmpty() && queue.peek().time <= time) {
+            runNext();
+        }
+        now = time;
+    }
+
+    /**
+     * 
+     * @param ms
+     *            time to advance the clock by.
+     * @see #advanceTo(long)
+     */
+    public void advanceBy(long ms) {
+        advanceTo(now + ms);
+    }
+
+    /**
+     * Advances the clock to the next due {@link Runnable} and runs it.
+     * 
+     * @return false, if nothing is pending.
+     */
+    public boolean runNext() {
+        Task task = queue.poll();
+        if (task == null) {
+            return false;
+        }
+        now = Math.max(now, task.time);
+        executed++;
+        task.runnable.run();
+        return true;
+    }
+
+    /**
+     * 
+     * @return the due time of the next pending {@link Runnable}, or -1 if
+     *         nothing is pending.
+     */
+    public long getNextTime() {
+        Task next = queue.peek();
+        return next != null ? next.time : -1;
+    }
+
+    /**
+     * 
+     * @return the number of pending {@link Runnable}s.
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * 
+     * @return the number of {@link Runnable}s run so far.
+     */
+    public long getExecutedCount() {
+        return executed;
+    }
+}